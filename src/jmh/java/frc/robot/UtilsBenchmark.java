@@ -0,0 +1,70 @@
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.robot.Utils.Vector2D;
+import frc.robot.Utils.Vector3D;
+
+/**
+ * Cost of the vector math in Utils, both the in-place and the allocating
+ * versions, so the gc profiler shows what each one costs in garbage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilsBenchmark {
+    private final Vector2D m_a2 = new Vector2D(3.2, -1.7);
+    private final Vector2D m_b2 = new Vector2D(-0.4, 2.9);
+    private final Vector2D m_result2 = new Vector2D();
+
+    private final Vector3D m_a3 = new Vector3D(1.2, -0.7, 2.5);
+    private final Vector3D m_b3 = new Vector3D(-0.3, 1.9, 0.4);
+    private final Vector3D m_result3 = new Vector3D();
+
+    private double m_angle = 0;
+
+    @Benchmark
+    public Vector2D vector2DInPlace() {
+        m_result2.set(m_a2);
+        m_result2.subtract(m_b2);
+        m_result2.rotateBy(m_angle += 0.001);
+        m_result2.normalize();
+        return m_result2;
+    }
+
+    @Benchmark
+    public Vector2D vector2DAllocating() {
+        return m_a2.getSubtracted(m_b2).getRotatedBy(m_angle += 0.001).getNormalized();
+    }
+
+    @Benchmark
+    public double vector2DDistance() {
+        return m_a2.distance(m_b2) + m_a2.dot(m_b2) + m_a2.cross(m_b2);
+    }
+
+    @Benchmark
+    public Vector3D vector3DInPlace() {
+        m_a3.cross(m_b3, m_result3);
+        m_result3.rotateVectorAboutZAxis(m_angle += 0.001, m_result3);
+        m_result3.plus(m_a3, m_result3);
+        return m_result3;
+    }
+
+    @Benchmark
+    public Vector3D vector3DAllocating() {
+        return m_a3.cross(m_b3).plus(m_a3).times(0.5);
+    }
+}
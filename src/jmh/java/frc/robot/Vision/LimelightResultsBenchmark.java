@@ -0,0 +1,59 @@
+package frc.robot.Vision;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of parsing a Limelight JSON dump, using a capture with two tags in view,
+ * through the databind mapper in {@link LimelightHelpers} and through
+ * {@link LimelightResultsDecoder}. LimelightResultsDecoderTest checks the two
+ * decode the same.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LimelightResultsBenchmark {
+    private String m_json;
+    private final LimelightResultsDecoder m_decoder = new LimelightResultsDecoder();
+    private final LimelightResultsDecoder m_skippingDecoder = new LimelightResultsDecoder(false, false, true, false);
+    private final LimelightHelpers.LimelightResults m_results = new LimelightHelpers.LimelightResults();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        try (InputStream stream = getClass().getResourceAsStream("/limelight-results.json")) {
+            m_json = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public LimelightHelpers.LimelightResults parseResults() {
+        return LimelightHelpers.parseResults(m_json);
+    }
+
+    @Benchmark
+    public LimelightHelpers.LimelightResults decodeResults() {
+        return m_decoder.decode(m_json, m_results);
+    }
+
+    @Benchmark
+    public LimelightHelpers.LimelightResults decodeResultsSkippingUnused() {
+        return m_skippingDecoder.decode(m_json, m_results);
+    }
+}
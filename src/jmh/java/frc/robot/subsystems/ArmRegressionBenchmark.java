@@ -0,0 +1,75 @@
+package frc.robot.subsystems;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the arm aiming models, without the pose lookups and dashboard
+ * output of the Arm methods that wrap them.
+ * <p>
+ * The shot table is the one shipped in the deploy directory. ShotTableTest
+ * checks it still matches the expo regression it replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArmRegressionBenchmark {
+    /* Sweep across the shooting range so the JIT can't constant fold the distance */
+    private double m_distanceMeters = 1;
+
+    private ShotTable m_shotTable;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        m_shotTable = ShotTable.load(Path.of("src", "main", "deploy", ShotTable.kFileName));
+    }
+
+    private double nextDistance() {
+        m_distanceMeters += 0.01;
+        if (m_distanceMeters > 6) {
+            m_distanceMeters = 1;
+        }
+        return m_distanceMeters;
+    }
+
+    @Benchmark
+    public double expo() {
+        return Arm.expoRegression(nextDistance());
+    }
+
+    @Benchmark
+    public double trig() {
+        return Arm.trigModel(nextDistance());
+    }
+
+    @Benchmark
+    public double steven() {
+        return Arm.stevenRegression(nextDistance());
+    }
+
+    @Benchmark
+    public double simpleSteven() {
+        return Arm.simpleStevenRegression(nextDistance());
+    }
+
+    @Benchmark
+    public double shotTable() {
+        return m_shotTable.getArmAngle(nextDistance());
+    }
+}
@@ -0,0 +1,105 @@
+package frc.robot.subsystems.Drivetrain;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.robot.Constants.SwerveConstants.SwerveSpeeds;
+
+/**
+ * Cost of the kinematics conversions the requests make every loop, through
+ * WPILib and through {@link SwerveKinematicsEngine}. That the two give the
+ * same results is checked by SwerveKinematicsEngineTest, this is only timing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SwerveKinematicsBenchmark {
+    /* Same module layout as TunerConstants, without loading the Phoenix constants */
+    private static final double kFrontX = 0.327;
+    private static final double kSideY = 0.306;
+
+    private SwerveDriveKinematics m_kinematics;
+    private ChassisSpeeds m_speeds;
+    private Rotation2d m_heading;
+    private SwerveModuleState[] m_states;
+    private SwerveKinematicsEngine m_engine;
+    private final ChassisSpeeds m_engineSpeeds = new ChassisSpeeds();
+    private final Translation2d m_centerOfRotation = new Translation2d();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Translation2d[] locations = new Translation2d[] {
+                new Translation2d(kFrontX, kSideY), new Translation2d(kFrontX, -kSideY),
+                new Translation2d(-kFrontX, kSideY), new Translation2d(-kFrontX, -kSideY)
+        };
+        m_kinematics = new SwerveDriveKinematics(locations);
+        m_engine = new SwerveKinematicsEngine(locations);
+        m_speeds = new ChassisSpeeds(3.1, -1.4, 2.2);
+        m_heading = Rotation2d.fromDegrees(37);
+        m_states = m_kinematics.toSwerveModuleStates(m_speeds);
+    }
+
+    @Benchmark
+    public SwerveModuleState[] toSwerveModuleStates() {
+        return m_kinematics.toSwerveModuleStates(m_speeds);
+    }
+
+    @Benchmark
+    public ChassisSpeeds toChassisSpeeds() {
+        return m_kinematics.toChassisSpeeds(m_states);
+    }
+
+    @Benchmark
+    public ChassisSpeeds fromFieldRelativeSpeeds() {
+        return ChassisSpeeds.fromFieldRelativeSpeeds(m_speeds, m_heading);
+    }
+
+    @Benchmark
+    public ChassisSpeeds discretize() {
+        return ChassisSpeeds.discretize(m_speeds, 1.0 / 250.0);
+    }
+
+    @Benchmark
+    public SwerveModuleState[] desaturateWheelSpeeds() {
+        /* Desaturating in place is idempotent, so the states stay the same between calls */
+        SwerveDriveKinematics.desaturateWheelSpeeds(m_states, SwerveSpeeds.kMaxSpeedMetersPerSecond);
+        return m_states;
+    }
+
+    @Benchmark
+    public SwerveModuleState[] fieldCentricPipeline() {
+        /* What FieldCentric does each loop */
+        ChassisSpeeds speeds = ChassisSpeeds.discretize(
+                ChassisSpeeds.fromFieldRelativeSpeeds(m_speeds, m_heading), 1.0 / 250.0);
+        return m_kinematics.toSwerveModuleStates(speeds);
+    }
+
+    @Benchmark
+    public double engineFieldCentricPipeline() {
+        /* What FieldCentric does each loop with the kinematics engine */
+        SwerveKinematicsEngine.fromFieldRelativeSpeeds(m_speeds.vxMetersPerSecond, m_speeds.vyMetersPerSecond,
+                m_speeds.omegaRadiansPerSecond, m_heading.getRadians(), m_engineSpeeds);
+        SwerveKinematicsEngine.discretize(m_engineSpeeds, 1.0 / 250.0);
+        m_engine.toSwerveModuleStates(m_engineSpeeds, m_centerOfRotation);
+        return m_engine.getModuleSpeed(0);
+    }
+}
@@ -0,0 +1,193 @@
+package frc.robot.subsystems.Drivetrain;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+
+/**
+ * Cost of running a match's worth of odometry and vision through the WPILib
+ * pose estimator and through {@link SwervePoseEstimator}.
+ * <p>
+ * The log is built once in setup: 250 Hz odometry from a robot weaving
+ * around the field, and two cameras that each see it 20 times a second with
+ * 30 to 80 ms of latency, so their frames often arrive out of order. Every
+ * operation replays the whole log into one estimator, the same calls the
+ * odometry thread makes. SwervePoseEstimatorTest checks the two agree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SwervePoseEstimatorBenchmark {
+    /* Same module layout as TunerConstants, without loading the Phoenix constants */
+    private static final double kFrontX = 0.327;
+    private static final double kSideY = 0.306;
+
+    private static final double kUpdateFrequency = 250;
+    private static final double kLogSeconds = 15;
+    private static final double kCameraPeriodSeconds = 0.05;
+
+    /* Same trust as the drivetrain and Constants.Vision */
+    private static final Matrix<N3, N1> kStateStdDevs = VecBuilder.fill(0.1, 0.1, 0.1);
+    private static final Matrix<N3, N1> kVisionStdDevs = VecBuilder.fill(0.22, 0.22, Math.toRadians(100));
+
+    private Translation2d[] m_locations;
+    private SwerveDriveKinematics m_kinematics;
+
+    /* The log, one entry per odometry update */
+    private double[] m_times;
+    private Rotation2d[] m_gyro;
+    private SwerveModulePosition[][] m_positions;
+    private Pose2d m_startPose;
+    /* Vision frames, in the order they arrive */
+    private int[] m_visionArrivalIndex;
+    private double[] m_visionTimes;
+    private Pose2d[] m_visionPoses;
+
+    private SwerveDrivePoseEstimator m_wpilib;
+    private SwervePoseEstimator m_fixedMemory;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        m_locations = new Translation2d[] {
+                new Translation2d(kFrontX, kSideY), new Translation2d(kFrontX, -kSideY),
+                new Translation2d(-kFrontX, kSideY), new Translation2d(-kFrontX, -kSideY)
+        };
+        m_kinematics = new SwerveDriveKinematics(m_locations);
+        buildLog();
+
+        m_wpilib = new SwerveDrivePoseEstimator(m_kinematics, m_gyro[0], m_positions[0], m_startPose,
+                kStateStdDevs, kVisionStdDevs);
+        m_fixedMemory = new SwervePoseEstimator(m_locations, kUpdateFrequency, m_gyro[0], m_positions[0],
+                m_startPose, kStateStdDevs, kVisionStdDevs);
+    }
+
+    private void buildLog() {
+        Random random = new Random(548);
+        double dt = 1.0 / kUpdateFrequency;
+        int count = (int) (kLogSeconds * kUpdateFrequency);
+
+        m_times = new double[count];
+        m_gyro = new Rotation2d[count];
+        m_positions = new SwerveModulePosition[count][];
+        Pose2d[] truth = new Pose2d[count];
+
+        Pose2d pose = new Pose2d(2, 4, new Rotation2d());
+        m_startPose = pose;
+        double[] distances = new double[m_locations.length];
+        for (int i = 0; i < count; ++i) {
+            double t = i * dt;
+            ChassisSpeeds speeds = new ChassisSpeeds(
+                    3.0 * Math.sin(0.4 * t), 2.0 * Math.cos(0.3 * t), 1.5 * Math.sin(0.7 * t));
+            SwerveModuleState[] states = m_kinematics.toSwerveModuleStates(speeds);
+
+            m_positions[i] = new SwerveModulePosition[states.length];
+            for (int module = 0; module < states.length; ++module) {
+                distances[module] += states[module].speedMetersPerSecond * dt;
+                m_positions[i][module] = new SwerveModulePosition(distances[module], states[module].angle);
+            }
+            m_times[i] = t;
+            m_gyro[i] = pose.getRotation();
+            truth[i] = pose;
+
+            pose = pose.exp(new Twist2d(speeds.vxMetersPerSecond * dt, speeds.vyMetersPerSecond * dt,
+                    speeds.omegaRadiansPerSecond * dt));
+        }
+
+        /* Two cameras half a period apart, with frames captured between odometry updates */
+        int cameraTicks = (int) (kCameraPeriodSeconds * kUpdateFrequency);
+        int frames = 2 * (count / cameraTicks);
+        int[] arrival = new int[frames];
+        double[] times = new double[frames];
+        Pose2d[] poses = new Pose2d[frames];
+        int frame = 0;
+        for (int camera = 0; camera < 2; ++camera) {
+            for (int capture = 1 + camera * cameraTicks / 2; capture < count; capture += cameraTicks) {
+                int latencyTicks = (int) ((0.03 + 0.05 * random.nextDouble()) * kUpdateFrequency);
+                if (capture + latencyTicks >= count || frame >= frames) {
+                    continue;
+                }
+                double fraction = random.nextDouble();
+                Pose2d seen = truth[capture - 1].interpolate(truth[capture], fraction);
+                arrival[frame] = capture + latencyTicks;
+                times[frame] = m_times[capture - 1] + fraction * dt;
+                poses[frame] = new Pose2d(
+                        seen.getX() + 0.05 * random.nextGaussian(),
+                        seen.getY() + 0.05 * random.nextGaussian(),
+                        seen.getRotation().plus(Rotation2d.fromDegrees(2 * random.nextGaussian())));
+                frame++;
+            }
+        }
+
+        /* Sort by arrival, the order the odometry thread would see them in */
+        Integer[] order = new Integer[frame];
+        for (int i = 0; i < frame; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(arrival[a], arrival[b]));
+        m_visionArrivalIndex = new int[frame];
+        m_visionTimes = new double[frame];
+        m_visionPoses = new Pose2d[frame];
+        for (int i = 0; i < frame; ++i) {
+            m_visionArrivalIndex[i] = arrival[order[i]];
+            m_visionTimes[i] = times[order[i]];
+            m_visionPoses[i] = poses[order[i]];
+        }
+    }
+
+    @Benchmark
+    public Pose2d wpilibEstimator() {
+        m_wpilib.resetPosition(m_gyro[0], m_positions[0], m_startPose);
+        int vision = 0;
+        for (int i = 0; i < m_times.length; ++i) {
+            m_wpilib.updateWithTime(m_times[i], m_gyro[i], m_positions[i]);
+            while (vision < m_visionArrivalIndex.length && m_visionArrivalIndex[vision] == i) {
+                m_wpilib.addVisionMeasurement(m_visionPoses[vision], m_visionTimes[vision]);
+                vision++;
+            }
+        }
+        return m_wpilib.getEstimatedPosition();
+    }
+
+    @Benchmark
+    public Pose2d fixedMemoryEstimator() {
+        m_fixedMemory.resetPosition(m_gyro[0], m_positions[0], m_startPose);
+        int vision = 0;
+        for (int i = 0; i < m_times.length; ++i) {
+            m_fixedMemory.updateWithTime(m_times[i], m_gyro[i], m_positions[i]);
+            while (vision < m_visionArrivalIndex.length && m_visionArrivalIndex[vision] == i) {
+                m_fixedMemory.addVisionMeasurement(m_visionPoses[vision], m_visionTimes[vision]);
+                vision++;
+            }
+        }
+        return m_fixedMemory.getEstimatedPosition();
+    }
+}
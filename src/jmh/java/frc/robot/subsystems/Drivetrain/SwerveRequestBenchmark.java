@@ -0,0 +1,108 @@
+package frc.robot.subsystems.Drivetrain;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.mechanisms.swerve.SwerveModuleConstants;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import frc.robot.Constants.SwerveConstants.TunerConstants;
+import frc.robot.subsystems.Drivetrain.SwerveRequest.SwerveControlRequestParameters;
+
+/**
+ * Cost of one odometry-loop apply of the driver requests, against simulated
+ * modules so the Phoenix control calls are included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SwerveRequestBenchmark {
+    private static final double kUpdatePeriod = 1.0 / 250.0;
+
+    private SwerveModule[] m_modules;
+    private final SwerveControlRequestParameters m_parameters = new SwerveControlRequestParameters();
+
+    private SwerveRequest.FieldCentric m_fieldCentric;
+    private SwerveRequest.FieldCentricFacingAngle m_fieldCentricFacingAngle;
+    private SwerveRequest.RobotCentric m_robotCentric;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        /* The HAL has to be up before anything touches the sim devices */
+        HAL.initialize(500, 0);
+
+        SwerveModuleConstants[] constants = new SwerveModuleConstants[] {
+                TunerConstants.FrontLeft, TunerConstants.FrontRight,
+                TunerConstants.BackLeft, TunerConstants.BackRight
+        };
+        m_modules = new SwerveModule[constants.length];
+        Translation2d[] locations = new Translation2d[constants.length];
+        for (int i = 0; i < constants.length; ++i) {
+            m_modules[i] = new SwerveModule(constants[i], "");
+            locations[i] = new Translation2d(constants[i].LocationX, constants[i].LocationY);
+        }
+
+        m_parameters.kinematics = new SwerveDriveKinematics(locations);
+        m_parameters.kinematicsEngine = new SwerveKinematicsEngine(locations);
+        m_parameters.swervePositions = locations;
+        m_parameters.currentChassisSpeed = new ChassisSpeeds(1.0, 0.5, 0.2);
+        m_parameters.currentX = 2.5;
+        m_parameters.currentY = 5.5;
+        m_parameters.currentHeadingRadians = Math.toRadians(30);
+        m_parameters.fieldX = 2.5;
+        m_parameters.fieldY = 5.5;
+        m_parameters.fieldHeadingRadians = Math.toRadians(30);
+        m_parameters.operatorForwardDirection = new Rotation2d();
+        m_parameters.updatePeriod = kUpdatePeriod;
+
+        m_fieldCentric = new SwerveRequest.FieldCentric()
+                .withVelocityX(2.5).withVelocityY(-1.2).withRotationalRate(1.5);
+
+        m_fieldCentricFacingAngle = new SwerveRequest.FieldCentricFacingAngle()
+                .withVelocityX(2.5).withVelocityY(-1.2).withTargetDirection(Rotation2d.fromDegrees(120));
+        m_fieldCentricFacingAngle.HeadingController.setPID(8, 0, 0);
+        m_fieldCentricFacingAngle.HeadingController.enableContinuousInput(-Math.PI, Math.PI);
+
+        m_robotCentric = new SwerveRequest.RobotCentric()
+                .withVelocityX(2.5).withVelocityY(-1.2).withRotationalRate(1.5);
+    }
+
+    private SwerveControlRequestParameters nextParameters() {
+        m_parameters.timestamp += kUpdatePeriod;
+        return m_parameters;
+    }
+
+    @Benchmark
+    public StatusCode fieldCentric() {
+        return m_fieldCentric.apply(nextParameters(), m_modules);
+    }
+
+    @Benchmark
+    public StatusCode fieldCentricFacingAngle() {
+        return m_fieldCentricFacingAngle.apply(nextParameters(), m_modules);
+    }
+
+    @Benchmark
+    public StatusCode robotCentric() {
+        return m_robotCentric.apply(nextParameters(), m_modules);
+    }
+}
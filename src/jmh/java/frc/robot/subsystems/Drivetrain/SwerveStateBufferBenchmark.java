@@ -0,0 +1,115 @@
+package frc.robot.subsystems.Drivetrain;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reader and writer latency of publishing the drivetrain state, with one
+ * thread writing like the odometry thread and a few reading like the main
+ * loop, vision and telemetry all calling getState at once.
+ * <p>
+ * The locked group is how getState worked before {@link SwerveStateBuffer},
+ * with every read and write going through the drivetrain's read/write lock,
+ * so the two groups show the change. Sample time mode reports percentiles,
+ * the tail is what the odometry loop feels.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SwerveStateBufferBenchmark {
+    private static final int kModuleCount = 4;
+
+    /* Shared by every thread in a group */
+    @State(Scope.Group)
+    public static class Shared {
+        final SwerveStateBuffer buffer = new SwerveStateBuffer(kModuleCount);
+
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        final SwerveStateBuffer.Frame locked = new SwerveStateBuffer.Frame(kModuleCount);
+    }
+
+    /* Each thread's own copy, and the values the writer counts through */
+    @State(Scope.Thread)
+    public static class Local {
+        final SwerveStateBuffer.Frame frame = new SwerveStateBuffer.Frame(kModuleCount);
+        double value = 0;
+    }
+
+    private static void fill(SwerveStateBuffer.Frame frame, double value) {
+        frame.successfulDaqs++;
+        frame.x = value;
+        frame.y = value + 1;
+        frame.theta = value * 0.01;
+        frame.vx = value;
+        frame.vy = -value;
+        frame.omega = value * 0.1;
+        frame.odometryPeriod = 0.004;
+        for (int i = 0; i < kModuleCount; ++i) {
+            frame.moduleSpeeds[i] = value;
+            frame.moduleAngles[i] = value * 0.02;
+            frame.targetSpeeds[i] = value;
+            frame.targetAngles[i] = value * 0.02;
+        }
+    }
+
+    @Benchmark
+    @Group("seqlock")
+    @GroupThreads(1)
+    public void seqlockWrite(Shared shared, Local local) {
+        SwerveStateBuffer.Frame frame = shared.buffer.getWriteFrame();
+        long stamp = shared.buffer.beginWrite();
+        try {
+            fill(frame, local.value += 1);
+        } finally {
+            shared.buffer.endWrite(stamp);
+        }
+    }
+
+    @Benchmark
+    @Group("seqlock")
+    @GroupThreads(3)
+    public double seqlockRead(Shared shared, Local local) {
+        shared.buffer.read(local.frame);
+        return local.frame.x;
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(1)
+    public void lockedWrite(Shared shared, Local local) {
+        shared.lock.writeLock().lock();
+        try {
+            fill(shared.locked, local.value += 1);
+        } finally {
+            shared.lock.writeLock().unlock();
+        }
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(3)
+    public double lockedRead(Shared shared, Local local) {
+        shared.lock.readLock().lock();
+        try {
+            local.frame.copyFrom(shared.locked);
+        } finally {
+            shared.lock.readLock().unlock();
+        }
+        return local.frame.x;
+    }
+}
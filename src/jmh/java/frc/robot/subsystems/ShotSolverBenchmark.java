@@ -0,0 +1,52 @@
+package frc.robot.subsystems;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of solving a moving shot, which the align to speaker request does on
+ * every odometry update. Run with the gc profiler to check it doesn't
+ * allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShotSolverBenchmark {
+    /* Blue speaker */
+    private static final double kTargetX = 0;
+    private static final double kTargetY = 5.55;
+
+    private final ShotSolver m_solver = new ShotSolver();
+    /* Drive around in a circle in front of the speaker so nothing constant folds */
+    private double m_angle = 0;
+
+    @Benchmark
+    public double movingShot() {
+        m_angle += 0.01;
+        double x = 3 + Math.cos(m_angle);
+        double y = 5.55 + Math.sin(m_angle);
+        double vx = -4 * Math.sin(m_angle);
+        double vy = 4 * Math.cos(m_angle);
+        m_solver.solve(x, y, vx, vy, kTargetX, kTargetY);
+        return m_solver.getHeadingRadians() + m_solver.getShotTableDistanceMeters();
+    }
+
+    @Benchmark
+    public double stationaryShot() {
+        m_angle += 0.01;
+        m_solver.solve(3 + Math.cos(m_angle), 5.55 + Math.sin(m_angle), 0, 0, kTargetX, kTargetY);
+        return m_solver.getHeadingRadians() + m_solver.getShotTableDistanceMeters();
+    }
+}
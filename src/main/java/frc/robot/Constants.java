@@ -34,9 +34,55 @@ public final class Constants {
 
 		public static final boolean UseLimelight = true;
 
+		// how often the odometry thread sends the yaw to the limelights for megatag 2, faster than they run
+		public static final double kOrientationPublishRateHz = 100;
+
+		// frames worse than these never make it to the pose estimator
+		public static final double kMaxTagAmbiguity = 0.7;
+		public static final double kMaxAverageTagDistanceMeters = 6;
+		public static final double kFieldBorderMarginMeters = 0.5;
+
 		// the lower the number, the more odometry will trust the vision
 		public static final Vector<N3> kPrecisionInMyVision = VecBuilder.fill(0.22, 0.22, Units.degreesToRadians(100));
 
+		// limelight 3 field of view
+		public static final double kLimelightHorizontalFOVDegrees = 63.3;
+		public static final double kLimelightVerticalFOVDegrees = 49.7;
+
+		// tags at the places each alliance drives to, the apriltag cameras ignore the rest
+		public static final int[] kBlueAllianceTagIDs = { 1, 2, 6, 7, 8, 14, 15, 16 };
+		public static final int[] kRedAllianceTagIDs = { 3, 4, 5, 9, 10, 11, 12, 13 };
+		// center speaker tags, the ones tx and ty follow
+		public static final int kBlueSpeakerTagID = 7;
+		public static final int kRedSpeakerTagID = 4;
+		// room left around where the tags should be, in crop units (the frame is -1 to 1), for pose error
+		public static final double kCropMargin = 0.15;
+		// also crop for where the tags will be this far ahead, to cover the camera latency
+		public static final double kCropLookaheadSeconds = 0.1;
+		// if the pose is off the tags sit outside the crop, so after this many frames in a row that expected tags
+		// but found none, go back to the full frame until they turn up again
+		public static final int kCropMissedFramesBeforeFullFrame = 10;
+		// with no vision fused for this long, don't trust the pose enough to crop around it
+		public static final double kCropPoseUncertainSeconds = 2;
+
+		// fake apriltag limelights for the simulator, built from where the sim robot really is
+		public static class SimCameras {
+			public static final boolean kEnabled = true;
+			public static final double kFramesPerSecond = 20;
+			public static final double kCaptureLatencyMs = 11;
+			// pipeline latency is the mean plus up to the jitter either way
+			public static final double kPipelineLatencyMs = 25;
+			public static final double kPipelineLatencyJitterMs = 8;
+			// pose noise grows with how far away the tags are
+			public static final double kTranslationStdDevPerMeter = 0.015;
+			public static final double kRotationStdDevDegrees = 2;
+			// chance a frame never shows up
+			public static final double kDropoutProbability = 0.05;
+			// ambiguity of each tag is somewhere between these
+			public static final double kMinTagAmbiguity = 0.05;
+			public static final double kMaxTagAmbiguity = 0.3;
+		}
+
 		public static class LimelightFront {
 			public static final String llAprilTag = "limelight-front";
 			public static final String llAprilTagIP = "http://10.5.48.13:5800/stream.mjpg";
@@ -44,6 +90,14 @@ public final class Constants {
 			public static final double MegaTag1AreaThreshold = 0.221;
 			public static final double MegaTag2AreaThreshold = 0.1;
 			public static final double MegatTag2AngularVelocityThreshold = 22.5;
+
+			// where the camera sits, from the center of the robot at floor level
+			public static final double kCameraForwardMeters = 0.28;
+			public static final double kCameraLeftMeters = 0;
+			public static final double kCameraHeightMeters = 0.25;
+			// positive is tilted up toward the tags
+			public static final double kCameraPitchDegrees = 20;
+			public static final double kCameraYawDegrees = 0;
 		}
 
 		public static class LimelightRear {
@@ -53,6 +107,12 @@ public final class Constants {
 			public static final double MegaTag1AreaThreshold = LimelightFront.MegaTag1AreaThreshold;
 			public static final double MegaTag2AreaThreshold = LimelightFront.MegaTag2AreaThreshold;
 			public static final double MegatTag2AngularVelocityThreshold = LimelightFront.MegatTag2AngularVelocityThreshold;
+
+			public static final double kCameraForwardMeters = -0.28;
+			public static final double kCameraLeftMeters = 0;
+			public static final double kCameraHeightMeters = 0.25;
+			public static final double kCameraPitchDegrees = 20;
+			public static final double kCameraYawDegrees = 180;
 		}
 
 		public static class LimelightPython {
@@ -60,6 +120,16 @@ public final class Constants {
 			public static final String llPythonIP = "http://10.5.48.12:5800/stream.mjpg";
 			public static final int llPythonPipelineIndex = 0;
 
+			// where the note camera sits, from the center of the robot at floor level
+			public static final double kCameraForwardMeters = 0.30;
+			public static final double kCameraLeftMeters = 0;
+			public static final double kCameraHeightMeters = 0.55;
+			// negative is tilted down toward the floor
+			public static final double kCameraPitchDegrees = -25;
+			public static final double kCameraYawDegrees = 0;
+
+			public static final double kHorizontalFOVDegrees = kLimelightHorizontalFOVDegrees;
+			public static final double kVerticalFOVDegrees = kLimelightVerticalFOVDegrees;
 		}
 
 		public static class SpeakerPoses {
@@ -110,6 +180,22 @@ public final class Constants {
 			// .inchesToMeters(Utils.pythagorean(driveBaseWidth / 2, driveBaseHeight / 2));
 
 			public static final double kDriveBaseRadius = 0.44;
+
+			/** Robot mass with bumpers and battery (kg) */
+			public static final double kRobotMassKg = 61.2;
+			/** Moment of inertia about the center of rotation (kg m^2), a uniform 0.84 m square */
+			public static final double kRobotMOIKgMetersSquared = kRobotMassKg * (0.84 * 0.84 + 0.84 * 0.84) / 12;
+			/** Friction coefficient of the drive tread on carpet */
+			public static final double kWheelCoefficientOfFriction = 1.1;
+		}
+
+		/** Only used by the drivetrain simulation */
+		public static class Simulation {
+			/** Physics steps per sim update, the tire model wants a small time step */
+			public static final int kSubsteps = 4;
+			public static final double kBatteryNominalVoltage = 12.5;
+			/** Internal resistance of the battery plus wiring (ohms) */
+			public static final double kBatteryResistanceOhms = 0.02;
 		}
 
 		public static final boolean kEnableDriveFOC = true;
@@ -257,6 +343,15 @@ public final class Constants {
 		}
 	}
 
+	/** Decimations are in odometry updates, so 1 publishes every update */
+	public static class TelemetryConstants {
+		public static final int kNetworkTablesDecimation = 5;
+		public static final int kSignalLoggerDecimation = 1;
+		public static final int kDataLogDecimation = 2;
+		/** Percentiles are a scan of every bucket, so the latency stats go out slower */
+		public static final int kLatencyDecimation = 50;
+	}
+
 	public static enum AprilTag {
 		NoTag(-1), BlueRightHumanPlayer(1), BlueLeftHumanPlayer(2), RedSpeakerOffset(3), RedSpeaker(4), RedAmp(5),
 		BlueAmp(6), BlueSpeaker(7), BlueSpeakerOffset(8), RedRightHumanPlayer(9), RedLeftHumanPlayer(10),
@@ -283,6 +378,13 @@ public final class Constants {
 
 		public static final PIDConstants translationPID = new PIDConstants(0.85, 0.05, 0.1, 0.5);
 		public static final PIDConstants rotationPID = new PIDConstants(4, 0, 0, 1);
+		// stiffer than the path following gains, it only has to fix up the last little bit
+		public static final PIDConstants driveToPoseTranslationPID = new PIDConstants(3, 0, 0);
+
+		// how close pathfinding has to get before DriveToPose takes over the final approach
+		public static final double kDriveToPoseHandoffRadiusMeters = 1.5;
+		public static final double kDriveToPosePositionToleranceMeters = 0.03;
+		public static final double kDriveToPoseHeadingToleranceRadians = Math.toRadians(2);
 
 		public static class AutoSpeeds {
 			public static final double kMaxSpeedMetersPerSecond = SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond;
@@ -419,6 +521,11 @@ public final class Constants {
 			public static final double c = -9.7318;
 		}
 
+		// where the shot table is filled in from the expo regression if it can't be loaded, in meters
+		public static final double kShotTableMinDistance = 0.5;
+		public static final double kShotTableMaxDistance = 7.0;
+		public static final double kShotTableSpacing = 0.05;
+
 		public static class SetPoints {
 			public static final double kCenterToWingPass = -40;
 			public static final double kSubwoofer = kArmMinAngle;
@@ -440,6 +547,14 @@ public final class Constants {
 		public static final double feederShootValue = 1;
 		public static final double feederFeedForward = 0.16;
 		public static final double shooterPoopSpeed = 1;
+
+		// shooting on the move: how long from deciding to shoot until the note is out of the shooter
+		public static final double kShotReleaseSeconds = 0.08;
+		// how fast the note crosses the floor once it's out, so time of flight is distance over this
+		public static final double kNoteHorizontalSpeedMetersPerSecond = 12;
+		// the time of flight is refined until it moves less than the tolerance, or this many times
+		public static final int kMovingShotMaxIterations = 5;
+		public static final double kMovingShotToleranceSeconds = 0.001;
 	}
 
 	public static class IntakeConstants {
@@ -0,0 +1,278 @@
+package frc.robot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.hal.AllianceStationID;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import frc.robot.Vision.SimLimelight;
+import frc.robot.Vision.VisionThread;
+import frc.robot.subsystems.Drivetrain.Drivetrain;
+import frc.robot.subsystems.Drivetrain.LatencyHistogram;
+import frc.robot.subsystems.Drivetrain.SwerveDrivetrain.LatencyPhase;
+
+/**
+ * Runs the robot code under the HAL simulator with the clock paused, stepping
+ * it as fast as the CPU allows instead of in real time.
+ * <p>
+ * Everything that runs off a WPILib Notifier (the robot loop and the swerve
+ * sim) is stepped by the sim clock, and the drivetrain runs its odometry in
+ * line with the sim instead of on its own thread, so runs are repeatable.
+ * The simulated Limelights are stepped the same way, and their frames are
+ * fused in line too, so vision load and latency show up in the summary.
+ * <p>
+ * Configured with environment variables:
+ * <ul>
+ * <li>FRC_HEADLESS - set to anything to use this runner instead of the normal sim</li>
+ * <li>FRC_HEADLESS_MODE - "auto" (default), "teleop" or "match" (auto then teleop)</li>
+ * <li>FRC_HEADLESS_AUTO - label of the Path Selector option to run, the default otherwise</li>
+ * <li>FRC_HEADLESS_SECONDS - how long to run each enabled mode, defaults to the match length</li>
+ * <li>FRC_HEADLESS_SCRIPT - CSV of joystick inputs, one
+ * "seconds,port,axis|button|pov,index,value" per line, timed from the start of
+ * each enabled mode</li>
+ * <li>FRC_HEADLESS_RED - set to anything to run on the red alliance</li>
+ * </ul>
+ */
+public final class HeadlessRunner {
+    /* Smallest step the runner takes, the robot loop period */
+    private static final double kStepSeconds = 0.02;
+    /* Time to sit disabled so robotInit and the first disabled loops settle */
+    private static final double kDisabledSeconds = 1.0;
+    private static final double kAutoSeconds = 15.0;
+    private static final double kTeleopSeconds = 135.0;
+
+    private static final int kJoystickPorts = 2;
+
+    /** A single joystick input from the input script */
+    private static class ScriptedInput {
+        final double seconds;
+        final int port;
+        final String kind;
+        final int index;
+        final double value;
+
+        ScriptedInput(double seconds, int port, String kind, int index, double value) {
+            this.seconds = seconds;
+            this.port = port;
+            this.kind = kind;
+            this.index = index;
+            this.value = value;
+        }
+    }
+
+    private final List<ScriptedInput> m_script;
+    /* Wall time of each robot loop step, so loop-time regressions show up in the summary */
+    private final LatencyHistogram m_stepLatency = new LatencyHistogram();
+    private double m_simSeconds = 0;
+
+    private HeadlessRunner(List<ScriptedInput> script) {
+        m_script = script;
+    }
+
+    /**
+     * Whether the robot is running under the headless runner.
+     *
+     * @return true if FRC_HEADLESS is set
+     */
+    public static boolean isHeadless() {
+        return System.getenv("FRC_HEADLESS") != null;
+    }
+
+    /**
+     * Boots the robot and runs the configured modes, then returns once the
+     * robot has been shut down.
+     *
+     * @return 0 if the run finished, 1 if the robot thread died
+     */
+    public static int run() {
+        List<ScriptedInput> script;
+        try {
+            script = loadScript(System.getenv("FRC_HEADLESS_SCRIPT"));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to load the input script: " + e.getMessage());
+            return 1;
+        }
+        return new HeadlessRunner(script).runMatch();
+    }
+
+    private int runMatch() {
+        if (!HAL.initialize(500, 0)) {
+            throw new IllegalStateException("Failed to initialize the HAL");
+        }
+        /* Nothing moves until we step it */
+        SimHooks.pauseTiming();
+
+        DriverStationSim.setDsAttached(true);
+        DriverStationSim.setAllianceStationId(
+                System.getenv("FRC_HEADLESS_RED") != null ? AllianceStationID.Red1 : AllianceStationID.Blue1);
+        for (int port = 0; port < kJoystickPorts; ++port) {
+            DriverStationSim.setJoystickAxisCount(port, 6);
+            DriverStationSim.setJoystickButtonCount(port, 12);
+            DriverStationSim.setJoystickPOVCount(port, 1);
+        }
+        setEnabled(false, false);
+
+        Robot robot = new Robot();
+        Thread robotThread = new Thread(robot::startCompetition, "Robot Main");
+        robotThread.setDaemon(true);
+        robotThread.start();
+
+        long wallStart = System.nanoTime();
+        step(kDisabledSeconds, false);
+
+        String autoName = System.getenv("FRC_HEADLESS_AUTO");
+        if (autoName != null) {
+            /* Same topic the dashboard writes when someone picks an auto */
+            NetworkTableInstance.getDefault()
+                    .getEntry("/Shuffleboard/" + Robot.autoTab.getTitle() + "/Path Selector/selected")
+                    .setString(autoName);
+            step(kStepSeconds, false);
+        }
+
+        String mode = System.getenv().getOrDefault("FRC_HEADLESS_MODE", "auto");
+        String seconds = System.getenv("FRC_HEADLESS_SECONDS");
+        if (mode.equals("auto") || mode.equals("match")) {
+            setEnabled(true, true);
+            step(seconds != null ? Double.parseDouble(seconds) : kAutoSeconds, true);
+        }
+        if (mode.equals("teleop") || mode.equals("match")) {
+            setEnabled(true, false);
+            step(seconds != null ? Double.parseDouble(seconds) : kTeleopSeconds, true);
+        }
+
+        setEnabled(false, false);
+        step(kStepSeconds * 5, false);
+        double wallSeconds = (System.nanoTime() - wallStart) / 1e9;
+
+        boolean robotAlive = robotThread.isAlive();
+        printSummary(wallSeconds);
+
+        robot.endCompetition();
+        SimHooks.resumeTiming();
+        return robotAlive ? 0 : 1;
+    }
+
+    private static void setEnabled(boolean enabled, boolean autonomous) {
+        DriverStationSim.setAutonomous(autonomous);
+        DriverStationSim.setEnabled(enabled);
+        DriverStationSim.notifyNewData();
+    }
+
+    /**
+     * Steps the sim clock in robot loop sized steps, playing the input script
+     * along the way when the robot is enabled.
+     */
+    private void step(double seconds, boolean playScript) {
+        int nextInput = 0;
+        for (double elapsed = 0; elapsed < seconds - 1e-9; elapsed += kStepSeconds) {
+            if (playScript) {
+                boolean changed = false;
+                while (nextInput < m_script.size() && m_script.get(nextInput).seconds <= elapsed) {
+                    apply(m_script.get(nextInput++));
+                    changed = true;
+                }
+                if (changed) {
+                    DriverStationSim.notifyNewData();
+                }
+            }
+
+            long start = System.nanoTime();
+            /* Returns once every notifier due in this step has run */
+            SimHooks.stepTiming(kStepSeconds);
+            m_stepLatency.record(System.nanoTime() - start);
+            m_simSeconds += kStepSeconds;
+        }
+    }
+
+    private static void apply(ScriptedInput input) {
+        switch (input.kind) {
+            case "axis":
+                DriverStationSim.setJoystickAxis(input.port, input.index, input.value);
+                break;
+            case "button":
+                DriverStationSim.setJoystickButton(input.port, input.index, input.value != 0);
+                break;
+            case "pov":
+                DriverStationSim.setJoystickPOV(input.port, input.index, (int) input.value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown input kind " + input.kind);
+        }
+    }
+
+    private static List<ScriptedInput> loadScript(String path) throws IOException {
+        List<ScriptedInput> script = new ArrayList<>();
+        if (path == null) {
+            return script;
+        }
+
+        for (String line : Files.readAllLines(Path.of(path))) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length != 5) {
+                throw new IllegalArgumentException("Expected seconds,port,kind,index,value but got: " + line);
+            }
+            script.add(new ScriptedInput(Double.parseDouble(fields[0].strip()), Integer.parseInt(fields[1].strip()),
+                    fields[2].strip(), Integer.parseInt(fields[3].strip()), Double.parseDouble(fields[4].strip())));
+        }
+        script.sort((a, b) -> Double.compare(a.seconds, b.seconds));
+        return script;
+    }
+
+    private void printSummary(double wallSeconds) {
+        Pose2d pose = Drivetrain.getInstance().getPose();
+        System.out.printf("Headless run: %.1f s simulated in %.1f s (%.1fx real time)%n",
+                m_simSeconds, wallSeconds, m_simSeconds / wallSeconds);
+        System.out.printf("Final pose: x %.3f m, y %.3f m, heading %.1f deg%n",
+                pose.getX(), pose.getY(), pose.getRotation().getDegrees());
+        Pose2d truth = Drivetrain.getInstance().getSimTruthPose();
+        System.out.printf("Odometry drift: %.3f m, %.2f deg%n",
+                truth.getTranslation().getDistance(pose.getTranslation()),
+                truth.getRotation().minus(pose.getRotation()).getDegrees());
+        printLatency("Robot step", m_stepLatency);
+        for (LatencyPhase phase : LatencyPhase.values()) {
+            printLatency("Odometry " + phase.name, Drivetrain.getInstance().getLatencyHistogram(phase));
+        }
+        printVisionSummary();
+    }
+
+    private static void printVisionSummary() {
+        Drivetrain drivetrain = Drivetrain.getInstance();
+        VisionThread vision = drivetrain.getVisionThread();
+        SimLimelight[] cameras = drivetrain.getSimLimelights();
+        if (vision == null || cameras == null) {
+            return;
+        }
+
+        long captured = 0, dropped = 0, published = 0;
+        for (SimLimelight camera : cameras) {
+            captured += camera.getFramesCaptured();
+            dropped += camera.getFramesDropped();
+            published += camera.getFramesPublished();
+        }
+        System.out.printf("Sim cameras: %d frames captured, %d dropped, %d published%n",
+                captured, dropped, published);
+        System.out.printf("Vision: %d received, %d accepted, %d duplicate, %d rejected, %d fused%n",
+                vision.getFramesReceived(), vision.getFramesAccepted(), vision.getFramesDuplicate(),
+                vision.getFramesRejected(), drivetrain.getVisionMeasurementsFused());
+        System.out.printf("Last vision fuse latency: %.1f ms%n", drivetrain.getVisionFuseLatency() * 1000);
+        printLatency("Vision frame processing", vision.getFrameProcessingTime());
+    }
+
+    private static void printLatency(String name, LatencyHistogram histogram) {
+        System.out.printf("%-30s p50 %8.3f ms  p99 %8.3f ms  max %8.3f ms%n", name,
+                histogram.getValueAtPercentile(50) / 1e6,
+                histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getMax() / 1e6);
+    }
+}
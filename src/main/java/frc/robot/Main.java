@@ -10,6 +10,9 @@ public final class Main {
   private Main() {}
 
   public static void main(String... args) {
+    if (HeadlessRunner.isHeadless()) {
+      System.exit(HeadlessRunner.run());
+    }
     RobotBase.startRobot(Robot::new);
   }
 }
@@ -384,7 +384,7 @@ public class Robot extends TimedRobot {
 		catch (RuntimeException e) {
 			if (autoChooser.getSelected().equals("back-up")) {
 				pathPlannerCommand = Drivetrain.getInstance()
-						.applyRequest(() -> new SwerveRequest.RobotCentric().withVelocityX(0.75));
+						.applyRequest(new SwerveRequest.RobotCentric().withVelocityX(0.75));
 				forwardAuto.set(true);
 			}
 
@@ -416,6 +416,10 @@ public class Robot extends TimedRobot {
 
 	@Override
 	public void autonomousInit() {
+		/* Latency stats are per match */
+		Drivetrain.getInstance().resetLatencyStats();
+		Drivetrain.getInstance().resetVisionStats();
+
 		Arm.getInstance().setBrake(true);
 		Shooter.getInstance().setShooterBrake(false);
 		Arm.getInstance().setMotionMagic(Constants.ArmConstants.SetPoints.kIntake);
@@ -532,31 +536,31 @@ public class Robot extends TimedRobot {
 							.withName("Zero Swerve 2 Speaker"));
 
 			swerveCommands.addOption("Drive Forward",
-					Drivetrain.getInstance().applyRequest(() -> new SwerveRequest.FieldCentric()
+					Drivetrain.getInstance().applyRequest(new SwerveRequest.FieldCentric()
 							.withVelocityX(
 									Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond * swerveTestSpeed))
 							.withName("Drive Forward"));
 
 			swerveCommands.addOption("Drive Backwards",
-					Drivetrain.getInstance().applyRequest(() -> new SwerveRequest.FieldCentric()
+					Drivetrain.getInstance().applyRequest(new SwerveRequest.FieldCentric()
 							.withVelocityX(
 									-Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond * swerveTestSpeed))
 							.withName("Drive Backwards"));
 
 			swerveCommands.addOption("Drive Left",
-					Drivetrain.getInstance().applyRequest(() -> new SwerveRequest.FieldCentric()
+					Drivetrain.getInstance().applyRequest(new SwerveRequest.FieldCentric()
 							.withVelocityY(
 									Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond * swerveTestSpeed))
 							.withName("Drive Left"));
 
 			swerveCommands.addOption("Drive Right",
-					Drivetrain.getInstance().applyRequest(() -> new SwerveRequest.FieldCentric()
+					Drivetrain.getInstance().applyRequest(new SwerveRequest.FieldCentric()
 							.withVelocityY(
 									-Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond * swerveTestSpeed))
 							.withName("Drive Right"));
 
 			swerveCommands.addOption("Rotate",
-					Drivetrain.getInstance().applyRequest(() -> new SwerveRequest.FieldCentric()
+					Drivetrain.getInstance().applyRequest(new SwerveRequest.FieldCentric()
 							.withRotationalRate(
 									Constants.SwerveConstants.SwerveSpeeds.kMaxAngularSpeedRadiansPerSecond
 											* swerveTestSpeed))
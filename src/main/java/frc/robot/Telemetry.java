@@ -8,13 +8,21 @@ import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.networktables.DoublePublisher;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleArrayLogEntry;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj.smartdashboard.Mechanism2d;
 import edu.wpi.first.wpilibj.smartdashboard.MechanismLigament2d;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj.util.Color;
 import edu.wpi.first.wpilibj.util.Color8Bit;
+import frc.robot.Vision.VisionThread;
 import frc.robot.subsystems.Drivetrain.Drivetrain;
+import frc.robot.subsystems.Drivetrain.SwerveDrivetrain.LatencyPhase;
+import frc.robot.Constants.TelemetryConstants;
 import frc.robot.subsystems.Drivetrain.SwerveDrivetrain.SwerveDriveState;
 
 public class Telemetry {
@@ -22,15 +30,39 @@ public class Telemetry {
 
         public Field2d field;
 
+        /* Number of states received, used to decimate each sink separately */
+        private long m_frame = 0;
+
         /**
-         * Construct a telemetry object, with the specified max speed of the robot
-         * 
-         * @param maxSpeed Maximum speed in meters per second
+         * Construct a telemetry object, using the robot's max speed to scale the
+         * module mechanisms
+         * <p>
+         * Register {@link #telemeterize} with the drivetrain, which never calls it
+         * from the odometry thread. The odometry thread copies each state into a
+         * single-producer single-consumer ring of preallocated frames, dropping
+         * the state if the ring is full, and the drivetrain's low priority
+         * telemetry thread drains the ring and calls {@link #telemeterize} with
+         * each one. That thread refills the same state object every call, so
+         * nothing here should hold on to it.
          */
         public Telemetry() {
                 MaxSpeed = Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond;
                 SignalLogger.start();
                 field = Robot.teleopField;
+
+                for (int i = 0; i < 4; ++i) {
+                        SmartDashboard.putData("Swerve/Module " + i, m_moduleMechanisms[i]);
+                }
+
+                for (LatencyPhase phase : LatencyPhase.values()) {
+                        NetworkTable phaseStats = latencyStats.getSubTable(phase.name);
+                        latencyPublishers[phase.ordinal()] = new DoublePublisher[] {
+                                        phaseStats.getDoubleTopic("p50").publish(),
+                                        phaseStats.getDoubleTopic("p99").publish(),
+                                        phaseStats.getDoubleTopic("p99.9").publish(),
+                                        phaseStats.getDoubleTopic("Max").publish(),
+                        };
+                }
         }
 
         /* Robot speeds for general checking */
@@ -40,9 +72,39 @@ public class Telemetry {
         private final DoublePublisher velocityTheta = driveStats.getDoubleTopic("Velocity Theta").publish();
         private final DoublePublisher speed = driveStats.getDoubleTopic("Speed").publish();
         private final DoublePublisher odomFreq = driveStats.getDoubleTopic("Odometry Frequency").publish();
+        private final DoublePublisher odomAllocatedBytes = driveStats.getDoubleTopic("Odometry Allocated Bytes").publish();
+        private final DoublePublisher visionQueueDepth = driveStats.getDoubleTopic("Vision Queue Depth").publish();
+        private final DoublePublisher visionDropped = driveStats.getDoubleTopic("Vision Dropped").publish();
+        private final DoublePublisher visionFused = driveStats.getDoubleTopic("Vision Fused").publish();
+        private final DoublePublisher visionFuseLatency = driveStats.getDoubleTopic("Vision Fuse Latency").publish();
+        private final DoublePublisher orientationYawAge = driveStats.getDoubleTopic("MegaTag2 Yaw Age").publish();
+        private final DoublePublisher orientationYawAgeP99 = driveStats.getDoubleTopic("MegaTag2 Yaw Age p99").publish();
+        private final DoublePublisher visionArrivalToQueueP99 = driveStats.getDoubleTopic("Vision Arrival To Queue p99").publish();
+        private final DoublePublisher visionFramesAccepted = driveStats.getDoubleTopic("Vision Frames Accepted").publish();
+        private final DoublePublisher visionFusionsSkipped = driveStats.getDoubleTopic("Vision Fusions Skipped").publish();
+        private final DoublePublisher telemetryDropped = driveStats.getDoubleTopic("Telemetry Dropped").publish();
 
         private final DoublePublisher poseRads = driveStats.getDoubleTopic("Pose in Radians").publish();
 
+        /* Latency percentiles of each odometry phase, in milliseconds */
+        private static final double[] kLatencyPercentiles = new double[] { 50, 99, 99.9 };
+        private final NetworkTable latencyStats = driveStats.getSubTable("Latency");
+        private final DoublePublisher[][] latencyPublishers = new DoublePublisher[LatencyPhase.values().length][];
+        private final long[] m_latencyNanos = new long[kLatencyPercentiles.length];
+        private final double[] m_latencyArray = new double[kLatencyPercentiles.length + 1];
+        private final DoubleArrayLogEntry[] m_latencyLogEntries = new DoubleArrayLogEntry[LatencyPhase.values().length];
+
+        /* Reused so logging doesn't allocate */
+        private final double[] m_odometryArray = new double[3];
+        private final double[] m_moduleStatesArray = new double[8];
+        private final double[] m_moduleTargetsArray = new double[8];
+
+        /* Created once the DataLog has been started, see Robot.driverStationConnected() */
+        private DoubleArrayLogEntry m_poseLogEntry;
+        private DoubleArrayLogEntry m_moduleStatesLogEntry;
+        private DoubleArrayLogEntry m_moduleTargetsLogEntry;
+        private DoubleLogEntry m_odometryPeriodLogEntry;
+
         /* Keep a reference of the last pose to calculate the speeds */
         private Pose2d m_lastPose = new Pose2d();
         private double lastTime = Utils.getCurrentTimeSeconds();
@@ -81,14 +143,32 @@ public class Telemetry {
                                                         new Color8Bit(Color.kWhite))),
         };
 
-        /* Accept the swerve drive state and telemeterize it to smartdashboard */
+        /* Accept the swerve drive state and hand it to each sink at its own rate */
         public void telemeterize(SwerveDriveState state) {
+                if (m_frame % TelemetryConstants.kNetworkTablesDecimation == 0) {
+                        publishNetworkTables(state);
+                }
+                if (m_frame % TelemetryConstants.kSignalLoggerDecimation == 0) {
+                        writeSignalLogger(state);
+                }
+                if (m_frame % TelemetryConstants.kDataLogDecimation == 0) {
+                        writeDataLog(state);
+                }
+                if (m_frame % TelemetryConstants.kLatencyDecimation == 0) {
+                        writeLatencies();
+                }
+                m_frame++;
+        }
+
+        /* Telemeterize the state to smartdashboard */
+        private void publishNetworkTables(SwerveDriveState state) {
                 /* Telemeterize the pose */
                 Pose2d pose = state.Pose;
                 poseRads.set(state.Pose.getRotation().getRadians());
 
                 // Pose2d pose = new Pose2d(state.Pose.getTranslation(),
                 // Rotation2d.fromDegrees(state.Pose.getRotation().getDegrees()));
+                /* Same Field2d as Drivetrain.getField(), so this only needs setting once */
                 field.setRobotPose(pose);
 
                 /* Telemeterize the robot's general speeds */
@@ -104,20 +184,94 @@ public class Telemetry {
                 velocityY.set(velocities.getY());
                 velocityTheta.set(velocities.getAngle().getDegrees());
                 odomFreq.set(1.0 / state.OdometryPeriod);
-
-                Drivetrain.getInstance().getField().setRobotPose(pose);
+                odomAllocatedBytes.set(Drivetrain.getInstance().getDaqThread().getAllocatedBytesPerLoop());
+                visionQueueDepth.set(Drivetrain.getInstance().getVisionQueueDepth());
+                visionDropped.set(Drivetrain.getInstance().getVisionMeasurementsDropped());
+                visionFused.set(Drivetrain.getInstance().getVisionMeasurementsFused());
+                visionFuseLatency.set(Drivetrain.getInstance().getVisionFuseLatency());
+                visionFusionsSkipped.set(Drivetrain.getInstance().getVisionFusionsSkipped());
+                orientationYawAge.set(Drivetrain.getInstance().getOrientationPublisher().getLastYawAgeSeconds());
+                orientationYawAgeP99.set(Drivetrain.getInstance().getOrientationPublisher().getYawAgeHistogram()
+                                .getValueAtPercentile(99) / 1e9);
+                VisionThread visionThread = Drivetrain.getInstance().getVisionThread();
+                if (visionThread != null) {
+                        visionArrivalToQueueP99.set(visionThread.getArrivalToQueueLatency().getValueAtPercentile(99) / 1e9);
+                        visionFramesAccepted.set(visionThread.getFramesAccepted());
+                }
+                telemetryDropped.set(Drivetrain.getInstance().getTelemetryThread().getDroppedFrames());
 
                 /* Telemeterize the module's states */
                 for (int i = 0; i < 4; ++i) {
                         m_moduleSpeeds[i].setAngle(state.ModuleStates[i].angle);
                         m_moduleDirections[i].setAngle(state.ModuleStates[i].angle);
                         m_moduleSpeeds[i].setLength(state.ModuleStates[i].speedMetersPerSecond / (2 * MaxSpeed));
-
-                        SmartDashboard.putData("Swerve/Module " + i, m_moduleMechanisms[i]);
                 }
+        }
 
-                SignalLogger.writeDoubleArray("odometry",
-                                new double[] { pose.getX(), pose.getY(), pose.getRotation().getDegrees() });
+        private void writeSignalLogger(SwerveDriveState state) {
+                fillOdometryArray(state.Pose);
+                SignalLogger.writeDoubleArray("odometry", m_odometryArray);
                 SignalLogger.writeDouble("odom period", state.OdometryPeriod, "seconds");
         }
+
+        private void writeDataLog(SwerveDriveState state) {
+                if (m_poseLogEntry == null) {
+                        /* Don't start the log ourselves before the robot picks the log directory */
+                        if (!DriverStation.isDSAttached()) {
+                                return;
+                        }
+                        DataLog log = DataLogManager.getLog();
+                        m_poseLogEntry = new DoubleArrayLogEntry(log, "Drive/Pose");
+                        m_moduleStatesLogEntry = new DoubleArrayLogEntry(log, "Drive/Module States");
+                        m_moduleTargetsLogEntry = new DoubleArrayLogEntry(log, "Drive/Module Targets");
+                        m_odometryPeriodLogEntry = new DoubleLogEntry(log, "Drive/Odometry Period");
+                }
+
+                fillOdometryArray(state.Pose);
+                m_poseLogEntry.append(m_odometryArray);
+
+                /* Same layout as AdvantageScope's swerve states: angle in radians then speed, per module */
+                for (int i = 0; i < 4; ++i) {
+                        m_moduleStatesArray[2 * i] = state.ModuleStates[i].angle.getRadians();
+                        m_moduleStatesArray[2 * i + 1] = state.ModuleStates[i].speedMetersPerSecond;
+                        m_moduleTargetsArray[2 * i] = state.ModuleTargets[i].angle.getRadians();
+                        m_moduleTargetsArray[2 * i + 1] = state.ModuleTargets[i].speedMetersPerSecond;
+                }
+                m_moduleStatesLogEntry.append(m_moduleStatesArray);
+                m_moduleTargetsLogEntry.append(m_moduleTargetsArray);
+                m_odometryPeriodLogEntry.append(state.OdometryPeriod);
+        }
+
+        /* p50, p99, p99.9 and max of each phase, in milliseconds */
+        private void writeLatencies() {
+                boolean logging = m_poseLogEntry != null;
+                for (LatencyPhase phase : LatencyPhase.values()) {
+                        var histogram = Drivetrain.getInstance().getLatencyHistogram(phase);
+                        histogram.getValuesAtPercentiles(kLatencyPercentiles, m_latencyNanos);
+                        for (int i = 0; i < m_latencyNanos.length; ++i) {
+                                m_latencyArray[i] = m_latencyNanos[i] / 1e6;
+                        }
+                        m_latencyArray[m_latencyNanos.length] = histogram.getMax() / 1e6;
+
+                        DoublePublisher[] publishers = latencyPublishers[phase.ordinal()];
+                        for (int i = 0; i < publishers.length; ++i) {
+                                publishers[i].set(m_latencyArray[i]);
+                        }
+
+                        /* Goes in the same log as the rest of the drive state, once it has been started */
+                        if (logging) {
+                                if (m_latencyLogEntries[phase.ordinal()] == null) {
+                                        m_latencyLogEntries[phase.ordinal()] = new DoubleArrayLogEntry(
+                                                        DataLogManager.getLog(), "Drive/Latency/" + phase.name);
+                                }
+                                m_latencyLogEntries[phase.ordinal()].append(m_latencyArray);
+                        }
+                }
+        }
+
+        private void fillOdometryArray(Pose2d pose) {
+                m_odometryArray[0] = pose.getX();
+                m_odometryArray[1] = pose.getY();
+                m_odometryArray[2] = pose.getRotation().getDegrees();
+        }
 }
@@ -0,0 +1,39 @@
+package frc.robot.Vision;
+
+/**
+ * Where a Limelight sits on the robot, and what it can see.
+ */
+public class CameraMount {
+    public final String name;
+    public final double forwardMeters;
+    public final double leftMeters;
+    public final double upMeters;
+    public final double pitchRadians;
+    public final double yawRadians;
+    final double tanHalfHorizontalFOV;
+    final double tanHalfVerticalFOV;
+
+    /**
+     * Describes a camera mount.
+     *
+     * @param name                 Name of the Limelight
+     * @param forwardMeters        How far in front of the center of the robot it is
+     * @param leftMeters           How far left of the center of the robot it is
+     * @param upMeters             How high off the floor it is
+     * @param pitchDegrees         How far it's tilted up
+     * @param yawDegrees           Which way it faces, counterclockwise from the front of the robot
+     * @param horizontalFOVDegrees Horizontal field of view
+     * @param verticalFOVDegrees   Vertical field of view
+     */
+    public CameraMount(String name, double forwardMeters, double leftMeters, double upMeters, double pitchDegrees,
+            double yawDegrees, double horizontalFOVDegrees, double verticalFOVDegrees) {
+        this.name = name;
+        this.forwardMeters = forwardMeters;
+        this.leftMeters = leftMeters;
+        this.upMeters = upMeters;
+        this.pitchRadians = Math.toRadians(pitchDegrees);
+        this.yawRadians = Math.toRadians(yawDegrees);
+        this.tanHalfHorizontalFOV = Math.tan(Math.toRadians(horizontalFOVDegrees) / 2);
+        this.tanHalfVerticalFOV = Math.tan(Math.toRadians(verticalFOVDegrees) / 2);
+    }
+}
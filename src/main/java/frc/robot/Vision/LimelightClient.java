@@ -0,0 +1,295 @@
+package frc.robot.Vision;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.DoubleSubscriber;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.networktables.StringSubscriber;
+import edu.wpi.first.networktables.TimestampedDoubleArray;
+import frc.robot.Vision.LimelightHelpers.LimelightResults;
+import frc.robot.Vision.LimelightHelpers.PoseEstimate;
+import frc.robot.Vision.LimelightHelpers.RawFiducial;
+
+/**
+ * A single Limelight, read through NetworkTables subscribers that are made
+ * once instead of looked up by name on every call like {@link LimelightHelpers}
+ * does.
+ * <p>
+ * Pose estimates are decoded into {@link PoseEstimate}s owned by the caller or
+ * the client, so reading one doesn't build a new estimate and fiducial array
+ * every loop. The bot pose subscribers also keep every frame the Limelight
+ * sends, so {@link #readQueue(boolean)} returns all of the frames that came
+ * in since it was last called, not just the newest one.
+ * <p>
+ * Clients are shared per camera, get them with {@link #getInstance(String)}
+ * once and hold on to them.
+ */
+public class LimelightClient {
+    /* A few robot loops worth of frames at the fastest a Limelight runs */
+    private static final int QUEUE_DEPTH = 20;
+    /* x, y, z, roll, pitch, yaw, latency, tag count, tag span, avg distance, avg area */
+    private static final int BOTPOSE_LENGTH = 11;
+    private static final int VALUES_PER_FIDUCIAL = 7;
+
+    private static final Map<String, LimelightClient> clients = new HashMap<>();
+
+    private final String m_name;
+    private final NetworkTable m_table;
+    private final DoubleSubscriber m_tx;
+    private final DoubleSubscriber m_ty;
+    private final DoubleSubscriber m_ta;
+    private final DoubleSubscriber m_tv;
+    private final DoubleSubscriber m_tl;
+    private final DoubleSubscriber m_cl;
+    private final DoubleSubscriber m_hb;
+    private final DoubleArraySubscriber m_botPose;
+    private final DoubleArraySubscriber m_botPoseMegaTag2;
+
+    /* Estimates handed out by readQueue, one set for each kind of pose so both can be read in the same loop */
+    private final List<PoseEstimate> m_estimatePool = new ArrayList<>();
+    private final List<PoseEstimate> m_queue = new ArrayList<>();
+    private final List<PoseEstimate> m_estimatePoolMegaTag2 = new ArrayList<>();
+    private final List<PoseEstimate> m_queueMegaTag2 = new ArrayList<>();
+
+    /* Only subscribed once someone asks for the JSON, so the dump isn't sent to us every frame for nothing */
+    private StringSubscriber m_json;
+    /* We don't run retroreflective, classifier or barcode pipelines */
+    private final LimelightResultsDecoder m_decoder = new LimelightResultsDecoder(false, false, true, false);
+
+    /**
+     * Gets the client for a Limelight, making it the first time it's asked for.
+     *
+     * @param limelightName Name of the Limelight, "limelight" if empty
+     * @return The client for that Limelight
+     */
+    public static synchronized LimelightClient getInstance(String limelightName) {
+        return clients.computeIfAbsent(LimelightHelpers.sanitizeName(limelightName), LimelightClient::new);
+    }
+
+    private LimelightClient(String limelightName) {
+        m_name = limelightName;
+        NetworkTable table = NetworkTableInstance.getDefault().getTable(limelightName);
+        m_table = table;
+
+        m_tx = table.getDoubleTopic("tx").subscribe(0.0);
+        m_ty = table.getDoubleTopic("ty").subscribe(0.0);
+        m_ta = table.getDoubleTopic("ta").subscribe(0.0);
+        m_tv = table.getDoubleTopic("tv").subscribe(0.0);
+        m_tl = table.getDoubleTopic("tl").subscribe(0.0);
+        m_cl = table.getDoubleTopic("cl").subscribe(0.0);
+        m_hb = table.getDoubleTopic("hb").subscribe(0.0);
+
+        /* Keep every frame, even if two in a row are identical, so none are missed between loops */
+        m_botPose = table.getDoubleArrayTopic("botpose_wpiblue").subscribe(new double[0],
+                PubSubOption.keepDuplicates(true), PubSubOption.pollStorage(QUEUE_DEPTH));
+        m_botPoseMegaTag2 = table.getDoubleArrayTopic("botpose_orb_wpiblue").subscribe(new double[0],
+                PubSubOption.keepDuplicates(true), PubSubOption.pollStorage(QUEUE_DEPTH));
+    }
+
+    /**
+     * Gets the name of the Limelight this client reads.
+     *
+     * @return Name of the Limelight
+     */
+    public String getName() {
+        return m_name;
+    }
+
+    public double getTX() {
+        return m_tx.get();
+    }
+
+    public double getTY() {
+        return m_ty.get();
+    }
+
+    public double getTA() {
+        return m_ta.get();
+    }
+
+    public boolean getTV() {
+        return 1.0 == m_tv.get();
+    }
+
+    /**
+     * Gets the heartbeat, which the Limelight bumps every frame, so a new
+     * frame can be told apart from the last one even if none of its targeting
+     * values changed.
+     *
+     * @return Heartbeat of the newest frame
+     */
+    public double getHeartbeat() {
+        return m_hb.get();
+    }
+
+    /**
+     * Gets when the newest frame was captured, from when its heartbeat
+     * arrived less the pipeline and capture latency.
+     *
+     * @return FPGA time the newest frame was captured, in seconds
+     */
+    public double getFrameTimestampSeconds() {
+        return (m_hb.getLastChange() / 1000000.0) - ((m_tl.get() + m_cl.get()) / 1000.0);
+    }
+
+    /**
+     * Decodes the newest blue origin bot pose into an estimate, the same as
+     * {@link LimelightHelpers#getBotPoseEstimate_wpiBlue(String)}.
+     *
+     * @param estimateToPutResultsIn Estimate to fill
+     * @return estimateToPutResultsIn
+     */
+    public PoseEstimate getBotPoseEstimate_wpiBlue(PoseEstimate estimateToPutResultsIn) {
+        decode(m_botPose.getAtomic(), estimateToPutResultsIn);
+        return estimateToPutResultsIn;
+    }
+
+    /**
+     * Decodes the newest blue origin MegaTag2 bot pose into an estimate, the
+     * same as {@link LimelightHelpers#getBotPoseEstimate_wpiBlue_MegaTag2(String)}.
+     *
+     * @param estimateToPutResultsIn Estimate to fill
+     * @return estimateToPutResultsIn
+     */
+    public PoseEstimate getBotPoseEstimate_wpiBlue_MegaTag2(PoseEstimate estimateToPutResultsIn) {
+        decode(m_botPoseMegaTag2.getAtomic(), estimateToPutResultsIn);
+        return estimateToPutResultsIn;
+    }
+
+    /**
+     * Decodes the newest JSON dump into existing results, like
+     * {@link LimelightHelpers#getLatestResults(String)} but without building
+     * a new set of results every call. Retroreflective, classifier and barcode
+     * results are skipped and left empty.
+     *
+     * @param resultsToPutResultsIn Results to fill
+     * @return resultsToPutResultsIn
+     */
+    public synchronized LimelightResults getLatestResults(LimelightResults resultsToPutResultsIn) {
+        if (m_json == null) {
+            m_json = m_table.getStringTopic("json").subscribe("");
+        }
+
+        long start = System.nanoTime();
+        m_decoder.decode(m_json.get(), resultsToPutResultsIn);
+        resultsToPutResultsIn.targetingResults.latency_jsonParse = (System.nanoTime() - start) * .000001;
+        return resultsToPutResultsIn;
+    }
+
+    /**
+     * Decodes every blue origin bot pose the Limelight sent since the last time
+     * this was called for the same kind of pose, oldest first.
+     * <p>
+     * The list and the estimates in it belong to the client and are reused by
+     * the next call for the same kind of pose, so copy out anything that has
+     * to last longer than that.
+     *
+     * @param megaTag2 true for MegaTag2 poses, false for MegaTag1
+     * @return The frames since the last call, empty if there weren't any
+     */
+    public List<PoseEstimate> readQueue(boolean megaTag2) {
+        TimestampedDoubleArray[] frames = (megaTag2 ? m_botPoseMegaTag2 : m_botPose).readQueue();
+        List<PoseEstimate> pool = megaTag2 ? m_estimatePoolMegaTag2 : m_estimatePool;
+        List<PoseEstimate> queue = megaTag2 ? m_queueMegaTag2 : m_queue;
+
+        queue.clear();
+        for (int i = 0; i < frames.length; ++i) {
+            if (pool.size() <= i) {
+                pool.add(new PoseEstimate());
+            }
+            PoseEstimate estimate = pool.get(i);
+            decode(frames[i], estimate);
+            queue.add(estimate);
+        }
+        return queue;
+    }
+
+    private static void decode(TimestampedDoubleArray frame, PoseEstimate estimate) {
+        decode(frame.value, frame.timestamp, estimate);
+    }
+
+    /**
+     * Decodes a bot pose array the same way LimelightHelpers does, into an
+     * existing estimate. The pose is only decoded into the primitives, and the
+     * fiducial array is only replaced when the number of tags changes.
+     * <p>
+     * Unlike LimelightHelpers, an array whose length doesn't match its tag
+     * count decodes as a frame with no tags, so nothing downstream uses a pose
+     * whose fiducials couldn't be read.
+     *
+     * @param poseArray       Bot pose array the Limelight published
+     * @param timestampMicros NetworkTables time the array arrived, in microseconds
+     * @param estimate        Estimate to fill
+     */
+    static void decode(double[] poseArray, long timestampMicros, PoseEstimate estimate) {
+        if (poseArray.length < BOTPOSE_LENGTH) {
+            /* Nothing has been published yet */
+            estimate.pose = null;
+            estimate.x = 0;
+            estimate.y = 0;
+            estimate.headingRadians = 0;
+            estimate.timestampSeconds = 0;
+            estimate.latency = 0;
+            estimate.tagCount = 0;
+            estimate.tagSpan = 0;
+            estimate.avgTagDist = 0;
+            estimate.avgTagArea = 0;
+            setFiducialCount(estimate, 0);
+            return;
+        }
+
+        /* Built by getPose() if anyone wants it, most frames are thrown out before that */
+        estimate.pose = null;
+        estimate.x = poseArray[0];
+        estimate.y = poseArray[1];
+        estimate.headingRadians = Math.toRadians(poseArray[5]);
+        estimate.latency = poseArray[6];
+        estimate.tagCount = (int) poseArray[7];
+        estimate.tagSpan = poseArray[8];
+        estimate.avgTagDist = poseArray[9];
+        estimate.avgTagArea = poseArray[10];
+        // timestamp in microseconds, ll latency in milliseconds
+        estimate.timestampSeconds = (timestampMicros / 1000000.0) - (estimate.latency / 1000.0);
+
+        if (estimate.tagCount < 0
+                || poseArray.length != BOTPOSE_LENGTH + VALUES_PER_FIDUCIAL * estimate.tagCount) {
+            /* Malformed, leaving the last frame's fiducials around would pass them off as this one's */
+            estimate.tagCount = 0;
+            setFiducialCount(estimate, 0);
+            return;
+        }
+        setFiducialCount(estimate, estimate.tagCount);
+        for (int i = 0; i < estimate.tagCount; ++i) {
+            int baseIndex = BOTPOSE_LENGTH + (i * VALUES_PER_FIDUCIAL);
+            RawFiducial fiducial = estimate.rawFiducials[i];
+            fiducial.id = (int) poseArray[baseIndex];
+            fiducial.txnc = poseArray[baseIndex + 1];
+            fiducial.tync = poseArray[baseIndex + 2];
+            fiducial.ta = poseArray[baseIndex + 3];
+            fiducial.distToCamera = poseArray[baseIndex + 4];
+            fiducial.distToRobot = poseArray[baseIndex + 5];
+            fiducial.ambiguity = poseArray[baseIndex + 6];
+        }
+    }
+
+    private static void setFiducialCount(PoseEstimate estimate, int count) {
+        RawFiducial[] current = estimate.rawFiducials;
+        if (current != null && current.length == count) {
+            return;
+        }
+
+        RawFiducial[] resized = new RawFiducial[count];
+        for (int i = 0; i < count; ++i) {
+            /* Keep the fiducials we already have, only make new ones for the extra slots */
+            resized[i] = (current != null && i < current.length && current[i] != null) ? current[i]
+                    : new RawFiducial();
+        }
+        estimate.rawFiducials = resized;
+    }
+}
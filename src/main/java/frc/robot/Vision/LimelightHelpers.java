@@ -32,19 +32,19 @@ public class LimelightHelpers {
     public static class LimelightTarget_Retro {
 
         @JsonProperty("t6c_ts")
-        private double[] cameraPose_TargetSpace;
+        double[] cameraPose_TargetSpace;
 
         @JsonProperty("t6r_fs")
-        private double[] robotPose_FieldSpace;
+        double[] robotPose_FieldSpace;
 
         @JsonProperty("t6r_ts")
-        private double[] robotPose_TargetSpace;
+        double[] robotPose_TargetSpace;
 
         @JsonProperty("t6t_cs")
-        private double[] targetPose_CameraSpace;
+        double[] targetPose_CameraSpace;
 
         @JsonProperty("t6t_rs")
-        private double[] targetPose_RobotSpace;
+        double[] targetPose_RobotSpace;
 
         public Pose3d getCameraPose_TargetSpace() {
             return toPose3D(cameraPose_TargetSpace);
@@ -123,19 +123,19 @@ public class LimelightHelpers {
         public String fiducialFamily;
 
         @JsonProperty("t6c_ts")
-        private double[] cameraPose_TargetSpace;
+        double[] cameraPose_TargetSpace;
 
         @JsonProperty("t6r_fs")
-        private double[] robotPose_FieldSpace;
+        double[] robotPose_FieldSpace;
 
         @JsonProperty("t6r_ts")
-        private double[] robotPose_TargetSpace;
+        double[] robotPose_TargetSpace;
 
         @JsonProperty("t6t_cs")
-        private double[] targetPose_CameraSpace;
+        double[] targetPose_CameraSpace;
 
         @JsonProperty("t6t_rs")
-        private double[] targetPose_RobotSpace;
+        double[] targetPose_RobotSpace;
 
         public Pose3d getCameraPose_TargetSpace() {
             return toPose3D(cameraPose_TargetSpace);
@@ -390,6 +390,12 @@ public class LimelightHelpers {
         public double distToRobot;
         public double ambiguity;
 
+        /**
+         * Makes an empty fiducial for {@link LimelightClient} to decode into.
+         */
+        public RawFiducial() {
+        }
+
         public RawFiducial(int id, double txnc, double tync, double ta, double distToCamera, double distToRobot,
                 double ambiguity) {
             this.id = id;
@@ -403,7 +409,12 @@ public class LimelightHelpers {
     }
 
     public static class PoseEstimate {
+        /* Null after LimelightClient decodes into this, use getPose() or the primitives */
         public Pose2d pose;
+        /* The pose as primitives, always set */
+        public double x;
+        public double y;
+        public double headingRadians;
         public double timestampSeconds;
         public double latency;
         public int tagCount;
@@ -412,11 +423,35 @@ public class LimelightHelpers {
         public double avgTagArea;
         public RawFiducial[] rawFiducials;
 
+        /**
+         * Makes an empty estimate for {@link LimelightClient} to decode into.
+         */
+        public PoseEstimate() {
+            this.pose = new Pose2d();
+            this.rawFiducials = new RawFiducial[0];
+        }
+
+        /**
+         * Gets the pose, building it from the primitives the first time it's
+         * asked for after {@link LimelightClient} decoded into this estimate.
+         *
+         * @return Field-relative pose of the robot
+         */
+        public Pose2d getPose() {
+            if (pose == null) {
+                pose = new Pose2d(x, y, new Rotation2d(headingRadians));
+            }
+            return pose;
+        }
+
         public PoseEstimate(Pose2d pose, double timestampSeconds, double latency,
                 int tagCount, double tagSpan, double avgTagDist,
                 double avgTagArea, RawFiducial[] rawFiducials) {
 
             this.pose = pose;
+            this.x = pose.getX();
+            this.y = pose.getY();
+            this.headingRadians = pose.getRotation().getRadians();
             this.timestampSeconds = timestampSeconds;
             this.latency = latency;
             this.tagCount = tagCount;
@@ -962,22 +997,32 @@ public class LimelightHelpers {
     }
 
     /**
-     * Parses Limelight's JSON results dump into a LimelightResults Object
+     * Parses a Limelight JSON results dump into a LimelightResults Object,
+     * without touching NetworkTables
      */
-    public static LimelightResults getLatestResults(String limelightName) {
-
-        long start = System.nanoTime();
+    public static LimelightResults parseResults(String json) {
         LimelightHelpers.LimelightResults results = new LimelightHelpers.LimelightResults();
         if (mapper == null) {
             mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         }
 
         try {
-            results = mapper.readValue(getJSONDump(limelightName), LimelightResults.class);
+            results = mapper.readValue(json, LimelightResults.class);
         } catch (JsonProcessingException e) {
             results.error = "lljson error: " + e.getMessage();
         }
 
+        return results;
+    }
+
+    /**
+     * Parses Limelight's JSON results dump into a LimelightResults Object
+     */
+    public static LimelightResults getLatestResults(String limelightName) {
+
+        long start = System.nanoTime();
+        LimelightHelpers.LimelightResults results = parseResults(getJSONDump(limelightName));
+
         long end = System.nanoTime();
         double millis = (end - start) * .000001;
         results.targetingResults.latency_jsonParse = millis;
@@ -0,0 +1,577 @@
+package frc.robot.Vision;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import frc.robot.Vision.LimelightHelpers.LimelightResults;
+import frc.robot.Vision.LimelightHelpers.LimelightTarget_Barcode;
+import frc.robot.Vision.LimelightHelpers.LimelightTarget_Classifier;
+import frc.robot.Vision.LimelightHelpers.LimelightTarget_Detector;
+import frc.robot.Vision.LimelightHelpers.LimelightTarget_Fiducial;
+import frc.robot.Vision.LimelightHelpers.LimelightTarget_Retro;
+import frc.robot.Vision.LimelightHelpers.Results;
+
+/**
+ * Decodes a Limelight JSON dump into an existing {@link LimelightResults},
+ * with a streaming parser instead of the databind mapper
+ * {@link LimelightHelpers#parseResults(String)} uses.
+ * <p>
+ * Databind builds a new results object, new target objects and new arrays for
+ * every dump. This reads the dump token by token straight into the results it
+ * is given, so targets and arrays are only replaced when the number of them
+ * changes, and strings only when their text does. Sections that aren't needed
+ * can be skipped without being decoded at all, in which case they are left
+ * empty.
+ * <p>
+ * A decoder isn't thread safe, give each thread its own.
+ */
+public class LimelightResultsDecoder {
+    private static final JsonFactory factory = new JsonFactory();
+
+    private static final LimelightTarget_Retro[] NO_RETRO = new LimelightTarget_Retro[0];
+    private static final LimelightTarget_Fiducial[] NO_FIDUCIALS = new LimelightTarget_Fiducial[0];
+    private static final LimelightTarget_Classifier[] NO_CLASSIFIERS = new LimelightTarget_Classifier[0];
+    private static final LimelightTarget_Detector[] NO_DETECTORS = new LimelightTarget_Detector[0];
+    private static final LimelightTarget_Barcode[] NO_BARCODES = new LimelightTarget_Barcode[0];
+
+    private final boolean m_decodeRetro;
+    private final boolean m_decodeClassifier;
+    private final boolean m_decodeDetector;
+    private final boolean m_decodeBarcode;
+
+    /* Copy of the dump the parser reads from, grown as needed */
+    private char[] m_buffer = new char[4096];
+
+    /**
+     * Makes a decoder that decodes every section, the same as
+     * {@link LimelightHelpers#parseResults(String)}.
+     */
+    public LimelightResultsDecoder() {
+        this(true, true, true, true);
+    }
+
+    /**
+     * Makes a decoder that only decodes the target sections asked for.
+     * Fiducials and the bot poses are always decoded.
+     *
+     * @param decodeRetro      Whether to decode retroreflective targets
+     * @param decodeClassifier Whether to decode classifier results
+     * @param decodeDetector   Whether to decode detector targets
+     * @param decodeBarcode    Whether to decode barcodes
+     */
+    public LimelightResultsDecoder(boolean decodeRetro, boolean decodeClassifier, boolean decodeDetector,
+            boolean decodeBarcode) {
+        m_decodeRetro = decodeRetro;
+        m_decodeClassifier = decodeClassifier;
+        m_decodeDetector = decodeDetector;
+        m_decodeBarcode = decodeBarcode;
+    }
+
+    /**
+     * Decodes a JSON dump into existing results. Values missing from the dump
+     * are reset to their defaults, so nothing is left over from the last dump.
+     * <p>
+     * If the dump can't be parsed, {@link LimelightResults#error} is set the
+     * same way {@link LimelightHelpers#parseResults(String)} sets it, and the
+     * rest of the results are whatever was decoded before the error.
+     *
+     * @param json                  JSON dump from the Limelight
+     * @param resultsToPutResultsIn Results to fill
+     * @return resultsToPutResultsIn
+     */
+    public LimelightResults decode(String json, LimelightResults resultsToPutResultsIn) {
+        Results results = resultsToPutResultsIn.targetingResults;
+        if (results == null) {
+            results = new Results();
+            resultsToPutResultsIn.targetingResults = results;
+        }
+        reset(results);
+        resultsToPutResultsIn.error = "";
+
+        int length = json.length();
+        if (m_buffer.length < length) {
+            m_buffer = new char[Math.max(length, m_buffer.length * 2)];
+        }
+        json.getChars(0, length, m_buffer, 0);
+
+        try (JsonParser parser = factory.createParser(m_buffer, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object");
+            }
+            boolean sawResults = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("Results".equals(name) && token == JsonToken.START_OBJECT) {
+                    readResults(parser, results);
+                    sawResults = true;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (!sawResults) {
+                clearTargets(results);
+            }
+        } catch (IOException e) {
+            resultsToPutResultsIn.error = "lljson error: " + e.getMessage();
+        }
+        return resultsToPutResultsIn;
+    }
+
+    private static void reset(Results results) {
+        results.pipelineID = 0;
+        results.latency_pipeline = 0;
+        results.latency_capture = 0;
+        results.latency_jsonParse = 0;
+        results.timestamp_LIMELIGHT_publish = 0;
+        results.timestamp_RIOFPGA_capture = 0;
+        results.valid = false;
+        results.botpose_tagcount = 0;
+        results.botpose_span = 0;
+        results.botpose_avgdist = 0;
+        results.botpose_avgarea = 0;
+        results.botpose = clear(results.botpose);
+        results.botpose_wpired = clear(results.botpose_wpired);
+        results.botpose_wpiblue = clear(results.botpose_wpiblue);
+        results.camerapose_robotspace = clear(results.camerapose_robotspace);
+    }
+
+    private static void clearTargets(Results results) {
+        results.targets_Retro = NO_RETRO;
+        results.targets_Fiducials = NO_FIDUCIALS;
+        results.targets_Classifier = NO_CLASSIFIERS;
+        results.targets_Detector = NO_DETECTORS;
+        results.targets_Barcode = NO_BARCODES;
+    }
+
+    /* Zeroes a pose array, giving back the six zeroes databind would start from if it was a different length */
+    private static double[] clear(double[] array) {
+        if (array == null || array.length != 6) {
+            return new double[6];
+        }
+        Arrays.fill(array, 0);
+        return array;
+    }
+
+    private void readResults(JsonParser parser, Results results) throws IOException {
+        /* Sections are filled in as they're found, anything skipped or not in the dump ends up empty */
+        boolean sawFiducials = false;
+        boolean sawRetro = false;
+        boolean sawClassifiers = false;
+        boolean sawDetectors = false;
+        boolean sawBarcodes = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (name) {
+                case "pID":
+                    results.pipelineID = parser.getValueAsDouble();
+                    break;
+                case "tl":
+                    results.latency_pipeline = parser.getValueAsDouble();
+                    break;
+                case "cl":
+                    results.latency_capture = parser.getValueAsDouble();
+                    break;
+                case "ts":
+                    results.timestamp_LIMELIGHT_publish = parser.getValueAsDouble();
+                    break;
+                case "ts_rio":
+                    results.timestamp_RIOFPGA_capture = parser.getValueAsDouble();
+                    break;
+                case "v":
+                    results.valid = parser.getValueAsDouble() != 0;
+                    break;
+                case "botpose":
+                    results.botpose = readDoubles(parser, results.botpose);
+                    break;
+                case "botpose_wpired":
+                    results.botpose_wpired = readDoubles(parser, results.botpose_wpired);
+                    break;
+                case "botpose_wpiblue":
+                    results.botpose_wpiblue = readDoubles(parser, results.botpose_wpiblue);
+                    break;
+                case "botpose_tagcount":
+                    results.botpose_tagcount = parser.getValueAsDouble();
+                    break;
+                case "botpose_span":
+                    results.botpose_span = parser.getValueAsDouble();
+                    break;
+                case "botpose_avgdist":
+                    results.botpose_avgdist = parser.getValueAsDouble();
+                    break;
+                case "botpose_avgarea":
+                    results.botpose_avgarea = parser.getValueAsDouble();
+                    break;
+                case "t6c_rs":
+                    results.camerapose_robotspace = readDoubles(parser, results.camerapose_robotspace);
+                    break;
+                case "Fiducial":
+                    results.targets_Fiducials = readFiducials(parser, results.targets_Fiducials);
+                    sawFiducials = true;
+                    break;
+                case "Detector":
+                    if (m_decodeDetector && token == JsonToken.START_ARRAY) {
+                        results.targets_Detector = readDetectors(parser, results.targets_Detector);
+                        sawDetectors = true;
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "Retro":
+                    if (m_decodeRetro && token == JsonToken.START_ARRAY) {
+                        results.targets_Retro = readRetro(parser, results.targets_Retro);
+                        sawRetro = true;
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "Classifier":
+                    if (m_decodeClassifier && token == JsonToken.START_ARRAY) {
+                        results.targets_Classifier = readClassifiers(parser, results.targets_Classifier);
+                        sawClassifiers = true;
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "Barcode":
+                    if (m_decodeBarcode && token == JsonToken.START_ARRAY) {
+                        results.targets_Barcode = readBarcodes(parser, results.targets_Barcode);
+                        sawBarcodes = true;
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+
+        if (!sawFiducials) {
+            results.targets_Fiducials = NO_FIDUCIALS;
+        }
+        if (!sawRetro) {
+            results.targets_Retro = NO_RETRO;
+        }
+        if (!sawClassifiers) {
+            results.targets_Classifier = NO_CLASSIFIERS;
+        }
+        if (!sawDetectors) {
+            results.targets_Detector = NO_DETECTORS;
+        }
+        if (!sawBarcodes) {
+            results.targets_Barcode = NO_BARCODES;
+        }
+    }
+
+    /* Reads a number array into the given array, only making a new one if the length changed */
+    private static double[] readDoubles(JsonParser parser, double[] current) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return current;
+        }
+        double[] values = current;
+        int count = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, Math.max(6, values.length * 2));
+            }
+            values[count++] = parser.getValueAsDouble();
+        }
+        return (count == values.length) ? values : Arrays.copyOf(values, count);
+    }
+
+    /* Reads a string, keeping the current one if the text hasn't changed */
+    private static String readString(JsonParser parser, String current) throws IOException {
+        if (current != null && parser.currentToken() == JsonToken.VALUE_STRING) {
+            int length = parser.getTextLength();
+            if (current.length() == length) {
+                char[] text = parser.getTextCharacters();
+                int offset = parser.getTextOffset();
+                int i = 0;
+                while (i < length && text[offset + i] == current.charAt(i)) {
+                    i++;
+                }
+                if (i == length) {
+                    return current;
+                }
+            }
+        }
+        return parser.getValueAsString();
+    }
+
+    private static LimelightTarget_Fiducial[] readFiducials(JsonParser parser, LimelightTarget_Fiducial[] current)
+            throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return NO_FIDUCIALS;
+        }
+        LimelightTarget_Fiducial[] targets = current;
+        int count = 0;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            if (count == targets.length) {
+                targets = Arrays.copyOf(targets, count + 1);
+            }
+            if (targets[count] == null) {
+                targets[count] = new LimelightTarget_Fiducial();
+            }
+            readFiducial(parser, targets[count++]);
+        }
+        return (count == targets.length) ? targets : Arrays.copyOf(targets, count);
+    }
+
+    private static void readFiducial(JsonParser parser, LimelightTarget_Fiducial target) throws IOException {
+        /* The target may hold the last dump's values, so anything this one leaves out goes back to the default */
+        String family = target.fiducialFamily;
+        target.fiducialFamily = null;
+        target.fiducialID = 0;
+        target.ta = target.tx = target.tx_pixels = target.ty = target.ty_pixels = target.ts = 0;
+        target.cameraPose_TargetSpace = clear(target.cameraPose_TargetSpace);
+        target.robotPose_FieldSpace = clear(target.robotPose_FieldSpace);
+        target.robotPose_TargetSpace = clear(target.robotPose_TargetSpace);
+        target.targetPose_CameraSpace = clear(target.targetPose_CameraSpace);
+        target.targetPose_RobotSpace = clear(target.targetPose_RobotSpace);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            switch (name) {
+                case "fID":
+                    target.fiducialID = parser.getValueAsDouble();
+                    break;
+                case "fam":
+                    target.fiducialFamily = readString(parser, family);
+                    break;
+                case "t6c_ts":
+                    target.cameraPose_TargetSpace = readDoubles(parser, target.cameraPose_TargetSpace);
+                    break;
+                case "t6r_fs":
+                    target.robotPose_FieldSpace = readDoubles(parser, target.robotPose_FieldSpace);
+                    break;
+                case "t6r_ts":
+                    target.robotPose_TargetSpace = readDoubles(parser, target.robotPose_TargetSpace);
+                    break;
+                case "t6t_cs":
+                    target.targetPose_CameraSpace = readDoubles(parser, target.targetPose_CameraSpace);
+                    break;
+                case "t6t_rs":
+                    target.targetPose_RobotSpace = readDoubles(parser, target.targetPose_RobotSpace);
+                    break;
+                case "ta":
+                    target.ta = parser.getValueAsDouble();
+                    break;
+                case "tx":
+                    target.tx = parser.getValueAsDouble();
+                    break;
+                case "txp":
+                    target.tx_pixels = parser.getValueAsDouble();
+                    break;
+                case "ty":
+                    target.ty = parser.getValueAsDouble();
+                    break;
+                case "typ":
+                    target.ty_pixels = parser.getValueAsDouble();
+                    break;
+                case "ts":
+                    target.ts = parser.getValueAsDouble();
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+    }
+
+    private static LimelightTarget_Retro[] readRetro(JsonParser parser, LimelightTarget_Retro[] current)
+            throws IOException {
+        LimelightTarget_Retro[] targets = current;
+        int count = 0;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            if (count == targets.length) {
+                targets = Arrays.copyOf(targets, count + 1);
+            }
+            if (targets[count] == null) {
+                targets[count] = new LimelightTarget_Retro();
+            }
+            LimelightTarget_Retro target = targets[count++];
+            target.ta = target.tx = target.tx_pixels = target.ty = target.ty_pixels = target.ts = 0;
+            target.cameraPose_TargetSpace = clear(target.cameraPose_TargetSpace);
+            target.robotPose_FieldSpace = clear(target.robotPose_FieldSpace);
+            target.robotPose_TargetSpace = clear(target.robotPose_TargetSpace);
+            target.targetPose_CameraSpace = clear(target.targetPose_CameraSpace);
+            target.targetPose_RobotSpace = clear(target.targetPose_RobotSpace);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                switch (name) {
+                    case "t6c_ts":
+                        target.cameraPose_TargetSpace = readDoubles(parser, target.cameraPose_TargetSpace);
+                        break;
+                    case "t6r_fs":
+                        target.robotPose_FieldSpace = readDoubles(parser, target.robotPose_FieldSpace);
+                        break;
+                    case "t6r_ts":
+                        target.robotPose_TargetSpace = readDoubles(parser, target.robotPose_TargetSpace);
+                        break;
+                    case "t6t_cs":
+                        target.targetPose_CameraSpace = readDoubles(parser, target.targetPose_CameraSpace);
+                        break;
+                    case "t6t_rs":
+                        target.targetPose_RobotSpace = readDoubles(parser, target.targetPose_RobotSpace);
+                        break;
+                    case "ta":
+                        target.ta = parser.getValueAsDouble();
+                        break;
+                    case "tx":
+                        target.tx = parser.getValueAsDouble();
+                        break;
+                    case "txp":
+                        target.tx_pixels = parser.getValueAsDouble();
+                        break;
+                    case "ty":
+                        target.ty = parser.getValueAsDouble();
+                        break;
+                    case "typ":
+                        target.ty_pixels = parser.getValueAsDouble();
+                        break;
+                    case "ts":
+                        target.ts = parser.getValueAsDouble();
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+        return (count == targets.length) ? targets : Arrays.copyOf(targets, count);
+    }
+
+    private static LimelightTarget_Detector[] readDetectors(JsonParser parser, LimelightTarget_Detector[] current)
+            throws IOException {
+        LimelightTarget_Detector[] targets = current;
+        int count = 0;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            if (count == targets.length) {
+                targets = Arrays.copyOf(targets, count + 1);
+            }
+            if (targets[count] == null) {
+                targets[count] = new LimelightTarget_Detector();
+            }
+            LimelightTarget_Detector target = targets[count++];
+            String className = target.className;
+            target.className = null;
+            target.classID = target.confidence = 0;
+            target.ta = target.tx = target.tx_pixels = target.ty = target.ty_pixels = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                switch (name) {
+                    case "class":
+                        target.className = readString(parser, className);
+                        break;
+                    case "classID":
+                        target.classID = parser.getValueAsDouble();
+                        break;
+                    case "conf":
+                        target.confidence = parser.getValueAsDouble();
+                        break;
+                    case "ta":
+                        target.ta = parser.getValueAsDouble();
+                        break;
+                    case "tx":
+                        target.tx = parser.getValueAsDouble();
+                        break;
+                    case "txp":
+                        target.tx_pixels = parser.getValueAsDouble();
+                        break;
+                    case "ty":
+                        target.ty = parser.getValueAsDouble();
+                        break;
+                    case "typ":
+                        target.ty_pixels = parser.getValueAsDouble();
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+        return (count == targets.length) ? targets : Arrays.copyOf(targets, count);
+    }
+
+    private static LimelightTarget_Classifier[] readClassifiers(JsonParser parser, LimelightTarget_Classifier[] current)
+            throws IOException {
+        LimelightTarget_Classifier[] targets = current;
+        int count = 0;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            if (count == targets.length) {
+                targets = Arrays.copyOf(targets, count + 1);
+            }
+            if (targets[count] == null) {
+                targets[count] = new LimelightTarget_Classifier();
+            }
+            LimelightTarget_Classifier target = targets[count++];
+            String className = target.className;
+            target.className = null;
+            target.classID = target.confidence = target.zone = 0;
+            target.tx = target.tx_pixels = target.ty = target.ty_pixels = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                switch (name) {
+                    case "class":
+                        target.className = readString(parser, className);
+                        break;
+                    case "classID":
+                        target.classID = parser.getValueAsDouble();
+                        break;
+                    case "conf":
+                        target.confidence = parser.getValueAsDouble();
+                        break;
+                    case "zone":
+                        target.zone = parser.getValueAsDouble();
+                        break;
+                    case "tx":
+                        target.tx = parser.getValueAsDouble();
+                        break;
+                    case "txp":
+                        target.tx_pixels = parser.getValueAsDouble();
+                        break;
+                    case "ty":
+                        target.ty = parser.getValueAsDouble();
+                        break;
+                    case "typ":
+                        target.ty_pixels = parser.getValueAsDouble();
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+        return (count == targets.length) ? targets : Arrays.copyOf(targets, count);
+    }
+
+    private static LimelightTarget_Barcode[] readBarcodes(JsonParser parser, LimelightTarget_Barcode[] current)
+            throws IOException {
+        LimelightTarget_Barcode[] targets = current;
+        int count = 0;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            /* Barcodes don't have anything we decode yet, just count them */
+            parser.skipChildren();
+            if (count == targets.length) {
+                targets = Arrays.copyOf(targets, count + 1);
+            }
+            if (targets[count] == null) {
+                targets[count] = new LimelightTarget_Barcode();
+            }
+            count++;
+        }
+        return (count == targets.length) ? targets : Arrays.copyOf(targets, count);
+    }
+}
@@ -0,0 +1,349 @@
+package frc.robot.Vision;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants;
+import frc.robot.Constants.Vision.LimelightPython;
+import frc.robot.subsystems.Drivetrain.PoseHistory;
+import frc.robot.subsystems.Drivetrain.SwerveDrivetrain;
+
+/**
+ * Keeps track of where notes are on the field from the note camera.
+ * <p>
+ * Each detection is projected from the camera onto the floor, using where the
+ * camera sits on the robot and where the robot was when the frame was
+ * captured, so it becomes a point on the field instead of an angle in the
+ * image. Detections of the same note are smoothed by a small Kalman filter,
+ * and each note keeps a confidence that goes up every time it's seen and
+ * down when the camera is looking right at it and sees nothing. A note the
+ * camera loses sight of stays where it was last seen for a while, so commands
+ * can keep driving to it after it leaves the frame.
+ * <p>
+ * Only the main thread may use a tracker; the drivetrain updates it every
+ * loop.
+ */
+public class NoteTracker {
+    private static final int MAX_NOTES = 4;
+
+    /* The camera targets the middle of the note, which is 2 inches tall */
+    private static final double NOTE_CENTER_HEIGHT_METERS = Units.inchesToMeters(1);
+    /* Past this the floor projection is too sensitive to ty to be worth it */
+    private static final double MAX_RANGE_METERS = 4.5;
+    /* Detections closer than this to a note are that note */
+    private static final double ASSOCIATION_GATE_METERS = 0.6;
+
+    /* Floor projection error grows with the square of the range */
+    static final double MEASUREMENT_STD_DEV_METERS = 0.04;
+    static final double MEASUREMENT_STD_DEV_PER_METER_SQUARED = 0.02;
+    /* Notes get bumped around, so don't let the filter get too sure of itself */
+    static final double PROCESS_STD_DEV_METERS_PER_SQRT_SECOND = 0.1;
+
+    private static final double CONFIDENCE_GAIN = 0.35;
+    private static final double MISSED_CONFIDENCE_DECAY = 0.75;
+    private static final double MIN_CONFIDENCE = 0.5;
+    private static final double MAX_AGE_SECONDS = 1.5;
+    /* Only count a miss if the note is comfortably inside the frame */
+    private static final double FOV_MARGIN = 0.85;
+
+    private final LimelightClient m_camera;
+    private final SwerveDrivetrain m_drivetrain;
+    private final PoseHistory.Sample m_pose = new PoseHistory.Sample();
+
+    private final double m_cameraPitch = Math.toRadians(LimelightPython.kCameraPitchDegrees);
+    private final double m_cameraYaw = Math.toRadians(LimelightPython.kCameraYawDegrees);
+    private final double m_halfHorizontalFOV = Math.toRadians(LimelightPython.kHorizontalFOVDegrees) / 2;
+    private final double m_halfVerticalFOV = Math.toRadians(LimelightPython.kVerticalFOVDegrees) / 2;
+
+    /* Tracked notes, a slot is free when it isn't active */
+    private final boolean[] m_active = new boolean[MAX_NOTES];
+    private final double[] m_x = new double[MAX_NOTES];
+    private final double[] m_y = new double[MAX_NOTES];
+    private final double[] m_variance = new double[MAX_NOTES];
+    private final double[] m_confidence = new double[MAX_NOTES];
+    private final double[] m_lastUpdateSeconds = new double[MAX_NOTES];
+    private final double[] m_lastSeenSeconds = new double[MAX_NOTES];
+
+    private double m_lastHeartbeat = Double.NaN;
+    /* Note the commands are driving to, kept until it's gone so they don't flip between notes */
+    private int m_target = -1;
+    private Translation2d m_targetTranslation = null;
+
+    /**
+     * Makes a tracker for a note camera.
+     *
+     * @param camera     The note camera
+     * @param drivetrain Drivetrain to look up past robot poses from
+     */
+    public NoteTracker(LimelightClient camera, SwerveDrivetrain drivetrain) {
+        m_camera = camera;
+        m_drivetrain = drivetrain;
+    }
+
+    /**
+     * Takes in the newest frame from the camera, if there is one, and forgets
+     * notes that haven't been seen in too long. Call this every loop.
+     */
+    public void update() {
+        double now = Timer.getFPGATimestamp();
+
+        double heartbeat = m_camera.getHeartbeat();
+        if (heartbeat != m_lastHeartbeat) {
+            m_lastHeartbeat = heartbeat;
+            double captureSeconds = m_camera.getFrameTimestampSeconds();
+            if (m_drivetrain.getPoseAt(captureSeconds, m_pose)) {
+                if (m_camera.getTV()) {
+                    addDetection(m_camera.getTX(), m_camera.getTY(), captureSeconds);
+                } else {
+                    /* The camera sees nothing, so any note it should be able to see probably isn't there */
+                    decayVisibleNotes();
+                }
+            }
+        }
+
+        for (int i = 0; i < MAX_NOTES; ++i) {
+            if (m_active[i] && (now - m_lastSeenSeconds[i] > MAX_AGE_SECONDS || m_confidence[i] < 0.05)) {
+                m_active[i] = false;
+            }
+        }
+        updateTarget();
+    }
+
+    /**
+     * Forgets every note, such as after the robot was picked up and moved.
+     */
+    public void clear() {
+        for (int i = 0; i < MAX_NOTES; ++i) {
+            m_active[i] = false;
+        }
+        m_target = -1;
+        m_targetTranslation = null;
+    }
+
+    /**
+     * Whether there is a note we're confident enough in to drive to.
+     *
+     * @return true if there is a note
+     */
+    public boolean hasNote() {
+        return m_target >= 0;
+    }
+
+    /**
+     * Gets where the note to drive to is. This is the nearest confident note
+     * when it's picked, and stays the same note until it's gone.
+     *
+     * @return Field position of the note, in meters with the blue alliance
+     *         origin, or null if there isn't one
+     */
+    public Translation2d getTargetNote() {
+        return m_targetTranslation;
+    }
+
+    /**
+     * Gets how confident we are in the note to drive to.
+     *
+     * @return Confidence from 0 to 1, or 0 if there isn't a note
+     */
+    public double getTargetConfidence() {
+        return (m_target >= 0) ? m_confidence[m_target] : 0;
+    }
+
+    /**
+     * Gets how long ago the note to drive to was last seen.
+     *
+     * @return Age of the note, in seconds, or infinity if there isn't one
+     */
+    public double getTargetAgeSeconds() {
+        return (m_target >= 0) ? Timer.getFPGATimestamp() - m_lastSeenSeconds[m_target] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Gets when a detection was last folded into the note to drive to. Unlike
+     * {@link #getTargetAgeSeconds()}, this is the capture time of the frame,
+     * so it shows how old the note's position really is.
+     *
+     * @return FPGA time the note was last captured, in seconds, or negative
+     *         infinity if there isn't a note
+     */
+    public double getTargetLastUpdateSeconds() {
+        return (m_target >= 0) ? m_lastUpdateSeconds[m_target] : Double.NEGATIVE_INFINITY;
+    }
+
+    /* Projects a detection onto the floor, and folds it into the note it belongs to */
+    private void addDetection(double txDegrees, double tyDegrees, double captureSeconds) {
+        /* Ray through the target, robot-relative, with x forward, y left and z up */
+        double tanX = Math.tan(Math.toRadians(txDegrees));
+        double tanY = Math.tan(Math.toRadians(tyDegrees));
+        double cosPitch = Math.cos(m_cameraPitch);
+        double sinPitch = Math.sin(m_cameraPitch);
+        double forward = cosPitch - tanY * sinPitch;
+        double left = -tanX;
+        double up = sinPitch + tanY * cosPitch;
+        if (up >= 0) {
+            /* Looking at or above the horizon, the ray never hits the floor */
+            return;
+        }
+        double cosYaw = Math.cos(m_cameraYaw);
+        double sinYaw = Math.sin(m_cameraYaw);
+        double rayX = forward * cosYaw - left * sinYaw;
+        double rayY = forward * sinYaw + left * cosYaw;
+
+        double scale = (NOTE_CENTER_HEIGHT_METERS - LimelightPython.kCameraHeightMeters) / up;
+        double robotX = LimelightPython.kCameraForwardMeters + scale * rayX;
+        double robotY = LimelightPython.kCameraLeftMeters + scale * rayY;
+        double range = Math.hypot(scale * rayX, scale * rayY);
+        if (range > MAX_RANGE_METERS) {
+            return;
+        }
+
+        /* Onto the field, from where the robot was when the frame was captured */
+        double cos = Math.cos(m_pose.theta);
+        double sin = Math.sin(m_pose.theta);
+        double x = m_pose.x + robotX * cos - robotY * sin;
+        double y = m_pose.y + robotX * sin + robotY * cos;
+        double margin = Constants.Vision.kFieldBorderMarginMeters;
+        if (x < -margin || x > Constants.fieldLength + margin || y < -margin || y > Constants.fieldHeight + margin) {
+            return;
+        }
+
+        addFieldDetection(x, y, range, captureSeconds);
+    }
+
+    /**
+     * Folds a detection already projected onto the field into the note it
+     * belongs to, or starts a new note.
+     *
+     * @param x              Field position of the note, in meters
+     * @param y              Field position of the note, in meters
+     * @param range          How far the note was from the camera, which sets
+     *                       how much the detection is trusted
+     * @param captureSeconds FPGA time the frame was captured
+     * @return The slot of the note the detection went to
+     */
+    int addFieldDetection(double x, double y, double range, double captureSeconds) {
+        double stdDev = MEASUREMENT_STD_DEV_METERS + MEASUREMENT_STD_DEV_PER_METER_SQUARED * range * range;
+        double measurementVariance = stdDev * stdDev;
+
+        int match = -1;
+        double matchDistance = ASSOCIATION_GATE_METERS;
+        for (int i = 0; i < MAX_NOTES; ++i) {
+            if (m_active[i]) {
+                double distance = Math.hypot(x - m_x[i], y - m_y[i]);
+                if (distance < matchDistance) {
+                    match = i;
+                    matchDistance = distance;
+                }
+            }
+        }
+
+        if (match < 0) {
+            match = freeSlot();
+            m_active[match] = true;
+            m_x[match] = x;
+            m_y[match] = y;
+            m_variance[match] = measurementVariance;
+            m_confidence[match] = CONFIDENCE_GAIN;
+        } else {
+            /* Same note, let it drift a little since we last saw it, then fold the detection in */
+            double elapsed = Math.max(0, captureSeconds - m_lastUpdateSeconds[match]);
+            double variance = m_variance[match] + PROCESS_STD_DEV_METERS_PER_SQRT_SECOND
+                    * PROCESS_STD_DEV_METERS_PER_SQRT_SECOND * elapsed;
+            double gain = variance / (variance + measurementVariance);
+            m_x[match] += gain * (x - m_x[match]);
+            m_y[match] += gain * (y - m_y[match]);
+            m_variance[match] = (1 - gain) * variance;
+            m_confidence[match] += (1 - m_confidence[match]) * CONFIDENCE_GAIN;
+        }
+        m_lastUpdateSeconds[match] = captureSeconds;
+        m_lastSeenSeconds[match] = Timer.getFPGATimestamp();
+        return match;
+    }
+
+    /* For tests, the filter's state for a note slot */
+    double getNoteX(int slot) {
+        return m_x[slot];
+    }
+
+    double getNoteY(int slot) {
+        return m_y[slot];
+    }
+
+    double getNoteVariance(int slot) {
+        return m_variance[slot];
+    }
+
+    /* A free slot, or the least confident note if they're all taken */
+    private int freeSlot() {
+        int weakest = 0;
+        for (int i = 0; i < MAX_NOTES; ++i) {
+            if (!m_active[i]) {
+                return i;
+            }
+            if (m_confidence[i] < m_confidence[weakest]) {
+                weakest = i;
+            }
+        }
+        if (weakest == m_target) {
+            m_target = -1;
+        }
+        return weakest;
+    }
+
+    /* Lowers the confidence of every note that should have been in the frame */
+    private void decayVisibleNotes() {
+        double cos = Math.cos(m_pose.theta);
+        double sin = Math.sin(m_pose.theta);
+        for (int i = 0; i < MAX_NOTES; ++i) {
+            if (!m_active[i]) {
+                continue;
+            }
+            /* Note relative to the camera, with the camera looking along x */
+            double dx = m_x[i] - m_pose.x;
+            double dy = m_y[i] - m_pose.y;
+            double robotX = dx * cos + dy * sin - LimelightPython.kCameraForwardMeters;
+            double robotY = -dx * sin + dy * cos - LimelightPython.kCameraLeftMeters;
+            double cameraX = robotX * Math.cos(m_cameraYaw) + robotY * Math.sin(m_cameraYaw);
+            double cameraY = -robotX * Math.sin(m_cameraYaw) + robotY * Math.cos(m_cameraYaw);
+            if (cameraX <= 0 || Math.hypot(cameraX, cameraY) > MAX_RANGE_METERS) {
+                continue;
+            }
+
+            double horizontal = Math.atan2(cameraY, cameraX);
+            double vertical = Math.atan2(NOTE_CENTER_HEIGHT_METERS - LimelightPython.kCameraHeightMeters, cameraX)
+                    - m_cameraPitch;
+            if (Math.abs(horizontal) < m_halfHorizontalFOV * FOV_MARGIN
+                    && Math.abs(vertical) < m_halfVerticalFOV * FOV_MARGIN) {
+                m_confidence[i] *= MISSED_CONFIDENCE_DECAY;
+            }
+        }
+    }
+
+    private void updateTarget() {
+        if (m_target >= 0 && (!m_active[m_target] || m_confidence[m_target] < MIN_CONFIDENCE)) {
+            m_target = -1;
+        }
+        if (m_target < 0) {
+            /* Nearest confident note to where we are now */
+            Pose2d pose = m_drivetrain.getPose();
+            double nearest = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < MAX_NOTES; ++i) {
+                if (m_active[i] && m_confidence[i] >= MIN_CONFIDENCE) {
+                    double distance = Math.hypot(m_x[i] - pose.getX(), m_y[i] - pose.getY());
+                    if (distance < nearest) {
+                        nearest = distance;
+                        m_target = i;
+                    }
+                }
+            }
+        }
+
+        if (m_target < 0) {
+            m_targetTranslation = null;
+        } else if (m_targetTranslation == null || m_targetTranslation.getX() != m_x[m_target]
+                || m_targetTranslation.getY() != m_y[m_target]) {
+            m_targetTranslation = new Translation2d(m_x[m_target], m_y[m_target]);
+        }
+    }
+}
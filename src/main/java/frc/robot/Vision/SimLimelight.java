@@ -0,0 +1,387 @@
+package frc.robot.Vision;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.DoubleSubscriber;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.StringPublisher;
+import frc.robot.Constants.Vision.SimCameras;
+
+/**
+ * Stands in for an AprilTag Limelight in simulation, so the vision code runs
+ * off the simulated robot instead of sitting idle until we're on the field.
+ * <p>
+ * Frames are made from the ground truth pose of the sim robot and the field
+ * layout: every tag that faces the camera, is in its field of view, is inside
+ * the crop window and passes the ID filter is seen. The bot pose is the truth
+ * plus noise that grows with tag distance, and some frames are dropped
+ * entirely. Each frame is published after its capture and pipeline latency,
+ * on the same topics a real Limelight uses: botpose_wpiblue,
+ * botpose_orb_wpiblue, tx, ty, ta, tv, tl, cl, hb and json. The publish
+ * time is stamped on every value, so anything timing frames from their
+ * arrival sees the same latency a real camera would give it.
+ * <p>
+ * Rates, latency, noise and dropouts come from
+ * {@link frc.robot.Constants.Vision.SimCameras}. Only one thread may update a
+ * sim camera, the drivetrain sim does it every sim step.
+ */
+public class SimLimelight {
+    /* x, y, z, roll, pitch, yaw, latency, tag count, tag span, avg distance, avg area */
+    private static final int BOTPOSE_LENGTH = 11;
+    private static final int VALUES_PER_FIDUCIAL = 7;
+    /* Frames can't take longer than a few periods to come out */
+    private static final int MAX_PENDING_FRAMES = 16;
+
+    /* A captured frame waiting out its latency */
+    private static class Frame {
+        double publishTimeSeconds;
+        double[] botPose = new double[BOTPOSE_LENGTH];
+        double[] botPoseMegaTag2 = new double[BOTPOSE_LENGTH];
+        boolean hasTarget;
+        double tx;
+        double ty;
+        double ta;
+        double pipelineLatencyMs;
+        String json;
+    }
+
+    private final CameraMount m_camera;
+    private final TagProjector m_projector;
+    private final Random m_random;
+
+    private final DoubleArrayPublisher m_botPose;
+    private final DoubleArrayPublisher m_botPoseMegaTag2;
+    private final DoublePublisher m_tx;
+    private final DoublePublisher m_ty;
+    private final DoublePublisher m_ta;
+    private final DoublePublisher m_tv;
+    private final DoublePublisher m_tl;
+    private final DoublePublisher m_cl;
+    private final DoublePublisher m_hb;
+    private final StringPublisher m_json;
+    /* What the robot asks of the camera, the same as a real one would listen to */
+    private final DoubleArraySubscriber m_crop;
+    private final DoubleArraySubscriber m_idFilter;
+    private final DoubleSubscriber m_priorityID;
+
+    /* Frames in the order they were captured, which is also the order they come out in */
+    private final Frame[] m_pending = new Frame[MAX_PENDING_FRAMES];
+    private int m_pendingHead = 0;
+    private int m_pendingCount = 0;
+    private double m_lastPublishTimeSeconds = 0;
+    private double m_nextCaptureSeconds = Double.NaN;
+    private long m_heartbeat = 0;
+
+    /* Scratch space for the tags seen in a frame */
+    private final double[] m_box = new double[4];
+    private final int[] m_seenTags;
+    private final double[] m_seenTx;
+    private final double[] m_seenTy;
+    private final double[] m_seenArea;
+    private final StringBuilder m_jsonBuilder = new StringBuilder(1024);
+
+    private volatile long m_framesCaptured = 0;
+    private volatile long m_framesDropped = 0;
+    private volatile long m_framesPublished = 0;
+
+    /**
+     * Makes a sim camera publishing under the camera's name.
+     *
+     * @param instance NetworkTables instance to publish to
+     * @param layout   Where the tags are on the field
+     * @param camera   Where the camera sits on the robot
+     * @param seed     Seed for the noise and dropouts, so runs repeat
+     */
+    public SimLimelight(NetworkTableInstance instance, AprilTagFieldLayout layout, CameraMount camera, long seed) {
+        m_camera = camera;
+        m_projector = new TagProjector(layout);
+        m_random = new Random(seed);
+
+        int tags = m_projector.getTagCount();
+        m_seenTags = new int[tags];
+        m_seenTx = new double[tags];
+        m_seenTy = new double[tags];
+        m_seenArea = new double[tags];
+        for (int i = 0; i < MAX_PENDING_FRAMES; ++i) {
+            m_pending[i] = new Frame();
+        }
+
+        NetworkTable table = instance.getTable(LimelightHelpers.sanitizeName(camera.name));
+        m_botPose = table.getDoubleArrayTopic("botpose_wpiblue").publish();
+        m_botPoseMegaTag2 = table.getDoubleArrayTopic("botpose_orb_wpiblue").publish();
+        m_tx = table.getDoubleTopic("tx").publish();
+        m_ty = table.getDoubleTopic("ty").publish();
+        m_ta = table.getDoubleTopic("ta").publish();
+        m_tv = table.getDoubleTopic("tv").publish();
+        m_tl = table.getDoubleTopic("tl").publish();
+        m_cl = table.getDoubleTopic("cl").publish();
+        m_hb = table.getDoubleTopic("hb").publish();
+        m_json = table.getStringTopic("json").publish();
+        m_crop = table.getDoubleArrayTopic("crop").subscribe(new double[0]);
+        m_idFilter = table.getDoubleArrayTopic("fiducial_id_filters_set").subscribe(new double[0]);
+        m_priorityID = table.getDoubleTopic("priorityid").subscribe(-1);
+    }
+
+    /**
+     * Captures a frame if it's time for one, and publishes every frame whose
+     * latency has run out.
+     *
+     * @param nowSeconds Current FPGA time
+     * @param truthPose  Where the sim robot really is
+     */
+    public void update(double nowSeconds, Pose2d truthPose) {
+        if (Double.isNaN(m_nextCaptureSeconds)) {
+            m_nextCaptureSeconds = nowSeconds;
+        }
+        if (nowSeconds >= m_nextCaptureSeconds) {
+            /* Don't try to catch up on frames we were never asked for */
+            m_nextCaptureSeconds = Math.max(m_nextCaptureSeconds + 1.0 / SimCameras.kFramesPerSecond, nowSeconds);
+            capture(nowSeconds, truthPose);
+        }
+        publishDue(nowSeconds);
+    }
+
+    private void capture(double nowSeconds, Pose2d truthPose) {
+        m_framesCaptured++;
+        if (m_random.nextDouble() < SimCameras.kDropoutProbability || m_pendingCount == MAX_PENDING_FRAMES) {
+            m_framesDropped++;
+            return;
+        }
+
+        Frame frame = m_pending[(m_pendingHead + m_pendingCount) % MAX_PENDING_FRAMES];
+        m_pendingCount++;
+
+        double pipelineLatencyMs = SimCameras.kPipelineLatencyMs
+                + SimCameras.kPipelineLatencyJitterMs * (2 * m_random.nextDouble() - 1);
+        /* A camera sends its frames in order, so a quick frame waits behind a slow one */
+        frame.publishTimeSeconds = Math.max(
+                nowSeconds + (pipelineLatencyMs + SimCameras.kCaptureLatencyMs) / 1000.0, m_lastPublishTimeSeconds);
+        m_lastPublishTimeSeconds = frame.publishTimeSeconds;
+        double latencyMs = (frame.publishTimeSeconds - nowSeconds) * 1000.0;
+        frame.pipelineLatencyMs = latencyMs - SimCameras.kCaptureLatencyMs;
+
+        double x = truthPose.getX();
+        double y = truthPose.getY();
+        double heading = truthPose.getRotation().getRadians();
+        int seen = findTags(x, y, heading);
+
+        frame.botPose = resize(frame.botPose, seen);
+        frame.botPoseMegaTag2 = resize(frame.botPoseMegaTag2, seen);
+        if (seen == 0) {
+            frame.hasTarget = false;
+            frame.tx = 0;
+            frame.ty = 0;
+            frame.ta = 0;
+            frame.botPose[6] = latencyMs;
+            frame.botPoseMegaTag2[6] = latencyMs;
+            frame.json = buildJson(frame, nowSeconds, seen);
+            return;
+        }
+
+        double distanceSum = 0, areaSum = 0, span = 0;
+        int primary = 0;
+        int priorityID = (int) m_priorityID.get();
+        for (int i = 0; i < seen; ++i) {
+            int tag = m_seenTags[i];
+            distanceSum += m_projector.getDistance(tag);
+            areaSum += m_seenArea[i];
+            for (int j = 0; j < i; ++j) {
+                int other = m_seenTags[j];
+                span = Math.max(span, Math.hypot(m_projector.getTagX(tag) - m_projector.getTagX(other),
+                        m_projector.getTagY(tag) - m_projector.getTagY(other)));
+            }
+            /* tx and ty follow the priority tag if we can see it, the biggest tag otherwise */
+            int primaryID = m_projector.getTagID(m_seenTags[primary]);
+            if (primaryID != priorityID
+                    && (m_projector.getTagID(tag) == priorityID || m_seenArea[i] > m_seenArea[primary])) {
+                primary = i;
+            }
+        }
+        double avgDistance = distanceSum / seen;
+        double avgArea = areaSum / seen;
+
+        frame.hasTarget = true;
+        frame.tx = m_seenTx[primary];
+        frame.ty = m_seenTy[primary];
+        frame.ta = m_seenArea[primary];
+
+        /* More tags farther apart pin the pose down better */
+        double translationStdDev = SimCameras.kTranslationStdDevPerMeter * avgDistance / Math.sqrt(seen);
+        double rotationStdDev = Math.toRadians(SimCameras.kRotationStdDevDegrees) / Math.sqrt(seen);
+        fillBotPose(frame.botPose, x + translationStdDev * m_random.nextGaussian(),
+                y + translationStdDev * m_random.nextGaussian(),
+                heading + rotationStdDev * m_random.nextGaussian(),
+                latencyMs, seen, span, avgDistance, avgArea, truthPose);
+        /* MegaTag2 is handed the heading by the gyro, so only the translation is noisy */
+        fillBotPose(frame.botPoseMegaTag2, x + translationStdDev * m_random.nextGaussian(),
+                y + translationStdDev * m_random.nextGaussian(), heading,
+                latencyMs, seen, span, avgDistance, avgArea, truthPose);
+        frame.json = buildJson(frame, nowSeconds, seen);
+    }
+
+    /* Works out which tags the camera sees, and returns how many */
+    private int findTags(double x, double y, double heading) {
+        m_projector.setCamera(m_camera, x, y, heading);
+        double[] crop = m_crop.get();
+        double[] filter = m_idFilter.get();
+        boolean cropped = crop.length == 4;
+
+        int seen = 0;
+        for (int tag = 0; tag < m_projector.getTagCount(); ++tag) {
+            if (!passesFilter(filter, m_projector.getTagID(tag)) || !m_projector.project(tag, m_box)) {
+                continue;
+            }
+            /* Tags cut off by the edge of the frame or the crop aren't detected */
+            double minX = cropped ? Math.max(-1, crop[0]) : -1;
+            double maxX = cropped ? Math.min(1, crop[1]) : 1;
+            double minY = cropped ? Math.max(-1, crop[2]) : -1;
+            double maxY = cropped ? Math.min(1, crop[3]) : 1;
+            if (m_box[0] < minX || m_box[1] > maxX || m_box[2] < minY || m_box[3] > maxY) {
+                continue;
+            }
+
+            m_seenTags[seen] = tag;
+            m_seenTx[seen] = Math.toDegrees(Math.atan((m_box[0] + m_box[1]) / 2 * m_camera.tanHalfHorizontalFOV));
+            m_seenTy[seen] = Math.toDegrees(Math.atan((m_box[2] + m_box[3]) / 2 * m_camera.tanHalfVerticalFOV));
+            /* Percent of the image, the frame is 2 by 2 */
+            m_seenArea[seen] = (m_box[1] - m_box[0]) * (m_box[3] - m_box[2]) / 4 * 100;
+            seen++;
+        }
+        return seen;
+    }
+
+    private static boolean passesFilter(double[] filter, int id) {
+        if (filter.length == 0) {
+            return true;
+        }
+        for (double allowed : filter) {
+            if (allowed == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double[] resize(double[] array, int tags) {
+        int length = BOTPOSE_LENGTH + VALUES_PER_FIDUCIAL * tags;
+        if (array.length == length) {
+            Arrays.fill(array, 0);
+            return array;
+        }
+        return new double[length];
+    }
+
+    private void fillBotPose(double[] botPose, double x, double y, double headingRadians, double latencyMs,
+            int seen, double span, double avgDistance, double avgArea, Pose2d truthPose) {
+        botPose[0] = x;
+        botPose[1] = y;
+        botPose[5] = Math.toDegrees(headingRadians);
+        botPose[6] = latencyMs;
+        botPose[7] = seen;
+        botPose[8] = span;
+        botPose[9] = avgDistance;
+        botPose[10] = avgArea;
+        for (int i = 0; i < seen; ++i) {
+            int tag = m_seenTags[i];
+            int base = BOTPOSE_LENGTH + i * VALUES_PER_FIDUCIAL;
+            botPose[base] = m_projector.getTagID(tag);
+            botPose[base + 1] = m_seenTx[i];
+            botPose[base + 2] = m_seenTy[i];
+            botPose[base + 3] = m_seenArea[i];
+            botPose[base + 4] = m_projector.getDistance(tag);
+            botPose[base + 5] = Math.hypot(m_projector.getTagX(tag) - truthPose.getX(),
+                    m_projector.getTagY(tag) - truthPose.getY());
+            botPose[base + 6] = SimCameras.kMinTagAmbiguity
+                    + (SimCameras.kMaxTagAmbiguity - SimCameras.kMinTagAmbiguity) * m_random.nextDouble();
+        }
+    }
+
+    /* Just the parts of the JSON dump we read, in the same shape the Limelight sends */
+    private String buildJson(Frame frame, double captureSeconds, int seen) {
+        StringBuilder json = m_jsonBuilder;
+        json.setLength(0);
+        json.append("{\"Results\":{\"pID\":0,\"tl\":").append(frame.pipelineLatencyMs)
+                .append(",\"cl\":").append(SimCameras.kCaptureLatencyMs)
+                .append(",\"ts\":").append(captureSeconds * 1000)
+                .append(",\"v\":").append(frame.hasTarget ? 1 : 0)
+                .append(",\"botpose_wpiblue\":[");
+        for (int i = 0; i < 6; ++i) {
+            json.append(i == 0 ? "" : ",").append(frame.botPose[i]);
+        }
+        json.append("],\"botpose_tagcount\":").append(seen)
+                .append(",\"botpose_span\":").append(frame.botPose[8])
+                .append(",\"botpose_avgdist\":").append(frame.botPose[9])
+                .append(",\"botpose_avgarea\":").append(frame.botPose[10])
+                .append(",\"Fiducial\":[");
+        for (int i = 0; i < seen; ++i) {
+            json.append(i == 0 ? "{" : ",{")
+                    .append("\"fID\":").append(m_projector.getTagID(m_seenTags[i]))
+                    .append(",\"fam\":\"36H11C\",\"ta\":").append(m_seenArea[i])
+                    .append(",\"tx\":").append(m_seenTx[i])
+                    .append(",\"ty\":").append(m_seenTy[i])
+                    .append('}');
+        }
+        json.append("],\"Detector\":[],\"Retro\":[],\"Classifier\":[],\"Barcode\":[]}}");
+        return json.toString();
+    }
+
+    private void publishDue(double nowSeconds) {
+        while (m_pendingCount > 0) {
+            Frame frame = m_pending[m_pendingHead];
+            if (frame.publishTimeSeconds > nowSeconds) {
+                return;
+            }
+            m_pendingHead = (m_pendingHead + 1) % MAX_PENDING_FRAMES;
+            m_pendingCount--;
+
+            /* Stamped with when it would have come out, not when the sim got around to it */
+            long timeMicros = (long) (frame.publishTimeSeconds * 1e6);
+            m_tv.set(frame.hasTarget ? 1 : 0, timeMicros);
+            m_tx.set(frame.tx, timeMicros);
+            m_ty.set(frame.ty, timeMicros);
+            m_ta.set(frame.ta, timeMicros);
+            m_tl.set(frame.pipelineLatencyMs, timeMicros);
+            m_cl.set(SimCameras.kCaptureLatencyMs, timeMicros);
+            m_json.set(frame.json, timeMicros);
+            /* The bot poses go last, the vision thread wakes up on them and reads ta */
+            m_botPose.set(frame.botPose, timeMicros);
+            m_botPoseMegaTag2.set(frame.botPoseMegaTag2, timeMicros);
+            m_hb.set(++m_heartbeat, timeMicros);
+            m_framesPublished++;
+        }
+    }
+
+    /**
+     * Gets the number of frames the camera tried to capture.
+     *
+     * @return Total frames captured, including dropped ones
+     */
+    public long getFramesCaptured() {
+        return m_framesCaptured;
+    }
+
+    /**
+     * Gets the number of frames that were dropped and never published.
+     *
+     * @return Total dropped frames
+     */
+    public long getFramesDropped() {
+        return m_framesDropped;
+    }
+
+    /**
+     * Gets the number of frames published.
+     *
+     * @return Total frames published
+     */
+    public long getFramesPublished() {
+        return m_framesPublished;
+    }
+}
@@ -0,0 +1,198 @@
+package frc.robot.Vision;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.math.util.Units;
+
+/**
+ * Works out where the field's AprilTags land in a camera's frame, for a
+ * given robot pose.
+ * <p>
+ * Frame coordinates are the ones the Limelight crop uses, -1 to 1 across the
+ * frame with x to the right and y up. Everything is kept in primitives so
+ * projecting every tag every loop doesn't allocate. Not thread safe, each
+ * user keeps its own.
+ */
+class TagProjector {
+    /* Tags are 6.5 inches across the black border */
+    private static final double TAG_HALF_SIZE_METERS = Units.inchesToMeters(6.5) / 2;
+    /* Corners closer than this in front of the camera can't be projected sensibly */
+    private static final double MIN_DEPTH_METERS = 0.1;
+
+    private final int[] m_tagIDs;
+    /* x, y, z of each of the four corners of every tag */
+    private final double[][] m_tagCorners;
+    private final double[] m_tagCenterX;
+    private final double[] m_tagCenterY;
+    private final double[] m_tagCenterZ;
+    /* Which way each tag faces, on the floor */
+    private final double[] m_tagNormalX;
+    private final double[] m_tagNormalY;
+
+    /* Camera position and basis, in field coordinates, as of the last setCamera */
+    private CameraMount m_camera;
+    private double m_cameraX, m_cameraY, m_cameraZ;
+    private double m_forwardX, m_forwardY, m_forwardZ;
+    private double m_leftX, m_leftY;
+    private double m_upX, m_upY, m_upZ;
+
+    /**
+     * @param layout Where the tags are on the field
+     */
+    TagProjector(AprilTagFieldLayout layout) {
+        int count = layout.getTags().size();
+        m_tagIDs = new int[count];
+        m_tagCorners = new double[count][12];
+        m_tagCenterX = new double[count];
+        m_tagCenterY = new double[count];
+        m_tagCenterZ = new double[count];
+        m_tagNormalX = new double[count];
+        m_tagNormalY = new double[count];
+
+        int index = 0;
+        for (AprilTag tag : layout.getTags()) {
+            Pose3d pose = tag.pose;
+            m_tagIDs[index] = tag.ID;
+            m_tagCenterX[index] = pose.getX();
+            m_tagCenterY[index] = pose.getY();
+            m_tagCenterZ[index] = pose.getZ();
+            /* The tag's x axis points out of its face */
+            Translation3d normal = new Translation3d(1, 0, 0).rotateBy(pose.getRotation());
+            m_tagNormalX[index] = normal.getX();
+            m_tagNormalY[index] = normal.getY();
+            for (int corner = 0; corner < 4; ++corner) {
+                double side = (corner == 0 || corner == 3) ? TAG_HALF_SIZE_METERS : -TAG_HALF_SIZE_METERS;
+                double up = (corner < 2) ? TAG_HALF_SIZE_METERS : -TAG_HALF_SIZE_METERS;
+                Translation3d point = pose.getTranslation()
+                        .plus(new Translation3d(0, side, up).rotateBy(pose.getRotation()));
+                m_tagCorners[index][corner * 3] = point.getX();
+                m_tagCorners[index][corner * 3 + 1] = point.getY();
+                m_tagCorners[index][corner * 3 + 2] = point.getZ();
+            }
+            index++;
+        }
+    }
+
+    /**
+     * @return Number of tags on the field
+     */
+    int getTagCount() {
+        return m_tagIDs.length;
+    }
+
+    /**
+     * @param tag Index of the tag
+     * @return Fiducial ID of the tag
+     */
+    int getTagID(int tag) {
+        return m_tagIDs[tag];
+    }
+
+    /**
+     * @param tag Index of the tag
+     * @return Field-relative X position of the center of the tag
+     */
+    double getTagX(int tag) {
+        return m_tagCenterX[tag];
+    }
+
+    /**
+     * @param tag Index of the tag
+     * @return Field-relative Y position of the center of the tag
+     */
+    double getTagY(int tag) {
+        return m_tagCenterY[tag];
+    }
+
+    /**
+     * Puts the camera where it would be with the robot at the given pose,
+     * ignoring any roll.
+     *
+     * @param camera         The camera
+     * @param x              Field-relative X position of the robot, in meters
+     * @param y              Field-relative Y position of the robot, in meters
+     * @param headingRadians Field-relative heading of the robot
+     */
+    void setCamera(CameraMount camera, double x, double y, double headingRadians) {
+        m_camera = camera;
+        double cos = Math.cos(headingRadians);
+        double sin = Math.sin(headingRadians);
+        m_cameraX = x + camera.forwardMeters * cos - camera.leftMeters * sin;
+        m_cameraY = y + camera.forwardMeters * sin + camera.leftMeters * cos;
+        m_cameraZ = camera.upMeters;
+
+        double yaw = headingRadians + camera.yawRadians;
+        double cosYaw = Math.cos(yaw);
+        double sinYaw = Math.sin(yaw);
+        double cosPitch = Math.cos(camera.pitchRadians);
+        double sinPitch = Math.sin(camera.pitchRadians);
+        m_forwardX = cosYaw * cosPitch;
+        m_forwardY = sinYaw * cosPitch;
+        m_forwardZ = sinPitch;
+        m_leftX = -sinYaw;
+        m_leftY = cosYaw;
+        m_upX = -cosYaw * sinPitch;
+        m_upY = -sinYaw * sinPitch;
+        m_upZ = cosPitch;
+    }
+
+    /**
+     * Gets how far the center of a tag is from the camera.
+     *
+     * @param tag Index of the tag
+     * @return Straight line distance, in meters
+     */
+    double getDistance(int tag) {
+        double dx = m_tagCenterX[tag] - m_cameraX;
+        double dy = m_tagCenterY[tag] - m_cameraY;
+        double dz = m_tagCenterZ[tag] - m_cameraZ;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Works out the box a tag covers in the camera's frame.
+     *
+     * @param tag              Index of the tag
+     * @param boxToPutResultsIn x min, x max, y min, y max of the tag, may run past the frame
+     * @return Whether the tag faces the camera, is in front of it, and at least partly in frame
+     */
+    boolean project(int tag, double[] boxToPutResultsIn) {
+        double[] corners = m_tagCorners[tag];
+        /* Only the front of a tag can be seen */
+        if ((m_cameraX - m_tagCenterX[tag]) * m_tagNormalX[tag]
+                + (m_cameraY - m_tagCenterY[tag]) * m_tagNormalY[tag] <= 0) {
+            return false;
+        }
+
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int corner = 0; corner < 4; ++corner) {
+            double dx = corners[corner * 3] - m_cameraX;
+            double dy = corners[corner * 3 + 1] - m_cameraY;
+            double dz = corners[corner * 3 + 2] - m_cameraZ;
+            double depth = dx * m_forwardX + dy * m_forwardY + dz * m_forwardZ;
+            if (depth < MIN_DEPTH_METERS) {
+                return false;
+            }
+            double left = dx * m_leftX + dy * m_leftY;
+            double up = dx * m_upX + dy * m_upY + dz * m_upZ;
+            double u = -(left / depth) / m_camera.tanHalfHorizontalFOV;
+            double v = (up / depth) / m_camera.tanHalfVerticalFOV;
+            minX = Math.min(minX, u);
+            maxX = Math.max(maxX, u);
+            minY = Math.min(minY, v);
+            maxY = Math.max(maxY, v);
+        }
+        if (maxX < -1 || minX > 1 || maxY < -1 || minY > 1) {
+            return false;
+        }
+
+        boxToPutResultsIn[0] = minX;
+        boxToPutResultsIn[1] = maxX;
+        boxToPutResultsIn[2] = minY;
+        boxToPutResultsIn[3] = maxY;
+        return true;
+    }
+}
@@ -0,0 +1,248 @@
+package frc.robot.Vision;
+
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.DoubleSubscriber;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import frc.robot.Constants;
+
+/**
+ * Narrows down what the AprilTag Limelights have to look at, so their
+ * pipelines run at a higher frame rate with less latency.
+ * <p>
+ * Every loop, the tags each camera should be able to see are worked out from
+ * the robot pose, where the camera sits on the robot and the field layout,
+ * now and a little ahead along the robot's velocity. The camera is cropped to
+ * just around those tags, or left at the full frame if it shouldn't see any,
+ * so it can find them again. Each camera also only looks for our alliance's
+ * tags, and follows our speaker tag for tx and ty.
+ * <p>
+ * The crop is only as good as the pose it comes from. After a bump or a bad
+ * reset the tags can sit outside the crop, where they're never seen, so the
+ * pose never gets fixed. A camera goes back to the full frame when it has
+ * been expected to see tags for several frames in a row and found none, or
+ * whenever the caller says the pose is uncertain, and is cropped again once
+ * it finds a tag.
+ * <p>
+ * Everything is sent through the NetworkTables instance it's given, so it can
+ * be pointed at a local instance to check what would have been sent. The
+ * pipelines have to be set to use the default crop for the crop to do
+ * anything.
+ * <p>
+ * Only one thread may update the budget, the drivetrain does it every loop.
+ */
+public class VisionBudget {
+    /* Crops are rounded to this, so the window doesn't wiggle with every bit of pose noise */
+    private static final double CROP_STEP = 0.02;
+
+    private static class CameraState {
+        final CameraMount camera;
+        final DoubleArrayPublisher crop;
+        final DoubleArrayPublisher idFilter;
+        final DoublePublisher priorityID;
+        final DoubleSubscriber targetValid;
+        final DoubleSubscriber heartbeat;
+
+        /* x min, x max, y min, y max, reused every publish */
+        final double[] window = new double[4];
+        final double[] lastWindow = new double[] { Double.NaN, Double.NaN, Double.NaN, Double.NaN };
+        int visibleTags;
+        double lastHeartbeat = Double.NaN;
+        /* Frames in a row that were cropped around tags and didn't find any */
+        int missedFrames;
+        boolean fullFrame;
+
+        CameraState(NetworkTableInstance instance, CameraMount camera) {
+            this.camera = camera;
+            NetworkTable table = instance.getTable(camera.name);
+            crop = table.getDoubleArrayTopic("crop").publish();
+            idFilter = table.getDoubleArrayTopic("fiducial_id_filters_set").publish();
+            priorityID = table.getDoubleTopic("priorityid").publish();
+            targetValid = table.getDoubleTopic("tv").subscribe(0.0);
+            heartbeat = table.getDoubleTopic("hb").subscribe(0.0);
+        }
+    }
+
+    private final CameraState[] m_cameras;
+
+    private final TagProjector m_projector;
+    /* Reused for each tag's box in the frame */
+    private final double[] m_box = new double[4];
+    private final double[] m_blueFilter;
+    private final double[] m_redFilter;
+
+    /* Tags allowed this update, and which alliance the filters were last sent for */
+    private double[] m_filter;
+    private Boolean m_lastRed = null;
+
+    /**
+     * Makes a budget for the given cameras.
+     *
+     * @param instance NetworkTables instance to send the crops and filters through
+     * @param layout   Where the tags are on the field
+     * @param cameras  The AprilTag cameras
+     */
+    public VisionBudget(NetworkTableInstance instance, AprilTagFieldLayout layout, CameraMount... cameras) {
+        m_cameras = new CameraState[cameras.length];
+        for (int i = 0; i < cameras.length; ++i) {
+            m_cameras[i] = new CameraState(instance, cameras[i]);
+        }
+
+        m_blueFilter = toDoubles(Constants.Vision.kBlueAllianceTagIDs);
+        m_redFilter = toDoubles(Constants.Vision.kRedAllianceTagIDs);
+        m_filter = m_blueFilter;
+
+        m_projector = new TagProjector(layout);
+    }
+
+    private static double[] toDoubles(int[] ids) {
+        double[] values = new double[ids.length];
+        for (int i = 0; i < ids.length; ++i) {
+            values[i] = ids[i];
+        }
+        return values;
+    }
+
+    /**
+     * Works out and sends the crop for every camera, and the tag filters if
+     * the alliance changed.
+     *
+     * @param x             Field-relative X position of the robot, in meters
+     * @param y             Field-relative Y position of the robot, in meters
+     * @param headingRadians Field-relative heading of the robot
+     * @param vx            Field-relative X velocity, in meters per second
+     * @param vy            Field-relative Y velocity, in meters per second
+     * @param omega         Angular velocity, in radians per second
+     * @param isRed         Whether we're on the red alliance
+     * @param poseUncertain Whether the pose might be too far off to crop
+     *                      around, so every camera should look at the full
+     *                      frame
+     */
+    public void update(double x, double y, double headingRadians, double vx, double vy, double omega,
+            boolean isRed, boolean poseUncertain) {
+        if (m_lastRed == null || m_lastRed != isRed) {
+            m_lastRed = isRed;
+            m_filter = isRed ? m_redFilter : m_blueFilter;
+            for (CameraState state : m_cameras) {
+                state.idFilter.set(m_filter);
+                state.priorityID.set(isRed ? Constants.Vision.kRedSpeakerTagID : Constants.Vision.kBlueSpeakerTagID);
+            }
+        }
+
+        double lookahead = Constants.Vision.kCropLookaheadSeconds;
+        for (CameraState state : m_cameras) {
+            /* See whether the newest frame, taken with the last crop, found the tags it was cropped around */
+            double heartbeat = state.heartbeat.get();
+            if (heartbeat != state.lastHeartbeat) {
+                state.lastHeartbeat = heartbeat;
+                if (state.targetValid.get() == 1) {
+                    state.missedFrames = 0;
+                } else if (state.visibleTags > 0) {
+                    state.missedFrames++;
+                }
+            }
+
+            double[] window = state.window;
+            window[0] = Double.POSITIVE_INFINITY;
+            window[1] = Double.NEGATIVE_INFINITY;
+            window[2] = Double.POSITIVE_INFINITY;
+            window[3] = Double.NEGATIVE_INFINITY;
+
+            /* Where the tags are now, and where they will be by the time the frame is processed */
+            int visible = addVisibleTags(state, x, y, headingRadians);
+            visible = Math.max(visible, addVisibleTags(state,
+                    x + vx * lookahead, y + vy * lookahead, headingRadians + omega * lookahead));
+            state.visibleTags = visible;
+            state.fullFrame = visible == 0 || poseUncertain
+                    || state.missedFrames >= Constants.Vision.kCropMissedFramesBeforeFullFrame;
+
+            if (state.fullFrame) {
+                /* Nothing should be in view, or we can't tell where, so look everywhere for whatever turns up */
+                window[0] = -1;
+                window[1] = 1;
+                window[2] = -1;
+                window[3] = 1;
+            } else {
+                double margin = Constants.Vision.kCropMargin;
+                window[0] = Math.max(-1, Math.floor((window[0] - margin) / CROP_STEP) * CROP_STEP);
+                window[1] = Math.min(1, Math.ceil((window[1] + margin) / CROP_STEP) * CROP_STEP);
+                window[2] = Math.max(-1, Math.floor((window[2] - margin) / CROP_STEP) * CROP_STEP);
+                window[3] = Math.min(1, Math.ceil((window[3] + margin) / CROP_STEP) * CROP_STEP);
+            }
+
+            if (window[0] != state.lastWindow[0] || window[1] != state.lastWindow[1]
+                    || window[2] != state.lastWindow[2] || window[3] != state.lastWindow[3]) {
+                System.arraycopy(window, 0, state.lastWindow, 0, 4);
+                state.crop.set(window);
+            }
+        }
+    }
+
+    /**
+     * Gets how many tags a camera should be able to see, as of the last update.
+     *
+     * @param camera Index of the camera, in the order they were given
+     * @return Number of tags expected in view
+     */
+    public int getVisibleTagCount(int camera) {
+        return m_cameras[camera].visibleTags;
+    }
+
+    /**
+     * Gets whether a camera was left at the full frame, because it shouldn't
+     * see any tags, or because the pose can't be trusted to crop around.
+     *
+     * @param camera Index of the camera, in the order they were given
+     * @return true if the camera is looking at the full frame
+     */
+    public boolean isFullFrame(int camera) {
+        return m_cameras[camera].fullFrame;
+    }
+
+    /**
+     * Gets the fraction of the frame a camera was last cropped to.
+     *
+     * @param camera Index of the camera, in the order they were given
+     * @return Cropped area over the full frame, from 0 to 1
+     */
+    public double getCropFraction(int camera) {
+        double[] window = m_cameras[camera].lastWindow;
+        return (window[1] - window[0]) * (window[3] - window[2]) / 4;
+    }
+
+    /*
+     * Grows the camera's window to fit every allowed tag it should see from the
+     * given robot pose, and returns how many there were.
+     */
+    private int addVisibleTags(CameraState state, double x, double y, double headingRadians) {
+        m_projector.setCamera(state.camera, x, y, headingRadians);
+
+        int visible = 0;
+        for (int tag = 0; tag < m_projector.getTagCount(); ++tag) {
+            if (!isAllowed(m_projector.getTagID(tag))
+                    || m_projector.getDistance(tag) > Constants.Vision.kMaxAverageTagDistanceMeters
+                    || !m_projector.project(tag, m_box)) {
+                continue;
+            }
+
+            double[] window = state.window;
+            window[0] = Math.min(window[0], m_box[0]);
+            window[1] = Math.max(window[1], m_box[1]);
+            window[2] = Math.min(window[2], m_box[2]);
+            window[3] = Math.max(window[3], m_box[3]);
+            visible++;
+        }
+        return visible;
+    }
+
+    private boolean isAllowed(int id) {
+        for (double allowed : m_filter) {
+            if (allowed == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,375 @@
+package frc.robot.Vision;
+
+import java.util.EnumSet;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.DoubleSubscriber;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableListenerPoller;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants;
+import frc.robot.Vision.LimelightHelpers.PoseEstimate;
+import frc.robot.Vision.LimelightHelpers.RawFiducial;
+import frc.robot.subsystems.Drivetrain.LatencyHistogram;
+
+/**
+ * Fuses Limelight pose estimates as soon as they arrive, on its own thread.
+ * <p>
+ * The thread waits on a NetworkTables listener for the bot pose topics of
+ * every camera, so each frame is filtered and handed to the pose estimator
+ * the moment it comes in instead of waiting for the next robot loop, and two
+ * frames that land in the same loop are both used. Each frame is stamped with
+ * its capture time on the roboRIO FPGA clock, which is when it arrived minus
+ * the latency the Limelight reports (the same thing the Limelight's
+ * timestamp_RIOFPGA_capture is).
+ * <p>
+ * Frames sent twice are dropped, and frames with ambiguous or far away tags
+ * or a pose off the field are thrown out before they reach the pose
+ * estimator, since every measurement it fuses becomes a correction that
+ * moves the pose from then on.
+ * <p>
+ * Everything comes from the {@link NetworkTableInstance} it's given, so a
+ * local instance with something publishing fake bot poses works the same as
+ * the real cameras.
+ */
+public class VisionThread {
+    /* How long to wait for a frame before checking if we should stop */
+    private static final double WAIT_TIMEOUT_SECONDS = 0.1;
+    /* Frames captured closer together than this from the same camera are the same frame sent twice */
+    private static final double DUPLICATE_WINDOW_SECONDS = 0.001;
+
+    /**
+     * Takes a pose estimate that passed the filters.
+     */
+    @FunctionalInterface
+    public interface MeasurementConsumer {
+        /**
+         * @param pose               Field-relative pose of the robot, blue origin
+         * @param timestampSeconds   FPGA time the frame was captured
+         * @param arrivalTimeSeconds FPGA time the frame arrived over NetworkTables
+         */
+        void accept(Pose2d pose, double timestampSeconds, double arrivalTimeSeconds);
+    }
+
+    /**
+     * A Limelight running AprilTag localization, with the thresholds used to
+     * pick between MegaTag1 and MegaTag2 and to accept a frame.
+     */
+    public static class Camera {
+        public final String name;
+        /* Use MegaTag1 when the tags are this big, we're close enough that it's better */
+        public final double megaTag1AreaThreshold;
+        /* Don't use any frame with a smaller target than this */
+        public final double megaTag2AreaThreshold;
+        /* Use MegaTag1 when turning slower than this, in degrees per second */
+        public final double megaTag2AngularVelocityThreshold;
+
+        public Camera(String name, double megaTag1AreaThreshold, double megaTag2AreaThreshold,
+                double megaTag2AngularVelocityThreshold) {
+            this.name = name;
+            this.megaTag1AreaThreshold = megaTag1AreaThreshold;
+            this.megaTag2AreaThreshold = megaTag2AreaThreshold;
+            this.megaTag2AngularVelocityThreshold = megaTag2AngularVelocityThreshold;
+        }
+    }
+
+    /* Everything the thread keeps for one camera, only touched by the vision thread */
+    private static class CameraState {
+        final Camera camera;
+        final DoubleSubscriber targetArea;
+        final DoubleArraySubscriber botPose;
+        final DoubleArraySubscriber botPoseMegaTag2;
+        final int botPoseHandle;
+        final int botPoseMegaTag2Handle;
+        final PoseEstimate estimate = new PoseEstimate();
+        /* The last frame we looked at, to catch it being sent again */
+        double lastTimestampSeconds = Double.NaN;
+        double lastX = Double.NaN;
+        double lastY = Double.NaN;
+        double lastHeadingRadians = Double.NaN;
+        volatile Pose2d lastAcceptedPose = null;
+
+        CameraState(NetworkTableInstance instance, Camera camera) {
+            this.camera = camera;
+            NetworkTable table = instance.getTable(LimelightHelpers.sanitizeName(camera.name));
+            targetArea = table.getDoubleTopic("ta").subscribe(0.0);
+            /* Keep duplicates, the same pose twice is still two frames */
+            botPose = table.getDoubleArrayTopic("botpose_wpiblue").subscribe(new double[0],
+                    PubSubOption.keepDuplicates(true));
+            botPoseMegaTag2 = table.getDoubleArrayTopic("botpose_orb_wpiblue").subscribe(new double[0],
+                    PubSubOption.keepDuplicates(true));
+            botPoseHandle = botPose.getTopic().getHandle();
+            botPoseMegaTag2Handle = botPoseMegaTag2.getTopic().getHandle();
+        }
+    }
+
+    private final CameraState[] m_cameras;
+    private final NetworkTableListenerPoller m_poller;
+    private final MeasurementConsumer m_consumer;
+    private final DoubleSupplier m_yawRateDps;
+    private final DoubleConsumer m_yawAgeRecorder;
+
+    private final Thread m_thread;
+    private volatile boolean m_running = false;
+
+    /* Only recorded into by the vision thread */
+    private final LatencyHistogram m_arrivalToQueueLatency = new LatencyHistogram();
+    private final LatencyHistogram m_frameProcessingTime = new LatencyHistogram();
+    private volatile long m_framesReceived = 0;
+    private volatile long m_framesAccepted = 0;
+    private volatile long m_framesDuplicate = 0;
+    private volatile long m_framesRejected = 0;
+
+    /**
+     * Creates the listeners for each camera. Nothing is processed until
+     * {@link #start()} or {@link #processPending()} is called.
+     *
+     * @param instance       NetworkTables instance the cameras publish to
+     * @param consumer       Where accepted pose estimates go
+     * @param yawRateDps     Current yaw rate of the robot, in degrees per second
+     * @param yawAgeRecorder Where MegaTag2 capture times go to work out the yaw age, may be null
+     * @param cameras        Cameras to listen to
+     */
+    public VisionThread(NetworkTableInstance instance, MeasurementConsumer consumer, DoubleSupplier yawRateDps,
+            DoubleConsumer yawAgeRecorder, Camera... cameras) {
+        m_consumer = consumer;
+        m_yawRateDps = yawRateDps;
+        m_yawAgeRecorder = yawAgeRecorder;
+
+        m_poller = new NetworkTableListenerPoller(instance);
+        m_cameras = new CameraState[cameras.length];
+        for (int i = 0; i < cameras.length; ++i) {
+            m_cameras[i] = new CameraState(instance, cameras[i]);
+            m_poller.addListener(m_cameras[i].botPose, EnumSet.of(NetworkTableEvent.Kind.kValueAll));
+            m_poller.addListener(m_cameras[i].botPoseMegaTag2, EnumSet.of(NetworkTableEvent.Kind.kValueAll));
+        }
+
+        m_thread = new Thread(this::run, "Vision");
+        /* Don't hold up program shutdown */
+        m_thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the vision thread.
+     */
+    public void start() {
+        m_running = true;
+        m_thread.start();
+    }
+
+    /**
+     * Stops the vision thread, waiting for it to finish the frame it's on.
+     */
+    public void stop() {
+        m_running = false;
+        try {
+            m_thread.join();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (m_running) {
+            try {
+                /* Wakes up as soon as any camera publishes */
+                WPIUtilJNI.waitForObjectTimeout(m_poller.getHandle(), WAIT_TIMEOUT_SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            processPending();
+        }
+    }
+
+    /**
+     * Processes every frame that has arrived, on the calling thread. The
+     * vision thread does this whenever it wakes up, call it directly instead
+     * of {@link #start()} to run vision in line, like in tests or a stepped
+     * simulation.
+     */
+    public void processPending() {
+        for (NetworkTableEvent event : m_poller.readQueue()) {
+            if (event.valueData == null) {
+                continue;
+            }
+            int topic = event.valueData.topic;
+            /* Wall time, so it still means something when the sim clock is paused */
+            long start = System.nanoTime();
+            for (CameraState camera : m_cameras) {
+                if (topic == camera.botPoseHandle) {
+                    processFrame(camera, false, event);
+                    break;
+                } else if (topic == camera.botPoseMegaTag2Handle) {
+                    processFrame(camera, true, event);
+                    break;
+                }
+            }
+            m_frameProcessingTime.record(System.nanoTime() - start);
+        }
+    }
+
+    private void processFrame(CameraState state, boolean megaTag2, NetworkTableEvent event) {
+        Camera camera = state.camera;
+        double targetArea = state.targetArea.get();
+        boolean useMegaTag1 = DriverStation.isDisabled()
+                || targetArea > camera.megaTag1AreaThreshold
+                || Math.abs(m_yawRateDps.getAsDouble()) < camera.megaTag2AngularVelocityThreshold;
+        /* Every frame comes in as both, only use the kind that makes sense right now */
+        if (megaTag2 == useMegaTag1) {
+            return;
+        }
+
+        long arrivalMicros = event.valueData.value.getTime();
+        PoseEstimate estimate = state.estimate;
+        LimelightClient.decode(event.valueData.value.getDoubleArray(), arrivalMicros, estimate);
+        m_framesReceived++;
+
+        if (estimate.tagCount == 0) {
+            /* Nothing seen, nothing to do */
+            return;
+        }
+        if (isDuplicate(state, estimate)) {
+            m_framesDuplicate++;
+            return;
+        }
+
+        if (megaTag2 && m_yawAgeRecorder != null) {
+            m_yawAgeRecorder.accept(estimate.timestampSeconds);
+        }
+
+        if (estimate.tagCount > 1 && targetArea > camera.megaTag2AreaThreshold) {
+            if (!passesPrefilter(estimate)) {
+                m_framesRejected++;
+                return;
+            }
+
+            double arrivalSeconds = arrivalMicros / 1000000.0;
+            Pose2d pose = estimate.getPose();
+            m_consumer.accept(pose, estimate.timestampSeconds, arrivalSeconds);
+            m_arrivalToQueueLatency.record((long) ((Timer.getFPGATimestamp() - arrivalSeconds) * 1e9));
+            state.lastAcceptedPose = pose;
+            m_framesAccepted++;
+        }
+    }
+
+    /**
+     * Whether this frame is the last one we saw from the camera sent again,
+     * either with the same capture time or the exact same pose. Remembers the
+     * frame for next time.
+     */
+    private static boolean isDuplicate(CameraState state, PoseEstimate estimate) {
+        double x = estimate.x;
+        double y = estimate.y;
+        double heading = estimate.headingRadians;
+        boolean duplicate = Math.abs(estimate.timestampSeconds - state.lastTimestampSeconds) < DUPLICATE_WINDOW_SECONDS
+                || (x == state.lastX && y == state.lastY && heading == state.lastHeadingRadians);
+
+        state.lastTimestampSeconds = estimate.timestampSeconds;
+        state.lastX = x;
+        state.lastY = y;
+        state.lastHeadingRadians = heading;
+        return duplicate;
+    }
+
+    /**
+     * Cheap checks that throw out frames the pose estimator would only be
+     * hurt by, before they are fused into a correction of the pose.
+     */
+    private static boolean passesPrefilter(PoseEstimate estimate) {
+        /* Far away tags are too noisy to be worth it */
+        if (estimate.avgTagDist > Constants.Vision.kMaxAverageTagDistanceMeters) {
+            return false;
+        }
+
+        /* One ambiguous tag is enough to throw the solve off */
+        for (RawFiducial fiducial : estimate.rawFiducials) {
+            if (fiducial.ambiguity > Constants.Vision.kMaxTagAmbiguity) {
+                return false;
+            }
+        }
+
+        /* The robot can't be off the field */
+        double margin = Constants.Vision.kFieldBorderMarginMeters;
+        double x = estimate.x;
+        double y = estimate.y;
+        return x > -margin && x < Constants.fieldLength + margin
+                && y > -margin && y < Constants.fieldHeight + margin;
+    }
+
+    /**
+     * Gets the last pose accepted from a camera, for showing on the field.
+     *
+     * @param index Index of the camera, in the order they were given
+     * @return Last accepted pose, or null if there hasn't been one
+     */
+    public Pose2d getLastAcceptedPose(int index) {
+        return m_cameras[index].lastAcceptedPose;
+    }
+
+    /**
+     * Gets the histogram of time from a frame arriving to it being queued for
+     * the pose estimator.
+     *
+     * @return Arrival to queue latency, in nanoseconds
+     */
+    public LatencyHistogram getArrivalToQueueLatency() {
+        return m_arrivalToQueueLatency;
+    }
+
+    /**
+     * Gets the histogram of CPU time spent on each bot pose that came in,
+     * including the ones skipped for being the kind we weren't using.
+     *
+     * @return Processing time per bot pose, in nanoseconds
+     */
+    public LatencyHistogram getFrameProcessingTime() {
+        return m_frameProcessingTime;
+    }
+
+    /**
+     * Gets the number of frames of the kind we were using that came in.
+     *
+     * @return Total frames received
+     */
+    public long getFramesReceived() {
+        return m_framesReceived;
+    }
+
+    /**
+     * Gets the number of frames dropped for being a frame we already had.
+     *
+     * @return Total duplicate frames
+     */
+    public long getFramesDuplicate() {
+        return m_framesDuplicate;
+    }
+
+    /**
+     * Gets the number of frames thrown out by the prefilter for ambiguous or
+     * far away tags or an impossible pose.
+     *
+     * @return Total rejected frames
+     */
+    public long getFramesRejected() {
+        return m_framesRejected;
+    }
+
+    /**
+     * Gets the number of frames that passed the filters and went to the pose
+     * estimator.
+     *
+     * @return Total frames accepted
+     */
+    public long getFramesAccepted() {
+        return m_framesAccepted;
+    }
+}
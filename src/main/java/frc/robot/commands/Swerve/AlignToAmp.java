@@ -1,5 +1,6 @@
 package frc.robot.commands.Swerve;
 
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import com.ctre.phoenix6.mechanisms.swerve.utility.PhoenixPIDController;
@@ -21,7 +22,13 @@ public class AlignToAmp extends Command {
     Lighting lighting;
 
     LEDState oldState = LEDState.kOff;
-    SwerveRequest.FieldCentricFacingAngle driveRequest;
+    /* Built once and updated every loop, so aligning doesn't make garbage */
+    final SwerveRequest.FieldCentricFacingAngle driveRequest = new SwerveRequest.FieldCentricFacingAngle();
+    final Consumer<SwerveRequest.FieldCentricFacingAngle> updateDriveRequest = this::updateDriveRequest;
+
+    /* Inputs read this loop, handed to the request while the drivetrain is locked */
+    Rotation2d targetDirection = new Rotation2d();
+    double velocityX, velocityY, slowDown;
 
     Supplier<Double> translateX, translateY, howManyBabiesOnBoard;
     Supplier<Rotation2d> getTargetRotation;
@@ -40,6 +47,13 @@ public class AlignToAmp extends Command {
 
         this.addRequirements(drivetrain, lighting);
 
+        driveRequest.HeadingController = new PhoenixPIDController(12, 2, 1);
+        driveRequest.Deadband = Constants.OperatorConstants.Driver.deadband;
+        driveRequest.RotationalDeadband = Constants.OperatorConstants.Driver.rotationalDeadband * 0.05;
+
+        // this is for tuning and now we can tune the PID controller
+        SmartDashboard.putData("Align PID", driveRequest.HeadingController);
+
         if (howManyBabiesOnBoard == null) {
             this.howManyBabiesOnBoard = () -> 0.0;
         }
@@ -58,16 +72,9 @@ public class AlignToAmp extends Command {
 
     @Override
     public void initialize() {
-        driveRequest = new SwerveRequest.FieldCentricFacingAngle();
-
-        driveRequest.HeadingController = new PhoenixPIDController(12, 2, 1);
-
-        // this is for tuning and now we can tune the PID controller
-        SmartDashboard.putData("Align PID", driveRequest.HeadingController);
+        /* Don't carry the integral over from the last time we aligned */
+        driveRequest.HeadingController.reset();
         drivetrain.postStatus("Aligning");
-
-        driveRequest.Deadband = Constants.OperatorConstants.Driver.deadband;
-        driveRequest.RotationalDeadband = Constants.OperatorConstants.Driver.rotationalDeadband * 0.05;
         lighting.autoSetLights(false);
     }
 
@@ -104,21 +111,24 @@ public class AlignToAmp extends Command {
 
         oldState = state;
 
-        driveRequest.TargetDirection = getTargetRotation.get();
+        targetDirection = getTargetRotation.get();
+        velocityX = -translateX.get() * Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond;
+        velocityY = -translateY.get() * Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond;
+        slowDown = 1 - howManyBabiesOnBoard.get();
 
-        driveRequest
-                .withVelocityX(-translateX.get()
-                        * Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond)
-                .withVelocityY(-translateY.get()
-                        * Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond)
-                .withSlowDown(1 - howManyBabiesOnBoard.get());
+        drivetrain.setControl(driveRequest, updateDriveRequest);
+    }
 
-        drivetrain.setControl(driveRequest);
+    private void updateDriveRequest(SwerveRequest.FieldCentricFacingAngle request) {
+        request.withTargetDirection(targetDirection)
+                .withVelocityX(velocityX)
+                .withVelocityY(velocityY)
+                .withSlowDown(slowDown);
     }
 
     @Override
     public void end(boolean interrupted) {
-        drivetrain.setControl(new SwerveRequest.SwerveDriveBrake());
+        drivetrain.setControl(drivetrain.brakeRequest);
         drivetrain.postStatus("Aligned");
         lighting.autoSetLights(true);
     }
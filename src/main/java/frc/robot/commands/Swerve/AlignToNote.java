@@ -1,24 +1,33 @@
 package frc.robot.commands.Swerve;
 
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import com.ctre.phoenix6.mechanisms.swerve.utility.PhoenixPIDController;
 
-import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.Constants;
-import frc.robot.Vision.LimelightHelpers;
 import frc.robot.subsystems.Drivetrain.Drivetrain;
 import frc.robot.subsystems.Drivetrain.SwerveRequest;
 
 public class AlignToNote extends Command {
+    /* How far ahead of the robot to aim when there is no note, so the heading holds */
+    static final double kNoNoteAimDistanceMeters = 10;
+
     Drivetrain drivetrain;
 
-    SwerveRequest.FieldCentricFacingAngle driveRequest;
+    /* Built once and updated every loop, so aligning doesn't make garbage */
+    final SwerveRequest.FieldCentricFacingPoint driveRequest = new SwerveRequest.FieldCentricFacingPoint();
+    final Consumer<SwerveRequest.FieldCentricFacingPoint> updateDriveRequest = this::updateDriveRequest;
+
+    /* Inputs read this loop, handed to the request while the drivetrain is locked */
+    Translation2d targetPoint = new Translation2d();
+    double velocityX, velocityY, slowDown;
 
     Supplier<Double> translateX, translateY, howManyBabiesOnBoard;
-    Supplier<Rotation2d> getTargetRotation;
 
     public AlignToNote() {
         this(() -> 0.0, () -> 0.0, () -> 0.0);
@@ -38,6 +47,13 @@ public class AlignToNote extends Command {
 
         this.addRequirements(drivetrain);
 
+        driveRequest.HeadingController = new PhoenixPIDController(15, 0.1, 0);
+        driveRequest.Deadband = Constants.OperatorConstants.Driver.deadband;
+        driveRequest.RotationalDeadband = Constants.OperatorConstants.Driver.rotationalDeadband * 0.05;
+
+        // this is for tuning and now we can tune the PID controller
+        SmartDashboard.putData("Align to Note PID", driveRequest.HeadingController);
+
         if (howManyBabiesOnBoard == null) {
             this.howManyBabiesOnBoard = () -> 0.0;
         }
@@ -50,43 +66,43 @@ public class AlignToNote extends Command {
         this.translateY = translateY;
 
         this.setName("Align to Note");
-
-        getTargetRotation = () -> {
-            return drivetrain.getPose().getRotation()
-                    .minus(Rotation2d.fromDegrees(LimelightHelpers.getTX(Constants.Vision.LimelightPython.llPython)));
-        };
     }
 
     @Override
     public void initialize() {
-        driveRequest = new SwerveRequest.FieldCentricFacingAngle();
-        driveRequest.HeadingController = new PhoenixPIDController(15, 0.1, 0);
-
-        // this is for tuning and now we can tune the PID controller
-        SmartDashboard.putData("Align to Note PID", driveRequest.HeadingController);
+        /* Don't carry the integral over from the last time we aligned */
+        driveRequest.HeadingController.reset();
+        /* Hold the heading we have until a note turns up */
+        Pose2d pose = drivetrain.getPose();
+        targetPoint = pose.getTranslation()
+                .plus(new Translation2d(kNoNoteAimDistanceMeters, pose.getRotation()));
         drivetrain.postStatus("Aligning to Note");
-
-        driveRequest.Deadband = Constants.OperatorConstants.Driver.deadband;
-        driveRequest.RotationalDeadband = Constants.OperatorConstants.Driver.rotationalDeadband * 0.05;
     }
 
     @Override
     public void execute() {
-        driveRequest.TargetDirection = getTargetRotation.get();
+        /* The note is a field point, so the request keeps facing it at the odometry rate as we drive */
+        Translation2d note = drivetrain.getNoteTracker().getTargetNote();
+        if (note != null) {
+            targetPoint = note;
+        }
+        velocityX = -translateX.get() * Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond;
+        velocityY = translateY.get() * Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond;
+        slowDown = 1 - howManyBabiesOnBoard.get();
 
-        driveRequest
-                .withVelocityX(-translateX.get()
-                        * Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond)
-                .withVelocityY(translateY.get()
-                        * Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond)
-                .withSlowDown(1 - howManyBabiesOnBoard.get());
+        drivetrain.setControl(driveRequest, updateDriveRequest);
+    }
 
-        drivetrain.setControl(driveRequest);
+    private void updateDriveRequest(SwerveRequest.FieldCentricFacingPoint request) {
+        request.withTargetPoint(targetPoint)
+                .withVelocityX(velocityX)
+                .withVelocityY(velocityY)
+                .withSlowDown(slowDown);
     }
 
     @Override
     public void end(boolean interrupted) {
-        drivetrain.setControl(new SwerveRequest.SwerveDriveBrake());
+        drivetrain.setControl(drivetrain.brakeRequest);
         drivetrain.postStatus("Aligned");
     }
 
@@ -1,25 +1,40 @@
 package frc.robot.commands.Swerve;
 
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import com.ctre.phoenix6.mechanisms.swerve.utility.PhoenixPIDController;
 
 import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.Constants;
 import frc.robot.Robot;
 import frc.robot.subsystems.Intake;
+import frc.robot.subsystems.ShotSolver;
 import frc.robot.subsystems.Drivetrain.Drivetrain;
 import frc.robot.subsystems.Drivetrain.SwerveRequest;
 
 public class AlignToSpeaker extends Command {
     Drivetrain drivetrain;
 
-    SwerveRequest.FieldCentricFacingAngle driveRequest;
+    /*
+     * Built once and updated every loop, so aligning doesn't make garbage. The
+     * request works out the heading to the speaker itself on every odometry update,
+     * leading it by the note's time of flight so we can shoot while driving, and the
+     * shooter is on the back of the robot, so that's the side we point at it.
+     */
+    final SwerveRequest.FieldCentricFacingPoint driveRequest = new SwerveRequest.FieldCentricFacingPoint()
+            .withHeadingOffset(Rotation2d.fromDegrees(180))
+            .withMovingShotSolver(new ShotSolver());
+    final Consumer<SwerveRequest.FieldCentricFacingPoint> updateDriveRequest = this::updateDriveRequest;
+
+    /* Inputs read this loop, handed to the request while the drivetrain is locked */
+    Translation2d speakerPosition = Constants.Vision.SpeakerPoses.kSpeakerPoseBlue.getTranslation();
+    double velocityX, velocityY, slowDown;
 
     Supplier<Double> translateX, translateY, howManyBabiesOnBoard;
-    Supplier<Rotation2d> getTargetRotation;
 
     public AlignToSpeaker() {
         this(() -> 0.0, () -> 0.0, () -> 0.0);
@@ -40,6 +55,13 @@ public class AlignToSpeaker extends Command {
 
         this.addRequirements(drivetrain);
 
+        driveRequest.HeadingController = new PhoenixPIDController(12, 6, 1);
+        driveRequest.Deadband = Constants.OperatorConstants.Driver.deadband;
+        driveRequest.RotationalDeadband = Constants.OperatorConstants.Driver.rotationalDeadband * 0.05;
+
+        // this is for tuning and now we can tune the PID controller
+        SmartDashboard.putData("Align to Speaker PID", driveRequest.HeadingController);
+
         if (howManyBabiesOnBoard == null) {
             this.howManyBabiesOnBoard = () -> 0.0;
         }
@@ -52,54 +74,36 @@ public class AlignToSpeaker extends Command {
         this.translateY = translateY;
 
         this.setName("Align to Speaker");
-
-        getTargetRotation = () -> {
-            if (Robot.isRed()) {
-                return Rotation2d
-                        .fromRadians(Math.atan2(
-                                drivetrain.getPose().getY() - Constants.Vision.SpeakerPoses.kSpeakerPoseRed.getY(),
-                                drivetrain.getPose().getX() - Constants.Vision.SpeakerPoses.kSpeakerPoseRed.getX()));
-            }
-
-            else {
-                return Rotation2d
-                        .fromRadians(Math.atan2(
-                                drivetrain.getPose().getY() - Constants.Vision.SpeakerPoses.kSpeakerPoseBlue.getY(),
-                                drivetrain.getPose().getX() - Constants.Vision.SpeakerPoses.kSpeakerPoseBlue.getX()));
-            }
-        };
     }
 
     @Override
     public void initialize() {
-        driveRequest = new SwerveRequest.FieldCentricFacingAngle();
-        driveRequest.HeadingController = new PhoenixPIDController(12, 6, 1);
-
-        // this is for tuning and now we can tune the PID controller
-        SmartDashboard.putData("Align to Speaker PID", driveRequest.HeadingController);
+        /* Don't carry the integral over from the last time we aligned */
+        driveRequest.HeadingController.reset();
         drivetrain.postStatus("Aligning to Speaker");
-
-        driveRequest.Deadband = Constants.OperatorConstants.Driver.deadband;
-        driveRequest.RotationalDeadband = Constants.OperatorConstants.Driver.rotationalDeadband * 0.05;
     }
 
     @Override
     public void execute() {
-        driveRequest.TargetDirection = getTargetRotation.get();
+        speakerPosition = Robot.isRed() ? Constants.Vision.SpeakerPoses.kSpeakerPoseRed.getTranslation()
+                : Constants.Vision.SpeakerPoses.kSpeakerPoseBlue.getTranslation();
+        velocityX = -translateX.get() * Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond;
+        velocityY = -translateY.get() * Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond;
+        slowDown = 1 - howManyBabiesOnBoard.get();
 
-        driveRequest
-                .withVelocityX(-translateX.get()
-                        * Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond)
-                .withVelocityY(-translateY.get()
-                        * Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond)
-                .withSlowDown(1 - howManyBabiesOnBoard.get());
+        drivetrain.setControl(driveRequest, updateDriveRequest);
+    }
 
-        drivetrain.setControl(driveRequest);
+    private void updateDriveRequest(SwerveRequest.FieldCentricFacingPoint request) {
+        request.withTargetPoint(speakerPosition)
+                .withVelocityX(velocityX)
+                .withVelocityY(velocityY)
+                .withSlowDown(slowDown);
     }
 
     @Override
     public void end(boolean interrupted) {
-        drivetrain.setControl(new SwerveRequest.SwerveDriveBrake());
+        drivetrain.setControl(drivetrain.brakeRequest);
         drivetrain.postStatus("Aligned");
     }
 
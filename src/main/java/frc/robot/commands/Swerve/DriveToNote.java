@@ -1,27 +1,52 @@
 package frc.robot.commands.Swerve;
 
 import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
-import edu.wpi.first.math.controller.PIDController;
-import edu.wpi.first.math.util.Units;
+import com.ctre.phoenix6.mechanisms.swerve.utility.PhoenixPIDController;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.Constants;
-import frc.robot.Vision.LimelightHelpers;
+import frc.robot.Vision.NoteTracker;
 import frc.robot.subsystems.Drivetrain.Drivetrain;
 import frc.robot.subsystems.Drivetrain.SwerveRequest;
 
+/**
+ * Drives at full speed to the note the note tracker is following, facing it.
+ * <p>
+ * The note is a point on the field, so the heading to it is worked out by the
+ * request every odometry loop from the newest pose, and the robot keeps going
+ * for it even after it drops out of the camera's view. Once no detection has
+ * updated the note for {@link #kStaleTrackSeconds} it has most likely been
+ * picked up or knocked away, so the robot stops and the command ends.
+ */
 public class DriveToNote extends Command {
+    /* Closer than this the direction to the note is meaningless, so we keep going the way we were */
+    static final double kMinDirectionDistanceMeters = 0.1;
+    /* A note no frame has shown for this long isn't worth driving to any more */
+    static final double kStaleTrackSeconds = 0.75;
+
     Drivetrain drivetrain;
-    SwerveRequest.RobotCentric driveRequest;
-    PIDController pidRadianController;
+    final SwerveRequest.FieldCentricFacingPoint driveRequest = new SwerveRequest.FieldCentricFacingPoint();
+    final Consumer<SwerveRequest.FieldCentricFacingPoint> updateDriveRequest = this::updateDriveRequest;
+
+    /* Worked out this loop, handed to the request while the drivetrain is locked */
+    Translation2d notePosition;
+    double velocityX, velocityY;
+    /* Capture time of the newest frame that showed the note */
+    double noteUpdateSeconds;
+    boolean trackLost;
 
-    public static BooleanSupplier thereIsANote = () -> LimelightHelpers.getTX(Constants.Vision.LimelightPython.llPython) != 0.00;
+    public static BooleanSupplier thereIsANote = () -> Drivetrain.getInstance().getNoteTracker().hasNote();
 
     public DriveToNote() {
         drivetrain = Drivetrain.getInstance();
-        driveRequest = new SwerveRequest.RobotCentric();
 
-        pidRadianController = new PIDController(12, 12, 1);
+        driveRequest.HeadingController = new PhoenixPIDController(15, 0.1, 0);
+        /* Velocities are worked out in blue alliance field coordinates, the same as the note */
+        driveRequest.ForwardReference = SwerveRequest.ForwardReference.RedAlliance;
 
         this.addRequirements(drivetrain);
         this.setName("Drive To Note");
@@ -29,30 +54,58 @@ public class DriveToNote extends Command {
 
     @Override
     public void initialize() {
-        driveRequest.Deadband = Constants.OperatorConstants.Driver.deadband;
-        driveRequest.RotationalDeadband = Constants.OperatorConstants.Driver.rotationalDeadband;
+        driveRequest.HeadingController.reset();
+        notePosition = null;
+        velocityX = 0;
+        velocityY = 0;
+        noteUpdateSeconds = Double.NEGATIVE_INFINITY;
+        trackLost = false;
     }
 
     @Override
     public void execute() {
-        driveRequest.RotationalRate = pidRadianController
-                .calculate(Units.degreesToRadians(LimelightHelpers.getTX(Constants.Vision.LimelightPython.llPython)));
+        NoteTracker tracker = drivetrain.getNoteTracker();
+        Translation2d note = tracker.getTargetNote();
+        if (note != null) {
+            notePosition = note;
+            noteUpdateSeconds = tracker.getTargetLastUpdateSeconds();
+        }
+        if (notePosition == null) {
+            /* Never saw one, sit still instead of driving off blind */
+            drivetrain.setControl(drivetrain.brakeRequest);
+            return;
+        }
+        if (Timer.getFPGATimestamp() - noteUpdateSeconds > kStaleTrackSeconds) {
+            /* Driving on to where the note used to be would only take us somewhere empty */
+            trackLost = true;
+            drivetrain.setControl(drivetrain.brakeRequest);
+            return;
+        }
 
-        driveRequest.VelocityX = Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond * 1;
+        Translation2d toNote = notePosition.minus(drivetrain.getPose().getTranslation());
+        double distance = toNote.getNorm();
+        if (distance > kMinDirectionDistanceMeters) {
+            double speed = Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond;
+            velocityX = speed * toNote.getX() / distance;
+            velocityY = speed * toNote.getY() / distance;
+        }
+
+        drivetrain.setControl(driveRequest, updateDriveRequest);
+    }
 
-        drivetrain.setControl(driveRequest
-                .withRotationalRate(Units
-                        .degreesToRadians(pidRadianController.calculate(LimelightHelpers.getTX(Constants.Vision.LimelightPython.llPython)))));
+    private void updateDriveRequest(SwerveRequest.FieldCentricFacingPoint request) {
+        request.withTargetPoint(notePosition)
+                .withVelocityX(velocityX)
+                .withVelocityY(velocityY);
     }
 
     @Override
     public void end(boolean interrupted) {
-        drivetrain.setControl(new SwerveRequest.SwerveDriveBrake());
+        drivetrain.setControl(drivetrain.brakeRequest);
     }
 
     @Override
     public boolean isFinished() {
-        return false;
-        // return LimelightHelpers.getTX(Constants.Vision.llPython) == 0.00;
+        return trackLost;
     }
 }
@@ -0,0 +1,174 @@
+package frc.robot.commands.Swerve;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.pathplanner.lib.path.EventMarker;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.path.PathPlannerTrajectory;
+import com.pathplanner.lib.util.PathPlannerLogging;
+
+import edu.wpi.first.math.Pair;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Robot;
+import frc.robot.subsystems.Drivetrain.Drivetrain;
+import frc.robot.subsystems.Drivetrain.PreloadedTrajectory;
+import frc.robot.subsystems.Drivetrain.SwerveRequest;
+
+/**
+ * Follows a PathPlanner path with the {@link SwerveRequest.FollowTrajectory}
+ * request, which closes the loop on the odometry thread.
+ * <p>
+ * This does the parts of PathPlanner's FollowPathCommand that don't need to
+ * run every odometry update: flipping the path for the red alliance,
+ * replanning it if we don't start on it, and running the event markers.
+ */
+public class FollowPath extends Command {
+    /* Same thresholds PathPlanner uses to decide the robot isn't on the start of the path */
+    private static final double kInitialReplanningDistanceMeters = 0.25;
+    private static final double kOnHeadingSpeedMetersPerSecond = 0.25;
+    private static final double kOnHeadingToleranceDegrees = 30;
+    /* Paths that end slower than this stop the robot when they're done */
+    private static final double kStopEndVelocityMetersPerSecond = 0.1;
+
+    private final Drivetrain drivetrain;
+    private final PathPlannerPath originalPath;
+
+    private final SwerveRequest.FollowTrajectory followRequest = new SwerveRequest.FollowTrajectory();
+    private final SwerveRequest.ApplyChassisSpeeds stopRequest = new SwerveRequest.ApplyChassisSpeeds();
+    private final Consumer<SwerveRequest.FollowTrajectory> updateFollowRequest = this::updateFollowRequest;
+
+    private final Timer timer = new Timer();
+    private PathPlannerTrajectory trajectory;
+    private PreloadedTrajectory preloadedTrajectory;
+
+    private final List<Pair<Double, Command>> untriggeredEvents = new ArrayList<>();
+    private final Map<Command, Boolean> currentEventCommands = new HashMap<>();
+
+    /**
+     * Command to follow a PathPlanner path
+     *
+     * @param path the path to follow, from the blue alliance side
+     */
+    public FollowPath(PathPlannerPath path) {
+        drivetrain = Drivetrain.getInstance();
+        originalPath = path;
+
+        this.addRequirements(drivetrain);
+        for (EventMarker marker : path.getEventMarkers()) {
+            var requirements = marker.getCommand().getRequirements();
+            if (requirements.contains(drivetrain)) {
+                throw new IllegalArgumentException(
+                        "Events that are triggered during path following cannot require the drive subsystem");
+            }
+            this.m_requirements.addAll(requirements);
+        }
+
+        this.setName("Follow Path");
+    }
+
+    @Override
+    public void initialize() {
+        PathPlannerPath path = originalPath;
+        if (Robot.isRed() && !path.preventFlipping) {
+            path = path.flipPath();
+        }
+
+        Pose2d currentPose = drivetrain.getPose();
+        ChassisSpeeds currentSpeeds = drivetrain.getCurrentRobotChassisSpeeds();
+
+        /* Replan from where we are if we aren't sitting on the start of the path */
+        ChassisSpeeds fieldSpeeds = ChassisSpeeds.fromRobotRelativeSpeeds(currentSpeeds, currentPose.getRotation());
+        Rotation2d currentHeading = new Rotation2d(fieldSpeeds.vxMetersPerSecond, fieldSpeeds.vyMetersPerSecond);
+        Rotation2d targetHeading = path.getPoint(1).position.minus(path.getPoint(0).position).getAngle();
+        boolean onHeading = Math.hypot(currentSpeeds.vxMetersPerSecond,
+                currentSpeeds.vyMetersPerSecond) < kOnHeadingSpeedMetersPerSecond
+                || Math.abs(currentHeading.minus(targetHeading).getDegrees()) < kOnHeadingToleranceDegrees;
+        if (currentPose.getTranslation().getDistance(path.getPoint(0).position) > kInitialReplanningDistanceMeters
+                || !onHeading) {
+            path = path.replan(currentPose, currentSpeeds);
+        }
+
+        trajectory = path.getTrajectory(currentSpeeds, currentPose.getRotation());
+        preloadedTrajectory = new PreloadedTrajectory(trajectory);
+        PathPlannerLogging.logActivePath(path);
+
+        currentEventCommands.clear();
+        untriggeredEvents.clear();
+        untriggeredEvents.addAll(trajectory.getEventCommands());
+
+        drivetrain.setControl(followRequest, updateFollowRequest);
+        timer.restart();
+        drivetrain.postStatus("Following Path");
+    }
+
+    private void updateFollowRequest(SwerveRequest.FollowTrajectory request) {
+        request.withTrajectory(preloadedTrajectory);
+    }
+
+    @Override
+    public void execute() {
+        /* The drivetrain follows the path on its own, we just run the events along the way */
+        if (!untriggeredEvents.isEmpty() && timer.hasElapsed(untriggeredEvents.get(0).getFirst())) {
+            Pair<Double, Command> event = untriggeredEvents.remove(0);
+
+            /* Cancel anything already running that needs the same subsystems */
+            for (var runningCommand : currentEventCommands.entrySet()) {
+                if (!runningCommand.getValue()) {
+                    continue;
+                }
+                if (!Collections.disjoint(runningCommand.getKey().getRequirements(),
+                        event.getSecond().getRequirements())) {
+                    runningCommand.getKey().end(true);
+                    runningCommand.setValue(false);
+                }
+            }
+
+            event.getSecond().initialize();
+            currentEventCommands.put(event.getSecond(), true);
+        }
+
+        for (var runningCommand : currentEventCommands.entrySet()) {
+            if (!runningCommand.getValue()) {
+                continue;
+            }
+
+            runningCommand.getKey().execute();
+            if (runningCommand.getKey().isFinished()) {
+                runningCommand.getKey().end(false);
+                runningCommand.setValue(false);
+            }
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        return timer.hasElapsed(trajectory.getTotalTimeSeconds());
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        timer.stop();
+
+        /* Paths that end moving hand straight off to whatever comes next */
+        if (interrupted || Math.abs(trajectory.getEndState().velocityMps) < kStopEndVelocityMetersPerSecond) {
+            drivetrain.setControl(stopRequest);
+        }
+
+        for (var runningCommand : currentEventCommands.entrySet()) {
+            if (runningCommand.getValue()) {
+                runningCommand.getKey().end(true);
+            }
+        }
+
+        drivetrain.postStatus(interrupted ? "Path Interrupted" : "Path Finished");
+    }
+}
@@ -1,20 +1,32 @@
 package frc.robot.commands.Swerve;
 
-import com.pathplanner.lib.auto.AutoBuilder;
+import com.pathplanner.lib.commands.PathfindHolonomic;
 import com.pathplanner.lib.path.PathConstraints;
+import com.pathplanner.lib.util.GeometryUtil;
 
 import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Commands;
+import edu.wpi.first.wpilibj2.command.ConditionalCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import frc.robot.Constants;
+import frc.robot.Robot;
 import frc.robot.subsystems.Drivetrain.Drivetrain;
+import frc.robot.subsystems.Drivetrain.SwerveRequest;
 
 public class PathToPoint extends SequentialCommandGroup {
         private Drivetrain drivetrain;
         private Pose2d targetPose;
+        private final SwerveRequest.DriveToPose driveToPoseRequest = new SwerveRequest.DriveToPose();
 
         /**
          * Command to set the drivetrain to a specific position on the field while
          * avoiding field obstacles
+         * <p>
+         * Pathfinding only gets the robot close, once it's within
+         * {@link Constants.AutoConstants#kDriveToPoseHandoffRadiusMeters} of the target
+         * (or if it starts there) the drivetrain drives straight onto the target at
+         * the odometry rate with {@link SwerveRequest.DriveToPose}
          * 
          * @param targetPose the position that the robot should move to
          */
@@ -26,15 +38,47 @@ public class PathToPoint extends SequentialCommandGroup {
                 this.setName("PathToPoint");
                 this.addRequirements(drivetrain);
 
+                /*
+                 * AutoBuilder is configured to follow paths on the odometry thread, which
+                 * can't pathfind, so build the pathfinding command ourselves
+                 */
                 this.addCommands(
-                                AutoBuilder.pathfindToPoseFlipped(
-                                                this.targetPose,
-                                                new PathConstraints(
-                                                                Constants.AutoConstants.AutoSpeeds.kMaxSpeedMetersPerSecond,
-                                                                Constants.AutoConstants.AutoSpeeds.kMaxAccelerationMetersPerSecondSquared,
-                                                                Constants.AutoConstants.AutoSpeeds.kMaxAngularSpeedRadiansPerSecond,
-                                                                Constants.AutoConstants.AutoSpeeds.kMaxAngularAccelerationRadiansPerSecondSquared),
-                                                0.0,
-                                                0.0));
+                                new ConditionalCommand(
+                                                driveTo(GeometryUtil.flipFieldPose(this.targetPose)),
+                                                driveTo(this.targetPose),
+                                                Robot::isRed));
+        }
+
+        private Command driveTo(Pose2d pose) {
+                return pathfindTo(pose)
+                                .until(() -> isNear(pose))
+                                .unless(() -> isNear(pose))
+                                .andThen(
+                                                Commands.runOnce(() -> drivetrain.setControl(driveToPoseRequest,
+                                                                request -> request.withTargetPose(pose).withRestart())),
+                                                Commands.waitUntil(driveToPoseRequest::isAtTarget));
+        }
+
+        private boolean isNear(Pose2d pose) {
+                return drivetrain.getPose().getTranslation().getDistance(
+                                pose.getTranslation()) < Constants.AutoConstants.kDriveToPoseHandoffRadiusMeters;
+        }
+
+        private Command pathfindTo(Pose2d pose) {
+                return new PathfindHolonomic(
+                                pose,
+                                new PathConstraints(
+                                                Constants.AutoConstants.AutoSpeeds.kMaxSpeedMetersPerSecond,
+                                                Constants.AutoConstants.AutoSpeeds.kMaxAccelerationMetersPerSecondSquared,
+                                                Constants.AutoConstants.AutoSpeeds.kMaxAngularSpeedRadiansPerSecond,
+                                                Constants.AutoConstants.AutoSpeeds.kMaxAngularAccelerationRadiansPerSecondSquared),
+                                0.0,
+                                drivetrain::getPose,
+                                drivetrain::getCurrentRobotChassisSpeeds,
+                                (speeds) -> drivetrain.setControl(drivetrain.autoRequest,
+                                                request -> request.withSpeeds(speeds)),
+                                drivetrain.pathFollowerConfig,
+                                0.0,
+                                drivetrain);
         }
 }
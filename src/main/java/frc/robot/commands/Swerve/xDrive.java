@@ -5,12 +5,20 @@ import frc.robot.Constants;
 import frc.robot.subsystems.Drivetrain.Drivetrain;
 import frc.robot.subsystems.Drivetrain.SwerveRequest;
 
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 public class xDrive extends Command {
     private final Drivetrain drivetrain;
     private Supplier<Double> translateX, translateY, rotate, howManyBabiesOnBoard;
-    private SwerveRequest swerveRequest;
+    /* Built once and updated every loop, so driving doesn't make garbage */
+    private final SwerveRequest.FieldCentric driveRequest = new SwerveRequest.FieldCentric()
+            .withRotationalDeadband(Constants.OperatorConstants.Driver.rotationalDeadband)
+            .withDeadband(Constants.OperatorConstants.Driver.deadband);
+    private final Consumer<SwerveRequest.FieldCentric> updateDriveRequest = this::updateDriveRequest;
+
+    /* Inputs read this loop, handed to the request while the drivetrain is locked */
+    private double velocityX, velocityY, rotationalRate, slowDown;
 
     /**
      * Command to set the drivetrain to brake mode when not moving
@@ -40,29 +48,34 @@ public class xDrive extends Command {
 
     @Override
     public void execute() {
-        if (Math.abs(translateX.get()) <= Constants.OperatorConstants.Driver.kDeadzone
-                && Math.abs(translateY.get()) <= Constants.OperatorConstants.Driver.kDeadzone
-                && Math.abs(rotate.get()) <= Constants.OperatorConstants.Driver.kDeadzone) {
+        double x = translateX.get();
+        double y = translateY.get();
+        double omega = rotate.get();
+
+        if (Math.abs(x) <= Constants.OperatorConstants.Driver.kDeadzone
+                && Math.abs(y) <= Constants.OperatorConstants.Driver.kDeadzone
+                && Math.abs(omega) <= Constants.OperatorConstants.Driver.kDeadzone) {
 
-            swerveRequest = new SwerveRequest.SwerveDriveBrake();
+            drivetrain.setControl(drivetrain.brakeRequest);
         } else {
-            swerveRequest = new SwerveRequest.FieldCentric()
-                    .withVelocityX(-translateX.get()
-                            * Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond)
-                    .withVelocityY(-translateY.get()
-                            * Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond)
-                    .withRotationalRate(-rotate.get()
-                            * Constants.SwerveConstants.SwerveSpeeds.kMaxAngularSpeedRadiansPerSecond)
-                    .withSlowDown(1 - howManyBabiesOnBoard.get())
-                    .withRotationalDeadband(Constants.OperatorConstants.Driver.rotationalDeadband)
-                    .withDeadband(Constants.OperatorConstants.Driver.deadband);
+            velocityX = -x * Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond;
+            velocityY = -y * Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond;
+            rotationalRate = -omega * Constants.SwerveConstants.SwerveSpeeds.kMaxAngularSpeedRadiansPerSecond;
+            slowDown = 1 - howManyBabiesOnBoard.get();
+
+            drivetrain.setControl(driveRequest, updateDriveRequest);
         }
+    }
 
-        drivetrain.setControl(swerveRequest);
+    private void updateDriveRequest(SwerveRequest.FieldCentric request) {
+        request.withVelocityX(velocityX)
+                .withVelocityY(velocityY)
+                .withRotationalRate(rotationalRate)
+                .withSlowDown(slowDown);
     }
 
     @Override
     public void end(boolean interrupted) {
-        drivetrain.setControl(new SwerveRequest.SwerveDriveBrake());
+        drivetrain.setControl(drivetrain.brakeRequest);
     }
 }
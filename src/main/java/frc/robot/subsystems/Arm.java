@@ -1,5 +1,7 @@
 package frc.robot.subsystems;
 
+import java.io.IOException;
+
 import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.configs.MotionMagicConfigs;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
@@ -15,6 +17,8 @@ import com.ctre.phoenix6.signals.StaticFeedforwardSignValue;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.util.Units;
+import edu.wpi.first.networktables.BooleanEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.smartdashboard.Mechanism2d;
 import edu.wpi.first.wpilibj.smartdashboard.MechanismLigament2d;
@@ -28,6 +32,7 @@ import frc.robot.Constants;
 import frc.robot.Robot;
 import frc.robot.commands.ArmCommands.FineAdjust;
 import frc.robot.subsystems.Drivetrain.Drivetrain;
+import frc.robot.subsystems.Drivetrain.SwerveDrivetrain.SwerveDriveState;
 
 /**
  * To zero: first put the arm in a position where the shooter is parallel (the
@@ -51,11 +56,24 @@ public class Arm extends SubsystemBase {
     private MechanismLigament2d simShooterLigament, simShooterExtension, simElbowLigament;
 
     private Alert armIsBrokenAlert = new Alert("The arm has failed!", AlertType.ERROR);
+    private Alert shotTableAlert = new Alert("", AlertType.WARNING);
+
+    /* Swapped out whole when the table is reloaded, so whoever is reading it never sees half a table */
+    private volatile ShotTable shotTable;
+    /* Only used from the main loop */
+    private final ShotSolver shotSolver = new ShotSolver();
+    private final BooleanEntry reloadShotTable = NetworkTableInstance.getDefault()
+            .getBooleanTopic("/SmartDashboard/Arm/Reload Shot Table").getEntry(false);
 
     @Override
     public void periodic() {
         updateArmPosition();
 
+        if (reloadShotTable.get()) {
+            reloadShotTable.set(false);
+            reloadShotTable();
+        }
+
         SmartDashboard.putBoolean("Arm/At Setpoint", atSetpoint());
         SmartDashboard.putNumber("Arm/Arm Position", getArmPosition());
         SmartDashboard.putNumber("Arm/Velocity", getVelocity());
@@ -116,6 +134,9 @@ public class Arm extends SubsystemBase {
 
         Music.getInstance().addFalcon(armMotor);
 
+        reloadShotTable.set(false);
+        reloadShotTable();
+
         double shooterHeightInches = 22;
         double shooterLengthInches = 9.75;
         double shooterExtensionInches = 7.5;
@@ -301,7 +322,84 @@ public class Arm extends SubsystemBase {
      *         to shoot into the speaker
      */
     public double calculateArmSetpoint() {
-        return calculateArmSetpointExpo();
+        return calculateArmSetpointTable();
+    }
+
+    /**
+     * Calculates the arm setpoint based on the current robot pose by looking
+     * it up in the shot table, leading the speaker by the note's time of flight
+     * when the robot is moving
+     * 
+     * @return the desired arm angle
+     *         <h1>(in degrees)</h1>
+     *         to shoot into the speaker
+     */
+    public double calculateArmSetpointTable() {
+        Pose2d speakerPose = Robot.isRed() ? Constants.Vision.SpeakerPoses.kSpeakerPoseRed
+                : Constants.Vision.SpeakerPoses.kSpeakerPoseBlue;
+
+        /* Swerve Pose calculated in meters, aimed at where the speaker will be once the note gets there */
+        SwerveDriveState state = Drivetrain.getInstance().getState();
+        double heading = state.Pose.getRotation().getRadians();
+        double cos = Math.cos(heading);
+        double sin = Math.sin(heading);
+        shotSolver.solve(state.Pose.getX(), state.Pose.getY(),
+                state.speeds.vxMetersPerSecond * cos - state.speeds.vyMetersPerSecond * sin,
+                state.speeds.vxMetersPerSecond * sin + state.speeds.vyMetersPerSecond * cos,
+                speakerPose.getX(), speakerPose.getY());
+        double distToSpeakerMeters = shotSolver.getShotTableDistanceMeters();
+
+        double angleToSpeaker = shotSolver.getArmAngle(shotTable);
+
+        SmartDashboard.putNumber("Arm/Distance From Speaker (Meters)",
+                distToSpeakerMeters);
+        SmartDashboard.putNumber("Arm/Distance From Speaker (Inches)",
+                Units.metersToInches(distToSpeakerMeters));
+
+        /* Make sure that we dont accidentally return a stupid value */
+        if (validSetpoint(angleToSpeaker)) {
+            return angleToSpeaker;
+        } else if (angleToSpeaker < Constants.ArmConstants.SetPoints.kSubwoofer) {
+            return Constants.ArmConstants.SetPoints.kSubwoofer;
+        } else {
+            return getArmPosition();
+        }
+    }
+
+    /**
+     * Loads the shot table from the deploy directory again, so it can be
+     * retuned without a redeploy. If it can't be loaded the table in use is
+     * kept, or the expo regression is used if there isn't one yet.
+     * <p>
+     * Also done by setting Arm/Reload Shot Table on the dashboard.
+     */
+    public void reloadShotTable() {
+        try {
+            ShotTable table = ShotTable.loadFromDeploy();
+            shotTable = table;
+            shotTableAlert.set(false);
+            DataLogManager.log("Loaded the shot table, " + table.size() + " rows from "
+                    + table.getMinDistance() + " to " + table.getMaxDistance() + " meters");
+        } catch (IOException e) {
+            DataLogManager.log("Failed to load the shot table: " + e.getMessage());
+            if (shotTable == null) {
+                shotTable = ShotTable.sample(Arm::expoRegression, Constants.ArmConstants.kShotTableMinDistance,
+                        Constants.ArmConstants.kShotTableMaxDistance, Constants.ArmConstants.kShotTableSpacing);
+                shotTableAlert.setText("Shot table failed to load, using the expo regression");
+            } else {
+                shotTableAlert.setText("Shot table failed to reload, still using the old one");
+            }
+            shotTableAlert.set(true);
+        }
+    }
+
+    /**
+     * Gets the shot table the arm is aiming with.
+     * 
+     * @return the current shot table
+     */
+    public ShotTable getShotTable() {
+        return shotTable;
     }
 
     /**
@@ -335,9 +433,7 @@ public class Arm extends SubsystemBase {
 
         distToSpeakerMeters -= Units.inchesToMeters(15);
 
-        double angleToSpeaker = -(81.9311 * (Math.pow(0.7659, Units.metersToFeet(distToSpeakerMeters))) + 21.9503);
-
-        angleToSpeaker -= Constants.ArmConstants.shooterTrapezoidalOffset;
+        double angleToSpeaker = simpleStevenRegression(distToSpeakerMeters);
 
         // double angleToSpeaker = Constants.ArmConstants.Regression.a *
         // Math.pow(Units.metersToInches(distToSpeakerMeters),
@@ -387,12 +483,7 @@ public class Arm extends SubsystemBase {
 
         distToSpeakerMeters -= Units.inchesToMeters(15);
 
-        double angleToSpeaker = -((69.8879 * (Math.pow(0.79082, Units.metersToFeet(distToSpeakerMeters))))
-                + ((6.6172 * (Math.pow(10, 24))))
-                        * (Math.pow((8.5448 * (Math.pow(10, -15))), Units.metersToFeet(distToSpeakerMeters)))
-                + 21.3068);
-
-        angleToSpeaker -= Constants.ArmConstants.shooterTrapezoidalOffset;
+        double angleToSpeaker = stevenRegression(distToSpeakerMeters);
 
         SmartDashboard.putNumber("Arm/Distance From Speaker (Meters)",
                 distToSpeakerMeters);
@@ -446,8 +537,7 @@ public class Arm extends SubsystemBase {
 
         distToSpeakerMeters -= Units.inchesToMeters(15);
 
-        double angleToSpeaker = -108.295 * Math.pow(Units.metersToFeet(distToSpeakerMeters),
-                -0.325315) + 22.8515;
+        double angleToSpeaker = expoRegression(distToSpeakerMeters);
 
         // double angleToSpeaker = Constants.ArmConstants.Regression.a *
         // Math.pow(Units.metersToInches(distToSpeakerMeters),
@@ -506,14 +596,7 @@ public class Arm extends SubsystemBase {
                 Math.pow(speakerPose.getX() - currentPose.getX(), 2)
                         + Math.pow(SpeakerY - currentPose.getY(), 2));
 
-        double groundToShooterInches = 26 + (Units.metersToInches(distToSpeakerMeters) * (1 / 53.75));
-
-        /* ~1.3 meters */
-        double shooterToSpeakerBottomMouthMeters = Constants.Vision.SpeakerPoses.kSpeakerHeightMeters - Units
-                .inchesToMeters(groundToShooterInches);
-
-        double angleToSpeaker = Math.atan2(shooterToSpeakerBottomMouthMeters, distToSpeakerMeters);
-        angleToSpeaker = -Units.radiansToDegrees(angleToSpeaker);
+        double angleToSpeaker = trigModel(distToSpeakerMeters);
 
         SmartDashboard.putNumber("Arm/Distance From Speaker (Meters)",
                 distToSpeakerMeters);
@@ -528,6 +611,66 @@ public class Arm extends SubsystemBase {
         }
     }
 
+    /**
+     * The simple Steven regression on its own, with no pose lookups or
+     * dashboard output
+     * 
+     * @param distToSpeakerMeters distance from the speaker, already minus the 15
+     *                            inch offset
+     * @return the arm angle in degrees, before it is checked against the limits
+     */
+    public static double simpleStevenRegression(double distToSpeakerMeters) {
+        double angleToSpeaker = -(81.9311 * (Math.pow(0.7659, Units.metersToFeet(distToSpeakerMeters))) + 21.9503);
+
+        return angleToSpeaker - Constants.ArmConstants.shooterTrapezoidalOffset;
+    }
+
+    /**
+     * The Steven regression on its own, with no pose lookups or dashboard output
+     * 
+     * @param distToSpeakerMeters distance from the speaker, already minus the 15
+     *                            inch offset
+     * @return the arm angle in degrees, before it is checked against the limits
+     */
+    public static double stevenRegression(double distToSpeakerMeters) {
+        double angleToSpeaker = -((69.8879 * (Math.pow(0.79082, Units.metersToFeet(distToSpeakerMeters))))
+                + ((6.6172 * (Math.pow(10, 24))))
+                        * (Math.pow((8.5448 * (Math.pow(10, -15))), Units.metersToFeet(distToSpeakerMeters)))
+                + 21.3068);
+
+        return angleToSpeaker - Constants.ArmConstants.shooterTrapezoidalOffset;
+    }
+
+    /**
+     * The exponential regression on its own, with no pose lookups or dashboard
+     * output
+     * 
+     * @param distToSpeakerMeters distance from the speaker, already minus the 15
+     *                            inch offset
+     * @return the arm angle in degrees, before it is checked against the limits
+     */
+    public static double expoRegression(double distToSpeakerMeters) {
+        return -108.295 * Math.pow(Units.metersToFeet(distToSpeakerMeters),
+                -0.325315) + 22.8515;
+    }
+
+    /**
+     * The trigonometric model on its own, with no pose lookups or dashboard output
+     * 
+     * @param distToSpeakerMeters distance from the speaker
+     * @return the arm angle in degrees, before it is checked against the limits
+     */
+    public static double trigModel(double distToSpeakerMeters) {
+        double groundToShooterInches = 26 + (Units.metersToInches(distToSpeakerMeters) * (1 / 53.75));
+
+        /* ~1.3 meters */
+        double shooterToSpeakerBottomMouthMeters = Constants.Vision.SpeakerPoses.kSpeakerHeightMeters - Units
+                .inchesToMeters(groundToShooterInches);
+
+        double angleToSpeaker = Math.atan2(shooterToSpeakerBottomMouthMeters, distToSpeakerMeters);
+        return -Units.radiansToDegrees(angleToSpeaker);
+    }
+
     public double getArmPositionFromExtension(double extension) {
         return extension - Constants.ArmConstants.shooterOffset;
     }
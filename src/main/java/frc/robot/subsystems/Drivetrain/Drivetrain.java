@@ -4,6 +4,7 @@ import static edu.wpi.first.units.Units.Volts;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.DoubleConsumer;
 import java.util.function.Supplier;
 
 import com.ctre.phoenix6.SignalLogger;
@@ -18,12 +19,18 @@ import com.pathplanner.lib.util.ReplanningConfig;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.apriltag.AprilTagFields;
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
-import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.Notifier;
 import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.RoboRioSim;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.Subsystem;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
@@ -32,9 +39,15 @@ import frc.robot.Constants.SwerveConstants;
 import frc.robot.Constants.Vision;
 import frc.robot.Constants.Vision.LimelightFront;
 import frc.robot.Constants.Vision.LimelightRear;
+import frc.robot.HeadlessRunner;
 import frc.robot.Robot;
-import frc.robot.Vision.LimelightHelpers;
-import frc.robot.Vision.LimelightHelpers.PoseEstimate;
+import frc.robot.commands.Swerve.FollowPath;
+import frc.robot.Vision.CameraMount;
+import frc.robot.Vision.LimelightClient;
+import frc.robot.Vision.NoteTracker;
+import frc.robot.Vision.SimLimelight;
+import frc.robot.Vision.VisionBudget;
+import frc.robot.Vision.VisionThread;
 import frc.robot.subsystems.Music;
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
@@ -53,55 +66,74 @@ public class Drivetrain extends SwerveDrivetrain implements Subsystem {
     private Field2d mField;
 
     public final SwerveRequest.ApplyChassisSpeeds autoRequest = new SwerveRequest.ApplyChassisSpeeds();
+    /* Still used by the pathfinding commands, which follow their paths on the main loop */
+    public final HolonomicPathFollowerConfig pathFollowerConfig = new HolonomicPathFollowerConfig(
+            Constants.AutoConstants.translationPID,
+            Constants.AutoConstants.rotationPID,
+            SwerveConstants.SwerveSpeeds.kMaxModuleSpeed,
+            Constants.SwerveConstants.RobotMeasurements.kDriveBaseRadius,
+            new ReplanningConfig(true, true, 1, 0.25));
+    /* Null unless there are Limelights, real or simulated, to listen to */
+    private VisionThread mVisionThread = null;
+    private VisionBudget mVisionBudget = null;
+    /* When vision last moved the pose, so the budget knows how far to trust it */
+    private long mLastVisionFusedCount = 0;
+    private double mLastVisionFusedTime = Double.NEGATIVE_INFINITY;
+    /* Null unless vision is being simulated */
+    private SimLimelight[] mSimLimelights = null;
+    private long mVisionFusionsSkippedAtReset = 0;
+    private final RobotOrientationPublisher mOrientationPublisher = new RobotOrientationPublisher(
+            Constants.Vision.kOrientationPublishRateHz,
+            Constants.Vision.LimelightFront.llAprilTag,
+            Constants.Vision.LimelightRear.llAprilTagRear);
+    private final NoteTracker mNoteTracker = new NoteTracker(
+            LimelightClient.getInstance(Constants.Vision.LimelightPython.llPython), this);
+    /* Shared requests that never change, so nothing has to allocate one to stop or idle the drivetrain */
+    public final SwerveRequest.SwerveDriveBrake brakeRequest = new SwerveRequest.SwerveDriveBrake();
+    public final SwerveRequest.Idle idleRequest = new SwerveRequest.Idle();
 
     @Override
     public void periodic() {
         super.setOperatorPerspectiveForward(Rotation2d.fromDegrees((Robot.isRed() ? 180 : 0)));
 
-        if (Constants.Vision.UseLimelight && Robot.isReal()) {
-            LimelightHelpers.SetRobotOrientation(Constants.Vision.LimelightFront.llAprilTag,
-                    super.m_odometry.getEstimatedPosition().getRotation().getDegrees(), 0, 0, 0, 0, 0);
-
-            LimelightHelpers.SetRobotOrientation(Constants.Vision.LimelightRear.llAprilTagRear,
-                    super.m_odometry.getEstimatedPosition().getRotation().getDegrees(), 0, 0, 0, 0, 0);
-
-            PoseEstimate front, back;
-
-            if (DriverStation.isDisabled()
-                    || LimelightHelpers.getTA(Constants.Vision.LimelightFront.llAprilTag) > LimelightFront.MegaTag1AreaThreshold
-                    || Math.abs(super.getPigeon2().getAngularVelocityZWorld().getValueAsDouble()) < LimelightFront.MegatTag2AngularVelocityThreshold) {
-                front = LimelightHelpers.getBotPoseEstimate_wpiBlue(Constants.Vision.LimelightFront.llAprilTag);
-            }
-
-            else {
-                front = LimelightHelpers
-                        .getBotPoseEstimate_wpiBlue_MegaTag2(Constants.Vision.LimelightFront.llAprilTag);
+        if (mVisionThread != null) {
+            /* Vision is fused on its own thread as frames come in, we just show what it used */
+            Pose2d front = mVisionThread.getLastAcceptedPose(0);
+            if (front != null) {
+                mField.getObject("Front LL pose").setPose(front);
             }
-
-            if (DriverStation.isDisabled()
-                    || LimelightHelpers.getTA(Constants.Vision.LimelightRear.llAprilTagRear) > LimelightRear.MegaTag1AreaThreshold
-                    || Math.abs(super.getPigeon2().getAngularVelocityZWorld().getValueAsDouble()) < LimelightRear.MegatTag2AngularVelocityThreshold) {
-                back = LimelightHelpers.getBotPoseEstimate_wpiBlue(Constants.Vision.LimelightRear.llAprilTagRear);
-            }
-
-            else {
-                back = LimelightHelpers
-                        .getBotPoseEstimate_wpiBlue_MegaTag2(Constants.Vision.LimelightRear.llAprilTagRear);
+            Pose2d rear = mVisionThread.getLastAcceptedPose(1);
+            if (rear != null) {
+                mField.getObject("Rear LL pose").setPose(rear);
             }
+        }
 
-            if (front.tagCount > 1
-                    && LimelightHelpers.getTA(Constants.Vision.LimelightFront.llAprilTag) > LimelightFront.MegaTag2AreaThreshold) {
-                // if (front.tagCount >= 1) {
-                this.addVisionMeasurement(front.pose, front.timestampSeconds);
-                mField.getObject("Front LL pose").setPose(front.pose);
+        if (mVisionBudget != null) {
+            SwerveDriveState state = getState();
+            double heading = state.Pose.getRotation().getRadians();
+            double cos = Math.cos(heading);
+            double sin = Math.sin(heading);
+            ChassisSpeeds speeds = state.speeds;
+            double now = Timer.getFPGATimestamp();
+            long fused = getVisionMeasurementsFused();
+            if (fused != mLastVisionFusedCount) {
+                mLastVisionFusedCount = fused;
+                mLastVisionFusedTime = now;
             }
+            /* Measured speeds are robot relative, the budget wants them on the field */
+            mVisionBudget.update(state.Pose.getX(), state.Pose.getY(), heading,
+                    speeds.vxMetersPerSecond * cos - speeds.vyMetersPerSecond * sin,
+                    speeds.vxMetersPerSecond * sin + speeds.vyMetersPerSecond * cos,
+                    speeds.omegaRadiansPerSecond, Robot.isRed(),
+                    now - mLastVisionFusedTime > Vision.kCropPoseUncertainSeconds);
+        }
 
-            if (back.tagCount > 1
-                    && LimelightHelpers.getTA(Constants.Vision.LimelightRear.llAprilTagRear) > LimelightRear.MegaTag2AreaThreshold) {
-                // if (back.tagCount >= 1) {
-                this.addVisionMeasurement(back.pose, back.timestampSeconds);
-                mField.getObject("Rear LL pose").setPose(back.pose);
-            }
+        mNoteTracker.update();
+        Translation2d note = mNoteTracker.getTargetNote();
+        if (note != null) {
+            mField.getObject("Note").setPose(new Pose2d(note, new Rotation2d()));
+        } else {
+            mField.getObject("Note").setPoses();
         }
 
         SmartDashboard.putBoolean("Swerve/Is In Range", isInRangeOfTarget());
@@ -109,6 +141,72 @@ public class Drivetrain extends SwerveDrivetrain implements Subsystem {
                 getPose().getRotation().getDegrees()));
     }
 
+    /**
+     * Gets the thread fusing the Limelight pose estimates.
+     *
+     * @return The vision thread, or null if there are no Limelights to listen to
+     */
+    public VisionThread getVisionThread() {
+        return mVisionThread;
+    }
+
+    /**
+     * Gets what crops and tag filters the AprilTag Limelights are being sent.
+     *
+     * @return The vision budget, or null if there are no Limelights to send to
+     */
+    public VisionBudget getVisionBudget() {
+        return mVisionBudget;
+    }
+
+    /**
+     * Gets the number of vision measurements that were never fused into the
+     * pose estimator on their own since the stats were last reset, because
+     * they were duplicates, failed the prefilter, or were merged into another
+     * measurement from the same instant. Each one is a correction the
+     * estimator didn't have to work out and store.
+     *
+     * @return Vision fusions skipped
+     */
+    public long getVisionFusionsSkipped() {
+        return getTotalVisionFusionsSkipped() - mVisionFusionsSkippedAtReset;
+    }
+
+    /**
+     * Starts counting skipped vision fusions from zero, such as at the start
+     * of a match.
+     */
+    public void resetVisionStats() {
+        mVisionFusionsSkippedAtReset = getTotalVisionFusionsSkipped();
+    }
+
+    private long getTotalVisionFusionsSkipped() {
+        long saved = getVisionMeasurementsMerged();
+        if (mVisionThread != null) {
+            saved += mVisionThread.getFramesDuplicate() + mVisionThread.getFramesRejected();
+        }
+        return saved;
+    }
+
+    /**
+     * Gets the tracker keeping track of the notes the note camera has seen.
+     *
+     * @return The note tracker
+     */
+    public NoteTracker getNoteTracker() {
+        return mNoteTracker;
+    }
+
+    /**
+     * Gets the publisher sending the yaw to the Limelights, for its yaw age
+     * telemetry.
+     *
+     * @return The orientation publisher
+     */
+    public RobotOrientationPublisher getOrientationPublisher() {
+        return mOrientationPublisher;
+    }
+
     private final SwerveRequest.SysIdSwerveTranslation TranslationCharacterization = new SwerveRequest.SysIdSwerveTranslation();
     private final SwerveRequest.SysIdSwerveRotation RotationCharacterization = new SwerveRequest.SysIdSwerveRotation();
     private final SwerveRequest.SysIdSwerveSteerGains SteerCharacterization = new SwerveRequest.SysIdSwerveSteerGains();
@@ -121,7 +219,7 @@ public class Drivetrain extends SwerveDrivetrain implements Subsystem {
                     null,
                     (state) -> SignalLogger.writeString("state", state.toString())),
             new SysIdRoutine.Mechanism(
-                    (volts) -> setControl(TranslationCharacterization.withVolts(volts)),
+                    (volts) -> setControl(TranslationCharacterization, request -> request.withVolts(volts)),
                     null,
                     this));
 
@@ -132,7 +230,7 @@ public class Drivetrain extends SwerveDrivetrain implements Subsystem {
                     null,
                     (state) -> SignalLogger.writeString("state", state.toString())),
             new SysIdRoutine.Mechanism(
-                    (volts) -> setControl(RotationCharacterization.withVolts(volts)),
+                    (volts) -> setControl(RotationCharacterization, request -> request.withVolts(volts)),
                     null,
                     this));
     private final SysIdRoutine SysIdRoutineSteer = new SysIdRoutine(
@@ -142,7 +240,7 @@ public class Drivetrain extends SwerveDrivetrain implements Subsystem {
                     null,
                     (state) -> SignalLogger.writeString("state", state.toString())),
             new SysIdRoutine.Mechanism(
-                    (volts) -> setControl(SteerCharacterization.withVolts(volts)),
+                    (volts) -> setControl(SteerCharacterization, request -> request.withVolts(volts)),
                     null,
                     this));
 
@@ -159,6 +257,28 @@ public class Drivetrain extends SwerveDrivetrain implements Subsystem {
 
         if (Constants.Vision.UseLimelight) {
             super.setVisionMeasurementStdDevs(Constants.Vision.kPrecisionInMyVision);
+
+            CameraMount front = new CameraMount(LimelightFront.llAprilTag, LimelightFront.kCameraForwardMeters,
+                    LimelightFront.kCameraLeftMeters, LimelightFront.kCameraHeightMeters,
+                    LimelightFront.kCameraPitchDegrees, LimelightFront.kCameraYawDegrees,
+                    Vision.kLimelightHorizontalFOVDegrees, Vision.kLimelightVerticalFOVDegrees);
+            CameraMount rear = new CameraMount(LimelightRear.llAprilTagRear, LimelightRear.kCameraForwardMeters,
+                    LimelightRear.kCameraLeftMeters, LimelightRear.kCameraHeightMeters,
+                    LimelightRear.kCameraPitchDegrees, LimelightRear.kCameraYawDegrees,
+                    Vision.kLimelightHorizontalFOVDegrees, Vision.kLimelightVerticalFOVDegrees);
+            AprilTagFieldLayout layout = AprilTagFields.k2024Crescendo.loadAprilTagLayoutField();
+
+            if (Robot.isReal()) {
+                super.registerOrientationPublisher(mOrientationPublisher);
+                startVision(layout, front, rear, mOrientationPublisher::recordYawAge);
+            } else if (Vision.SimCameras.kEnabled) {
+                /* The sim cameras see the field from where the sim robot really is, on the sim thread */
+                mSimLimelights = new SimLimelight[] {
+                        new SimLimelight(NetworkTableInstance.getDefault(), layout, front, 1),
+                        new SimLimelight(NetworkTableInstance.getDefault(), layout, rear, 2)
+                };
+                startVision(layout, front, rear, null);
+            }
         }
 
         configurePathPlanner();
@@ -182,20 +302,31 @@ public class Drivetrain extends SwerveDrivetrain implements Subsystem {
         postStatus("Idle");
     }
 
+    private void startVision(AprilTagFieldLayout layout, CameraMount front, CameraMount rear,
+            DoubleConsumer yawAgeRecorder) {
+        mVisionThread = new VisionThread(NetworkTableInstance.getDefault(),
+                this::addVisionMeasurement,
+                () -> Math.toDegrees(getState().speeds.omegaRadiansPerSecond),
+                yawAgeRecorder,
+                new VisionThread.Camera(LimelightFront.llAprilTag, LimelightFront.MegaTag1AreaThreshold,
+                        LimelightFront.MegaTag2AreaThreshold, LimelightFront.MegatTag2AngularVelocityThreshold),
+                new VisionThread.Camera(LimelightRear.llAprilTagRear, LimelightRear.MegaTag1AreaThreshold,
+                        LimelightRear.MegaTag2AreaThreshold, LimelightRear.MegatTag2AngularVelocityThreshold));
+        /* The stepped sim runs vision in line, so it stays in lockstep with the sim clock */
+        if (!HeadlessRunner.isHeadless()) {
+            mVisionThread.start();
+        }
+
+        mVisionBudget = new VisionBudget(NetworkTableInstance.getDefault(), layout, front, rear);
+    }
+
     private void configurePathPlanner() {
-        AutoBuilder.configureHolonomic(
-                () -> this.getState().Pose,
+        /* Paths are followed on the odometry thread, see FollowPath */
+        AutoBuilder.configureCustom(
+                FollowPath::new,
+                this::getPose,
                 this::seedFieldRelative,
-                this::getCurrentRobotChassisSpeeds,
-                (speeds) -> this.setControl(autoRequest.withSpeeds(speeds)),
-                new HolonomicPathFollowerConfig(
-                        Constants.AutoConstants.translationPID,
-                        Constants.AutoConstants.rotationPID,
-                        SwerveConstants.SwerveSpeeds.kMaxModuleSpeed,
-                        Constants.SwerveConstants.RobotMeasurements.kDriveBaseRadius,
-                        new ReplanningConfig(true, true, 1, 0.25)),
-                Robot::isRed,
-                this);
+                Robot::isRed);
 
         // dont really care about the target pose
         // PathPlannerLogging.setLogTargetPoseCallback((pose) -> getField()
@@ -208,6 +339,17 @@ public class Drivetrain extends SwerveDrivetrain implements Subsystem {
         return run(() -> this.setControl(requestSupplier.get()));
     }
 
+    /**
+     * Applies the same request every loop. Unlike {@link #applyRequest(Supplier)},
+     * the request is only built once, when the command is.
+     *
+     * @param request Request to apply
+     * @return Command that applies the request until it's interrupted
+     */
+    public Command applyRequest(SwerveRequest request) {
+        return run(() -> this.setControl(request));
+    }
+
     /*
      * Both the sysid commands are specific to one particular sysid routine, change
      * which one you're trying to characterize
@@ -220,7 +362,21 @@ public class Drivetrain extends SwerveDrivetrain implements Subsystem {
         return RoutineToApply.dynamic(direction);
     }
 
+    @Override
+    public void simulationPeriodic() {
+        /* Show where the simulated robot really is next to where odometry thinks it is */
+        Pose2d truth = getSimTruthPose();
+        mField.getObject("Ground Truth").setPose(truth);
+        SmartDashboard.putNumber("Swerve/Odometry Error (Meters)",
+                truth.getTranslation().getDistance(getPose().getTranslation()));
+    }
+
     private void startSimThread() {
+        if (HeadlessRunner.isHeadless()) {
+            startSteppedSimThread();
+            return;
+        }
+
         m_lastSimTime = Utils.getCurrentTimeSeconds();
 
         /* Run simulation at a faster rate so PID gains behave more reasonably */
@@ -231,10 +387,56 @@ public class Drivetrain extends SwerveDrivetrain implements Subsystem {
 
             /* use the measured time delta, get battery voltage from WPILib */
             updateSimState(deltaTime, RobotController.getBatteryVoltage());
+            /* The drivetrain is what sags the battery */
+            RoboRioSim.setVInVoltage(getSimBatteryVoltage());
+            updateSimLimelights();
         });
         m_simNotifier.startPeriodic(kSimLoopPeriod);
     }
 
+    /**
+     * Runs the sim off the paused sim clock for the headless runner. Each tick
+     * moves the simulated modules by exactly one period and then runs odometry
+     * and the current request in line, so runs are deterministic no matter how
+     * fast they are stepped.
+     */
+    private void startSteppedSimThread() {
+        useSteppedOdometry();
+
+        m_simNotifier = new Notifier(() -> {
+            updateSimState(kSimLoopPeriod, RobotController.getBatteryVoltage());
+            RoboRioSim.setVInVoltage(getSimBatteryVoltage());
+            if (updateSimLimelights()) {
+                mVisionThread.processPending();
+            }
+            stepOdometry();
+        });
+        m_simNotifier.setName("Stepped Swerve Sim");
+        m_simNotifier.startPeriodic(kSimLoopPeriod);
+    }
+
+    /* Lets the sim cameras capture and publish, returns whether there are any */
+    private boolean updateSimLimelights() {
+        if (mSimLimelights == null) {
+            return false;
+        }
+        double now = Timer.getFPGATimestamp();
+        Pose2d truth = getSimTruthPose();
+        for (SimLimelight camera : mSimLimelights) {
+            camera.update(now, truth);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the simulated AprilTag Limelights.
+     *
+     * @return The sim cameras, front then rear, or null if vision isn't being simulated
+     */
+    public SimLimelight[] getSimLimelights() {
+        return mSimLimelights;
+    }
+
     public ChassisSpeeds getCurrentRobotChassisSpeeds() {
         return m_kinematics.toChassisSpeeds(getState().ModuleStates);
     }
@@ -259,11 +461,6 @@ public class Drivetrain extends SwerveDrivetrain implements Subsystem {
         return mField;
     }
 
-    // ankur is mine hehehehhehehehehehehhehe
-    public Pose2d getPose() {
-        return getState().Pose;
-    }
-
     public Constants.SwerveConstants.Target whatAmILookingAt() {
         double rotation = getPose().getRotation().getDegrees();
         if (rotation > -60 && rotation < -120) {
@@ -293,22 +490,19 @@ public class Drivetrain extends SwerveDrivetrain implements Subsystem {
         return Math.abs(distToSpeakerMeters);
     }
 
+    /**
+     * The heading that points the back of the robot (the shooter) at the
+     * speaker, the same heading {@link SwerveRequest.FieldCentricFacingPoint}
+     * aims for in {@link frc.robot.commands.Swerve.AlignToSpeaker}.
+     *
+     * @return the heading in degrees
+     */
     public double angleToSpeaker() {
-        if (Robot.isRed()) {
-            return Rotation2d
-                    .fromRadians(Math.atan2(
-                            getPose().getY() - Constants.Vision.SpeakerPoses.kSpeakerPoseRed.getY(),
-                            getPose().getX() - Constants.Vision.SpeakerPoses.kSpeakerPoseRed.getX()))
-                    .getDegrees();
-        }
+        Pose2d pose = getPose();
+        Pose2d speakerPose = Robot.isRed() ? Constants.Vision.SpeakerPoses.kSpeakerPoseRed
+                : Constants.Vision.SpeakerPoses.kSpeakerPoseBlue;
 
-        else {
-            return Rotation2d
-                    .fromRadians(Math.atan2(
-                            getPose().getY() - Constants.Vision.SpeakerPoses.kSpeakerPoseBlue.getY(),
-                            getPose().getX() - Constants.Vision.SpeakerPoses.kSpeakerPoseBlue.getX()))
-                    .getDegrees();
-        }
+        return Math.toDegrees(Math.atan2(pose.getY() - speakerPose.getY(), pose.getX() - speakerPose.getX()));
     }
 
     /**
@@ -318,7 +512,8 @@ public class Drivetrain extends SwerveDrivetrain implements Subsystem {
      * @return true if the robot is within the range, false otherwise
      */
     public boolean isInRangeOfTarget(double range) {
-        return Math.abs(angleToSpeaker() - getPose().getRotation().getDegrees()) < range;
+        /* Wrap the error, on red the heading to the speaker sits right on the +-180 seam */
+        return Math.abs(MathUtil.inputModulus(angleToSpeaker() - getPose().getRotation().getDegrees(), -180, 180)) < range;
     }
 
     /**
@@ -0,0 +1,144 @@
+package frc.robot.subsystems.Drivetrain;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size log-linear histogram of durations, in the style of HdrHistogram.
+ * <p>
+ * Values are bucketed by power of two, and each power of two is split into
+ * {@value #SUB_BUCKET_COUNT} linear sub-buckets, so any recorded value is
+ * reported to within about 6% no matter how large it is. Recording is a few
+ * integer operations on a preallocated array, cheap enough to do several
+ * times per odometry loop without allocating.
+ * <p>
+ * One thread records into the histogram while any thread can read
+ * percentiles from it. Reads don't lock, so a percentile taken mid-record
+ * may be off by the sample being recorded, which is fine for telemetry.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /* 2^40 nanoseconds is over 18 minutes, anything larger gets clamped */
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final long[] m_counts = new long[BUCKET_COUNT];
+    private volatile long m_totalCount = 0;
+    private volatile long m_max = 0;
+
+    /* Set by any thread, cleared by the recording thread so the counts only have one writer */
+    private volatile boolean m_resetRequested = false;
+
+    /**
+     * Records a single duration. Only one thread may record into a histogram.
+     *
+     * @param nanos Duration to record, in nanoseconds
+     */
+    public void record(long nanos) {
+        if (m_resetRequested) {
+            Arrays.fill(m_counts, 0);
+            m_max = 0;
+            m_totalCount = 0;
+            m_resetRequested = false;
+        }
+
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        m_counts[bucketIndex(value)]++;
+        if (value > m_max) {
+            m_max = value;
+        }
+        /* Volatile write publishes the bucket count to readers */
+        m_totalCount = m_totalCount + 1;
+    }
+
+    /**
+     * Clears the histogram the next time a value is recorded. Safe to call from
+     * any thread.
+     */
+    public void reset() {
+        m_resetRequested = true;
+    }
+
+    /**
+     * Gets the number of values recorded since the last reset.
+     *
+     * @return Number of recorded values
+     */
+    public long getCount() {
+        return m_totalCount;
+    }
+
+    /**
+     * Gets the largest value recorded since the last reset.
+     *
+     * @return Largest value, in nanoseconds
+     */
+    public long getMax() {
+        return m_max;
+    }
+
+    /**
+     * Gets the value at the given percentile, rounded up to the top of its bucket.
+     *
+     * @param percentile Percentile to look up, between 0 and 100
+     * @return Value at the percentile in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = m_totalCount;
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100.0) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            seen += m_counts[i];
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), m_max);
+            }
+        }
+        return m_max;
+    }
+
+    /**
+     * Fills in the values at several percentiles with a single pass over the buckets.
+     *
+     * @param percentiles       Percentiles to look up, between 0 and 100, in increasing order
+     * @param valuesToPutResultsIn Array to fill with the values in nanoseconds, same length as percentiles
+     */
+    public void getValuesAtPercentiles(double[] percentiles, long[] valuesToPutResultsIn) {
+        long total = m_totalCount;
+        long max = m_max;
+        int next = 0;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT && next < percentiles.length && total > 0; ++i) {
+            seen += m_counts[i];
+            while (next < percentiles.length
+                    && seen >= Math.max(1, (long) Math.ceil(total * Math.min(percentiles[next], 100.0) / 100.0))) {
+                valuesToPutResultsIn[next++] = Math.min(bucketUpperBound(i), max);
+            }
+        }
+        /* Nothing recorded, or the counts moved under us */
+        while (next < percentiles.length) {
+            valuesToPutResultsIn[next++] = max;
+        }
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long lowerBound = (long) (SUB_BUCKET_COUNT + (index & (SUB_BUCKET_COUNT - 1))) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
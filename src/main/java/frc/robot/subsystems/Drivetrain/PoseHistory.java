@@ -0,0 +1,187 @@
+package frc.robot.subsystems.Drivetrain;
+
+import java.lang.invoke.VarHandle;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Fixed-capacity history of the drivetrain pose and velocity, stored in
+ * primitive ring buffers.
+ * <p>
+ * One thread at a time adds samples (the odometry thread, or whoever holds
+ * the drivetrain state lock), while any number of threads can look up the
+ * pose at a past instant without locking or allocating. Lookups are a binary
+ * search over the buffered samples, so they are O(log n).
+ */
+public class PoseHistory {
+    /* Readers skip the oldest few slots so the writer almost never laps them mid-lookup */
+    private static final int READER_GUARD_SLOTS = 8;
+
+    /**
+     * A single interpolated entry of the pose history, filled in place so
+     * lookups don't allocate.
+     */
+    public static class Sample {
+        /** Timestamp of the sample, in seconds with the same epoch as {@link edu.wpi.first.wpilibj.Timer#getFPGATimestamp()} */
+        public double timestampSeconds;
+        /** Field-relative X position, in meters */
+        public double x;
+        /** Field-relative Y position, in meters */
+        public double y;
+        /** Field-relative heading, in radians */
+        public double theta;
+        /** Robot-relative X velocity, in meters per second */
+        public double vx;
+        /** Robot-relative Y velocity, in meters per second */
+        public double vy;
+        /** Angular velocity, in radians per second */
+        public double omega;
+    }
+
+    private final int m_capacity;
+    private final int m_mask;
+
+    private final double[] m_timestamps;
+    private final double[] m_x;
+    private final double[] m_y;
+    private final double[] m_theta;
+    private final double[] m_vx;
+    private final double[] m_vy;
+    private final double[] m_omega;
+
+    /* Total number of samples ever added; the newest sample lives at (m_count - 1) & m_mask */
+    private volatile long m_count = 0;
+    /* Index of the oldest sample that is still valid, moved forward when the history is cleared */
+    private volatile long m_start = 0;
+
+    /**
+     * Constructs a pose history that holds at least the given number of samples.
+     *
+     * @param capacity Minimum number of samples to keep, rounded up to a power of two
+     */
+    public PoseHistory(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2 * READER_GUARD_SLOTS) - 1) << 1;
+        m_capacity = size;
+        m_mask = size - 1;
+
+        m_timestamps = new double[size];
+        m_x = new double[size];
+        m_y = new double[size];
+        m_theta = new double[size];
+        m_vx = new double[size];
+        m_vy = new double[size];
+        m_omega = new double[size];
+    }
+
+    /**
+     * Adds a sample to the history. Timestamps must be increasing.
+     * <p>
+     * Only one thread may call this (or {@link #clear()}) at a time.
+     *
+     * @param timestampSeconds Time the sample was taken at, in seconds
+     * @param x                Field-relative X position, in meters
+     * @param y                Field-relative Y position, in meters
+     * @param theta            Field-relative heading, in radians
+     * @param vx               Robot-relative X velocity, in meters per second
+     * @param vy               Robot-relative Y velocity, in meters per second
+     * @param omega            Angular velocity, in radians per second
+     */
+    public void add(double timestampSeconds, double x, double y, double theta, double vx, double vy, double omega) {
+        long index = m_count;
+        int slot = (int) (index & m_mask);
+
+        /* Don't let the slot writes become visible before the previous publish */
+        VarHandle.storeStoreFence();
+        m_timestamps[slot] = timestampSeconds;
+        m_x[slot] = x;
+        m_y[slot] = y;
+        m_theta[slot] = theta;
+        m_vx[slot] = vx;
+        m_vy[slot] = vy;
+        m_omega[slot] = omega;
+
+        /* Volatile write publishes the slot to readers */
+        m_count = index + 1;
+    }
+
+    /**
+     * Discards every sample in the history, such as after the pose was reset.
+     * <p>
+     * Only one thread may call this (or {@link #add}) at a time.
+     */
+    public void clear() {
+        m_start = m_count;
+    }
+
+    /**
+     * Gets the interpolated pose and velocity at the given time.
+     * <p>
+     * Times before the oldest sample or after the newest sample are clamped
+     * to those samples.
+     *
+     * @param timestampSeconds    Time to look up, in seconds
+     * @param sampleToPutResultsIn Sample to fill with the result
+     * @return false if the history is empty, in which case the sample is untouched
+     */
+    public boolean sample(double timestampSeconds, Sample sampleToPutResultsIn) {
+        while (true) {
+            long end = m_count;
+            long start = Math.max(m_start, end - m_capacity + READER_GUARD_SLOTS);
+            if (end <= start) {
+                return false;
+            }
+
+            /* Find the first sample at or after the requested time */
+            long low = start;
+            long high = end - 1;
+            if (timestampSeconds >= m_timestamps[(int) (high & m_mask)]) {
+                low = high;
+            } else {
+                while (low < high) {
+                    long mid = (low + high) >>> 1;
+                    if (m_timestamps[(int) (mid & m_mask)] < timestampSeconds) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+            }
+
+            int upper = (int) (low & m_mask);
+            if (low == start || timestampSeconds >= m_timestamps[upper]) {
+                copySlot(upper, sampleToPutResultsIn);
+            } else {
+                int lower = (int) ((low - 1) & m_mask);
+                double t0 = m_timestamps[lower];
+                double t1 = m_timestamps[upper];
+                double fraction = (t1 > t0) ? (timestampSeconds - t0) / (t1 - t0) : 1.0;
+
+                sampleToPutResultsIn.timestampSeconds = timestampSeconds;
+                sampleToPutResultsIn.x = MathUtil.interpolate(m_x[lower], m_x[upper], fraction);
+                sampleToPutResultsIn.y = MathUtil.interpolate(m_y[lower], m_y[upper], fraction);
+                /* Take the short way around when interpolating the heading */
+                sampleToPutResultsIn.theta = MathUtil.angleModulus(
+                        m_theta[lower] + MathUtil.angleModulus(m_theta[upper] - m_theta[lower]) * fraction);
+                sampleToPutResultsIn.vx = MathUtil.interpolate(m_vx[lower], m_vx[upper], fraction);
+                sampleToPutResultsIn.vy = MathUtil.interpolate(m_vy[lower], m_vy[upper], fraction);
+                sampleToPutResultsIn.omega = MathUtil.interpolate(m_omega[lower], m_omega[upper], fraction);
+            }
+
+            /* Make sure the slots we read weren't overwritten while we were reading them, including the slot being written now */
+            VarHandle.acquireFence();
+            if (start > m_count + 1 - m_capacity) {
+                return true;
+            }
+        }
+    }
+
+    private void copySlot(int slot, Sample sampleToPutResultsIn) {
+        sampleToPutResultsIn.timestampSeconds = m_timestamps[slot];
+        sampleToPutResultsIn.x = m_x[slot];
+        sampleToPutResultsIn.y = m_y[slot];
+        sampleToPutResultsIn.theta = m_theta[slot];
+        sampleToPutResultsIn.vx = m_vx[slot];
+        sampleToPutResultsIn.vy = m_vy[slot];
+        sampleToPutResultsIn.omega = m_omega[slot];
+    }
+}
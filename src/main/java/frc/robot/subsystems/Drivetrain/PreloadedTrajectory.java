@@ -0,0 +1,157 @@
+package frc.robot.subsystems.Drivetrain;
+
+import java.util.List;
+
+import com.pathplanner.lib.path.PathPlannerTrajectory;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * A PathPlanner trajectory copied into primitive arrays, so it can be sampled
+ * on the odometry thread without allocating.
+ * <p>
+ * {@link PathPlannerTrajectory#sample(double)} builds a new state (and the
+ * translations and rotations in it) for every sample. This does the same
+ * interpolation into a reused {@link Sample} instead. Instances are immutable
+ * once built, so one can be built on any thread and handed to the odometry
+ * thread.
+ */
+public class PreloadedTrajectory {
+    /**
+     * A single interpolated point of the trajectory, filled in place.
+     */
+    public static class Sample {
+        /** Time since the start of the trajectory, in seconds */
+        public double timeSeconds;
+        /** Field-relative X position, in meters */
+        public double x;
+        /** Field-relative Y position, in meters */
+        public double y;
+        /** Speed along the path, in meters per second */
+        public double velocityMps;
+        /** Field-relative direction of travel, in radians */
+        public double headingRadians;
+        /** Field-relative rotation the robot should be at, in radians */
+        public double holonomicRotationRadians;
+        /** Angular velocity the robot should be turning at, in radians per second, or NaN if the path doesn't say */
+        public double holonomicAngularVelocityRps;
+        /** Fastest the robot is allowed to turn here, in radians per second */
+        public double maxAngularVelocityRps;
+    }
+
+    private final int m_length;
+    private final double[] m_time;
+    private final double[] m_x;
+    private final double[] m_y;
+    private final double[] m_velocity;
+    private final double[] m_heading;
+    private final double[] m_holonomicRotation;
+    private final double[] m_holonomicAngularVelocity;
+    private final double[] m_maxAngularVelocity;
+    private final double m_totalTimeSeconds;
+
+    /**
+     * Copies the states of a PathPlanner trajectory.
+     *
+     * @param trajectory Trajectory to copy, must have at least one state
+     */
+    public PreloadedTrajectory(PathPlannerTrajectory trajectory) {
+        List<PathPlannerTrajectory.State> states = trajectory.getStates();
+        if (states.isEmpty()) {
+            throw new IllegalArgumentException("Trajectory has no states");
+        }
+
+        m_length = states.size();
+        m_time = new double[m_length];
+        m_x = new double[m_length];
+        m_y = new double[m_length];
+        m_velocity = new double[m_length];
+        m_heading = new double[m_length];
+        m_holonomicRotation = new double[m_length];
+        m_holonomicAngularVelocity = new double[m_length];
+        m_maxAngularVelocity = new double[m_length];
+
+        for (int i = 0; i < m_length; ++i) {
+            PathPlannerTrajectory.State state = states.get(i);
+            m_time[i] = state.timeSeconds;
+            m_x[i] = state.positionMeters.getX();
+            m_y[i] = state.positionMeters.getY();
+            m_velocity[i] = state.velocityMps;
+            m_heading[i] = state.heading.getRadians();
+            m_holonomicRotation[i] = state.targetHolonomicRotation.getRadians();
+            m_holonomicAngularVelocity[i] = state.holonomicAngularVelocityRps.orElse(Double.NaN);
+            m_maxAngularVelocity[i] = state.constraints.getMaxAngularVelocityRps();
+        }
+        m_totalTimeSeconds = trajectory.getTotalTimeSeconds();
+    }
+
+    /**
+     * Gets how long the trajectory takes to follow.
+     *
+     * @return Total time of the trajectory, in seconds
+     */
+    public double getTotalTimeSeconds() {
+        return m_totalTimeSeconds;
+    }
+
+    /**
+     * Gets the interpolated state at the given time, the same as
+     * {@link PathPlannerTrajectory#sample(double)}. Times before the start or
+     * after the end are clamped to the first or last state.
+     *
+     * @param timeSeconds          Time since the start of the trajectory, in seconds
+     * @param sampleToPutResultsIn Sample to fill
+     */
+    public void sample(double timeSeconds, Sample sampleToPutResultsIn) {
+        if (timeSeconds <= m_time[0]) {
+            copyState(0, sampleToPutResultsIn);
+            return;
+        }
+        if (timeSeconds >= m_time[m_length - 1]) {
+            copyState(m_length - 1, sampleToPutResultsIn);
+            return;
+        }
+
+        /* Find the first state at or after the requested time */
+        int low = 1;
+        int high = m_length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (m_time[mid] < timeSeconds) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        int lower = low - 1;
+        int upper = low;
+        double span = m_time[upper] - m_time[lower];
+        double t = (span > 0) ? (timeSeconds - m_time[lower]) / span : 1.0;
+
+        sampleToPutResultsIn.timeSeconds = timeSeconds;
+        sampleToPutResultsIn.x = MathUtil.interpolate(m_x[lower], m_x[upper], t);
+        sampleToPutResultsIn.y = MathUtil.interpolate(m_y[lower], m_y[upper], t);
+        sampleToPutResultsIn.velocityMps = MathUtil.interpolate(m_velocity[lower], m_velocity[upper], t);
+        /* Rotations are interpolated the short way around, like GeometryUtil.rotationLerp */
+        sampleToPutResultsIn.headingRadians = MathUtil.angleModulus(
+                m_heading[lower] + MathUtil.angleModulus(m_heading[upper] - m_heading[lower]) * t);
+        sampleToPutResultsIn.holonomicRotationRadians = MathUtil.angleModulus(m_holonomicRotation[lower]
+                + MathUtil.angleModulus(m_holonomicRotation[upper] - m_holonomicRotation[lower]) * t);
+        sampleToPutResultsIn.holonomicAngularVelocityRps = MathUtil.interpolate(
+                m_holonomicAngularVelocity[lower], m_holonomicAngularVelocity[upper], t);
+        /* Constraints aren't interpolated, they come from whichever state is closer */
+        sampleToPutResultsIn.maxAngularVelocityRps = m_maxAngularVelocity[t < 0.5 ? lower : upper];
+    }
+
+    private void copyState(int index, Sample sampleToPutResultsIn) {
+        sampleToPutResultsIn.timeSeconds = m_time[index];
+        sampleToPutResultsIn.x = m_x[index];
+        sampleToPutResultsIn.y = m_y[index];
+        sampleToPutResultsIn.velocityMps = m_velocity[index];
+        sampleToPutResultsIn.headingRadians = m_heading[index];
+        sampleToPutResultsIn.holonomicRotationRadians = m_holonomicRotation[index];
+        sampleToPutResultsIn.holonomicAngularVelocityRps = m_holonomicAngularVelocity[index];
+        sampleToPutResultsIn.maxAngularVelocityRps = m_maxAngularVelocity[index];
+    }
+}
@@ -0,0 +1,139 @@
+package frc.robot.subsystems.Drivetrain;
+
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.PubSubOption;
+
+/**
+ * Publishes the robot's yaw to Limelights for MegaTag2, from the odometry
+ * thread.
+ * <p>
+ * MegaTag2 solves for the robot's position using whatever yaw it was last
+ * sent, so the pose it returns is only as good as how fresh that yaw was when
+ * the frame was captured. Publishing from the odometry thread means every
+ * value comes from the loop that just ran, and flushing right after means it
+ * goes out now instead of on the next NetworkTables update.
+ * <p>
+ * The yaw is the pose estimator's heading: the latency compensated Pigeon 2
+ * yaw carried into the field frame by the estimator, plus any vision
+ * correction fused in that same loop.
+ * <p>
+ * The times of recent publishes are kept so the yaw age of a vision result
+ * can be worked out from its capture timestamp.
+ */
+public class RobotOrientationPublisher {
+    /* Enough history to cover the worst Limelight latency at any sensible publish rate */
+    private static final int HISTORY_LENGTH = 64;
+    private static final int HISTORY_MASK = HISTORY_LENGTH - 1;
+
+    private final DoubleArrayPublisher[] m_publishers;
+    /* yaw, yaw rate, pitch, pitch rate, roll, roll rate, reused every publish */
+    private final double[] m_orientation = new double[6];
+    private final double m_publishPeriodSeconds;
+    private double m_lastPublishSeconds = Double.NEGATIVE_INFINITY;
+
+    /* Written by the odometry thread, read by whoever is checking a vision result */
+    private final double[] m_publishTimes = new double[HISTORY_LENGTH];
+    private volatile long m_publishCount = 0;
+
+    /* Only recorded into by the thread that calls recordYawAge */
+    private final LatencyHistogram m_yawAge = new LatencyHistogram();
+    private volatile double m_lastYawAgeSeconds = 0;
+
+    /**
+     * Creates publishers for each Limelight's robot_orientation_set entry.
+     *
+     * @param publishRateHz  How often to publish, capped at the odometry rate
+     * @param limelightNames Names of the Limelights running MegaTag2
+     */
+    public RobotOrientationPublisher(double publishRateHz, String... limelightNames) {
+        m_publishers = new DoubleArrayPublisher[limelightNames.length];
+        for (int i = 0; i < limelightNames.length; ++i) {
+            m_publishers[i] = NetworkTableInstance.getDefault().getTable(limelightNames[i])
+                    .getDoubleArrayTopic("robot_orientation_set")
+                    .publish(PubSubOption.keepDuplicates(true));
+        }
+        /* Leave a little slack so odometry jitter doesn't make us skip every other loop */
+        m_publishPeriodSeconds = 0.9 / publishRateHz;
+    }
+
+    /**
+     * Publishes the yaw if it's been long enough since the last publish.
+     * Called by the odometry thread after every update.
+     *
+     * @param timestampSeconds FPGA time of the odometry update
+     * @param yawDegrees       Estimated field-relative yaw after vision fusion, in degrees
+     * @param yawRateDps       Yaw rate, in degrees per second
+     */
+    public void publish(double timestampSeconds, double yawDegrees, double yawRateDps) {
+        if (timestampSeconds - m_lastPublishSeconds < m_publishPeriodSeconds) {
+            return;
+        }
+        m_lastPublishSeconds = timestampSeconds;
+
+        m_orientation[0] = yawDegrees;
+        m_orientation[1] = yawRateDps;
+        for (DoubleArrayPublisher publisher : m_publishers) {
+            publisher.set(m_orientation);
+        }
+        NetworkTableInstance.getDefault().flush();
+
+        long count = m_publishCount;
+        m_publishTimes[(int) (count & HISTORY_MASK)] = timestampSeconds;
+        /* Volatile write publishes the time to readers */
+        m_publishCount = count + 1;
+    }
+
+    /**
+     * Gets the time of the newest yaw published at or before the given time.
+     *
+     * @param timestampSeconds FPGA time to look back from
+     * @return FPGA time of the publish, or NaN if there isn't one in the history
+     */
+    public double getPublishTimeBefore(double timestampSeconds) {
+        long count = m_publishCount;
+        long oldest = Math.max(0, count - HISTORY_LENGTH + 1);
+        for (long i = count - 1; i >= oldest; --i) {
+            double publishTime = m_publishTimes[(int) (i & HISTORY_MASK)];
+            if (publishTime <= timestampSeconds) {
+                return publishTime;
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Records how old the yaw was when a MegaTag2 frame was captured. This
+     * doesn't include the NetworkTables trip to the Limelight, so it's the
+     * youngest the yaw could have been.
+     *
+     * @param captureTimestampSeconds FPGA time the frame was captured
+     */
+    public void recordYawAge(double captureTimestampSeconds) {
+        double publishTime = getPublishTimeBefore(captureTimestampSeconds);
+        if (Double.isNaN(publishTime)) {
+            return;
+        }
+        double age = captureTimestampSeconds - publishTime;
+        m_lastYawAgeSeconds = age;
+        m_yawAge.record((long) (age * 1e9));
+    }
+
+    /**
+     * Gets the yaw age of the last MegaTag2 frame recorded.
+     *
+     * @return Yaw age, in seconds
+     */
+    public double getLastYawAgeSeconds() {
+        return m_lastYawAgeSeconds;
+    }
+
+    /**
+     * Gets the histogram of yaw ages recorded so far.
+     *
+     * @return Yaw age histogram, in nanoseconds
+     */
+    public LatencyHistogram getYawAgeHistogram() {
+        return m_yawAge;
+    }
+}
@@ -8,38 +8,47 @@ import com.ctre.phoenix6.sim.ChassisReference;
 import com.ctre.phoenix6.sim.Pigeon2SimState;
 import com.ctre.phoenix6.sim.TalonFXSimState;
 
+import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
-import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
-import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.system.plant.DCMotor;
-import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import edu.wpi.first.math.util.Units;
+import frc.robot.Constants.SwerveConstants.RobotMeasurements;
+import frc.robot.Constants.SwerveConstants.Simulation;
 
 /**
- * Extremely simplified swerve drive simulation class.
+ * Rigid-body swerve drive simulation.
  * <p>
- * This class assumes that the swerve drive is perfect, meaning
- * that there is no scrub and the wheels do not slip.
+ * The chassis is a rigid body with the robot's mass and moment of inertia,
+ * pushed around by the four contact patches. Each wheel can only push along
+ * its rolling direction as hard as its motor allows, and the total force at a
+ * contact patch is limited by the friction circle, so the wheels spin out
+ * under hard acceleration and the modules scrub sideways when they fight
+ * each other. Normal force is split evenly between the modules.
  * <p>
- * In addition, it assumes the inertia of the robot is governed only
- * by the inertia of the steer module and the individual drive wheels.
- * Robot-wide inertia is not accounted for, and neither is translational
- * vs rotational inertia of the robot.
+ * The motors use an exact solution of the DC motor model, so the tiny steer
+ * and wheel inertias stay stable at any time step. Drive current is limited
+ * to the module slip current like the stator limit on the real robot, and the
+ * total supply current sags the battery voltage.
  * <p>
- * These assumptions provide a simplified example that can demonstrate the
- * behavior of a swerve drive in simulation. Users are encouraged to
- * expand this model for their own use.
+ * The simulated pose is kept as ground truth, separate from the odometry the
+ * drivetrain computes from the simulated sensors. The update is primitive math
+ * on preallocated state, so it doesn't create garbage.
  */
 public class SimSwerveDrivetrain {
+    private static final double kGravity = 9.81;
+
     public class SimSwerveModule {
-        /** Reference to motor simulation for the steer motor */
-        public final DCMotorSim SteerMotor;
-        /** Reference to motor simulation for drive motor */
-        public final DCMotorSim DriveMotor;
+        /** Model of the steer motor */
+        public final DCMotor SteerMotor;
+        /** Model of the drive motor */
+        public final DCMotor DriveMotor;
         /** Reference to steer gearing for updating CANcoder */
         public final double SteerGearing;
         /** Reference to steer gearing for updating CANcoder */
         public final double DriveGearing;
+        /** Inertia of the steer mechanism, in kg m^2 */
+        public final double SteerInertia;
         /** Voltage necessary for the steer motor to overcome friction */
         public final double SteerFrictionVoltage;
         /** Voltage necessary for the drive motor to overcome friction */
@@ -48,27 +57,68 @@ public class SimSwerveDrivetrain {
         public final boolean SteerMotorInverted;
         /** Whether the drive motor is inverted */
         public final boolean DriveMotorInverted;
+        /** Radius of the wheel, in meters */
+        public final double WheelRadiusMeters;
+        /** Drive motor rotations per steer rotation */
+        public final double CouplingGearRatio;
+        /** Stator current limit of the drive motor, in amps */
+        public final double SlipCurrent;
+        /** Location of the module relative to the center of the robot, in meters */
+        public final double LocationX, LocationY;
 
+        /** Steer mechanism angle, in radians */
+        public double SteerAngle = 0;
+        /** Steer mechanism velocity, in radians per second */
+        public double SteerVelocity = 0;
+        /** Wheel angle, in radians */
+        public double WheelAngle = 0;
+        /** Wheel velocity, in radians per second */
+        public double WheelVelocity = 0;
+        /** Current drawn from the battery by both motors, in amps */
+        public double SupplyCurrent = 0;
 
-        public SimSwerveModule(double steerGearing, double steerInertia, double steerFrictionVoltage, boolean steerMotorInverted,
-                            double driveGearing, double driveInertia, double driveFrictionVoltage, boolean driveMotorInverted)
-        {
-            SteerMotor = new DCMotorSim(DCMotor.getFalcon500(1), steerGearing, steerInertia);
-            DriveMotor = new DCMotorSim(DCMotor.getFalcon500(1), driveGearing, driveInertia);
-            SteerGearing = steerGearing;
-            DriveGearing = driveGearing;
-            SteerFrictionVoltage = steerFrictionVoltage;
-            DriveFrictionVoltage = driveFrictionVoltage;
-            SteerMotorInverted = steerMotorInverted;
-            DriveMotorInverted = driveMotorInverted;
+        public SimSwerveModule(SwerveModuleConstants constants, Translation2d location) {
+            SteerMotor = DCMotor.getFalcon500(1);
+            DriveMotor = DCMotor.getFalcon500(1);
+            SteerGearing = constants.SteerMotorGearRatio;
+            DriveGearing = constants.DriveMotorGearRatio;
+            SteerInertia = constants.SteerInertia;
+            SteerFrictionVoltage = constants.SteerFrictionVoltage;
+            DriveFrictionVoltage = constants.DriveFrictionVoltage;
+            SteerMotorInverted = constants.SteerMotorInverted;
+            DriveMotorInverted = constants.DriveMotorInverted;
+            WheelRadiusMeters = Units.inchesToMeters(constants.WheelRadius);
+            CouplingGearRatio = constants.CouplingGearRatio;
+            SlipCurrent = constants.SlipCurrent;
+            LocationX = location.getX();
+            LocationY = location.getY();
         }
     }
 
     public final Pigeon2SimState PigeonSim;
     protected final SimSwerveModule[] m_modules;
     protected final int ModuleCount;
-    public final SwerveDriveKinematics Kinem;
-    public Rotation2d LastAngle = new Rotation2d();
+
+    protected final double m_massKg;
+    protected final double m_moiKgMetersSquared;
+    /* Friction force available at each contact patch */
+    protected final double m_maxFrictionForce;
+
+    /* Ground truth, field relative */
+    protected double m_x = 0;
+    protected double m_y = 0;
+    protected double m_heading = 0;
+    protected double m_vx = 0;
+    protected double m_vy = 0;
+    protected double m_omega = 0;
+    /* Field heading minus the heading the Pigeon reports, changed when the robot is placed */
+    protected double m_yawOffset = 0;
+
+    protected volatile double m_batteryVoltage = Simulation.kBatteryNominalVoltage;
+
+    /* Motor controller outputs, read once per update */
+    protected final double[] m_steerVoltages;
+    protected final double[] m_driveVoltages;
 
     public SimSwerveDrivetrain(Translation2d[] wheelLocations,
                                Pigeon2 pigeon,
@@ -78,13 +128,15 @@ public class SimSwerveDrivetrain {
         ModuleCount = moduleConstants.length;
         m_modules = new SimSwerveModule[ModuleCount];
         for (int i = 0; i < ModuleCount; ++i) {
-            m_modules[i] = new SimSwerveModule(moduleConstants[i].SteerMotorGearRatio, moduleConstants[i].SteerInertia,
-                                            moduleConstants[i].SteerFrictionVoltage, moduleConstants[i].SteerMotorInverted,
-                                            moduleConstants[i].DriveMotorGearRatio, moduleConstants[i].DriveInertia,
-                                            moduleConstants[i].DriveFrictionVoltage, moduleConstants[i].DriveMotorInverted);
+            m_modules[i] = new SimSwerveModule(moduleConstants[i], wheelLocations[i]);
         }
 
-        Kinem = new SwerveDriveKinematics(wheelLocations);
+        m_steerVoltages = new double[ModuleCount];
+        m_driveVoltages = new double[ModuleCount];
+
+        m_massKg = RobotMeasurements.kRobotMassKg;
+        m_moiKgMetersSquared = RobotMeasurements.kRobotMOIKgMetersSquared;
+        m_maxFrictionForce = RobotMeasurements.kWheelCoefficientOfFriction * m_massKg * kGravity / ModuleCount;
     }
 
     /**
@@ -96,11 +148,10 @@ public class SimSwerveDrivetrain {
      * @param supplyVoltage The voltage as seen at the motor controllers
      * @param modulesToApply What modules to apply the update to
      */
-    public void update(double dtSeconds, double supplyVoltage, SwerveModule ... modulesToApply) {
+    public synchronized void update(double dtSeconds, double supplyVoltage, SwerveModule ... modulesToApply) {
         if (m_modules.length != ModuleCount) return;
 
-        SwerveModuleState[] states = new SwerveModuleState[ModuleCount];
-        /* Update our sim devices */
+        /* Read what the motor controllers are putting out */
         for (int i = 0; i < ModuleCount; ++i) {
             TalonFXSimState steerMotor = modulesToApply[i].getSteerMotor().getSimState();
             TalonFXSimState driveMotor = modulesToApply[i].getDriveMotor().getSimState();
@@ -113,28 +164,194 @@ public class SimSwerveDrivetrain {
             driveMotor.setSupplyVoltage(supplyVoltage);
             cancoder.setSupplyVoltage(supplyVoltage);
 
-            m_modules[i].SteerMotor.setInputVoltage(addFriction(steerMotor.getMotorVoltage(), m_modules[i].SteerFrictionVoltage));
-            m_modules[i].DriveMotor.setInputVoltage(addFriction(driveMotor.getMotorVoltage(), m_modules[i].DriveFrictionVoltage));
+            m_steerVoltages[i] = addFriction(steerMotor.getMotorVoltage(), m_modules[i].SteerFrictionVoltage);
+            m_driveVoltages[i] = addFriction(driveMotor.getMotorVoltage(), m_modules[i].DriveFrictionVoltage);
+        }
 
-            m_modules[i].SteerMotor.update(dtSeconds);
-            m_modules[i].DriveMotor.update(dtSeconds);
+        stepPhysics(dtSeconds, supplyVoltage);
 
-            steerMotor.setRawRotorPosition(m_modules[i].SteerMotor.getAngularPositionRotations() * m_modules[i].SteerGearing);
-            steerMotor.setRotorVelocity(m_modules[i].SteerMotor.getAngularVelocityRPM() / 60.0 * m_modules[i].SteerGearing);
+        /* Push the new mechanism state to the sim devices */
+        for (int i = 0; i < ModuleCount; ++i) {
+            SimSwerveModule module = m_modules[i];
+            TalonFXSimState steerMotor = modulesToApply[i].getSteerMotor().getSimState();
+            TalonFXSimState driveMotor = modulesToApply[i].getDriveMotor().getSimState();
+            CANcoderSimState cancoder = modulesToApply[i].getCANcoder().getSimState();
+
+            double steerRotations = Units.radiansToRotations(module.SteerAngle);
+            double steerRps = Units.radiansToRotations(module.SteerVelocity);
+            steerMotor.setRawRotorPosition(steerRotations * module.SteerGearing);
+            steerMotor.setRotorVelocity(steerRps * module.SteerGearing);
 
             /* CANcoders see the mechanism, so don't account for the steer gearing */
-            cancoder.setRawPosition(m_modules[i].SteerMotor.getAngularPositionRotations());
-            cancoder.setVelocity(m_modules[i].SteerMotor.getAngularVelocityRPM() / 60.0);
+            cancoder.setRawPosition(steerRotations);
+            cancoder.setVelocity(steerRps);
+
+            /* The drive rotor also turns with the azimuth through the coupling gear */
+            driveMotor.setRawRotorPosition(Units.radiansToRotations(module.WheelAngle) * module.DriveGearing
+                    + steerRotations * module.CouplingGearRatio);
+            driveMotor.setRotorVelocity(Units.radiansToRotations(module.WheelVelocity) * module.DriveGearing
+                    + steerRps * module.CouplingGearRatio);
+        }
+
+        PigeonSim.setRawYaw(Units.radiansToDegrees(m_heading - m_yawOffset));
+        PigeonSim.setAngularVelocityZ(Units.radiansToDegrees(m_omega));
+    }
+
+    /**
+     * Steps the mechanisms and the chassis with the motor voltages last read
+     * from the motor controllers, then sags the battery by the total current
+     * drawn.
+     *
+     * @param dtSeconds     The time delta to step
+     * @param supplyVoltage The voltage as seen at the motor controllers
+     */
+    protected void stepPhysics(double dtSeconds, double supplyVoltage) {
+        double dt = dtSeconds / Simulation.kSubsteps;
+        double totalSupplyCurrent = 0;
+        for (int step = 0; step < Simulation.kSubsteps; ++step) {
+            totalSupplyCurrent = 0;
+            for (int i = 0; i < ModuleCount; ++i) {
+                SimSwerveModule module = m_modules[i];
+                double steerVoltage = m_steerVoltages[i];
+                double driveVoltage = m_driveVoltages[i];
 
-            driveMotor.setRawRotorPosition(m_modules[i].DriveMotor.getAngularPositionRotations() * m_modules[i].DriveGearing);
-            driveMotor.setRotorVelocity(m_modules[i].DriveMotor.getAngularVelocityRPM() / 60.0 * m_modules[i].DriveGearing);
+                double steerCurrent = updateSteer(module, steerVoltage, dt);
+                double driveCurrent = applyContactForces(module, driveVoltage, dt);
 
-            states[i] = modulesToApply[i].getCurrentState();
+                /* Supply current is the stator current scaled by the duty cycle */
+                module.SupplyCurrent = (Math.abs(steerCurrent * steerVoltage) + Math.abs(driveCurrent * driveVoltage))
+                        / Math.max(supplyVoltage, 1.0);
+                totalSupplyCurrent += module.SupplyCurrent;
+            }
+
+            m_x += m_vx * dt;
+            m_y += m_vy * dt;
+            m_heading += m_omega * dt;
         }
+        m_heading = Math.IEEEremainder(m_heading, 2 * Math.PI);
+        m_batteryVoltage = Math.max(0, Simulation.kBatteryNominalVoltage
+                - totalSupplyCurrent * Simulation.kBatteryResistanceOhms);
+    }
+
+    /**
+     * Steps the steer mechanism with the exact solution of the DC motor model.
+     *
+     * @return Stator current of the steer motor, in amps
+     */
+    protected double updateSteer(SimSwerveModule module, double voltage, double dt) {
+        DCMotor motor = module.SteerMotor;
+        double gearing = module.SteerGearing;
+        /* J dw/dt = -a J w + b J V, settling at w = V Kv / G */
+        double a = gearing * gearing * motor.KtNMPerAmp / (motor.rOhms * motor.KvRadPerSecPerVolt * module.SteerInertia);
+        double steadyVelocity = voltage * motor.KvRadPerSecPerVolt / gearing;
+        double decay = Math.exp(-a * dt);
+
+        double startVelocity = module.SteerVelocity;
+        module.SteerVelocity = steadyVelocity + (startVelocity - steadyVelocity) * decay;
+        module.SteerAngle += steadyVelocity * dt + (startVelocity - steadyVelocity) * (1 - decay) / a;
+
+        return (voltage - module.SteerVelocity * gearing / motor.KvRadPerSecPerVolt) / motor.rOhms;
+    }
 
-        double angleChange = Kinem.toChassisSpeeds(states).omegaRadiansPerSecond * dtSeconds;
-        LastAngle = LastAngle.plus(Rotation2d.fromRadians(angleChange));
-        PigeonSim.setRawYaw(LastAngle.getDegrees());
+    /**
+     * Applies the drive and scrub forces of one module's contact patch to the chassis.
+     *
+     * @return Stator current of the drive motor, in amps
+     */
+    protected double applyContactForces(SimSwerveModule module, double voltage, double dt) {
+        DCMotor motor = module.DriveMotor;
+        double gearing = module.DriveGearing;
+        double radius = module.WheelRadiusMeters;
+
+        /* Module location and wheel direction in the field frame */
+        double cos = Math.cos(m_heading);
+        double sin = Math.sin(m_heading);
+        double rx = module.LocationX * cos - module.LocationY * sin;
+        double ry = module.LocationX * sin + module.LocationY * cos;
+        double wheelHeading = m_heading + module.SteerAngle;
+        double ux = Math.cos(wheelHeading);
+        double uy = Math.sin(wheelHeading);
+
+        /* Assume the wheel grips, so it turns with the ground under it */
+        double groundSpeed = (m_vx - m_omega * ry) * ux + (m_vy + m_omega * rx) * uy;
+        double gripMotorVelocity = groundSpeed / radius * gearing;
+        double current = clamp((voltage - gripMotorVelocity / motor.KvRadPerSecPerVolt) / motor.rOhms,
+                module.SlipCurrent);
+        double longitudinalForce = motor.KtNMPerAmp * current * gearing / radius;
+
+        if (Math.abs(longitudinalForce) <= m_maxFrictionForce) {
+            module.WheelVelocity = groundSpeed / radius;
+        } else {
+            /*
+             * The tire breaks loose and only kinetic friction reaches the ground. The
+             * wheel inertia is tiny, so it settles almost instantly at the speed where
+             * the motor torque matches the friction torque.
+             */
+            longitudinalForce = Math.copySign(m_maxFrictionForce, longitudinalForce);
+            current = longitudinalForce * radius / (motor.KtNMPerAmp * gearing);
+            module.WheelVelocity = (voltage - current * motor.rOhms) * motor.KvRadPerSecPerVolt / gearing;
+        }
+        module.WheelAngle += module.WheelVelocity * dt;
+        applyImpulse(rx, ry, ux * longitudinalForce * dt, uy * longitudinalForce * dt);
+
+        /* Whatever friction is left stops the patch from sliding sideways */
+        double nx = -uy;
+        double ny = ux;
+        double lateralSpeed = (m_vx - m_omega * ry) * nx + (m_vy + m_omega * rx) * ny;
+        double armCrossNormal = rx * ny - ry * nx;
+        double effectiveMass = 1.0 / (1.0 / m_massKg + armCrossNormal * armCrossNormal / m_moiKgMetersSquared);
+        double maxLateralImpulse = Math.sqrt(Math.max(0, m_maxFrictionForce * m_maxFrictionForce
+                - longitudinalForce * longitudinalForce)) * dt;
+        double lateralImpulse = clamp(-effectiveMass * lateralSpeed, maxLateralImpulse);
+        applyImpulse(rx, ry, nx * lateralImpulse, ny * lateralImpulse);
+
+        return current;
+    }
+
+    private void applyImpulse(double rx, double ry, double jx, double jy) {
+        m_vx += jx / m_massKg;
+        m_vy += jy / m_massKg;
+        m_omega += (rx * jy - ry * jx) / m_moiKgMetersSquared;
+    }
+
+    private static double clamp(double value, double magnitude) {
+        return Math.max(-magnitude, Math.min(magnitude, value));
+    }
+
+    /**
+     * Places the simulated robot at the given pose, such as when the robot code
+     * seeds its pose at the start of a match. The Pigeon keeps reporting a
+     * continuous yaw, like it would when a real robot is carried into place.
+     *
+     * @param pose Field-relative pose to place the robot at
+     */
+    public synchronized void resetTruthPose(Pose2d pose) {
+        double heading = pose.getRotation().getRadians();
+        m_yawOffset += heading - m_heading;
+        m_x = pose.getX();
+        m_y = pose.getY();
+        m_heading = heading;
+        m_vx = 0;
+        m_vy = 0;
+        m_omega = 0;
+    }
+
+    /**
+     * Gets the simulated pose of the robot, which odometry is trying to track.
+     *
+     * @return Ground truth field-relative pose
+     */
+    public synchronized Pose2d getTruthPose() {
+        return new Pose2d(m_x, m_y, Rotation2d.fromRadians(m_heading));
+    }
+
+    /**
+     * Gets the battery voltage after the sag from the drivetrain's current draw.
+     *
+     * @return Loaded battery voltage
+     */
+    public double getBatteryVoltage() {
+        return m_batteryVoltage;
     }
 
     /**
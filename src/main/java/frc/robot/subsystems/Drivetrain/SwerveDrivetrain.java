@@ -1,7 +1,9 @@
 package frc.robot.subsystems.Drivetrain;
 
+import java.lang.management.ManagementFactory;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
 import com.ctre.phoenix6.BaseStatusSignal;
@@ -14,11 +16,11 @@ import com.ctre.phoenix6.mechanisms.swerve.SwerveDrivetrainConstants;
 import com.ctre.phoenix6.mechanisms.swerve.SwerveModuleConstants;
 import com.ctre.phoenix6.signals.NeutralModeValue;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.Nat;
 import edu.wpi.first.math.VecBuilder;
-import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.filter.LinearFilter;
-import edu.wpi.first.math.filter.MedianFilter;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Rotation3d;
@@ -31,6 +33,7 @@ import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.wpilibj.Threads;
 import edu.wpi.first.wpilibj.Timer;
+import org.ejml.simple.SimpleMatrix;
 import frc.robot.subsystems.Drivetrain.SwerveRequest.SwerveControlRequestParameters;
 
 /**
@@ -62,10 +65,20 @@ public class SwerveDrivetrain {
     protected final StatusSignal<Double> m_angularVelocity;
 
     protected SwerveDriveKinematics m_kinematics;
-    protected SwerveDrivePoseEstimator m_odometry;
+    /* Allocation-free inverse kinematics for the requests, only used on the odometry thread */
+    protected SwerveKinematicsEngine m_kinematicsEngine;
+    protected SwervePoseEstimator m_odometry;
     protected SwerveModulePosition[] m_modulePositions;
-    protected SwerveModuleState[] m_moduleStates;
+    /* Latest module readings, updated in place by the odometry thread */
+    protected final double[] m_moduleDistances;
+    protected final double[] m_modulePositionAngles;
+    protected final double[] m_moduleSpeeds;
+    protected final double[] m_moduleStateAngles;
     protected Translation2d[] m_moduleLocations;
+    /* Flattened 3 x (2 * ModuleCount) forward kinematics matrix, identical to the one SwerveDriveKinematics builds */
+    protected final double[] m_forwardKinematics;
+    /* Measured chassis speeds, updated in place by the odometry thread */
+    protected final ChassisSpeeds m_measuredSpeeds = new ChassisSpeeds();
     protected OdometryThread m_odometryThread;
     protected Rotation2d m_fieldRelativeOffset;
     protected Rotation2d m_operatorForwardDirection;
@@ -75,6 +88,25 @@ public class SwerveDrivetrain {
 
     protected final ReadWriteLock m_stateLock = new ReentrantReadWriteLock();
 
+    /* How far back the pose history reaches, in seconds */
+    protected static final double POSE_HISTORY_SECONDS = 1.5;
+    protected final PoseHistory m_poseHistory;
+    protected final ThreadLocal<PoseHistory.Sample> m_historySamples = ThreadLocal.withInitial(PoseHistory.Sample::new);
+
+    /* Vision measurements wait here until the odometry thread fuses them */
+    protected static final int VISION_QUEUE_CAPACITY = 16;
+    protected final VisionMeasurementQueue m_visionQueue = new VisionMeasurementQueue(VISION_QUEUE_CAPACITY);
+    /* Measurements captured closer together than this are treated as the same instant and merged */
+    protected static final double VISION_MERGE_WINDOW_SECONDS = 0.005;
+    /* Only touched by the odometry thread while fusing */
+    protected final VisionMeasurementMerger m_visionMerger =
+            new VisionMeasurementMerger(VISION_QUEUE_CAPACITY, VISION_MERGE_WINDOW_SECONDS);
+    /* What the estimator uses for measurements without their own, kept so merged measurements can use them too */
+    protected final Matrix<N3, N1> m_defaultVisionStdDevs = new Matrix<>(Nat.N3(), Nat.N1());
+    protected volatile long m_visionMeasurementsMerged = 0;
+    protected volatile double m_visionFuseLatency = 0;
+    protected volatile long m_visionMeasurementsFused = 0;
+
     protected final SimSwerveDrivetrain m_simDrive;
 
     /**
@@ -99,8 +131,47 @@ public class SwerveDrivetrain {
         public double OdometryPeriod;
     }
 
-    protected Consumer<SwerveDriveState> m_telemetryFunction = null;
-    protected final SwerveDriveState m_cachedState = new SwerveDriveState();
+    /**
+     * Parts of the odometry and telemetry loops with their own latency histogram.
+     */
+    public enum LatencyPhase {
+        /** Time between consecutive odometry loops, to show jitter */
+        LoopPeriod("Loop Period"),
+        /** Time spent in waitForAll or refreshAll waiting on the signals */
+        SignalWait("Signal Wait"),
+        /** Time spent waiting to acquire the state lock */
+        LockWait("Lock Wait"),
+        /** Time spent reading the modules and updating the pose estimator */
+        EstimatorUpdate("Estimator Update"),
+        /** Time spent in SwerveRequest.apply */
+        RequestApply("Request Apply"),
+        /** Time the odometry thread spent handing the state to the telemetry thread */
+        TelemetryHandoff("Telemetry Handoff"),
+        /** Time the telemetry thread spent in the telemetry function */
+        TelemetryCallback("Telemetry Callback");
+
+        public final String name;
+
+        private LatencyPhase(String name) {
+            this.name = name;
+        }
+    }
+
+    /* One histogram per phase, each only recorded into by the thread that runs that phase */
+    protected final LatencyHistogram[] m_latencyHistograms = new LatencyHistogram[LatencyPhase.values().length];
+
+    protected volatile Consumer<SwerveDriveState> m_telemetryFunction = null;
+    /* Sends the yaw to the Limelights for MegaTag2, null if nothing needs it */
+    protected volatile RobotOrientationPublisher m_orientationPublisher = null;
+    protected TelemetryThread m_telemetryThread;
+
+    /* The newest state, written by the odometry thread and copied out by everyone else */
+    protected final SwerveStateBuffer m_stateBuffer;
+    /* Scratch frame for each reader thread, only used inside getState and getPose */
+    protected final ThreadLocal<SwerveStateBuffer.Frame> m_readerFrames =
+            ThreadLocal.withInitial(() -> new SwerveStateBuffer.Frame(ModuleCount));
+    /* Last pose getPose handed out on each thread, handed out again until the robot moves */
+    protected final ThreadLocal<Pose2d> m_readerPoses = new ThreadLocal<>();
 
     /* Perform swerve module updates in a separate thread to minimize latency */
     public class OdometryThread {
@@ -114,7 +185,9 @@ public class SwerveDrivetrain {
 
         protected final BaseStatusSignal[] m_allSignals;
 
-        protected final MedianFilter peakRemover = new MedianFilter(3);
+        /* The last three loop periods, for the median that removes peaks. MedianFilter boxes every value */
+        protected final double[] recentPeriods = new double[3];
+        protected int recentPeriodCount = 0;
         protected final LinearFilter lowPass = LinearFilter.movingAverage(50);
         protected double lastTime = 0;
         protected double currentTime = 0;
@@ -125,6 +198,22 @@ public class SwerveDrivetrain {
         protected int lastThreadPriority = START_THREAD_PRIORITY;
         protected volatile int threadPriorityToSet = START_THREAD_PRIORITY;
 
+        /* Used to measure how much garbage each loop creates, null if the JVM can't measure it */
+        protected final com.sun.management.ThreadMXBean m_allocationCounter;
+        protected long lastAllocatedBytes = 0;
+        protected volatile long allocatedBytesPerLoop = -1;
+
+        /* When stepped, the simulation runs each loop itself and time comes from the FPGA clock */
+        protected volatile boolean m_stepped = false;
+
+        protected final LatencyHistogram loopPeriodLatency = m_latencyHistograms[LatencyPhase.LoopPeriod.ordinal()];
+        protected final LatencyHistogram signalWaitLatency = m_latencyHistograms[LatencyPhase.SignalWait.ordinal()];
+        protected final LatencyHistogram lockWaitLatency = m_latencyHistograms[LatencyPhase.LockWait.ordinal()];
+        protected final LatencyHistogram estimatorUpdateLatency = m_latencyHistograms[LatencyPhase.EstimatorUpdate.ordinal()];
+        protected final LatencyHistogram requestApplyLatency = m_latencyHistograms[LatencyPhase.RequestApply.ordinal()];
+        protected final LatencyHistogram telemetryHandoffLatency = m_latencyHistograms[LatencyPhase.TelemetryHandoff.ordinal()];
+        protected long lastWakeNanos = 0;
+
         public OdometryThread() {
             m_thread = new Thread(this::run);
             /* Mark this thread as a "daemon" (background) thread
@@ -142,6 +231,21 @@ public class SwerveDrivetrain {
             }
             m_allSignals[m_allSignals.length - 2] = m_yawGetter;
             m_allSignals[m_allSignals.length - 1] = m_angularVelocity;
+
+            m_allocationCounter = getAllocationCounter();
+        }
+
+        private com.sun.management.ThreadMXBean getAllocationCounter() {
+            try {
+                if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadBean
+                        && threadBean.isThreadAllocatedMemorySupported()) {
+                    threadBean.setThreadAllocatedMemoryEnabled(true);
+                    return threadBean;
+                }
+            } catch (LinkageError | UnsupportedOperationException ex) {
+                /* The JVM doesn't ship the jdk.management module, we just won't report allocations */
+            }
+            return null;
         }
 
         /**
@@ -180,6 +284,7 @@ public class SwerveDrivetrain {
 
             /* Run as fast as possible, our signals will control the timing */
             while (m_running) {
+                long waitStartNanos = System.nanoTime();
                 /* Synchronously wait for all signals in drivetrain */
                 /* Wait up to twice the period of the update frequency */
                 StatusCode status;
@@ -190,73 +295,10 @@ public class SwerveDrivetrain {
                     Timer.delay(1.0 / UpdateFrequency);
                     status = BaseStatusSignal.refreshAll(m_allSignals);
                 }
+                long wakeNanos = System.nanoTime();
+                signalWaitLatency.record(wakeNanos - waitStartNanos);
 
-                try {
-                    m_stateLock.writeLock().lock();
-
-                    lastTime = currentTime;
-                    currentTime = Utils.getCurrentTimeSeconds();
-                    /* We don't care about the peaks, as they correspond to GC events, and we want the period generally low passed */
-                    averageLoopTime = lowPass.calculate(peakRemover.calculate(currentTime - lastTime));
-
-                    /* Get status of first element */
-                    if (status.isOK()) {
-                        SuccessfulDaqs++;
-                    } else {
-                        FailedDaqs++;
-                    }
-
-                    /* Now update odometry */
-                    /* Keep track of the change in azimuth rotations */
-                    for (int i = 0; i < ModuleCount; ++i) {
-                        m_modulePositions[i] = Modules[i].getPosition(false);
-                        m_moduleStates[i] = Modules[i].getCurrentState();
-                    }
-                    double yawDegrees = BaseStatusSignal.getLatencyCompensatedValue(
-                            m_yawGetter, m_angularVelocity);
-
-                    /* Keep track of previous and current pose to account for the carpet vector */
-                    m_odometry.update(Rotation2d.fromDegrees(yawDegrees), m_modulePositions);
-
-                    ChassisSpeeds speeds = m_kinematics.toChassisSpeeds(m_moduleStates);
-
-                    /* And now that we've got the new odometry, update the controls */
-                    m_requestParameters.currentPose = m_odometry.getEstimatedPosition()
-                            .relativeTo(new Pose2d(0, 0, m_fieldRelativeOffset));
-                    m_requestParameters.kinematics = m_kinematics;
-                    m_requestParameters.swervePositions = m_moduleLocations;
-                    m_requestParameters.currentChassisSpeed = speeds;
-                    m_requestParameters.timestamp = currentTime;
-                    m_requestParameters.updatePeriod = 1.0 / UpdateFrequency;
-                    m_requestParameters.operatorForwardDirection = m_operatorForwardDirection;
-
-                    m_requestToApply.apply(m_requestParameters, Modules);
-
-                    /* Update our cached state with the newly updated data */
-                    m_cachedState.FailedDaqs = FailedDaqs;
-                    m_cachedState.SuccessfulDaqs = SuccessfulDaqs;
-                    m_cachedState.Pose = m_odometry.getEstimatedPosition();
-                    m_cachedState.speeds = speeds;
-                    m_cachedState.OdometryPeriod = averageLoopTime;
-
-                    if (m_cachedState.ModuleStates == null) {
-                        m_cachedState.ModuleStates = new SwerveModuleState[Modules.length];
-                    }
-                    if (m_cachedState.ModuleTargets == null) {
-                        m_cachedState.ModuleTargets = new SwerveModuleState[Modules.length];
-                    }
-                    for (int i = 0; i < Modules.length; ++i) {
-                        m_cachedState.ModuleStates[i] = Modules[i].getCurrentState();
-                        m_cachedState.ModuleTargets[i] = Modules[i].getTargetState();
-                    }
-
-                    if (m_telemetryFunction != null) {
-                        /* Log our state */
-                        m_telemetryFunction.accept(m_cachedState);
-                    }
-                } finally {
-                    m_stateLock.writeLock().unlock();
-                }
+                runOnce(status, wakeNanos);
 
                 /**
                  * This is inherently synchronous, since lastThreadPriority
@@ -269,10 +311,250 @@ public class SwerveDrivetrain {
             }
         }
 
+        /**
+         * Runs a single odometry and control update, on the calling thread.
+         * The simulation calls this through {@link SwerveDrivetrain#stepOdometry()}
+         * once the odometry thread has been stopped.
+         */
+        public void step() {
+            long waitStartNanos = System.nanoTime();
+            StatusCode status = BaseStatusSignal.refreshAll(m_allSignals);
+            long wakeNanos = System.nanoTime();
+            signalWaitLatency.record(wakeNanos - waitStartNanos);
+            runOnce(status, wakeNanos);
+        }
+
+        /**
+         * Updates odometry with the latest signals and applies the control request.
+         *
+         * @param status    Status of the signal refresh
+         * @param wakeNanos System.nanoTime() when the signals came in
+         */
+        protected void runOnce(StatusCode status, long wakeNanos) {
+            if (lastWakeNanos != 0) {
+                loopPeriodLatency.record(wakeNanos - lastWakeNanos);
+            }
+            lastWakeNanos = wakeNanos;
+
+            double orientationTime = 0;
+            double orientationYaw = 0;
+            int visionCount = 0;
+            try {
+                m_stateLock.writeLock().lock();
+                long lockedNanos = System.nanoTime();
+                lockWaitLatency.record(lockedNanos - wakeNanos);
+
+                lastTime = currentTime;
+                /* The FPGA clock follows the simulation when it is paused and stepped */
+                currentTime = m_stepped ? Timer.getFPGATimestamp() : Utils.getCurrentTimeSeconds();
+                /* We don't care about the peaks, as they correspond to GC events, and we want the period generally low passed */
+                averageLoopTime = lowPass.calculate(removePeak(currentTime - lastTime));
+
+                /* Get status of first element */
+                if (status.isOK()) {
+                    SuccessfulDaqs++;
+                } else {
+                    FailedDaqs++;
+                }
+
+                /* Now update odometry */
+                /* Keep track of the change in azimuth rotations, as primitives so nothing is allocated */
+                for (int i = 0; i < ModuleCount; ++i) {
+                    SwerveModule module = Modules[i];
+                    module.updatePosition(false);
+                    module.updateCurrentState();
+                    m_moduleDistances[i] = module.getPositionDistanceMeters();
+                    m_modulePositionAngles[i] = module.getPositionAngleRadians();
+                    m_moduleSpeeds[i] = module.getCurrentSpeedMetersPerSecond();
+                    m_moduleStateAngles[i] = module.getCurrentAngleRadians();
+                }
+                double yawDegrees = BaseStatusSignal.getLatencyCompensatedValue(
+                        m_yawGetter, m_angularVelocity);
+
+                /* Keep track of previous and current pose to account for the carpet vector */
+                m_odometry.updateWithTime(Timer.getFPGATimestamp(), Math.toRadians(yawDegrees),
+                        m_moduleDistances, m_modulePositionAngles);
+
+                toChassisSpeeds(m_moduleSpeeds, m_moduleStateAngles, m_measuredSpeeds);
+
+                /* And now that we've got the new odometry, update the controls */
+                double estimatedX = m_odometry.getEstimatedX();
+                double estimatedY = m_odometry.getEstimatedY();
+                double estimatedHeading = m_odometry.getEstimatedHeadingRadians();
+                m_requestParameters.fieldX = estimatedX;
+                m_requestParameters.fieldY = estimatedY;
+                m_requestParameters.fieldHeadingRadians = estimatedHeading;
+                if (m_fieldRelativeOffset.getRadians() == 0) {
+                    /* Nothing to offset, skip the extra pose math */
+                    m_requestParameters.currentX = estimatedX;
+                    m_requestParameters.currentY = estimatedY;
+                    m_requestParameters.currentHeadingRadians = estimatedHeading;
+                } else {
+                    /* Same as relativeTo a pose at the origin facing the offset */
+                    double cos = m_fieldRelativeOffset.getCos();
+                    double sin = m_fieldRelativeOffset.getSin();
+                    m_requestParameters.currentX = estimatedX * cos + estimatedY * sin;
+                    m_requestParameters.currentY = -estimatedX * sin + estimatedY * cos;
+                    m_requestParameters.currentHeadingRadians = MathUtil.angleModulus(
+                            estimatedHeading - m_fieldRelativeOffset.getRadians());
+                }
+                /* Remember where we were, for anything that needs the pose at a past timestamp */
+                orientationTime = Timer.getFPGATimestamp();
+                m_poseHistory.add(orientationTime, estimatedX, estimatedY, estimatedHeading,
+                        m_measuredSpeeds.vxMetersPerSecond, m_measuredSpeeds.vyMetersPerSecond,
+                        m_measuredSpeeds.omegaRadiansPerSecond);
+                long estimatedNanos = System.nanoTime();
+                estimatorUpdateLatency.record(estimatedNanos - lockedNanos);
+
+                m_requestParameters.kinematics = m_kinematics;
+                m_requestParameters.kinematicsEngine = m_kinematicsEngine;
+                m_requestParameters.swervePositions = m_moduleLocations;
+                m_requestParameters.currentChassisSpeed = m_measuredSpeeds;
+                m_requestParameters.timestamp = currentTime;
+                m_requestParameters.updatePeriod = 1.0 / UpdateFrequency;
+                m_requestParameters.operatorForwardDirection = m_operatorForwardDirection;
+
+                long applyStartNanos = System.nanoTime();
+                m_requestToApply.apply(m_requestParameters, Modules);
+                requestApplyLatency.record(System.nanoTime() - applyStartNanos);
+
+                /* Controls are out, take whatever vision came in to merge once the lock is released */
+                visionCount = m_visionMerger.drain(m_visionQueue, m_defaultVisionStdDevs.get(0, 0),
+                        m_defaultVisionStdDevs.get(1, 0), m_defaultVisionStdDevs.get(2, 0));
+                if (visionCount == 0) {
+                    publishState();
+                    orientationYaw = Math.toDegrees(estimatedHeading);
+                }
+            } finally {
+                m_stateLock.writeLock().unlock();
+            }
+
+            if (visionCount > 0) {
+                /* Merging doesn't touch anything shared, so nobody waits on it */
+                m_visionMerger.merge();
+                try {
+                    m_stateLock.writeLock().lock();
+                    fuseVisionMeasurements();
+                    publishState();
+                    /* The Limelights get the heading with this loop's vision in it */
+                    orientationYaw = Math.toDegrees(m_odometry.getEstimatedHeadingRadians());
+                } finally {
+                    m_stateLock.writeLock().unlock();
+                }
+            }
+
+            /* Out of the lock, nothing else has to wait on NetworkTables */
+            RobotOrientationPublisher orientationPublisher = m_orientationPublisher;
+            if (orientationPublisher != null) {
+                orientationPublisher.publish(orientationTime, orientationYaw, m_angularVelocity.getValue());
+            }
+
+            if (m_allocationCounter != null) {
+                long allocatedBytes = m_allocationCounter.getCurrentThreadAllocatedBytes();
+                allocatedBytesPerLoop = allocatedBytes - lastAllocatedBytes;
+                lastAllocatedBytes = allocatedBytes;
+            }
+        }
+
+        /**
+         * Stops the odometry thread and hands the loop over to whoever calls
+         * {@link #step()}, timed by the FPGA clock.
+         */
+        public void useStepping() {
+            stop();
+            m_stepped = true;
+            lastWakeNanos = 0;
+        }
+
+        /**
+         * Gets the number of bytes the odometry thread allocated during its
+         * last loop. In steady state this should stay flat, any growth means
+         * something in the control path started creating garbage.
+         *
+         * @return Bytes allocated in the last loop, or -1 if the JVM can't measure it
+         */
+        public long getAllocatedBytesPerLoop() {
+            return allocatedBytesPerLoop;
+        }
+
         public boolean odometryIsValid() {
             return SuccessfulDaqs > 2; // Wait at least 3 daqs before saying the odometry is valid
         }
 
+        /* Median of the last three loop periods, the same as a MedianFilter of 3 without the boxing */
+        private double removePeak(double period) {
+            recentPeriods[2] = recentPeriods[1];
+            recentPeriods[1] = recentPeriods[0];
+            recentPeriods[0] = period;
+            if (recentPeriodCount < 3) {
+                recentPeriodCount++;
+            }
+            if (recentPeriodCount == 1) {
+                return period;
+            }
+            if (recentPeriodCount == 2) {
+                return (recentPeriods[0] + recentPeriods[1]) / 2;
+            }
+            double a = recentPeriods[0], b = recentPeriods[1], c = recentPeriods[2];
+            return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+        }
+
+        /**
+         * Fuses the measurements merged by {@link #m_visionMerger} into the
+         * pose estimator. Must be called with the state lock held.
+         * <p>
+         * Each measurement adds an odometry to field correction transform to
+         * the estimator, taking the place of any newer ones, so measurements
+         * captured at the same instant (such as one frame from each camera) were
+         * merged into a single inverse-variance weighted measurement to fuse once.
+         */
+        protected void fuseVisionMeasurements() {
+            int count = m_visionMerger.fuseInto(m_odometry);
+            m_visionMeasurementsMerged += m_visionMerger.getMergedAway();
+            m_visionMeasurementsFused += count;
+            if (count > 0) {
+                /* The oldest measurement waited the longest */
+                m_visionFuseLatency = Timer.getFPGATimestamp() - m_visionMerger.getEnqueueTimeSeconds(0);
+            }
+        }
+
+        /**
+         * Publishes the newest estimate and module states for everyone else to
+         * copy, and hands them to the telemetry thread. Must be called with the
+         * state lock held.
+         */
+        protected void publishState() {
+            SwerveStateBuffer.Frame frame = m_stateBuffer.getWriteFrame();
+            long stamp = m_stateBuffer.beginWrite();
+            try {
+                frame.failedDaqs = FailedDaqs;
+                frame.successfulDaqs = SuccessfulDaqs;
+                frame.x = m_odometry.getEstimatedX();
+                frame.y = m_odometry.getEstimatedY();
+                frame.theta = m_odometry.getEstimatedHeadingRadians();
+                frame.vx = m_measuredSpeeds.vxMetersPerSecond;
+                frame.vy = m_measuredSpeeds.vyMetersPerSecond;
+                frame.omega = m_measuredSpeeds.omegaRadiansPerSecond;
+                frame.odometryPeriod = averageLoopTime;
+
+                for (int i = 0; i < Modules.length; ++i) {
+                    frame.moduleSpeeds[i] = m_moduleSpeeds[i];
+                    frame.moduleAngles[i] = m_moduleStateAngles[i];
+                    frame.targetSpeeds[i] = Modules[i].getTargetSpeedMetersPerSecond();
+                    frame.targetAngles[i] = Modules[i].getTargetAngleRadians();
+                }
+            } finally {
+                m_stateBuffer.endWrite(stamp);
+            }
+
+            if (m_telemetryFunction != null) {
+                /* Hand our state to the telemetry thread to log, only we write the frame so it can be read unlocked */
+                long handoffStartNanos = System.nanoTime();
+                m_telemetryThread.publish(frame);
+                telemetryHandoffLatency.record(System.nanoTime() - handoffStartNanos);
+            }
+        }
+
         /**
          * Sets the DAQ thread priority to a real time priority under the specified priority level
          *
@@ -284,6 +566,113 @@ public class SwerveDrivetrain {
         }
     }
 
+    /*
+     * Run telemetry in a separate low priority thread, so NetworkTables and
+     * logging never hold up the odometry thread
+     */
+    public class TelemetryThread {
+        /* Must be a power of two */
+        protected static final int BUFFER_SIZE = 16;
+        /* How long to sleep when there is nothing to publish */
+        protected static final long IDLE_PERIOD_NANOS = 5_000_000;
+
+        protected final Thread m_thread;
+        protected volatile boolean m_running = false;
+
+        /* Single-producer single-consumer ring of state copies */
+        protected final SwerveStateBuffer.Frame[] m_buffer = new SwerveStateBuffer.Frame[BUFFER_SIZE];
+        /* Only written by the odometry thread */
+        protected volatile long m_writeIndex = 0;
+        /* Only written by the telemetry thread */
+        protected volatile long m_readIndex = 0;
+        protected volatile long m_droppedFrames = 0;
+
+        public TelemetryThread() {
+            m_thread = new Thread(this::run, "Swerve Telemetry");
+            /* Mark this thread as a "daemon" (background) thread
+             * so it doesn't hold up program shutdown */
+            m_thread.setDaemon(true);
+            /* Telemetry is the first thing that should give way when the CPU is busy */
+            m_thread.setPriority(Thread.MIN_PRIORITY);
+
+            for (int i = 0; i < BUFFER_SIZE; ++i) {
+                m_buffer[i] = new SwerveStateBuffer.Frame(ModuleCount);
+            }
+        }
+
+        /**
+         * Starts the telemetry thread.
+         */
+        public void start() {
+            m_running = true;
+            m_thread.start();
+        }
+
+        /**
+         * Stops the telemetry thread.
+         */
+        public void stop() {
+            m_running = false;
+            LockSupport.unpark(m_thread);
+            try {
+                m_thread.join();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Copies the state into the ring for the telemetry thread to pick up.
+         * Only the odometry thread may call this.
+         *
+         * @param frame The state to publish
+         */
+        protected void publish(SwerveStateBuffer.Frame frame) {
+            long writeIndex = m_writeIndex;
+            if (writeIndex - m_readIndex >= BUFFER_SIZE) {
+                /* Telemetry fell behind, drop this frame rather than wait on it */
+                m_droppedFrames++;
+                return;
+            }
+            m_buffer[(int) (writeIndex & (BUFFER_SIZE - 1))].copyFrom(frame);
+            m_writeIndex = writeIndex + 1;
+        }
+
+        public void run() {
+            LatencyHistogram callbackLatency = m_latencyHistograms[LatencyPhase.TelemetryCallback.ordinal()];
+            /* Handed to the telemetry function, refilled in place for every state */
+            SwerveDriveState state = createStateBuffer();
+            while (m_running) {
+                long readIndex = m_readIndex;
+                if (readIndex == m_writeIndex) {
+                    LockSupport.parkNanos(IDLE_PERIOD_NANOS);
+                    continue;
+                }
+
+                m_buffer[(int) (readIndex & (BUFFER_SIZE - 1))].toState(state);
+                /* The slot is copied out, the odometry thread can have it back */
+                m_readIndex = readIndex + 1;
+
+                var telemetryFunction = m_telemetryFunction;
+                if (telemetryFunction != null) {
+                    long callbackStartNanos = System.nanoTime();
+                    telemetryFunction.accept(state);
+                    callbackLatency.record(System.nanoTime() - callbackStartNanos);
+                }
+            }
+        }
+
+        /**
+         * Gets the number of states dropped because the telemetry function
+         * couldn't keep up with the odometry thread.
+         *
+         * @return Total dropped states
+         */
+        public long getDroppedFrames() {
+            return m_droppedFrames;
+        }
+    }
+
     protected boolean checkIsOnCanFD(String canbusName) {
         return CANBus.isNetworkFD(canbusName);
     }
@@ -353,6 +742,7 @@ public class SwerveDrivetrain {
             UpdateFrequency = OdometryUpdateFrequency;
         }
         ModuleCount = modules.length;
+        m_poseHistory = new PoseHistory((int) Math.ceil(UpdateFrequency * POSE_HISTORY_SECONDS));
 
         m_pigeon2 = new Pigeon2(driveTrainConstants.Pigeon2Id, driveTrainConstants.CANbusName);
         m_yawGetter = m_pigeon2.getYaw().clone();
@@ -360,7 +750,10 @@ public class SwerveDrivetrain {
 
         Modules = new SwerveModule[ModuleCount];
         m_modulePositions = new SwerveModulePosition[ModuleCount];
-        m_moduleStates = new SwerveModuleState[ModuleCount];
+        m_moduleDistances = new double[ModuleCount];
+        m_modulePositionAngles = new double[ModuleCount];
+        m_moduleSpeeds = new double[ModuleCount];
+        m_moduleStateAngles = new double[ModuleCount];
         m_moduleLocations = new Translation2d[ModuleCount];
 
         int iteration = 0;
@@ -368,18 +761,30 @@ public class SwerveDrivetrain {
             Modules[iteration] = new SwerveModule(module, driveTrainConstants.CANbusName);
             m_moduleLocations[iteration] = new Translation2d(module.LocationX, module.LocationY);
             m_modulePositions[iteration] = Modules[iteration].getPosition(true);
-            m_moduleStates[iteration] = Modules[iteration].getCurrentState();
 
             iteration++;
         }
         m_kinematics = new SwerveDriveKinematics(m_moduleLocations);
-        m_odometry = new SwerveDrivePoseEstimator(m_kinematics, new Rotation2d(), m_modulePositions, new Pose2d(), odometryStandardDeviation, visionStandardDeviation);
+        m_kinematicsEngine = new SwerveKinematicsEngine(m_moduleLocations);
+        m_forwardKinematics = createForwardKinematics(m_moduleLocations);
+        m_odometry = new SwervePoseEstimator(m_moduleLocations, UpdateFrequency, new Rotation2d(), m_modulePositions, new Pose2d(), odometryStandardDeviation, visionStandardDeviation);
+        m_defaultVisionStdDevs.assignBlock(0, 0, visionStandardDeviation);
 
         m_fieldRelativeOffset = new Rotation2d();
         m_operatorForwardDirection = new Rotation2d();
 
+        /* Readers see the origin until the first odometry update */
+        m_stateBuffer = new SwerveStateBuffer(ModuleCount);
+
         m_simDrive = new SimSwerveDrivetrain(m_moduleLocations, m_pigeon2, driveTrainConstants, modules);
 
+        for (int i = 0; i < m_latencyHistograms.length; ++i) {
+            m_latencyHistograms[i] = new LatencyHistogram();
+        }
+
+        m_telemetryThread = new TelemetryThread();
+        m_telemetryThread.start();
+
         m_odometryThread = new OdometryThread();
         m_odometryThread.start();
     }
@@ -393,6 +798,51 @@ public class SwerveDrivetrain {
         return m_odometryThread;
     }
 
+    /**
+     * Stops the odometry thread, so the simulation can run each odometry update
+     * itself with {@link #stepOdometry()}. Used by the headless simulation to
+     * keep the drivetrain in lockstep with the paused sim clock.
+     */
+    public void useSteppedOdometry() {
+        m_odometryThread.useStepping();
+    }
+
+    /**
+     * Runs a single odometry update and applies the current request on the
+     * calling thread. Only valid after {@link #useSteppedOdometry()}.
+     */
+    public void stepOdometry() {
+        m_odometryThread.step();
+    }
+
+    /**
+     * Gets the latency histogram of one phase of the odometry or telemetry loop.
+     *
+     * @param phase Phase to get the histogram of
+     * @return Latency histogram, in nanoseconds
+     */
+    public LatencyHistogram getLatencyHistogram(LatencyPhase phase) {
+        return m_latencyHistograms[phase.ordinal()];
+    }
+
+    /**
+     * Clears every latency histogram, such as at the start of a match.
+     */
+    public void resetLatencyStats() {
+        for (var histogram : m_latencyHistograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Gets a reference to the telemetry thread.
+     *
+     * @return Telemetry thread
+     */
+    public TelemetryThread getTelemetryThread() {
+        return m_telemetryThread;
+    }
+
     /**
      * Applies the specified control request to this swerve drivetrain.
      *
@@ -408,6 +858,30 @@ public class SwerveDrivetrain {
         }
     }
 
+    /**
+     * Updates the specified control request and applies it to this swerve
+     * drivetrain in one step, so the odometry thread never sees a request with
+     * only some of its parameters updated.
+     * <p>
+     * This lets callers keep a single request around and mutate it every loop
+     * instead of allocating a new one. The update runs with the drivetrain state
+     * locked, so it should only set fields; read any sensors or joysticks before
+     * calling this.
+     *
+     * @param request Request to update and apply
+     * @param update  Sets the new parameters on the request
+     */
+    public <T extends SwerveRequest> void setControl(T request, Consumer<? super T> update) {
+        try {
+            m_stateLock.writeLock().lock();
+
+            update.accept(request);
+            m_requestToApply = request;
+        } finally {
+            m_stateLock.writeLock().unlock();
+        }
+    }
+
     /**
      * Configures the neutral mode to use for all modules' drive motors.
      *
@@ -439,6 +913,7 @@ public class SwerveDrivetrain {
                 m_modulePositions[i] = Modules[i].getPosition(true);
             }
             m_odometry.resetPosition(Rotation2d.fromDegrees(m_yawGetter.getValue()), m_modulePositions, new Pose2d());
+            m_poseHistory.clear();
         } finally {
             m_stateLock.writeLock().unlock();
         }
@@ -453,7 +928,7 @@ public class SwerveDrivetrain {
         try {
             m_stateLock.writeLock().lock();
 
-            m_fieldRelativeOffset = getState().Pose.getRotation();
+            m_fieldRelativeOffset = getPose().getRotation();
         } finally {
             m_stateLock.writeLock().unlock();
         }
@@ -486,8 +961,22 @@ public class SwerveDrivetrain {
             m_stateLock.writeLock().lock();
 
             m_odometry.resetPosition(Rotation2d.fromDegrees(m_yawGetter.getValue()), m_modulePositions, location);
+            if (Utils.isSimulation()) {
+                /* In sim, seeding the pose is how the robot gets placed on the field */
+                m_simDrive.resetTruthPose(location);
+            }
+            /* The old history describes a pose we no longer believe in */
+            m_poseHistory.clear();
             /* We need to update our cached pose immediately so that race conditions don't happen */
-            m_cachedState.Pose = location;
+            SwerveStateBuffer.Frame frame = m_stateBuffer.getWriteFrame();
+            long stamp = m_stateBuffer.beginWrite();
+            try {
+                frame.x = location.getX();
+                frame.y = location.getY();
+                frame.theta = location.getRotation().getRadians();
+            } finally {
+                m_stateBuffer.endWrite(stamp);
+            }
         } finally {
             m_stateLock.writeLock().unlock();
         }
@@ -523,17 +1012,180 @@ public class SwerveDrivetrain {
 
     /**
      * Gets the current state of the swerve drivetrain.
+     * <p>
+     * This never blocks the odometry thread. The returned state is a new copy
+     * that belongs to the caller, so nothing else ever writes it and it can be
+     * kept for as long as needed. Loops that read the state many times can
+     * refill their own object with {@link #getState(SwerveDriveState)} instead.
      *
-     * @return Current state of the drivetrain
+     * @return Snapshot of the current state of the drivetrain
      */
     public SwerveDriveState getState() {
-        try {
-            m_stateLock.readLock().lock();
+        SwerveDriveState state = createStateBuffer();
+        getState(state);
+        return state;
+    }
 
-            return m_cachedState;
-        } finally {
-            m_stateLock.readLock().unlock();
+    /**
+     * Gets the current pose of the robot, the same as the pose in
+     * {@link #getState()}.
+     * <p>
+     * This only copies the pose out of the newest state, and hands back the
+     * same object as the last call on this thread if the robot hasn't moved
+     * since, so it is cheap to call many times a loop.
+     *
+     * @return The current pose of the robot
+     */
+    public Pose2d getPose() {
+        SwerveStateBuffer.Frame frame = m_readerFrames.get();
+        m_stateBuffer.readPose(frame);
+        Pose2d last = m_readerPoses.get();
+        Pose2d pose = frame.toPose(last);
+        if (pose != last) {
+            m_readerPoses.set(pose);
+        }
+        return pose;
+    }
+
+    /**
+     * Copies a consistent snapshot of the current state of the swerve
+     * drivetrain into the provided object.
+     *
+     * @param stateToPutResultsIn State object to fill; its module arrays are
+     *                            reallocated if they are not sized for this drivetrain
+     */
+    public void getState(SwerveDriveState stateToPutResultsIn) {
+        if (stateToPutResultsIn.ModuleStates == null || stateToPutResultsIn.ModuleStates.length != ModuleCount
+                || stateToPutResultsIn.ModuleTargets == null || stateToPutResultsIn.ModuleTargets.length != ModuleCount
+                || stateToPutResultsIn.speeds == null) {
+            fillStateBuffer(stateToPutResultsIn);
+        }
+
+        SwerveStateBuffer.Frame frame = m_readerFrames.get();
+        m_stateBuffer.read(frame);
+        frame.toState(stateToPutResultsIn);
+    }
+
+    /**
+     * Builds the forward kinematics matrix the same way {@link SwerveDriveKinematics}
+     * does, so {@link #toChassisSpeeds} matches it exactly without allocating.
+     * Also used by {@link SwervePoseEstimator} to integrate odometry.
+     */
+    static double[] createForwardKinematics(Translation2d[] moduleLocations) {
+        SimpleMatrix inverseKinematics = new SimpleMatrix(moduleLocations.length * 2, 3);
+        for (int i = 0; i < moduleLocations.length; ++i) {
+            inverseKinematics.setRow(i * 2 + 0, 0, /* Start Data */ 1, 0, -moduleLocations[i].getY());
+            inverseKinematics.setRow(i * 2 + 1, 0, /* Start Data */ 0, 1, +moduleLocations[i].getX());
+        }
+        SimpleMatrix forwardKinematics = inverseKinematics.pseudoInverse();
+
+        double[] flattened = new double[3 * moduleLocations.length * 2];
+        for (int row = 0; row < 3; ++row) {
+            for (int col = 0; col < moduleLocations.length * 2; ++col) {
+                flattened[row * moduleLocations.length * 2 + col] = forwardKinematics.get(row, col);
+            }
+        }
+        return flattened;
+    }
+
+    /**
+     * Performs forward kinematics to return the resulting chassis speeds from
+     * the given module speeds and angles, in place.
+     * <p>
+     * The math is done in the same order as {@link SwerveDriveKinematics#toChassisSpeeds},
+     * so the result is identical to it.
+     *
+     * @param moduleSpeeds                Speed of each module, in meters per second
+     * @param moduleAngles                Angle of each module, in radians
+     * @param chassisSpeedsToPutResultsIn The chassis speeds to fill
+     */
+    protected void toChassisSpeeds(double[] moduleSpeeds, double[] moduleAngles,
+            ChassisSpeeds chassisSpeedsToPutResultsIn) {
+        int columns = ModuleCount * 2;
+        double vx = 0, vy = 0, omega = 0;
+        for (int i = 0; i < ModuleCount; ++i) {
+            /* The same values Rotation2d would cache for the angle */
+            double x = moduleSpeeds[i] * Math.cos(moduleAngles[i]);
+            double y = moduleSpeeds[i] * Math.sin(moduleAngles[i]);
+            if (i == 0) {
+                vx = m_forwardKinematics[0] * x;
+                vy = m_forwardKinematics[columns] * x;
+                omega = m_forwardKinematics[2 * columns] * x;
+            } else {
+                vx += m_forwardKinematics[i * 2] * x;
+                vy += m_forwardKinematics[columns + i * 2] * x;
+                omega += m_forwardKinematics[2 * columns + i * 2] * x;
+            }
+            vx += m_forwardKinematics[i * 2 + 1] * y;
+            vy += m_forwardKinematics[columns + i * 2 + 1] * y;
+            omega += m_forwardKinematics[2 * columns + i * 2 + 1] * y;
+        }
+        chassisSpeedsToPutResultsIn.vxMetersPerSecond = vx;
+        chassisSpeedsToPutResultsIn.vyMetersPerSecond = vy;
+        chassisSpeedsToPutResultsIn.omegaRadiansPerSecond = omega;
+    }
+
+    private SwerveDriveState createStateBuffer() {
+        SwerveDriveState state = new SwerveDriveState();
+        fillStateBuffer(state);
+        return state;
+    }
+
+    private void fillStateBuffer(SwerveDriveState state) {
+        state.Pose = new Pose2d();
+        state.speeds = new ChassisSpeeds();
+        state.ModuleStates = new SwerveModuleState[ModuleCount];
+        state.ModuleTargets = new SwerveModuleState[ModuleCount];
+        for (int i = 0; i < ModuleCount; ++i) {
+            state.ModuleStates[i] = new SwerveModuleState();
+            state.ModuleTargets[i] = new SwerveModuleState();
+        }
+    }
+
+    /**
+     * Gets the interpolated pose and velocity of the robot at a past time,
+     * without locking or allocating.
+     * <p>
+     * Times older than the buffered history are clamped to the oldest sample,
+     * and times in the future are clamped to the newest sample.
+     *
+     * @param timestampSeconds     The time to look up, in seconds with the same epoch as
+     *                             {@link edu.wpi.first.wpilibj.Timer#getFPGATimestamp()}
+     * @param sampleToPutResultsIn Sample to fill with the pose and robot-relative velocity
+     * @return false if there is no history yet, in which case the sample is untouched
+     */
+    public boolean getPoseAt(double timestampSeconds, PoseHistory.Sample sampleToPutResultsIn) {
+        return m_poseHistory.sample(timestampSeconds, sampleToPutResultsIn);
+    }
+
+    /**
+     * Gets the interpolated pose of the robot at a past time.
+     *
+     * @param timestampSeconds The time to look up, in seconds with the same epoch as
+     *                         {@link edu.wpi.first.wpilibj.Timer#getFPGATimestamp()}
+     * @return The pose at that time, or the current pose if there is no history yet
+     */
+    public Pose2d getPoseAt(double timestampSeconds) {
+        PoseHistory.Sample sample = m_historySamples.get();
+        if (!m_poseHistory.sample(timestampSeconds, sample)) {
+            return getPose();
         }
+        return new Pose2d(sample.x, sample.y, Rotation2d.fromRadians(sample.theta));
+    }
+
+    /**
+     * Gets the interpolated robot-relative velocity of the robot at a past time.
+     *
+     * @param timestampSeconds The time to look up, in seconds with the same epoch as
+     *                         {@link edu.wpi.first.wpilibj.Timer#getFPGATimestamp()}
+     * @return The velocity at that time, or zero if there is no history yet
+     */
+    public ChassisSpeeds getVelocityAt(double timestampSeconds) {
+        PoseHistory.Sample sample = m_historySamples.get();
+        if (!m_poseHistory.sample(timestampSeconds, sample)) {
+            return new ChassisSpeeds();
+        }
+        return new ChassisSpeeds(sample.vx, sample.vy, sample.omega);
     }
 
     /**
@@ -554,7 +1206,11 @@ public class SwerveDrivetrain {
      * <p>
      * This method can be called as infrequently as you want, as long as you are
      * calling {@link
-     * SwerveDrivePoseEstimator#update} every loop.
+     * SwervePoseEstimator#update} every loop.
+     *
+     * <p>
+     * The measurement is queued and fused by the odometry thread on its next
+     * loop, so this never blocks and is safe to call from any thread.
      *
      * <p>
      * To promote stability of the pose estimate and make it robust to bad vision
@@ -565,9 +1221,8 @@ public class SwerveDrivetrain {
      *
      * <p>
      * Note that the vision measurement standard deviations passed into this method
-     * will continue
-     * to apply to future measurements until a subsequent call to {@link
-     * SwerveDrivePoseEstimator#setVisionMeasurementStdDevs(Matrix)} or this method.
+     * only apply to this measurement. Measurements without their own use the
+     * ones from {@link #setVisionMeasurementStdDevs(Matrix)}.
      *
      * @param visionRobotPoseMeters    The pose of the robot as measured by the
      *                                 vision camera.
@@ -575,7 +1230,7 @@ public class SwerveDrivetrain {
      *                                 seconds. Note that if you
      *                                 don't use your own time source by calling
      *                                 {@link
-     *                                 SwerveDrivePoseEstimator#updateWithTime(double,Rotation2d,SwerveModulePosition[])},
+     *                                 SwervePoseEstimator#updateWithTime(double,Rotation2d,SwerveModulePosition[])},
      *                                 then
      *                                 you must use a timestamp with an epoch since
      *                                 FPGA startup (i.e., the epoch of this
@@ -595,12 +1250,12 @@ public class SwerveDrivetrain {
             Pose2d visionRobotPoseMeters,
             double timestampSeconds,
             Matrix<N3, N1> visionMeasurementStdDevs) {
-        try {
-            m_stateLock.writeLock().lock();
-            m_odometry.addVisionMeasurement(visionRobotPoseMeters, timestampSeconds, visionMeasurementStdDevs);
-        } finally {
-            m_stateLock.writeLock().unlock();
-        }
+        m_visionQueue.offer(
+                visionRobotPoseMeters.getX(), visionRobotPoseMeters.getY(),
+                visionRobotPoseMeters.getRotation().getRadians(),
+                timestampSeconds, Timer.getFPGATimestamp(), true,
+                visionMeasurementStdDevs.get(0, 0), visionMeasurementStdDevs.get(1, 0),
+                visionMeasurementStdDevs.get(2, 0));
     }
 
     /**
@@ -611,7 +1266,11 @@ public class SwerveDrivetrain {
      * <p>
      * This method can be called as infrequently as you want, as long as you are
      * calling {@link
-     * SwerveDrivePoseEstimator#update} every loop.
+     * SwervePoseEstimator#update} every loop.
+     *
+     * <p>
+     * The measurement is queued and fused by the odometry thread on its next
+     * loop, so this never blocks and is safe to call from any thread.
      *
      * <p>
      * To promote stability of the pose estimate and make it robust to bad vision
@@ -625,7 +1284,7 @@ public class SwerveDrivetrain {
      * @param timestampSeconds      The timestamp of the vision measurement in
      *                              seconds. Note that if you
      *                              don't use your own time source by calling {@link
-     *                              SwerveDrivePoseEstimator#updateWithTime(double,Rotation2d,SwerveModulePosition[])}
+     *                              SwervePoseEstimator#updateWithTime(double,Rotation2d,SwerveModulePosition[])}
      *                              then you
      *                              must use a timestamp with an epoch since FPGA
      *                              startup (i.e., the epoch of this timestamp is
@@ -638,12 +1297,80 @@ public class SwerveDrivetrain {
      *                              or sync the epochs.
      */
     public void addVisionMeasurement(Pose2d visionRobotPoseMeters, double timestampSeconds) {
-        try {
-            m_stateLock.writeLock().lock();
-            m_odometry.addVisionMeasurement(visionRobotPoseMeters, timestampSeconds);
-        } finally {
-            m_stateLock.writeLock().unlock();
-        }
+        m_visionQueue.offer(
+                visionRobotPoseMeters.getX(), visionRobotPoseMeters.getY(),
+                visionRobotPoseMeters.getRotation().getRadians(),
+                timestampSeconds, Timer.getFPGATimestamp(), false, 0, 0, 0);
+    }
+
+    /**
+     * Adds a vision measurement to the Kalman Filter, like
+     * {@link #addVisionMeasurement(Pose2d, double)}, for measurements that
+     * know when they arrived on the roboRIO. The vision fuse latency is then
+     * measured from when the measurement arrived instead of when it was queued.
+     *
+     * @param visionRobotPoseMeters The pose of the robot as measured by the vision camera.
+     * @param timestampSeconds      The timestamp of the vision measurement in seconds,
+     *                              with the FPGA epoch.
+     * @param arrivalTimeSeconds    When the measurement arrived on the roboRIO, in
+     *                              seconds with the FPGA epoch.
+     */
+    public void addVisionMeasurement(Pose2d visionRobotPoseMeters, double timestampSeconds, double arrivalTimeSeconds) {
+        m_visionQueue.offer(
+                visionRobotPoseMeters.getX(), visionRobotPoseMeters.getY(),
+                visionRobotPoseMeters.getRotation().getRadians(),
+                timestampSeconds, arrivalTimeSeconds, false, 0, 0, 0);
+    }
+
+    /**
+     * Gets the number of vision measurements waiting for the odometry
+     * thread to fuse them.
+     *
+     * @return Current vision queue depth
+     */
+    public int getVisionQueueDepth() {
+        return m_visionQueue.getDepth();
+    }
+
+    /**
+     * Gets the number of vision measurements dropped because the odometry
+     * thread fell behind and the queue filled up.
+     *
+     * @return Total dropped vision measurements
+     */
+    public long getVisionMeasurementsDropped() {
+        return m_visionQueue.getDroppedCount();
+    }
+
+    /**
+     * Gets the number of times vision was fused into the pose estimator.
+     * Measurements merged together count once.
+     *
+     * @return Total fused vision measurements
+     */
+    public long getVisionMeasurementsFused() {
+        return m_visionMeasurementsFused;
+    }
+
+    /**
+     * Gets the number of vision measurements that were merged into another
+     * measurement from the same instant instead of being fused on their own,
+     * each one a correction transform the estimator didn't have to work out
+     * and store.
+     *
+     * @return Total merged vision measurements
+     */
+    public long getVisionMeasurementsMerged() {
+        return m_visionMeasurementsMerged;
+    }
+
+    /**
+     * Gets how long the last fused vision measurement waited in the queue.
+     *
+     * @return Time from enqueue to fusion, in seconds
+     */
+    public double getVisionFuseLatency() {
+        return m_visionFuseLatency;
     }
 
     /**
@@ -664,6 +1391,7 @@ public class SwerveDrivetrain {
         try {
             m_stateLock.writeLock().lock();
             m_odometry.setVisionMeasurementStdDevs(visionMeasurementStdDevs);
+            m_defaultVisionStdDevs.assignBlock(0, 0, visionMeasurementStdDevs);
         } finally {
             m_stateLock.writeLock().unlock();
         }
@@ -680,14 +1408,34 @@ public class SwerveDrivetrain {
         m_simDrive.update(dtSeconds, supplyVoltage, Modules);
     }
 
+    /**
+     * Gets the pose of the simulated robot, as opposed to the pose odometry
+     * estimates from the simulated sensors.
+     *
+     * @return Ground truth field-relative pose
+     */
+    public Pose2d getSimTruthPose() {
+        return m_simDrive.getTruthPose();
+    }
+
+    /**
+     * Gets the battery voltage after the sag from the simulated drivetrain's
+     * current draw.
+     *
+     * @return Loaded battery voltage
+     */
+    public double getSimBatteryVoltage() {
+        return m_simDrive.getBatteryVoltage();
+    }
+
 
     /**
      * Register the specified lambda to be executed whenever our SwerveDriveState function
      * is updated in our odometry thread.
      * <p>
-     * It is imperative that this function is cheap, as it will be executed along with
-     * the odometry call, and if this takes a long time, it may negatively impact
-     * the odometry of this stack.
+     * The function runs on a separate low priority telemetry thread with a copy
+     * of each state, so it can't slow down the odometry thread. If it takes
+     * longer than the odometry period for too long, states are dropped.
      * <p>
      * This can also be used for logging data if the function performs logging instead of telemetry
      *
@@ -702,6 +1450,16 @@ public class SwerveDrivetrain {
         }
     }
 
+    /**
+     * Register a publisher to send the robot's yaw to the Limelights every
+     * odometry update, using the same latency compensated yaw odometry used.
+     *
+     * @param orientationPublisher Publisher to send the yaw with, or null to stop
+     */
+    public void registerOrientationPublisher(RobotOrientationPublisher orientationPublisher) {
+        m_orientationPublisher = orientationPublisher;
+    }
+
     /**
      * Gets this drivetrain's Pigeon 2 reference.
      * <p>
@@ -0,0 +1,289 @@
+package frc.robot.subsystems.Drivetrain;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+
+/**
+ * Allocation-free inverse kinematics for the swerve requests.
+ * <p>
+ * Does the same math as {@link SwerveDriveKinematics#toSwerveModuleStates},
+ * {@link ChassisSpeeds#fromFieldRelativeSpeeds} and {@link ChassisSpeeds#discretize},
+ * in the same order, so the results are bit-for-bit identical to WPILib. The
+ * difference is that the module speeds and angles are written into
+ * preallocated buffers instead of new {@link edu.wpi.first.math.kinematics.SwerveModuleState}s,
+ * and the inverse kinematics matrix is only rebuilt when the center of
+ * rotation moves.
+ * <p>
+ * Like {@link SwerveDriveKinematics}, this remembers the last module headings
+ * so the modules hold their direction when asked to stop. Only the odometry
+ * thread should use it, from inside {@link SwerveRequest#apply}.
+ */
+public class SwerveKinematicsEngine {
+    private final int m_moduleCount;
+    private final double[] m_moduleX;
+    private final double[] m_moduleY;
+
+    /*
+     * Rotation column of the inverse kinematics matrix for the cached center of
+     * rotation. The translation columns are always identity, so they aren't stored.
+     */
+    private final double[] m_rotationColumnX;
+    private final double[] m_rotationColumnY;
+    private double m_centerOfRotationX = 0;
+    private double m_centerOfRotationY = 0;
+
+    private final double[] m_moduleSpeeds;
+    private final double[] m_moduleAngles;
+    /* Last commanded heading of each module, held when the robot is asked to stop */
+    private final double[] m_moduleHeadings;
+
+    /**
+     * Constructs a kinematics engine for the given module locations.
+     *
+     * @param moduleLocations Locations of the modules relative to the center of the robot
+     */
+    public SwerveKinematicsEngine(Translation2d... moduleLocations) {
+        m_moduleCount = moduleLocations.length;
+        m_moduleX = new double[m_moduleCount];
+        m_moduleY = new double[m_moduleCount];
+        m_rotationColumnX = new double[m_moduleCount];
+        m_rotationColumnY = new double[m_moduleCount];
+        m_moduleSpeeds = new double[m_moduleCount];
+        m_moduleAngles = new double[m_moduleCount];
+        m_moduleHeadings = new double[m_moduleCount];
+
+        for (int i = 0; i < m_moduleCount; ++i) {
+            m_moduleX[i] = moduleLocations[i].getX();
+            m_moduleY[i] = moduleLocations[i].getY();
+        }
+        /* SwerveDriveKinematics starts out built around the center of the robot */
+        buildInverseKinematics(0, 0);
+    }
+
+    /**
+     * Performs inverse kinematics, filling the module speed and angle buffers.
+     * <p>
+     * The results are read back with {@link #getModuleSpeed} and
+     * {@link #getModuleAngle}, or sent straight to the modules with {@link #apply}.
+     *
+     * @param chassisSpeeds    The desired robot-relative chassis speeds
+     * @param centerOfRotation The center of rotation, relative to the center of the robot
+     */
+    public void toSwerveModuleStates(ChassisSpeeds chassisSpeeds, Translation2d centerOfRotation) {
+        toSwerveModuleStates(chassisSpeeds.vxMetersPerSecond, chassisSpeeds.vyMetersPerSecond,
+                chassisSpeeds.omegaRadiansPerSecond, centerOfRotation.getX(), centerOfRotation.getY());
+    }
+
+    /**
+     * Performs inverse kinematics, filling the module speed and angle buffers.
+     *
+     * @param vxMetersPerSecond     Robot-relative X velocity
+     * @param vyMetersPerSecond     Robot-relative Y velocity
+     * @param omegaRadiansPerSecond Angular velocity
+     * @param centerOfRotationX     X of the center of rotation, relative to the center of the robot
+     * @param centerOfRotationY     Y of the center of rotation, relative to the center of the robot
+     */
+    public void toSwerveModuleStates(double vxMetersPerSecond, double vyMetersPerSecond, double omegaRadiansPerSecond,
+            double centerOfRotationX, double centerOfRotationY) {
+        if (vxMetersPerSecond == 0.0 && vyMetersPerSecond == 0.0 && omegaRadiansPerSecond == 0.0) {
+            for (int i = 0; i < m_moduleCount; ++i) {
+                m_moduleSpeeds[i] = 0.0;
+                m_moduleAngles[i] = m_moduleHeadings[i];
+            }
+            return;
+        }
+
+        /* Same tolerance as Translation2d.equals, which is what WPILib checks before rebuilding */
+        if (Math.abs(centerOfRotationX - m_centerOfRotationX) >= 1E-9
+                || Math.abs(centerOfRotationY - m_centerOfRotationY) >= 1E-9) {
+            buildInverseKinematics(centerOfRotationX, centerOfRotationY);
+        }
+
+        for (int i = 0; i < m_moduleCount; ++i) {
+            /*
+             * Row by row the same as EJML multiplying the [1, 0, c] and [0, 1, c] rows,
+             * zero terms included, so signed zeros and non-finite inputs come out the same
+             */
+            double x = 1.0 * vxMetersPerSecond + 0.0 * vyMetersPerSecond + m_rotationColumnX[i] * omegaRadiansPerSecond;
+            double y = 0.0 * vxMetersPerSecond + 1.0 * vyMetersPerSecond + m_rotationColumnY[i] * omegaRadiansPerSecond;
+
+            m_moduleSpeeds[i] = Math.hypot(x, y);
+            m_moduleAngles[i] = angleOf(x, y);
+            m_moduleHeadings[i] = m_moduleAngles[i];
+        }
+    }
+
+    /**
+     * Scales the module speeds down in place so none of them is faster than
+     * the given speed, keeping the ratios between them. Same as
+     * {@link SwerveDriveKinematics#desaturateWheelSpeeds(edu.wpi.first.math.kinematics.SwerveModuleState[], double)}.
+     *
+     * @param attainableMaxSpeedMetersPerSecond The fastest any module can drive
+     */
+    public void desaturateWheelSpeeds(double attainableMaxSpeedMetersPerSecond) {
+        double realMaxSpeed = 0;
+        for (int i = 0; i < m_moduleCount; ++i) {
+            realMaxSpeed = Math.max(realMaxSpeed, Math.abs(m_moduleSpeeds[i]));
+        }
+        if (realMaxSpeed > attainableMaxSpeedMetersPerSecond) {
+            for (int i = 0; i < m_moduleCount; ++i) {
+                m_moduleSpeeds[i] = m_moduleSpeeds[i] / realMaxSpeed * attainableMaxSpeedMetersPerSecond;
+            }
+        }
+    }
+
+    /**
+     * Multiplies every module speed by the given factor, in place.
+     *
+     * @param factor Factor to scale the speeds by
+     */
+    public void scaleWheelSpeeds(double factor) {
+        for (int i = 0; i < m_moduleCount; ++i) {
+            m_moduleSpeeds[i] *= factor;
+        }
+    }
+
+    /**
+     * Sends the module speeds and angles from the last call to
+     * {@link #toSwerveModuleStates} to the modules.
+     *
+     * @param modulesToApply   Modules to apply the states to, in the same order as the locations
+     * @param driveRequestType The type of control request to use for the drive motors
+     * @param steerRequestType The type of control request to use for the steer motors
+     */
+    public void apply(SwerveModule[] modulesToApply, SwerveModule.DriveRequestType driveRequestType,
+            SwerveModule.SteerRequestType steerRequestType) {
+        for (int i = 0; i < modulesToApply.length; ++i) {
+            modulesToApply[i].apply(m_moduleSpeeds[i], m_moduleAngles[i], driveRequestType, steerRequestType);
+        }
+    }
+
+    /**
+     * Gets the speed of a module from the last call to {@link #toSwerveModuleStates}.
+     *
+     * @param index Index of the module
+     * @return Speed of the module, in meters per second
+     */
+    public double getModuleSpeed(int index) {
+        return m_moduleSpeeds[index];
+    }
+
+    /**
+     * Gets the angle of a module from the last call to {@link #toSwerveModuleStates}.
+     *
+     * @param index Index of the module
+     * @return Angle of the module, in radians
+     */
+    public double getModuleAngle(int index) {
+        return m_moduleAngles[index];
+    }
+
+    /**
+     * Converts field-relative speeds into robot-relative speeds, in place of
+     * {@link ChassisSpeeds#fromFieldRelativeSpeeds(double, double, double, edu.wpi.first.math.geometry.Rotation2d)}.
+     *
+     * @param vxMetersPerSecond           Field-relative X velocity
+     * @param vyMetersPerSecond           Field-relative Y velocity
+     * @param omegaRadiansPerSecond       Angular velocity
+     * @param robotAngleRadians           Heading of the robot on the field
+     * @param chassisSpeedsToPutResultsIn Chassis speeds to fill with the robot-relative speeds
+     */
+    public static void fromFieldRelativeSpeeds(double vxMetersPerSecond, double vyMetersPerSecond,
+            double omegaRadiansPerSecond, double robotAngleRadians, ChassisSpeeds chassisSpeedsToPutResultsIn) {
+        /* Rotation2d.unaryMinus recomputes the sin and cos from the negated angle, so we do too */
+        double cos = Math.cos(-robotAngleRadians);
+        double sin = Math.sin(-robotAngleRadians);
+        chassisSpeedsToPutResultsIn.vxMetersPerSecond = vxMetersPerSecond * cos - vyMetersPerSecond * sin;
+        chassisSpeedsToPutResultsIn.vyMetersPerSecond = vxMetersPerSecond * sin + vyMetersPerSecond * cos;
+        chassisSpeedsToPutResultsIn.omegaRadiansPerSecond = omegaRadiansPerSecond;
+    }
+
+    /**
+     * Discretizes the chassis speeds in place, the same as
+     * {@link ChassisSpeeds#discretize(ChassisSpeeds, double)}, so following them
+     * for one period lands on the pose they describe instead of skewing
+     * away while rotating.
+     *
+     * @param chassisSpeeds Chassis speeds to discretize
+     * @param dtSeconds     The duration of the timestep the speeds should be applied for
+     */
+    public static void discretize(ChassisSpeeds chassisSpeeds, double dtSeconds) {
+        /* Pose2d(vx * dt, vy * dt, Rotation2d(omega * dt)) */
+        double endX = chassisSpeeds.vxMetersPerSecond * dtSeconds;
+        double endY = chassisSpeeds.vyMetersPerSecond * dtSeconds;
+        double endTheta = chassisSpeeds.omegaRadiansPerSecond * dtSeconds;
+        double endCos = Math.cos(endTheta);
+        double endSin = Math.sin(endTheta);
+
+        /*
+         * new Pose2d().log(end): end.relativeTo(identity), where the identity's
+         * inverse rotation is Rotation2d(-0.0) with a cos of 1 and a sin of -0
+         */
+        double translationX = endX - 0.0;
+        double translationY = endY - 0.0;
+        double transformX = translationX * 1.0 - translationY * -0.0;
+        double transformY = translationX * -0.0 + translationY * 1.0;
+
+        double rotationX = endCos * 1.0 - endSin * -0.0;
+        double rotationY = endCos * -0.0 + endSin * 1.0;
+        double rotationMagnitude = Math.hypot(rotationX, rotationY);
+        double rotationCos;
+        double rotationSin;
+        if (rotationMagnitude > 1e-6) {
+            rotationSin = rotationY / rotationMagnitude;
+            rotationCos = rotationX / rotationMagnitude;
+        } else {
+            rotationSin = 0.0;
+            rotationCos = 1.0;
+        }
+
+        double dtheta = Math.atan2(rotationSin, rotationCos);
+        double halfDtheta = dtheta / 2.0;
+        double cosMinusOne = rotationCos - 1;
+
+        double halfThetaByTanOfHalfDtheta;
+        if (Math.abs(cosMinusOne) < 1E-9) {
+            halfThetaByTanOfHalfDtheta = 1.0 - 1.0 / 12.0 * dtheta * dtheta;
+        } else {
+            halfThetaByTanOfHalfDtheta = -(halfDtheta * rotationSin) / cosMinusOne;
+        }
+
+        /* translation.rotateBy(new Rotation2d(halfThetaByTanOfHalfDtheta, -halfDtheta)).times(hypot(...)) */
+        double twistMagnitude = Math.hypot(halfThetaByTanOfHalfDtheta, -halfDtheta);
+        double twistCos;
+        double twistSin;
+        if (twistMagnitude > 1e-6) {
+            twistSin = -halfDtheta / twistMagnitude;
+            twistCos = halfThetaByTanOfHalfDtheta / twistMagnitude;
+        } else {
+            twistSin = 0.0;
+            twistCos = 1.0;
+        }
+        double scale = Math.hypot(halfThetaByTanOfHalfDtheta, halfDtheta);
+        double dx = (transformX * twistCos - transformY * twistSin) * scale;
+        double dy = (transformX * twistSin + transformY * twistCos) * scale;
+
+        chassisSpeeds.vxMetersPerSecond = dx / dtSeconds;
+        chassisSpeeds.vyMetersPerSecond = dy / dtSeconds;
+        chassisSpeeds.omegaRadiansPerSecond = dtheta / dtSeconds;
+    }
+
+    private void buildInverseKinematics(double centerOfRotationX, double centerOfRotationY) {
+        for (int i = 0; i < m_moduleCount; ++i) {
+            m_rotationColumnX[i] = -m_moduleY[i] + centerOfRotationY;
+            m_rotationColumnY[i] = +m_moduleX[i] - centerOfRotationX;
+        }
+        m_centerOfRotationX = centerOfRotationX;
+        m_centerOfRotationY = centerOfRotationY;
+    }
+
+    /* Same as new Rotation2d(x, y).getRadians() */
+    private static double angleOf(double x, double y) {
+        double magnitude = Math.hypot(x, y);
+        if (magnitude > 1e-6) {
+            return Math.atan2(y / magnitude, x / magnitude);
+        }
+        return Math.atan2(0.0, 1.0);
+    }
+}
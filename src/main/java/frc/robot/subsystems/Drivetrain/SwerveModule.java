@@ -23,6 +23,7 @@ import com.ctre.phoenix6.signals.FeedbackSensorSourceValue;
 import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.signals.NeutralModeValue;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
@@ -110,7 +111,13 @@ public class SwerveModule {
     private final com.ctre.phoenix6.mechanisms.swerve.SwerveModule.ClosedLoopOutputType m_driveClosedLoopOutput;
 
     private final SwerveModulePosition m_internalState = new SwerveModulePosition();
-    private SwerveModuleState m_targetState = new SwerveModuleState();
+    private final SwerveModuleState m_currentState = new SwerveModuleState();
+    private final SwerveModuleState m_targetState = new SwerveModuleState();
+
+    /* The odometry thread only reads and writes these, the Rotation2d in each state is built when it's asked for */
+    private double m_positionAngleRadians = 0;
+    private double m_currentAngleRadians = 0;
+    private double m_targetAngleRadians = 0;
 
     /**
      * Construct a SwerveModule with the specified constants.
@@ -229,6 +236,19 @@ public class SwerveModule {
      * @return SwerveModulePosition containing this module's state.
      */
     public SwerveModulePosition getPosition(boolean refresh) {
+        updatePosition(refresh);
+        return getCachedPosition();
+    }
+
+    /**
+     * Updates the latency compensated position of this module without
+     * building a SwerveModulePosition, for the odometry thread. Read it back
+     * with {@link #getPositionDistanceMeters()} and
+     * {@link #getPositionAngleRadians()}.
+     *
+     * @param refresh True if the signals should be refreshed
+     */
+    public void updatePosition(boolean refresh) {
         if (refresh) {
             /* Refresh all signals */
             m_drivePosition.refresh();
@@ -247,12 +267,28 @@ public class SwerveModule {
          */
         drive_rot -= angle_rot * m_couplingRatioDriveRotorToCANcoder;
 
-        /* And push them into a SwerveModulePosition object to return */
+        /* The distance goes straight into the SwerveModulePosition, only its angle is built on request */
         m_internalState.distanceMeters = drive_rot / m_driveRotationsPerMeter;
         /* Angle is already in terms of steer rotations */
-        m_internalState.angle = Rotation2d.fromRotations(angle_rot);
+        m_positionAngleRadians = Units.rotationsToRadians(angle_rot);
+    }
 
-        return m_internalState;
+    /**
+     * Gets the distance driven as of the last {@link #updatePosition(boolean)}.
+     *
+     * @return Distance driven, in meters
+     */
+    public double getPositionDistanceMeters() {
+        return m_internalState.distanceMeters;
+    }
+
+    /**
+     * Gets the steer angle as of the last {@link #updatePosition(boolean)}.
+     *
+     * @return Steer angle, in radians
+     */
+    public double getPositionAngleRadians() {
+        return m_positionAngleRadians;
     }
 
     /**
@@ -273,10 +309,32 @@ public class SwerveModule {
      * @param steerRequestType The {@link SteerRequestType} to apply; defaults to {@link SteerRequestType#MotionMagic}
      */
     public void apply(SwerveModuleState state, DriveRequestType driveRequestType, SteerRequestType steerRequestType) {
-        var optimized = SwerveModuleState.optimize(state, m_internalState.angle);
-        m_targetState = optimized;
+        apply(state.speedMetersPerSecond, state.angle.getRadians(), driveRequestType, steerRequestType);
+    }
 
-        double angleToSetDeg = optimized.angle.getRotations();
+    /**
+     * Applies the desired speed and direction to this module.
+     * <p>
+     * This is the allocation-free version of
+     * {@link #apply(SwerveModuleState, DriveRequestType, SteerRequestType)}.
+     *
+     * @param speedMetersPerSecond Speed the module should target
+     * @param angleRadians         Direction the module should target
+     * @param driveRequestType     The {@link DriveRequestType} to apply
+     * @param steerRequestType     The {@link SteerRequestType} to apply
+     */
+    public void apply(double speedMetersPerSecond, double angleRadians, DriveRequestType driveRequestType, SteerRequestType steerRequestType) {
+        /* Same as SwerveModuleState.optimize, but without allocating a new state */
+        double angleError = MathUtil.angleModulus(angleRadians - m_positionAngleRadians);
+        if (Math.abs(angleError) > Math.PI / 2.0) {
+            speedMetersPerSecond = -speedMetersPerSecond;
+            angleRadians = MathUtil.angleModulus(angleRadians + Math.PI);
+        }
+
+        m_targetState.speedMetersPerSecond = speedMetersPerSecond;
+        m_targetAngleRadians = angleRadians;
+
+        double angleToSetDeg = Units.radiansToRotations(angleRadians);
         switch (steerRequestType) {
             case MotionMagic:
                 switch (m_steerClosedLoopOutput) {
@@ -303,7 +361,7 @@ public class SwerveModule {
                 break;
         }
 
-        double velocityToSet = optimized.speedMetersPerSecond * m_driveRotationsPerMeter;
+        double velocityToSet = speedMetersPerSecond * m_driveRotationsPerMeter;
 
         /* From FRC 900's whitepaper, we add a cosine compensator to the applied drive velocity */
         /* To reduce the "skew" that occurs when changing direction */
@@ -429,6 +487,9 @@ public class SwerveModule {
      * @return Last cached SwerveModulePosition
      */
     public SwerveModulePosition getCachedPosition() {
+        if (m_internalState.angle.getRadians() != m_positionAngleRadians) {
+            m_internalState.angle = Rotation2d.fromRadians(m_positionAngleRadians);
+        }
         return m_internalState;
     }
 
@@ -437,24 +498,86 @@ public class SwerveModule {
      * <p>
      * This is typically used for telemetry, as the SwerveModulePosition
      * is used for odometry.
+     * <p>
+     * The returned object is owned by this module and is updated in place
+     * on every call, so copy it if it needs to be kept.
      *
      * @return Current state of the module
      */
     public SwerveModuleState getCurrentState() {
-        return new SwerveModuleState(m_driveVelocity.getValue() / m_driveRotationsPerMeter, Rotation2d.fromRotations(m_steerPosition.getValue()));
+        updateCurrentState();
+        if (m_currentState.angle.getRadians() != m_currentAngleRadians) {
+            m_currentState.angle = Rotation2d.fromRadians(m_currentAngleRadians);
+        }
+        return m_currentState;
+    }
+
+    /**
+     * Updates the current state of this module from the last signal values
+     * without building a SwerveModuleState, for the odometry thread. Read it
+     * back with {@link #getCurrentSpeedMetersPerSecond()} and
+     * {@link #getCurrentAngleRadians()}.
+     */
+    public void updateCurrentState() {
+        m_currentState.speedMetersPerSecond = m_driveVelocity.getValue() / m_driveRotationsPerMeter;
+        m_currentAngleRadians = Units.rotationsToRadians(m_steerPosition.getValue());
+    }
+
+    /**
+     * Gets the wheel speed as of the last {@link #updateCurrentState()}.
+     *
+     * @return Wheel speed, in meters per second
+     */
+    public double getCurrentSpeedMetersPerSecond() {
+        return m_currentState.speedMetersPerSecond;
+    }
+
+    /**
+     * Gets the steer angle as of the last {@link #updateCurrentState()}.
+     *
+     * @return Steer angle, in radians
+     */
+    public double getCurrentAngleRadians() {
+        return m_currentAngleRadians;
     }
 
     /**
      * Get the target state of the module.
      * <p>
      * This is typically used for telemetry.
+     * <p>
+     * The returned object is owned by this module and is updated in place
+     * every time a new target is applied.
      *
      * @return Target state of the module
      */
     public SwerveModuleState getTargetState() {
+        if (m_targetState.angle.getRadians() != m_targetAngleRadians) {
+            m_targetState.angle = Rotation2d.fromRadians(m_targetAngleRadians);
+        }
         return m_targetState;
     }
 
+    /**
+     * Gets the speed this module was last told to drive at, after it was
+     * optimized.
+     *
+     * @return Target wheel speed, in meters per second
+     */
+    public double getTargetSpeedMetersPerSecond() {
+        return m_targetState.speedMetersPerSecond;
+    }
+
+    /**
+     * Gets the angle this module was last told to steer to, after it was
+     * optimized.
+     *
+     * @return Target steer angle, in radians
+     */
+    public double getTargetAngleRadians() {
+        return m_targetAngleRadians;
+    }
+
     /**
      * Gets the position/velocity signals of the drive and steer
      *
@@ -0,0 +1,600 @@
+package frc.robot.subsystems.Drivetrain;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Swerve pose estimator with the same results as
+ * {@link edu.wpi.first.math.estimator.SwerveDrivePoseEstimator}, that keeps its
+ * history in fixed-size primitive ring buffers and never replays odometry.
+ * <p>
+ * The WPILib estimator handles a delayed vision measurement by resetting its
+ * odometry to the corrected pose at the measurement's timestamp and
+ * re-integrating every odometry update since then. Integrating the same
+ * robot-relative twists from a different starting pose only moves the result
+ * by a fixed field transform, so this estimator keeps the raw odometry
+ * untouched and stores that transform instead. The estimate is the newest
+ * correction applied to the newest odometry pose, and a vision measurement
+ * only has to work out one new correction, however old it is.
+ * <p>
+ * Like the WPILib estimator, a measurement older than some of the
+ * corrections throws those corrections away, since replaying odometry over
+ * them would have too.
+ * <p>
+ * This class is not thread safe, {@link SwerveDrivetrain} only uses it under
+ * its state lock.
+ */
+public class SwervePoseEstimator {
+    /* Same as the WPILib estimator, measurements older than this are dropped */
+    private static final double BUFFER_DURATION_SECONDS = 1.5;
+    /* Plenty of vision corrections for the buffer duration, even with every camera at full rate */
+    private static final int CORRECTION_CAPACITY = 128;
+    private static final int CORRECTION_MASK = CORRECTION_CAPACITY - 1;
+
+    private final int m_moduleCount;
+    /* Flattened 3 x 2N forward kinematics, the same matrix SwerveDriveKinematics uses */
+    private final double[] m_forwardKinematics;
+    private final double[] m_previousDistances;
+    /* Module positions for the update in progress */
+    private final double[] m_moduleDistances;
+    private final double[] m_moduleCos;
+    private final double[] m_moduleSin;
+
+    /* Kalman gain for each axis, on the diagonal like the WPILib estimator */
+    private final double[] m_q = new double[3];
+    private final double[] m_visionK = new double[3];
+
+    /* Raw odometry, integrated the same way SwerveDriveOdometry does */
+    private double m_gyroOffset;
+    private double m_previousAngle;
+    private double m_odometryX;
+    private double m_odometryY;
+    private double m_odometryTheta;
+
+    /* Raw odometry history */
+    private final int m_mask;
+    private final int m_capacity;
+    private final double[] m_timestamps;
+    private final double[] m_x;
+    private final double[] m_y;
+    private final double[] m_theta;
+    private long m_count = 0;
+    private long m_start = 0;
+
+    /* Corrections from odometry to field, each in effect from its timestamp until the next one */
+    private final double[] m_correctionTimestamps = new double[CORRECTION_CAPACITY];
+    private final double[] m_correctionX = new double[CORRECTION_CAPACITY];
+    private final double[] m_correctionY = new double[CORRECTION_CAPACITY];
+    private final double[] m_correctionTheta = new double[CORRECTION_CAPACITY];
+    private long m_correctionCount = 0;
+    private long m_correctionStart = 0;
+    /* Correction in effect before the oldest one in the history */
+    private double m_baseCorrectionX;
+    private double m_baseCorrectionY;
+    private double m_baseCorrectionTheta;
+
+    /* Scratch for the pose math, so nothing here allocates */
+    private double m_resultX;
+    private double m_resultY;
+    private double m_resultTheta;
+
+    /* The estimate, kept up to date on every change */
+    private double m_estimateX;
+    private double m_estimateY;
+    private double m_estimateTheta;
+    /* Built the first time it's asked for after every change */
+    private Pose2d m_estimatedPose;
+
+    /**
+     * Constructs a swerve pose estimator.
+     *
+     * @param moduleLocations          Locations of the modules relative to the
+     *                                 center of the robot, in the same order as
+     *                                 the module positions
+     * @param updateFrequencyHz        How often odometry will be updated, used
+     *                                 to size the history
+     * @param gyroAngle                The current gyro angle
+     * @param modulePositions          The current distance and rotation
+     *                                 measurements of the swerve modules
+     * @param initialPoseMeters        The starting pose estimate
+     * @param stateStdDevs             Standard deviations of the pose estimate
+     *                                 (x position in meters, y position in
+     *                                 meters, and heading in radians)
+     * @param visionMeasurementStdDevs Standard deviations of the vision pose
+     *                                 measurement (x position in meters, y
+     *                                 position in meters, and heading in
+     *                                 radians)
+     */
+    public SwervePoseEstimator(
+            Translation2d[] moduleLocations, double updateFrequencyHz,
+            Rotation2d gyroAngle, SwerveModulePosition[] modulePositions, Pose2d initialPoseMeters,
+            Matrix<N3, N1> stateStdDevs, Matrix<N3, N1> visionMeasurementStdDevs) {
+        m_moduleCount = moduleLocations.length;
+        m_forwardKinematics = SwerveDrivetrain.createForwardKinematics(moduleLocations);
+        m_previousDistances = new double[m_moduleCount];
+        m_moduleDistances = new double[m_moduleCount];
+        m_moduleCos = new double[m_moduleCount];
+        m_moduleSin = new double[m_moduleCount];
+
+        /* Leave some room so odometry jitter never pushes a measurement out of the history */
+        int minimumCapacity = (int) Math.ceil(updateFrequencyHz * BUFFER_DURATION_SECONDS * 1.25) + 1;
+        m_capacity = Integer.highestOneBit(Math.max(minimumCapacity, 4) - 1) << 1;
+        m_mask = m_capacity - 1;
+        m_timestamps = new double[m_capacity];
+        m_x = new double[m_capacity];
+        m_y = new double[m_capacity];
+        m_theta = new double[m_capacity];
+
+        for (int i = 0; i < 3; ++i) {
+            m_q[i] = stateStdDevs.get(i, 0) * stateStdDevs.get(i, 0);
+        }
+        setVisionMeasurementStdDevs(visionMeasurementStdDevs);
+        resetPosition(gyroAngle, modulePositions, initialPoseMeters);
+    }
+
+    /**
+     * Sets the pose estimator's trust of global measurements.
+     *
+     * @param visionMeasurementStdDevs Standard deviations of the vision
+     *                                 measurements. Increase these numbers to
+     *                                 trust global measurements from vision
+     *                                 less. This matrix is in the form [x, y,
+     *                                 theta]ᵀ, with units in meters and radians.
+     */
+    public void setVisionMeasurementStdDevs(Matrix<N3, N1> visionMeasurementStdDevs) {
+        for (int i = 0; i < 3; ++i) {
+            m_visionK[i] = getVisionGain(m_q[i], visionMeasurementStdDevs.get(i, 0));
+        }
+    }
+
+    /* Closed form Kalman gain for a continuous model with A = 0 and C = I */
+    private static double getVisionGain(double q, double visionStdDev) {
+        double r = visionStdDev * visionStdDev;
+        return (q == 0.0) ? 0.0 : q / (q + Math.sqrt(q * r));
+    }
+
+    /**
+     * Resets the robot's position on the field, and clears the history.
+     *
+     * @param gyroAngle       The current gyro angle
+     * @param modulePositions The current distance and rotation measurements of
+     *                        the swerve modules
+     * @param poseMeters      The position on the field that the robot is at
+     */
+    public void resetPosition(Rotation2d gyroAngle, SwerveModulePosition[] modulePositions, Pose2d poseMeters) {
+        double poseTheta = poseMeters.getRotation().getRadians();
+        m_gyroOffset = poseTheta - gyroAngle.getRadians();
+        m_previousAngle = poseTheta;
+        m_odometryX = poseMeters.getX();
+        m_odometryY = poseMeters.getY();
+        m_odometryTheta = poseTheta;
+        for (int i = 0; i < m_moduleCount; ++i) {
+            m_previousDistances[i] = modulePositions[i].distanceMeters;
+        }
+
+        m_start = m_count;
+        m_correctionStart = m_correctionCount;
+        m_baseCorrectionX = 0;
+        m_baseCorrectionY = 0;
+        m_baseCorrectionTheta = 0;
+        m_estimateX = m_odometryX;
+        m_estimateY = m_odometryY;
+        m_estimateTheta = poseTheta;
+        m_estimatedPose = poseMeters;
+    }
+
+    /**
+     * Gets the estimated robot pose.
+     *
+     * @return The estimated robot pose in meters
+     */
+    public Pose2d getEstimatedPosition() {
+        if (m_estimatedPose == null) {
+            m_estimatedPose = new Pose2d(m_estimateX, m_estimateY, Rotation2d.fromRadians(m_estimateTheta));
+        }
+        return m_estimatedPose;
+    }
+
+    /**
+     * Gets the X position of the estimated robot pose, without building a
+     * Pose2d.
+     *
+     * @return Field-relative X position, in meters
+     */
+    public double getEstimatedX() {
+        return m_estimateX;
+    }
+
+    /**
+     * Gets the Y position of the estimated robot pose, without building a
+     * Pose2d.
+     *
+     * @return Field-relative Y position, in meters
+     */
+    public double getEstimatedY() {
+        return m_estimateY;
+    }
+
+    /**
+     * Gets the heading of the estimated robot pose, without building a
+     * Pose2d.
+     *
+     * @return Field-relative heading, in radians
+     */
+    public double getEstimatedHeadingRadians() {
+        return m_estimateTheta;
+    }
+
+    /* Works out the estimate again after the odometry or the corrections changed */
+    private void updateEstimate() {
+        applyCorrection(newestCorrectionIndex(), m_odometryX, m_odometryY, m_odometryTheta);
+        m_estimateX = m_resultX;
+        m_estimateY = m_resultY;
+        m_estimateTheta = m_resultTheta;
+        m_estimatedPose = null;
+    }
+
+    /**
+     * Updates the pose estimator with wheel encoder and gyro information. This
+     * should be called every loop.
+     *
+     * @param gyroAngle       The current gyro angle
+     * @param modulePositions The current distance and rotation measurements of
+     *                        the swerve modules
+     * @return The estimated pose of the robot in meters
+     */
+    public Pose2d update(Rotation2d gyroAngle, SwerveModulePosition[] modulePositions) {
+        return updateWithTime(Timer.getFPGATimestamp(), gyroAngle, modulePositions);
+    }
+
+    /**
+     * Updates the pose estimator with wheel encoder and gyro information. This
+     * should be called every loop.
+     *
+     * @param currentTimeSeconds Time at which this method was called, in seconds
+     * @param gyroAngle          The current gyro angle
+     * @param modulePositions    The current distance and rotation measurements
+     *                           of the swerve modules
+     * @return The estimated pose of the robot in meters
+     */
+    public Pose2d updateWithTime(double currentTimeSeconds, Rotation2d gyroAngle,
+            SwerveModulePosition[] modulePositions) {
+        for (int i = 0; i < m_moduleCount; ++i) {
+            m_moduleDistances[i] = modulePositions[i].distanceMeters;
+            m_moduleCos[i] = modulePositions[i].angle.getCos();
+            m_moduleSin[i] = modulePositions[i].angle.getSin();
+        }
+        integrate(currentTimeSeconds, gyroAngle.getRadians());
+        return getEstimatedPosition();
+    }
+
+    /**
+     * Updates the pose estimator with wheel encoder and gyro information,
+     * without allocating. This should be called every loop. Read the estimate
+     * back with {@link #getEstimatedX()}, {@link #getEstimatedY()} and
+     * {@link #getEstimatedHeadingRadians()}.
+     *
+     * @param currentTimeSeconds    Time at which this method was called, in seconds
+     * @param gyroAngleRadians      The current gyro angle, in radians
+     * @param moduleDistancesMeters Distance driven by each module, in meters
+     * @param moduleAnglesRadians   Steer angle of each module, in radians
+     */
+    public void updateWithTime(double currentTimeSeconds, double gyroAngleRadians,
+            double[] moduleDistancesMeters, double[] moduleAnglesRadians) {
+        for (int i = 0; i < m_moduleCount; ++i) {
+            m_moduleDistances[i] = moduleDistancesMeters[i];
+            /* The same values Rotation2d would cache for the angle */
+            m_moduleCos[i] = Math.cos(moduleAnglesRadians[i]);
+            m_moduleSin[i] = Math.sin(moduleAnglesRadians[i]);
+        }
+        integrate(currentTimeSeconds, gyroAngleRadians);
+    }
+
+    /* Integrates the module positions in the scratch arrays into the odometry and its history */
+    private void integrate(double currentTimeSeconds, double gyroAngleRadians) {
+        /* Twist from the wheel deltas, in the same order as SwerveDriveKinematics.toTwist2d */
+        int columns = m_moduleCount * 2;
+        double dx = 0, dy = 0;
+        for (int i = 0; i < m_moduleCount; ++i) {
+            double delta = m_moduleDistances[i] - m_previousDistances[i];
+            m_previousDistances[i] = m_moduleDistances[i];
+            double x = delta * m_moduleCos[i];
+            double y = delta * m_moduleSin[i];
+            if (i == 0) {
+                dx = m_forwardKinematics[0] * x;
+                dy = m_forwardKinematics[columns] * x;
+            } else {
+                dx += m_forwardKinematics[i * 2] * x;
+                dy += m_forwardKinematics[columns + i * 2] * x;
+            }
+            dx += m_forwardKinematics[i * 2 + 1] * y;
+            dy += m_forwardKinematics[columns + i * 2 + 1] * y;
+        }
+
+        /* The gyro is trusted for heading, the same as SwerveDriveOdometry */
+        double angle = MathUtil.angleModulus(gyroAngleRadians + m_gyroOffset);
+        double dtheta = MathUtil.angleModulus(angle - m_previousAngle);
+        m_previousAngle = angle;
+
+        exp(m_odometryX, m_odometryY, m_odometryTheta, dx, dy, dtheta);
+        m_odometryX = m_resultX;
+        m_odometryY = m_resultY;
+        m_odometryTheta = angle;
+
+        /* Two updates at the same time replace the newest sample, so the history stays sorted */
+        if (m_count > m_start && currentTimeSeconds <= m_timestamps[(int) ((m_count - 1) & m_mask)]) {
+            m_count--;
+        }
+        int slot = (int) (m_count & m_mask);
+        m_timestamps[slot] = currentTimeSeconds;
+        m_x[slot] = m_odometryX;
+        m_y[slot] = m_odometryY;
+        m_theta[slot] = m_odometryTheta;
+        m_count++;
+        if (m_count - m_start > m_capacity) {
+            m_start = m_count - m_capacity;
+        }
+
+        updateEstimate();
+    }
+
+    /**
+     * Adds a vision measurement to the Kalman Filter. This will correct the
+     * odometry pose estimate while still accounting for measurement noise.
+     *
+     * @param visionRobotPoseMeters The pose of the robot as measured by the
+     *                              vision camera
+     * @param timestampSeconds      The timestamp of the vision measurement in
+     *                              seconds, in the same timebase as
+     *                              {@link #updateWithTime}
+     */
+    public void addVisionMeasurement(Pose2d visionRobotPoseMeters, double timestampSeconds) {
+        addVisionMeasurement(visionRobotPoseMeters.getX(), visionRobotPoseMeters.getY(),
+                visionRobotPoseMeters.getRotation().getRadians(), timestampSeconds);
+    }
+
+    /**
+     * Adds a vision measurement to the Kalman Filter, without allocating.
+     *
+     * @param x                Field-relative X position of the robot as measured
+     *                         by the vision camera, in meters
+     * @param y                Field-relative Y position of the robot, in meters
+     * @param theta            Field-relative heading of the robot, in radians
+     * @param timestampSeconds The timestamp of the vision measurement in
+     *                         seconds, in the same timebase as
+     *                         {@link #updateWithTime}
+     */
+    public void addVisionMeasurement(double x, double y, double theta, double timestampSeconds) {
+        fuse(x, y, theta, timestampSeconds, m_visionK[0], m_visionK[1], m_visionK[2]);
+    }
+
+    /**
+     * Adds a vision measurement to the Kalman Filter with its own standard
+     * deviations, without allocating. The standard deviations only apply to
+     * this measurement, later ones still use
+     * {@link #setVisionMeasurementStdDevs(Matrix)}.
+     *
+     * @param x                Field-relative X position of the robot as measured
+     *                         by the vision camera, in meters
+     * @param y                Field-relative Y position of the robot, in meters
+     * @param theta            Field-relative heading of the robot, in radians
+     * @param timestampSeconds The timestamp of the vision measurement in
+     *                         seconds, in the same timebase as
+     *                         {@link #updateWithTime}
+     * @param xStdDev          Standard deviation of the X position, in meters
+     * @param yStdDev          Standard deviation of the Y position, in meters
+     * @param thetaStdDev      Standard deviation of the heading, in radians
+     */
+    public void addVisionMeasurement(double x, double y, double theta, double timestampSeconds,
+            double xStdDev, double yStdDev, double thetaStdDev) {
+        fuse(x, y, theta, timestampSeconds,
+                getVisionGain(m_q[0], xStdDev), getVisionGain(m_q[1], yStdDev), getVisionGain(m_q[2], thetaStdDev));
+    }
+
+    /* Fuses a measurement with the given gain on each axis */
+    private void fuse(double x, double y, double theta, double timestampSeconds, double kx, double ky,
+            double ktheta) {
+        if (m_count == m_start) {
+            return;
+        }
+        double newestTime = m_timestamps[(int) ((m_count - 1) & m_mask)];
+        if (newestTime - BUFFER_DURATION_SECONDS > timestampSeconds) {
+            return;
+        }
+
+        /* Where odometry had us at the measurement, and where we thought we were after correcting it */
+        sampleOdometry(timestampSeconds);
+        double odometryX = m_resultX;
+        double odometryY = m_resultY;
+        double odometryTheta = m_resultTheta;
+        long correction = correctionIndexAt(timestampSeconds);
+        applyCorrection(correction, odometryX, odometryY, odometryTheta);
+        double estimateX = m_resultX;
+        double estimateY = m_resultY;
+        double estimateTheta = m_resultTheta;
+
+        /* Move part of the way to the measurement, along the twist between the two */
+        log(estimateX, estimateY, estimateTheta, x, y, theta);
+        exp(estimateX, estimateY, estimateTheta,
+                kx * m_resultX, ky * m_resultY, ktheta * m_resultTheta);
+
+        /* New correction takes the odometry pose at the measurement to the corrected pose */
+        double correctionTheta = m_resultTheta - odometryTheta;
+        double cos = Math.cos(correctionTheta);
+        double sin = Math.sin(correctionTheta);
+        double correctionX = m_resultX - (cos * odometryX - sin * odometryY);
+        double correctionY = m_resultY - (sin * odometryX + cos * odometryY);
+
+        /* Anything from after this measurement would have been replayed away */
+        while (m_correctionCount > m_correctionStart
+                && m_correctionTimestamps[(int) ((m_correctionCount - 1) & CORRECTION_MASK)] >= timestampSeconds) {
+            m_correctionCount--;
+        }
+        if (m_correctionCount - m_correctionStart == CORRECTION_CAPACITY) {
+            /* Full, the oldest correction becomes the one in effect before the history */
+            int oldest = (int) (m_correctionStart & CORRECTION_MASK);
+            m_baseCorrectionX = m_correctionX[oldest];
+            m_baseCorrectionY = m_correctionY[oldest];
+            m_baseCorrectionTheta = m_correctionTheta[oldest];
+            m_correctionStart++;
+        }
+        int slot = (int) (m_correctionCount & CORRECTION_MASK);
+        m_correctionTimestamps[slot] = timestampSeconds;
+        m_correctionX[slot] = correctionX;
+        m_correctionY[slot] = correctionY;
+        m_correctionTheta[slot] = MathUtil.angleModulus(correctionTheta);
+        m_correctionCount++;
+
+        updateEstimate();
+    }
+
+    /**
+     * Adds a vision measurement to the Kalman Filter, with its own standard
+     * deviations. Unlike the WPILib estimator, they only apply to this
+     * measurement, later ones still use
+     * {@link #setVisionMeasurementStdDevs(Matrix)}.
+     *
+     * @param visionRobotPoseMeters    The pose of the robot as measured by the
+     *                                 vision camera
+     * @param timestampSeconds         The timestamp of the vision measurement
+     *                                 in seconds
+     * @param visionMeasurementStdDevs Standard deviations of the vision pose
+     *                                 measurement (x position in meters, y
+     *                                 position in meters, and heading in
+     *                                 radians)
+     */
+    public void addVisionMeasurement(Pose2d visionRobotPoseMeters, double timestampSeconds,
+            Matrix<N3, N1> visionMeasurementStdDevs) {
+        addVisionMeasurement(visionRobotPoseMeters.getX(), visionRobotPoseMeters.getY(),
+                visionRobotPoseMeters.getRotation().getRadians(), timestampSeconds,
+                visionMeasurementStdDevs.get(0, 0), visionMeasurementStdDevs.get(1, 0),
+                visionMeasurementStdDevs.get(2, 0));
+    }
+
+    /* Index of the correction in effect at the given time, or -1 for the base correction */
+    private long correctionIndexAt(double timestampSeconds) {
+        /* Measurements are almost always newer than every correction, so search from the newest */
+        for (long i = m_correctionCount - 1; i >= m_correctionStart; --i) {
+            if (m_correctionTimestamps[(int) (i & CORRECTION_MASK)] <= timestampSeconds) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long newestCorrectionIndex() {
+        return (m_correctionCount > m_correctionStart) ? m_correctionCount - 1 : -1;
+    }
+
+    /* Puts the correction at the index applied to the odometry pose into the result */
+    private void applyCorrection(long index, double x, double y, double theta) {
+        double correctionX = m_baseCorrectionX;
+        double correctionY = m_baseCorrectionY;
+        double correctionTheta = m_baseCorrectionTheta;
+        if (index >= 0) {
+            int slot = (int) (index & CORRECTION_MASK);
+            correctionX = m_correctionX[slot];
+            correctionY = m_correctionY[slot];
+            correctionTheta = m_correctionTheta[slot];
+        }
+        if (correctionTheta == 0.0) {
+            m_resultX = correctionX + x;
+            m_resultY = correctionY + y;
+            m_resultTheta = theta;
+            return;
+        }
+        double cos = Math.cos(correctionTheta);
+        double sin = Math.sin(correctionTheta);
+        m_resultX = correctionX + cos * x - sin * y;
+        m_resultY = correctionY + sin * x + cos * y;
+        m_resultTheta = MathUtil.angleModulus(correctionTheta + theta);
+    }
+
+    /*
+     * Puts the odometry pose at the given time into the result, clamped to the
+     * history. Between samples, the twist between them is scaled instead of
+     * lerping, the same as the WPILib estimator does with its wheel positions.
+     */
+    private void sampleOdometry(double timestampSeconds) {
+        long low = m_start;
+        long high = m_count - 1;
+        if (timestampSeconds >= m_timestamps[(int) (high & m_mask)]) {
+            low = high;
+        } else {
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (m_timestamps[(int) (mid & m_mask)] < timestampSeconds) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+        }
+
+        int upper = (int) (low & m_mask);
+        if (low == m_start || timestampSeconds >= m_timestamps[upper]) {
+            m_resultX = m_x[upper];
+            m_resultY = m_y[upper];
+            m_resultTheta = m_theta[upper];
+            return;
+        }
+        int lower = (int) ((low - 1) & m_mask);
+        double fraction = (timestampSeconds - m_timestamps[lower]) / (m_timestamps[upper] - m_timestamps[lower]);
+        log(m_x[lower], m_y[lower], m_theta[lower], m_x[upper], m_y[upper], m_theta[upper]);
+        exp(m_x[lower], m_y[lower], m_theta[lower],
+                m_resultX * fraction, m_resultY * fraction, m_resultTheta * fraction);
+    }
+
+    /* Same math as Pose2d.exp, the new pose goes into the result */
+    private void exp(double x, double y, double theta, double dx, double dy, double dtheta) {
+        double sinTheta = Math.sin(dtheta);
+        double cosTheta = Math.cos(dtheta);
+        double s, c;
+        if (Math.abs(dtheta) < 1E-9) {
+            s = 1.0 - 1.0 / 6.0 * dtheta * dtheta;
+            c = 0.5 * dtheta;
+        } else {
+            s = sinTheta / dtheta;
+            c = (1 - cosTheta) / dtheta;
+        }
+        double translationX = dx * s - dy * c;
+        double translationY = dx * c + dy * s;
+
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        m_resultX = x + translationX * cos - translationY * sin;
+        m_resultY = y + translationX * sin + translationY * cos;
+        m_resultTheta = MathUtil.angleModulus(theta + dtheta);
+    }
+
+    /* Same math as Pose2d.log, the twist from the start to the end pose goes into the result */
+    private void log(double startX, double startY, double startTheta, double endX, double endY, double endTheta) {
+        /* End pose relative to the start pose */
+        double cos = Math.cos(startTheta);
+        double sin = Math.sin(startTheta);
+        double deltaX = endX - startX;
+        double deltaY = endY - startY;
+        double transformX = deltaX * cos + deltaY * sin;
+        double transformY = -deltaX * sin + deltaY * cos;
+        double dtheta = MathUtil.angleModulus(endTheta - startTheta);
+
+        double halfDtheta = dtheta / 2.0;
+        double cosMinusOne = Math.cos(dtheta) - 1;
+        double halfThetaByTanOfHalfDtheta;
+        if (Math.abs(cosMinusOne) < 1E-9) {
+            halfThetaByTanOfHalfDtheta = 1.0 - 1.0 / 12.0 * dtheta * dtheta;
+        } else {
+            halfThetaByTanOfHalfDtheta = -(halfDtheta * Math.sin(dtheta)) / cosMinusOne;
+        }
+        m_resultX = transformX * halfThetaByTanOfHalfDtheta + transformY * halfDtheta;
+        m_resultY = -transformX * halfDtheta + transformY * halfThetaByTanOfHalfDtheta;
+        m_resultTheta = dtheta;
+    }
+}
@@ -6,7 +6,9 @@ import static edu.wpi.first.units.MutableMeasure.mutable;
 import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.controls.VoltageOut;
 import com.ctre.phoenix6.mechanisms.swerve.utility.PhoenixPIDController;
+import com.pathplanner.lib.util.PIDConstants;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
@@ -19,6 +21,7 @@ import edu.wpi.first.units.MutableMeasure;
 import edu.wpi.first.units.Voltage;
 import frc.robot.Constants;
 import frc.robot.Robot;
+import frc.robot.subsystems.ShotSolver;
 
 /**
  * Container for all the Swerve Requests. Use this to find all applicable swerve
@@ -61,8 +64,22 @@ public interface SwerveRequest {
      */
     public class SwerveControlRequestParameters {
         public SwerveDriveKinematics kinematics;
+        public SwerveKinematicsEngine kinematicsEngine;
         public ChassisSpeeds currentChassisSpeed;
-        public Pose2d currentPose;
+        /*
+         * Field-relative pose, as primitives so the odometry thread doesn't build a Pose2d every update.
+         * This is relative to wherever the driver last zeroed the heading, like the field-centric requests want.
+         */
+        public double currentX;
+        public double currentY;
+        public double currentHeadingRadians;
+        /*
+         * The same pose on the field itself, with the blue alliance origin, no matter where the driver zeroed.
+         * Requests that drive to or face points on the field use this one.
+         */
+        public double fieldX;
+        public double fieldY;
+        public double fieldHeadingRadians;
         public double timestamp;
         public Translation2d[] swervePositions;
         public Rotation2d operatorForwardDirection;
@@ -198,21 +215,23 @@ public interface SwerveRequest {
          */
         protected SwerveModuleState[] m_lastAppliedState = null;
 
-        public StatusCode apply(SwerveControlRequestParameters parameters, SwerveModule... modulesToApply) {
-            this.VelocityX *= slowDownRate;
-            this.VelocityY *= slowDownRate;
-            this.RotationalRate *= slowDownRate;
+        /* Robot-relative speeds, reused every loop */
+        private final ChassisSpeeds m_speeds = new ChassisSpeeds();
 
-            double toApplyX = VelocityX;
-            double toApplyY = VelocityY;
-            double toApplyOmega = RotationalRate;
+        public StatusCode apply(SwerveControlRequestParameters parameters, SwerveModule... modulesToApply) {
+            /* Scale a copy, the request is reused every loop so the fields have to stay as they were set */
+            double toApplyX = VelocityX * slowDownRate;
+            double toApplyY = VelocityY * slowDownRate;
+            double toApplyOmega = RotationalRate * slowDownRate;
 
             if (ForwardReference == SwerveRequest.ForwardReference.OperatorPerspective) {
                 /* If we're operator perspective, modify the X/Y translation by the angle */
-                Translation2d tmp = new Translation2d(toApplyX, toApplyY);
-                tmp = tmp.rotateBy(parameters.operatorForwardDirection);
-                toApplyX = tmp.getX();
-                toApplyY = tmp.getY();
+                double cos = parameters.operatorForwardDirection.getCos();
+                double sin = parameters.operatorForwardDirection.getSin();
+                double rotatedX = toApplyX * cos - toApplyY * sin;
+                double rotatedY = toApplyX * sin + toApplyY * cos;
+                toApplyX = rotatedX;
+                toApplyY = rotatedY;
             }
 
             if (Math.sqrt(toApplyX * toApplyX + toApplyY * toApplyY) < Deadband) {
@@ -223,15 +242,14 @@ public interface SwerveRequest {
                 toApplyOmega = 0;
             }
 
-            ChassisSpeeds speeds = ChassisSpeeds
-                    .discretize(ChassisSpeeds.fromFieldRelativeSpeeds(toApplyX, toApplyY, toApplyOmega,
-                            parameters.currentPose.getRotation()), parameters.updatePeriod);
+            SwerveKinematicsEngine kinematics = parameters.kinematicsEngine;
+            SwerveKinematicsEngine.fromFieldRelativeSpeeds(toApplyX, toApplyY, toApplyOmega,
+                    parameters.currentHeadingRadians, m_speeds);
+            SwerveKinematicsEngine.discretize(m_speeds, parameters.updatePeriod);
 
-            var states = parameters.kinematics.toSwerveModuleStates(speeds, centerOfRotation);
-
-            for (int i = 0; i < modulesToApply.length; ++i) {
-                modulesToApply[i].apply(states[i], DriveRequestType, SteerRequestType);
-            }
+            kinematics.toSwerveModuleStates(m_speeds, centerOfRotation);
+            kinematics.desaturateWheelSpeeds(Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond);
+            kinematics.apply(modulesToApply, DriveRequestType, SteerRequestType);
 
             return StatusCode.OK;
         }
@@ -277,7 +295,7 @@ public interface SwerveRequest {
 
         public FieldCentric withSlowDown(double slowDownRate) {
             if (slowDownRate <= 0.1) {
-                slowDownRate = 0.3;
+                this.slowDownRate = 0.3;
             } else {
                 this.slowDownRate = slowDownRate;
             }
@@ -418,21 +436,21 @@ public interface SwerveRequest {
          */
         public ForwardReference ForwardReference = SwerveRequest.ForwardReference.OperatorPerspective;
 
-        public StatusCode apply(SwerveControlRequestParameters parameters, SwerveModule... modulesToApply) {
-            this.VelocityX *= slowDownRate;
-            this.VelocityY *= slowDownRate;
+        /* Robot-relative speeds, reused every loop */
+        private final ChassisSpeeds m_speeds = new ChassisSpeeds();
 
-            double toApplyX = VelocityX;
-            double toApplyY = VelocityY;
-            Rotation2d angleToFace = TargetDirection;
+        public StatusCode apply(SwerveControlRequestParameters parameters, SwerveModule... modulesToApply) {
+            /* Scale a copy, the request is reused every loop so the fields have to stay as they were set */
+            double toApplyX = VelocityX * slowDownRate;
+            double toApplyY = VelocityY * slowDownRate;
             if (ForwardReference == SwerveRequest.ForwardReference.OperatorPerspective) {
                 /* If we're operator perspective, modify the X/Y translation by the angle */
-                Translation2d tmp = new Translation2d(toApplyX, toApplyY);
-                tmp = tmp.rotateBy(parameters.operatorForwardDirection);
-                toApplyX = tmp.getX();
-                toApplyY = tmp.getY();
-                /* And rotate the direction we want to face by the angle */
-                angleToFace = angleToFace.rotateBy(parameters.operatorForwardDirection);
+                double cos = parameters.operatorForwardDirection.getCos();
+                double sin = parameters.operatorForwardDirection.getSin();
+                double rotatedX = toApplyX * cos - toApplyY * sin;
+                double rotatedY = toApplyX * sin + toApplyY * cos;
+                toApplyX = rotatedX;
+                toApplyY = rotatedY;
             }
 
             // 180 -> -180
@@ -445,10 +463,10 @@ public interface SwerveRequest {
             // unsigned 0 to 360
             if (Robot.isRed()) {
                 double Radians = TargetDirection.getRadians();
-                double PoseRadians = parameters.currentPose.getRotation().getRadians();
+                double PoseRadians = parameters.currentHeadingRadians;
 
                 Radians = Units.degreesToRadians(180 + (180 + TargetDirection.getDegrees()));
-                PoseRadians = Units.degreesToRadians(180 + (180 + parameters.currentPose.getRotation().getDegrees()));
+                PoseRadians = Units.degreesToRadians(180 + (180 + Math.toDegrees(parameters.currentHeadingRadians)));
 
                 if (Radians >= 2 * Math.PI) {
                     Radians -= 2 * Math.PI;
@@ -462,7 +480,7 @@ public interface SwerveRequest {
             }
 
             else {
-                rotationRate = HeadingController.calculate(parameters.currentPose.getRotation().getRadians(),
+                rotationRate = HeadingController.calculate(parameters.currentHeadingRadians,
                         TargetDirection.getRadians(), parameters.timestamp);
             }
 
@@ -475,15 +493,14 @@ public interface SwerveRequest {
                 toApplyOmega = 0;
             }
 
-            ChassisSpeeds speeds = ChassisSpeeds
-                    .discretize(ChassisSpeeds.fromFieldRelativeSpeeds(toApplyX, toApplyY, toApplyOmega,
-                            parameters.currentPose.getRotation()), parameters.updatePeriod);
+            SwerveKinematicsEngine kinematics = parameters.kinematicsEngine;
+            SwerveKinematicsEngine.fromFieldRelativeSpeeds(toApplyX, toApplyY, toApplyOmega,
+                    parameters.currentHeadingRadians, m_speeds);
+            SwerveKinematicsEngine.discretize(m_speeds, parameters.updatePeriod);
 
-            var states = parameters.kinematics.toSwerveModuleStates(speeds, centerOfRotation);
-
-            for (int i = 0; i < modulesToApply.length; ++i) {
-                modulesToApply[i].apply(states[i], DriveRequestType, SteerRequestType);
-            }
+            kinematics.toSwerveModuleStates(m_speeds, centerOfRotation);
+            kinematics.desaturateWheelSpeeds(Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond);
+            kinematics.apply(modulesToApply, DriveRequestType, SteerRequestType);
 
             return StatusCode.OK;
         }
@@ -541,7 +558,7 @@ public interface SwerveRequest {
 
         public FieldCentricFacingAngle withSlowDown(double slowDownRate) {
             if (slowDownRate <= 0.1) {
-                slowDownRate = 0.3;
+                this.slowDownRate = 0.3;
             } else {
                 this.slowDownRate = slowDownRate;
             }
@@ -596,6 +613,810 @@ public interface SwerveRequest {
         }
     }
 
+    /**
+     * Drives the swerve drivetrain in a field-centric manner, keeping the robot
+     * pointed at a point on the field.
+     * <p>
+     * The heading to the point is worked out every time the request is applied,
+     * from the newest odometry pose, instead of being handed in from the main
+     * loop. On top of the heading PID, the request adds the rate the bearing to
+     * the point turns at as the robot translates, so the robot keeps up with
+     * the point while strafing instead of lagging behind it.
+     * <p>
+     * An example scenario is that the robot is at (2, 5), the TargetPoint is
+     * (0, 5.5) and the HeadingOffset is 180 degrees. In this scenario, the
+     * robot would turn so its back faces the point, and keep it facing the
+     * point as it drives.
+     * <p>
+     * The point is aimed at from the robot's pose on the field, so it stays
+     * right after the driver zeroes the heading somewhere else. The velocity
+     * is still relative to where the driver zeroed, like the other
+     * field-centric requests.
+     */
+    public class FieldCentricFacingPoint implements SwerveRequest {
+        /* Closer than this the bearing is meaningless, so we hold the last target */
+        private static final double kMinTargetDistanceMeters = 0.05;
+
+        /**
+         * The velocity in the X direction, in m/s.
+         * X is defined as forward according to WPILib convention,
+         * so this determines how fast to travel forward.
+         */
+        public double VelocityX = 0;
+        /**
+         * The velocity in the Y direction, in m/s.
+         * Y is defined as to the left according to WPILib convention,
+         * so this determines how fast to travel to the left.
+         */
+        public double VelocityY = 0;
+        /**
+         * The field-relative point to face, in meters, with the blue alliance
+         * origin like the robot pose.
+         */
+        public Translation2d TargetPoint = new Translation2d();
+        /**
+         * The angle between the front of the robot and the side that should face
+         * the point. 180 degrees points the back of the robot at it.
+         */
+        public Rotation2d HeadingOffset = new Rotation2d();
+
+        /**
+         * The allowable deadband of the request.
+         */
+        public double Deadband = 0;
+        /**
+         * The rotational deadband of the request.
+         */
+        public double RotationalDeadband = 0;
+
+        public double slowDownRate = 1;
+
+        /**
+         * The location (x,y) that the robot should rotate about.
+         */
+        public Translation2d centerOfRotation = Constants.SwerveConstants.RobotMeasurements.kCenterOfRotation;
+
+        /**
+         * The type of control request to use for the drive motor.
+         */
+        public SwerveModule.DriveRequestType DriveRequestType = SwerveModule.DriveRequestType.OpenLoopVoltage;
+        /**
+         * The type of control request to use for the steer motor.
+         */
+        public SwerveModule.SteerRequestType SteerRequestType = SwerveModule.SteerRequestType.MotionMagic;
+
+        /**
+         * The PID controller used to hold the heading to the point.
+         * Users can specify the PID gains to change how aggressively to maintain
+         * heading.
+         * <p>
+         * This PID controller operates on heading radians and outputs a target
+         * rotational rate in radians per second. The target is always handed to it
+         * within half a turn of the current heading, so it doesn't need continuous
+         * input enabled.
+         */
+        public PhoenixPIDController HeadingController = new PhoenixPIDController(0, 0, 0);
+
+        /**
+         * The perspective to use when determining which direction is forward.
+         */
+        public ForwardReference ForwardReference = SwerveRequest.ForwardReference.OperatorPerspective;
+
+        /**
+         * Leads the point by the note's time of flight as the robot moves, to
+         * shoot on the move. Null faces the point itself.
+         */
+        public ShotSolver MovingShotSolver = null;
+
+        /* Robot-relative speeds, reused every loop */
+        private final ChassisSpeeds m_speeds = new ChassisSpeeds();
+        private double m_lastBearingRadians = 0;
+
+        public StatusCode apply(SwerveControlRequestParameters parameters, SwerveModule... modulesToApply) {
+            double toApplyX = VelocityX * slowDownRate;
+            double toApplyY = VelocityY * slowDownRate;
+            if (ForwardReference == SwerveRequest.ForwardReference.OperatorPerspective) {
+                /* If we're operator perspective, modify the X/Y translation by the angle */
+                double cos = parameters.operatorForwardDirection.getCos();
+                double sin = parameters.operatorForwardDirection.getSin();
+                double rotatedX = toApplyX * cos - toApplyY * sin;
+                double rotatedY = toApplyX * sin + toApplyY * cos;
+                toApplyX = rotatedX;
+                toApplyY = rotatedY;
+            }
+            if (Math.sqrt(toApplyX * toApplyX + toApplyY * toApplyY) < Deadband) {
+                toApplyX = 0;
+                toApplyY = 0;
+            }
+
+            /*
+             * The point is on the field, so aim from the pose on the field. The velocity is
+             * relative to wherever the driver zeroed the heading, so turn it onto the field too.
+             */
+            double currentX = parameters.fieldX;
+            double currentY = parameters.fieldY;
+            double currentRadians = parameters.fieldHeadingRadians;
+            double zeroRadians = currentRadians - parameters.currentHeadingRadians;
+            double zeroCos = Math.cos(zeroRadians);
+            double zeroSin = Math.sin(zeroRadians);
+            double rotatedX = toApplyX * zeroCos - toApplyY * zeroSin;
+            toApplyY = toApplyX * zeroSin + toApplyY * zeroCos;
+            toApplyX = rotatedX;
+
+            double targetX = TargetPoint.getX();
+            double targetY = TargetPoint.getY();
+            if (MovingShotSolver != null) {
+                /* The note carries the velocity we really have, not the one we asked for */
+                double cos = Math.cos(currentRadians);
+                double sin = Math.sin(currentRadians);
+                ChassisSpeeds measured = parameters.currentChassisSpeed;
+                MovingShotSolver.solve(currentX, currentY,
+                        measured.vxMetersPerSecond * cos - measured.vyMetersPerSecond * sin,
+                        measured.vxMetersPerSecond * sin + measured.vyMetersPerSecond * cos,
+                        targetX, targetY);
+                targetX = MovingShotSolver.getVirtualTargetX();
+                targetY = MovingShotSolver.getVirtualTargetY();
+            }
+            double dx = targetX - currentX;
+            double dy = targetY - currentY;
+            double distanceSquared = dx * dx + dy * dy;
+
+            double bearingRateFeedforward = 0;
+            if (distanceSquared > kMinTargetDistanceMeters * kMinTargetDistanceMeters) {
+                m_lastBearingRadians = Math.atan2(dy, dx);
+                if (MovingShotSolver != null) {
+                    bearingRateFeedforward = MovingShotSolver.getHeadingRateRadiansPerSecond();
+                } else {
+                    /* Driving past the point turns the bearing to it at (d x v) / |d|^2 */
+                    bearingRateFeedforward = (dy * toApplyX - dx * toApplyY) / distanceSquared;
+                }
+            }
+
+            /* Hand the controller the nearest equivalent target so it never goes the long way around */
+            double targetRadians = currentRadians
+                    + MathUtil.angleModulus(m_lastBearingRadians + HeadingOffset.getRadians() - currentRadians);
+
+            double toApplyOmega = bearingRateFeedforward
+                    + HeadingController.calculate(currentRadians, targetRadians, parameters.timestamp);
+            if (Math.abs(toApplyOmega) < RotationalDeadband) {
+                toApplyOmega = 0;
+            }
+
+            SwerveKinematicsEngine kinematics = parameters.kinematicsEngine;
+            SwerveKinematicsEngine.fromFieldRelativeSpeeds(toApplyX, toApplyY, toApplyOmega, currentRadians, m_speeds);
+            SwerveKinematicsEngine.discretize(m_speeds, parameters.updatePeriod);
+
+            kinematics.toSwerveModuleStates(m_speeds, centerOfRotation);
+            kinematics.desaturateWheelSpeeds(Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond);
+            kinematics.apply(modulesToApply, DriveRequestType, SteerRequestType);
+
+            return StatusCode.OK;
+        }
+
+        /**
+         * Sets the velocity in the X direction, in m/s.
+         * X is defined as forward according to WPILib convention,
+         * so this determines how fast to travel forward.
+         *
+         * @param velocityX Velocity in the X direction, in m/s
+         * @return this request
+         */
+        public FieldCentricFacingPoint withVelocityX(double velocityX) {
+            this.VelocityX = velocityX;
+            return this;
+        }
+
+        /**
+         * Sets the velocity in the Y direction, in m/s.
+         * Y is defined as to the left according to WPILib convention,
+         * so this determines how fast to travel to the left.
+         *
+         * @param velocityY Velocity in the Y direction, in m/s
+         * @return this request
+         */
+        public FieldCentricFacingPoint withVelocityY(double velocityY) {
+            this.VelocityY = velocityY;
+            return this;
+        }
+
+        /**
+         * Sets the field-relative point to face.
+         *
+         * @param targetPoint Point to face, in meters
+         * @return this request
+         */
+        public FieldCentricFacingPoint withTargetPoint(Translation2d targetPoint) {
+            this.TargetPoint = targetPoint;
+            return this;
+        }
+
+        /**
+         * Sets the angle between the front of the robot and the side that should
+         * face the point.
+         *
+         * @param headingOffset Offset from the front of the robot
+         * @return this request
+         */
+        public FieldCentricFacingPoint withHeadingOffset(Rotation2d headingOffset) {
+            this.HeadingOffset = headingOffset;
+            return this;
+        }
+
+        /**
+         * Sets the solver used to lead the point when shooting on the move.
+         *
+         * @param movingShotSolver Solver to use, or null to face the point itself
+         * @return this request
+         */
+        public FieldCentricFacingPoint withMovingShotSolver(ShotSolver movingShotSolver) {
+            this.MovingShotSolver = movingShotSolver;
+            return this;
+        }
+
+        /**
+         * Sets the allowable deadband of the request.
+         *
+         * @param deadband Allowable deadband of the request
+         * @return this request
+         */
+        public FieldCentricFacingPoint withDeadband(double deadband) {
+            this.Deadband = deadband;
+            return this;
+        }
+
+        public FieldCentricFacingPoint withSlowDown(double slowDownRate) {
+            if (slowDownRate <= 0.1) {
+                this.slowDownRate = 0.3;
+            } else {
+                this.slowDownRate = slowDownRate;
+            }
+
+            return this;
+        }
+
+        /**
+         * Sets the rotational deadband of the request.
+         *
+         * @param rotationalDeadband Rotational deadband of the request
+         * @return this request
+         */
+        public FieldCentricFacingPoint withRotationalDeadband(double rotationalDeadband) {
+            this.RotationalDeadband = rotationalDeadband;
+            return this;
+        }
+
+        /**
+         * Sets the center of rotation to rotate around.
+         *
+         * @param centerOfRotation Center of rotation to rotate around
+         * @return this request
+         */
+        public FieldCentricFacingPoint withCenterOfRotation(Translation2d centerOfRotation) {
+            this.centerOfRotation = centerOfRotation;
+            return this;
+        }
+
+        /**
+         * Sets the type of control request to use for the drive motor.
+         *
+         * @param driveRequestType The type of control request to use for the drive
+         *                         motor
+         * @return this request
+         */
+        public FieldCentricFacingPoint withDriveRequestType(SwerveModule.DriveRequestType driveRequestType) {
+            this.DriveRequestType = driveRequestType;
+            return this;
+        }
+
+        /**
+         * Sets the type of control request to use for the steer motor.
+         *
+         * @param steerRequestType The type of control request to use for the steer
+         *                         motor
+         * @return this request
+         */
+        public FieldCentricFacingPoint withSteerRequestType(SwerveModule.SteerRequestType steerRequestType) {
+            this.SteerRequestType = steerRequestType;
+            return this;
+        }
+    }
+
+    /**
+     * Follows a preloaded PathPlanner trajectory.
+     * <p>
+     * The trajectory is sampled and the translation and heading feedback are
+     * closed every time the request is applied, so path following runs at the
+     * odometry rate off the newest pose, instead of at 50 Hz in a command.
+     * Time starts counting the first time the request is applied after
+     * {@link #withTrajectory} is called. Once the trajectory runs out, the
+     * request keeps holding its last state.
+     * <p>
+     * Alliance flipping and replanning are up to whoever builds the trajectory;
+     * see {@link frc.robot.commands.Swerve.FollowPath}.
+     */
+    public class FollowTrajectory implements SwerveRequest {
+        /**
+         * The PID controller used to correct the field-relative X position.
+         * This operates on meters and outputs a velocity in meters per second,
+         * added on top of the trajectory velocity.
+         */
+        public PhoenixPIDController XController = createController(Constants.AutoConstants.translationPID);
+        /**
+         * The PID controller used to correct the field-relative Y position.
+         * This operates on meters and outputs a velocity in meters per second,
+         * added on top of the trajectory velocity.
+         */
+        public PhoenixPIDController YController = createController(Constants.AutoConstants.translationPID);
+        /**
+         * The PID controller used to correct the heading.
+         * This operates on heading radians and outputs a rotational rate in
+         * radians per second. The target is always handed to it within half a
+         * turn of the current heading, so it doesn't need continuous input enabled.
+         */
+        public PhoenixPIDController HeadingController = createController(Constants.AutoConstants.rotationPID);
+
+        /**
+         * The fastest a module can drive, used to leave room for translating when
+         * rotating and to desaturate the module speeds.
+         */
+        public double MaxModuleSpeed = Constants.SwerveConstants.SwerveSpeeds.kMaxModuleSpeed;
+        /**
+         * The distance from the center of the robot to the furthest module.
+         */
+        public double DriveBaseRadius = Constants.SwerveConstants.RobotMeasurements.kDriveBaseRadius;
+
+        /**
+         * The type of control request to use for the drive motor.
+         */
+        public SwerveModule.DriveRequestType DriveRequestType = SwerveModule.DriveRequestType.OpenLoopVoltage;
+        /**
+         * The type of control request to use for the steer motor.
+         */
+        public SwerveModule.SteerRequestType SteerRequestType = SwerveModule.SteerRequestType.MotionMagic;
+
+        private final double m_translationIZone = Constants.AutoConstants.translationPID.iZone;
+        private final double m_rotationIZone = Constants.AutoConstants.rotationPID.iZone;
+
+        private PreloadedTrajectory m_trajectory = null;
+        private boolean m_restart = false;
+        private double m_startTimestamp = 0;
+        private final PreloadedTrajectory.Sample m_target = new PreloadedTrajectory.Sample();
+        /* Robot-relative speeds, reused every loop */
+        private final ChassisSpeeds m_speeds = new ChassisSpeeds();
+
+        /* Written by the odometry thread for the command following along */
+        private volatile double m_elapsedSeconds = 0;
+        private volatile double m_translationErrorMeters = 0;
+
+        private static PhoenixPIDController createController(PIDConstants constants) {
+            return new PhoenixPIDController(constants.kP, constants.kI, constants.kD);
+        }
+
+        public StatusCode apply(SwerveControlRequestParameters parameters, SwerveModule... modulesToApply) {
+            SwerveKinematicsEngine kinematics = parameters.kinematicsEngine;
+            PreloadedTrajectory trajectory = m_trajectory;
+            if (trajectory == null) {
+                /* Nothing to follow, so stop where we are */
+                kinematics.toSwerveModuleStates(0, 0, 0, 0, 0);
+                kinematics.apply(modulesToApply, DriveRequestType, SteerRequestType);
+                return StatusCode.OK;
+            }
+
+            if (m_restart) {
+                m_startTimestamp = parameters.timestamp;
+                XController.reset();
+                YController.reset();
+                HeadingController.reset();
+                m_restart = false;
+            }
+            double elapsed = parameters.timestamp - m_startTimestamp;
+            trajectory.sample(elapsed, m_target);
+
+            /* The path is laid out on the field, so follow it ignoring wherever the driver zeroed the heading */
+            double currentX = parameters.fieldX;
+            double currentY = parameters.fieldY;
+            double currentRadians = parameters.fieldHeadingRadians;
+            double errorX = m_target.x - currentX;
+            double errorY = m_target.y - currentY;
+
+            /* Same as an iZone, don't wind up the integrator while we're far off */
+            if (Math.abs(errorX) > m_translationIZone) {
+                XController.reset();
+            }
+            if (Math.abs(errorY) > m_translationIZone) {
+                YController.reset();
+            }
+            double toApplyX = m_target.velocityMps * Math.cos(m_target.headingRadians)
+                    + XController.calculate(currentX, m_target.x, parameters.timestamp);
+            double toApplyY = m_target.velocityMps * Math.sin(m_target.headingRadians)
+                    + YController.calculate(currentY, m_target.y, parameters.timestamp);
+
+            /* Hand the controller the nearest equivalent target so it never goes the long way around */
+            double headingError = MathUtil.angleModulus(m_target.holonomicRotationRadians - currentRadians);
+            if (Math.abs(headingError) > m_rotationIZone) {
+                HeadingController.reset();
+            }
+            double toApplyOmega = HeadingController.calculate(currentRadians, currentRadians + headingError,
+                    parameters.timestamp);
+            if (!Double.isNaN(m_target.holonomicAngularVelocityRps)) {
+                toApplyOmega += m_target.holonomicAngularVelocityRps;
+            }
+            /* Only turn as fast as the modules have speed left over from translating, like PathPlanner does */
+            double maxOmega = Math.min(m_target.maxAngularVelocityRps,
+                    Math.max(0, MaxModuleSpeed - m_target.velocityMps) / DriveBaseRadius);
+            toApplyOmega = MathUtil.clamp(toApplyOmega, -maxOmega, maxOmega);
+
+            SwerveKinematicsEngine.fromFieldRelativeSpeeds(toApplyX, toApplyY, toApplyOmega, currentRadians, m_speeds);
+            SwerveKinematicsEngine.discretize(m_speeds, parameters.updatePeriod);
+
+            kinematics.toSwerveModuleStates(m_speeds.vxMetersPerSecond, m_speeds.vyMetersPerSecond,
+                    m_speeds.omegaRadiansPerSecond, 0, 0);
+            kinematics.desaturateWheelSpeeds(MaxModuleSpeed);
+            kinematics.apply(modulesToApply, DriveRequestType, SteerRequestType);
+
+            m_elapsedSeconds = elapsed;
+            m_translationErrorMeters = Math.hypot(errorX, errorY);
+            return StatusCode.OK;
+        }
+
+        /**
+         * Sets the trajectory to follow, restarting from its beginning the next
+         * time the request is applied.
+         *
+         * @param trajectory Trajectory to follow, or null to stop
+         * @return this request
+         */
+        public FollowTrajectory withTrajectory(PreloadedTrajectory trajectory) {
+            this.m_trajectory = trajectory;
+            this.m_restart = true;
+            this.m_elapsedSeconds = 0;
+            return this;
+        }
+
+        /**
+         * Gets how far along the trajectory the request was the last time it was
+         * applied.
+         *
+         * @return Time since the start of the trajectory, in seconds
+         */
+        public double getElapsedSeconds() {
+            return m_elapsedSeconds;
+        }
+
+        /**
+         * Gets how far the robot was from where the trajectory wanted it the last
+         * time the request was applied.
+         *
+         * @return Translation error, in meters
+         */
+        public double getTranslationErrorMeters() {
+            return m_translationErrorMeters;
+        }
+
+        /**
+         * Sets the type of control request to use for the drive motor.
+         *
+         * @param driveRequestType The type of control request to use for the drive
+         *                         motor
+         * @return this request
+         */
+        public FollowTrajectory withDriveRequestType(SwerveModule.DriveRequestType driveRequestType) {
+            this.DriveRequestType = driveRequestType;
+            return this;
+        }
+
+        /**
+         * Sets the type of control request to use for the steer motor.
+         *
+         * @param steerRequestType The type of control request to use for the steer
+         *                         motor
+         * @return this request
+         */
+        public FollowTrajectory withSteerRequestType(SwerveModule.SteerRequestType steerRequestType) {
+            this.SteerRequestType = steerRequestType;
+            return this;
+        }
+    }
+
+    /**
+     * Drives the robot to a field-relative pose, for short moves and the final
+     * approach at the end of pathfinding.
+     * <p>
+     * The translation and heading each follow a time-optimal profile, stepped
+     * every time the request is applied. The profile accelerates as hard as it is
+     * allowed to, cruises, then brakes to arrive at the target with no velocity
+     * left. The profile velocity is fed forward and PID closes the loop on where
+     * the profile says the robot should be, so it settles at the odometry rate
+     * instead of the robot loop rate.
+     * <p>
+     * The profile starts from the robot's velocity toward the target, so it can
+     * take over from a path that is still moving. It works from the robot's pose
+     * on the field, not the one turned by wherever the driver zeroed the
+     * heading, so it ends up where the path handing over to it was headed.
+     */
+    public class DriveToPose implements SwerveRequest {
+        /**
+         * The field-relative pose to drive to.
+         */
+        public Pose2d TargetPose = new Pose2d();
+
+        /**
+         * The fastest the profile drives, in meters per second.
+         */
+        public double MaxVelocity = Constants.AutoConstants.AutoSpeeds.kMaxSpeedMetersPerSecond;
+        /**
+         * The hardest the profile accelerates and brakes, in meters per second
+         * squared.
+         */
+        public double MaxAcceleration = Constants.AutoConstants.AutoSpeeds.kMaxAccelerationMetersPerSecondSquared;
+        /**
+         * The fastest the profile turns, in radians per second.
+         */
+        public double MaxAngularVelocity = Constants.AutoConstants.AutoSpeeds.kMaxAngularSpeedRadiansPerSecond;
+        /**
+         * The hardest the profile accelerates and brakes the turn, in radians per
+         * second squared.
+         */
+        public double MaxAngularAcceleration = Constants.AutoConstants.AutoSpeeds.kMaxAngularAccelerationRadiansPerSecondSquared;
+
+        /**
+         * How close the robot has to be to the target to be at it, in meters.
+         */
+        public double PositionTolerance = Constants.AutoConstants.kDriveToPosePositionToleranceMeters;
+        /**
+         * How close the heading has to be to the target to be at it, in radians.
+         */
+        public double HeadingTolerance = Constants.AutoConstants.kDriveToPoseHeadingToleranceRadians;
+
+        /**
+         * The PID controller used to correct the field-relative X position.
+         * This operates on meters and outputs a velocity in meters per second,
+         * added on top of the profile velocity.
+         */
+        public PhoenixPIDController XController = new PhoenixPIDController(
+                Constants.AutoConstants.driveToPoseTranslationPID.kP,
+                Constants.AutoConstants.driveToPoseTranslationPID.kI,
+                Constants.AutoConstants.driveToPoseTranslationPID.kD);
+        /**
+         * The PID controller used to correct the field-relative Y position.
+         * This operates on meters and outputs a velocity in meters per second,
+         * added on top of the profile velocity.
+         */
+        public PhoenixPIDController YController = new PhoenixPIDController(
+                Constants.AutoConstants.driveToPoseTranslationPID.kP,
+                Constants.AutoConstants.driveToPoseTranslationPID.kI,
+                Constants.AutoConstants.driveToPoseTranslationPID.kD);
+        /**
+         * The PID controller used to correct the heading.
+         * This operates on heading radians and outputs a rotational rate in
+         * radians per second, added on top of the profile rate. The target is
+         * always handed to it within half a turn of the current heading.
+         */
+        public PhoenixPIDController HeadingController = new PhoenixPIDController(
+                Constants.AutoConstants.rotationPID.kP,
+                Constants.AutoConstants.rotationPID.kI,
+                Constants.AutoConstants.rotationPID.kD);
+
+        /**
+         * The fastest a module can drive, used to desaturate the module speeds.
+         */
+        public double MaxModuleSpeed = Constants.SwerveConstants.SwerveSpeeds.kMaxModuleSpeed;
+
+        /**
+         * The type of control request to use for the drive motor.
+         */
+        public SwerveModule.DriveRequestType DriveRequestType = SwerveModule.DriveRequestType.OpenLoopVoltage;
+        /**
+         * The type of control request to use for the steer motor.
+         */
+        public SwerveModule.SteerRequestType SteerRequestType = SwerveModule.SteerRequestType.MotionMagic;
+
+        private boolean m_restart = true;
+
+        /* Translation profile, along the line from where we started to the target */
+        private double m_directionX = 0;
+        private double m_directionY = 0;
+        private double m_remainingMeters = 0;
+        private double m_velocity = 0;
+
+        /* Heading profile, the sign is the direction we're turning */
+        private double m_turnSign = 1;
+        private double m_remainingRadians = 0;
+        private double m_angularVelocity = 0;
+
+        /* Robot-relative speeds, reused every loop */
+        private final ChassisSpeeds m_speeds = new ChassisSpeeds();
+
+        /* Written by the odometry thread for the command waiting on it */
+        private volatile boolean m_atTarget = false;
+
+        public StatusCode apply(SwerveControlRequestParameters parameters, SwerveModule... modulesToApply) {
+            SwerveKinematicsEngine kinematics = parameters.kinematicsEngine;
+            /* The target is on the field, so this has to ignore wherever the driver zeroed the heading */
+            double currentX = parameters.fieldX;
+            double currentY = parameters.fieldY;
+            double currentRadians = parameters.fieldHeadingRadians;
+            double targetX = TargetPose.getX();
+            double targetY = TargetPose.getY();
+            double targetRadians = TargetPose.getRotation().getRadians();
+            double dt = parameters.updatePeriod;
+
+            if (m_restart) {
+                restart(parameters, currentRadians, targetX, targetY, targetRadians);
+                m_restart = false;
+            }
+
+            /* Speed up, cruise, or brake so we stop right on the target */
+            m_velocity = Math.min(Math.min(m_velocity + MaxAcceleration * dt, MaxVelocity),
+                    Math.sqrt(2 * MaxAcceleration * m_remainingMeters));
+            m_remainingMeters = Math.max(0, m_remainingMeters - m_velocity * dt);
+            m_angularVelocity = Math.min(Math.min(m_angularVelocity + MaxAngularAcceleration * dt, MaxAngularVelocity),
+                    Math.sqrt(2 * MaxAngularAcceleration * m_remainingRadians));
+            m_remainingRadians = Math.max(0, m_remainingRadians - m_angularVelocity * dt);
+
+            /* Where the profile says we should be right now */
+            double setpointX = targetX - m_directionX * m_remainingMeters;
+            double setpointY = targetY - m_directionY * m_remainingMeters;
+            double setpointRadians = targetRadians - m_turnSign * m_remainingRadians;
+
+            double toApplyX = m_directionX * m_velocity
+                    + XController.calculate(currentX, setpointX, parameters.timestamp);
+            double toApplyY = m_directionY * m_velocity
+                    + YController.calculate(currentY, setpointY, parameters.timestamp);
+            /* Hand the controller the nearest equivalent target so it never goes the long way around */
+            double setpointError = MathUtil.angleModulus(setpointRadians - currentRadians);
+            double toApplyOmega = m_turnSign * m_angularVelocity
+                    + HeadingController.calculate(currentRadians, currentRadians + setpointError,
+                            parameters.timestamp);
+
+            SwerveKinematicsEngine.fromFieldRelativeSpeeds(toApplyX, toApplyY, toApplyOmega, currentRadians, m_speeds);
+            SwerveKinematicsEngine.discretize(m_speeds, dt);
+
+            kinematics.toSwerveModuleStates(m_speeds.vxMetersPerSecond, m_speeds.vyMetersPerSecond,
+                    m_speeds.omegaRadiansPerSecond, 0, 0);
+            kinematics.desaturateWheelSpeeds(MaxModuleSpeed);
+            kinematics.apply(modulesToApply, DriveRequestType, SteerRequestType);
+
+            m_atTarget = m_remainingMeters == 0 && m_remainingRadians == 0
+                    && Math.hypot(targetX - currentX, targetY - currentY) <= PositionTolerance
+                    && Math.abs(MathUtil.angleModulus(targetRadians - currentRadians)) <= HeadingTolerance;
+            return StatusCode.OK;
+        }
+
+        private void restart(SwerveControlRequestParameters parameters, double currentRadians, double targetX,
+                double targetY, double targetRadians) {
+            double currentX = parameters.fieldX;
+            double currentY = parameters.fieldY;
+            ChassisSpeeds robotSpeeds = parameters.currentChassisSpeed;
+            /* Robot-relative speeds rotated onto the field */
+            double cos = Math.cos(currentRadians);
+            double sin = Math.sin(currentRadians);
+            double fieldVx = robotSpeeds.vxMetersPerSecond * cos - robotSpeeds.vyMetersPerSecond * sin;
+            double fieldVy = robotSpeeds.vxMetersPerSecond * sin + robotSpeeds.vyMetersPerSecond * cos;
+
+            double dx = targetX - currentX;
+            double dy = targetY - currentY;
+            m_remainingMeters = Math.hypot(dx, dy);
+            if (m_remainingMeters > 1e-6) {
+                m_directionX = dx / m_remainingMeters;
+                m_directionY = dy / m_remainingMeters;
+            } else {
+                m_directionX = 0;
+                m_directionY = 0;
+            }
+            /* Keep whatever speed we already have toward the target, the PID takes care of the rest */
+            m_velocity = MathUtil.clamp(fieldVx * m_directionX + fieldVy * m_directionY, 0, MaxVelocity);
+
+            double turn = MathUtil.angleModulus(targetRadians - currentRadians);
+            m_turnSign = turn < 0 ? -1 : 1;
+            m_remainingRadians = Math.abs(turn);
+            m_angularVelocity = MathUtil.clamp(m_turnSign * robotSpeeds.omegaRadiansPerSecond, 0, MaxAngularVelocity);
+
+            XController.reset();
+            YController.reset();
+            HeadingController.reset();
+            m_atTarget = false;
+        }
+
+        /**
+         * Sets the pose to drive to. A new target restarts the profile from
+         * wherever the robot is the next time the request is applied.
+         *
+         * @param targetPose Field-relative pose to drive to
+         * @return this request
+         */
+        public DriveToPose withTargetPose(Pose2d targetPose) {
+            if (!targetPose.equals(this.TargetPose)) {
+                this.TargetPose = targetPose;
+                this.m_restart = true;
+                this.m_atTarget = false;
+            }
+            return this;
+        }
+
+        /**
+         * Restarts the profile from wherever the robot is the next time the
+         * request is applied, even if the target hasn't changed.
+         *
+         * @return this request
+         */
+        public DriveToPose withRestart() {
+            this.m_restart = true;
+            this.m_atTarget = false;
+            return this;
+        }
+
+        /**
+         * Sets the fastest the profile drives.
+         *
+         * @param maxVelocity Fastest the profile drives, in meters per second
+         * @return this request
+         */
+        public DriveToPose withMaxVelocity(double maxVelocity) {
+            this.MaxVelocity = maxVelocity;
+            return this;
+        }
+
+        /**
+         * Sets the hardest the profile accelerates and brakes.
+         *
+         * @param maxAcceleration Hardest the profile accelerates, in meters per
+         *                        second squared
+         * @return this request
+         */
+        public DriveToPose withMaxAcceleration(double maxAcceleration) {
+            this.MaxAcceleration = maxAcceleration;
+            return this;
+        }
+
+        /**
+         * Sets how close the robot has to be to the target to be at it.
+         *
+         * @param positionTolerance Position tolerance, in meters
+         * @param headingTolerance  Heading tolerance, in radians
+         * @return this request
+         */
+        public DriveToPose withTolerance(double positionTolerance, double headingTolerance) {
+            this.PositionTolerance = positionTolerance;
+            this.HeadingTolerance = headingTolerance;
+            return this;
+        }
+
+        /**
+         * Whether the profile has finished and the robot is within tolerance of
+         * the target, as of the last time the request was applied.
+         *
+         * @return true if the robot is at the target
+         */
+        public boolean isAtTarget() {
+            return m_atTarget;
+        }
+
+        /**
+         * Sets the type of control request to use for the drive motor.
+         *
+         * @param driveRequestType The type of control request to use for the drive
+         *                         motor
+         * @return this request
+         */
+        public DriveToPose withDriveRequestType(SwerveModule.DriveRequestType driveRequestType) {
+            this.DriveRequestType = driveRequestType;
+            return this;
+        }
+
+        /**
+         * Sets the type of control request to use for the steer motor.
+         *
+         * @param steerRequestType The type of control request to use for the steer
+         *                         motor
+         * @return this request
+         */
+        public DriveToPose withSteerRequestType(SwerveModule.SteerRequestType steerRequestType) {
+            this.SteerRequestType = steerRequestType;
+            return this;
+        }
+    }
+
     /**
      * Does nothing to the swerve module state. This is the default state of a newly
      * created swerve drive mechanism.
@@ -724,6 +1545,7 @@ public interface SwerveRequest {
         public SwerveModule.SteerRequestType SteerRequestType = SwerveModule.SteerRequestType.MotionMagic;
 
         public StatusCode apply(SwerveControlRequestParameters parameters, SwerveModule... modulesToApply) {
+            SwerveKinematicsEngine kinematics = parameters.kinematicsEngine;
             double toApplyX = VelocityX;
             double toApplyY = VelocityY;
             double toApplyOmega = RotationalRate;
@@ -734,13 +1556,9 @@ public interface SwerveRequest {
             if (Math.abs(toApplyOmega) < RotationalDeadband) {
                 toApplyOmega = 0;
             }
-            ChassisSpeeds speeds = new ChassisSpeeds(toApplyX, toApplyY, toApplyOmega);
-
-            var states = parameters.kinematics.toSwerveModuleStates(speeds, new Translation2d());
-
-            for (int i = 0; i < modulesToApply.length; ++i) {
-                modulesToApply[i].apply(states[i], DriveRequestType, SteerRequestType);
-            }
+            kinematics.toSwerveModuleStates(toApplyX, toApplyY, toApplyOmega, 0, 0);
+            kinematics.desaturateWheelSpeeds(Constants.SwerveConstants.SwerveSpeeds.kMaxSpeedMetersPerSecond);
+            kinematics.apply(modulesToApply, DriveRequestType, SteerRequestType);
 
             return StatusCode.OK;
         }
@@ -856,11 +1674,10 @@ public interface SwerveRequest {
         public double slowDownRate = 1;
 
         public StatusCode apply(SwerveControlRequestParameters parameters, SwerveModule... modulesToApply) {
-            var states = parameters.kinematics.toSwerveModuleStates(Speeds, CenterOfRotation);
-            for (int i = 0; i < modulesToApply.length; ++i) {
-                states[i].speedMetersPerSecond *= slowDownRate;
-                modulesToApply[i].apply(states[i], DriveRequestType, SteerRequestType);
-            }
+            SwerveKinematicsEngine kinematics = parameters.kinematicsEngine;
+            kinematics.toSwerveModuleStates(Speeds, CenterOfRotation);
+            kinematics.scaleWheelSpeeds(slowDownRate);
+            kinematics.apply(modulesToApply, DriveRequestType, SteerRequestType);
 
             return StatusCode.OK;
         }
@@ -0,0 +1,247 @@
+package frc.robot.subsystems.Drivetrain;
+
+import java.util.concurrent.locks.StampedLock;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.robot.subsystems.Drivetrain.SwerveDrivetrain.SwerveDriveState;
+
+/**
+ * Hands the newest drivetrain state from the odometry thread to everyone
+ * else, without either side blocking the other.
+ * <p>
+ * The state is kept in a {@link Frame} of primitives guarded by a
+ * {@link StampedLock} used as a seqlock. The writer fills the frame between
+ * {@link #beginWrite()} and {@link #endWrite(long)}, and readers copy it out
+ * with an optimistic read, retrying if a write landed mid-copy. A frame is
+ * only ever copied by value, so nothing a reader holds on to is written by
+ * another thread, and the writer never allocates.
+ * <p>
+ * Writers must be serialized by the caller, the drivetrain only writes with
+ * its state lock held.
+ */
+public class SwerveStateBuffer {
+    /* Number of optimistic reads to attempt before falling back to a read lock */
+    private static final int MAX_OPTIMISTIC_READS = 4;
+
+    /**
+     * The drivetrain state, as primitives so it can be copied without
+     * allocating.
+     */
+    public static class Frame {
+        /** Number of successful data acquisitions */
+        public int successfulDaqs;
+        /** Number of failed data acquisitions */
+        public int failedDaqs;
+        /** Field-relative X position, in meters */
+        public double x;
+        /** Field-relative Y position, in meters */
+        public double y;
+        /** Field-relative heading, in radians */
+        public double theta;
+        /** Robot-relative X velocity, in meters per second */
+        public double vx;
+        /** Robot-relative Y velocity, in meters per second */
+        public double vy;
+        /** Angular velocity, in radians per second */
+        public double omega;
+        /** The measured odometry update period, in seconds */
+        public double odometryPeriod;
+        /** Measured speed of each module, in meters per second */
+        public final double[] moduleSpeeds;
+        /** Measured angle of each module, in radians */
+        public final double[] moduleAngles;
+        /** Target speed of each module, in meters per second */
+        public final double[] targetSpeeds;
+        /** Target angle of each module, in radians */
+        public final double[] targetAngles;
+
+        /**
+         * Makes an empty frame.
+         *
+         * @param moduleCount Number of swerve modules
+         */
+        public Frame(int moduleCount) {
+            moduleSpeeds = new double[moduleCount];
+            moduleAngles = new double[moduleCount];
+            targetSpeeds = new double[moduleCount];
+            targetAngles = new double[moduleCount];
+        }
+
+        /**
+         * Copies another frame of the same drivetrain into this one.
+         *
+         * @param other Frame to copy
+         */
+        public void copyFrom(Frame other) {
+            successfulDaqs = other.successfulDaqs;
+            failedDaqs = other.failedDaqs;
+            x = other.x;
+            y = other.y;
+            theta = other.theta;
+            vx = other.vx;
+            vy = other.vy;
+            omega = other.omega;
+            odometryPeriod = other.odometryPeriod;
+            System.arraycopy(other.moduleSpeeds, 0, moduleSpeeds, 0, moduleSpeeds.length);
+            System.arraycopy(other.moduleAngles, 0, moduleAngles, 0, moduleAngles.length);
+            System.arraycopy(other.targetSpeeds, 0, targetSpeeds, 0, targetSpeeds.length);
+            System.arraycopy(other.targetAngles, 0, targetAngles, 0, targetAngles.length);
+        }
+
+        /**
+         * Copies just the pose of another frame of the same drivetrain into
+         * this one.
+         *
+         * @param other Frame to copy
+         */
+        public void copyPoseFrom(Frame other) {
+            x = other.x;
+            y = other.y;
+            theta = other.theta;
+        }
+
+        /**
+         * Fills a state with this frame. The pose and module angles are
+         * immutable, so they are only replaced with new objects when they
+         * changed, everything else is written into the state's own objects.
+         *
+         * @param state State to fill, with module arrays sized for this drivetrain
+         */
+        public void toState(SwerveDriveState state) {
+            state.SuccessfulDaqs = successfulDaqs;
+            state.FailedDaqs = failedDaqs;
+            state.Pose = toPose(state.Pose);
+            state.speeds.vxMetersPerSecond = vx;
+            state.speeds.vyMetersPerSecond = vy;
+            state.speeds.omegaRadiansPerSecond = omega;
+            state.OdometryPeriod = odometryPeriod;
+            for (int i = 0; i < moduleSpeeds.length; ++i) {
+                state.ModuleStates[i].speedMetersPerSecond = moduleSpeeds[i];
+                state.ModuleStates[i].angle = toRotation(state.ModuleStates[i].angle, moduleAngles[i]);
+                state.ModuleTargets[i].speedMetersPerSecond = targetSpeeds[i];
+                state.ModuleTargets[i].angle = toRotation(state.ModuleTargets[i].angle, targetAngles[i]);
+            }
+        }
+
+        /**
+         * Gets the pose in this frame, reusing the given pose if it is already
+         * the same.
+         *
+         * @param current Pose to reuse, or null
+         * @return The pose in this frame
+         */
+        public Pose2d toPose(Pose2d current) {
+            if (current != null && current.getX() == x && current.getY() == y
+                    && current.getRotation().getRadians() == theta) {
+                return current;
+            }
+            return new Pose2d(x, y, Rotation2d.fromRadians(theta));
+        }
+
+        private static Rotation2d toRotation(Rotation2d current, double radians) {
+            if (current != null && current.getRadians() == radians) {
+                return current;
+            }
+            return Rotation2d.fromRadians(radians);
+        }
+    }
+
+    private final StampedLock m_lock = new StampedLock();
+    private final Frame m_published;
+
+    /**
+     * Makes a buffer for a drivetrain.
+     *
+     * @param moduleCount Number of swerve modules
+     */
+    public SwerveStateBuffer(int moduleCount) {
+        m_published = new Frame(moduleCount);
+    }
+
+    /**
+     * Starts writing a new state. Fill {@link #getWriteFrame()}, then call
+     * {@link #endWrite(long)} with the returned stamp, keeping the time in
+     * between short since readers spin on it.
+     *
+     * @return Stamp to end the write with
+     */
+    public long beginWrite() {
+        return m_lock.writeLock();
+    }
+
+    /**
+     * Gets the frame to fill between {@link #beginWrite()} and
+     * {@link #endWrite(long)}. Fields that aren't written keep their last
+     * value.
+     *
+     * @return The published frame
+     */
+    public Frame getWriteFrame() {
+        return m_published;
+    }
+
+    /**
+     * Publishes the state written since {@link #beginWrite()}.
+     *
+     * @param stamp Stamp from {@link #beginWrite()}
+     */
+    public void endWrite(long stamp) {
+        m_lock.unlockWrite(stamp);
+    }
+
+    /**
+     * Copies just the pose of the newest state, never seeing a half written
+     * one, and leaves the rest of the frame as it was. Safe to call from any
+     * thread.
+     *
+     * @param frameToPutResultsIn Frame to fill
+     */
+    public void readPose(Frame frameToPutResultsIn) {
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_READS; ++attempt) {
+            long stamp = m_lock.tryOptimisticRead();
+            if (stamp != 0) {
+                frameToPutResultsIn.copyPoseFrom(m_published);
+                if (m_lock.validate(stamp)) {
+                    return;
+                }
+            }
+            Thread.onSpinWait();
+        }
+
+        long stamp = m_lock.readLock();
+        try {
+            frameToPutResultsIn.copyPoseFrom(m_published);
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Copies the newest state, never seeing a half written one. Safe to call
+     * from any thread.
+     *
+     * @param frameToPutResultsIn Frame to fill
+     */
+    public void read(Frame frameToPutResultsIn) {
+        /* Optimistic reads don't block the writer, retry a few times if it published mid-copy */
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_READS; ++attempt) {
+            long stamp = m_lock.tryOptimisticRead();
+            if (stamp != 0) {
+                frameToPutResultsIn.copyFrom(m_published);
+                if (m_lock.validate(stamp)) {
+                    return;
+                }
+            }
+            Thread.onSpinWait();
+        }
+
+        /* We keep losing the race, so briefly hold the writer off */
+        long stamp = m_lock.readLock();
+        try {
+            frameToPutResultsIn.copyFrom(m_published);
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package frc.robot.subsystems.Drivetrain;
+
+/**
+ * Merges vision measurements captured at the same instant, such as one frame
+ * from each camera, into a single inverse-variance weighted measurement.
+ * <p>
+ * The odometry thread drains the {@link VisionMeasurementQueue} into this
+ * while holding the state lock, does the sorting and merging with the lock
+ * released, and takes the lock again only to hand the merged measurements to
+ * the pose estimator. Everything is preallocated, so none of it allocates.
+ * A merger is only ever used by one thread.
+ */
+public class VisionMeasurementMerger {
+    private final VisionMeasurementQueue.Measurement[] m_batch;
+    private final double m_mergeWindowSeconds;
+    private int m_batchCount = 0;
+
+    /* Standard deviations for measurements that didn't come with their own */
+    private double m_defaultXStdDev;
+    private double m_defaultYStdDev;
+    private double m_defaultThetaStdDev;
+
+    /* One merged measurement per group, oldest first */
+    private final double[] m_x;
+    private final double[] m_y;
+    private final double[] m_theta;
+    private final double[] m_timestamps;
+    private final double[] m_enqueueTimes;
+    private final double[] m_xStdDevs;
+    private final double[] m_yStdDevs;
+    private final double[] m_thetaStdDevs;
+    private int m_count = 0;
+    private int m_mergedAway = 0;
+
+    /**
+     * Makes a merger for one drain of the queue at a time.
+     *
+     * @param capacity           Most measurements to take from the queue at once
+     * @param mergeWindowSeconds Measurements captured closer together than this
+     *                           are treated as the same instant and merged
+     */
+    public VisionMeasurementMerger(int capacity, double mergeWindowSeconds) {
+        m_batch = new VisionMeasurementQueue.Measurement[capacity];
+        for (int i = 0; i < capacity; ++i) {
+            m_batch[i] = new VisionMeasurementQueue.Measurement();
+        }
+        m_mergeWindowSeconds = mergeWindowSeconds;
+
+        m_x = new double[capacity];
+        m_y = new double[capacity];
+        m_theta = new double[capacity];
+        m_timestamps = new double[capacity];
+        m_enqueueTimes = new double[capacity];
+        m_xStdDevs = new double[capacity];
+        m_yStdDevs = new double[capacity];
+        m_thetaStdDevs = new double[capacity];
+    }
+
+    /**
+     * Takes everything waiting in the queue, up to the capacity, along with
+     * the standard deviations to use for measurements without their own. This
+     * is the only part that needs the state lock, for the defaults.
+     *
+     * @param queue              Queue to drain
+     * @param defaultXStdDev     Default standard deviation of X, in meters
+     * @param defaultYStdDev     Default standard deviation of Y, in meters
+     * @param defaultThetaStdDev Default standard deviation of the heading, in radians
+     * @return Number of measurements taken
+     */
+    public int drain(VisionMeasurementQueue queue, double defaultXStdDev, double defaultYStdDev,
+            double defaultThetaStdDev) {
+        m_defaultXStdDev = defaultXStdDev;
+        m_defaultYStdDev = defaultYStdDev;
+        m_defaultThetaStdDev = defaultThetaStdDev;
+
+        m_batchCount = 0;
+        m_count = 0;
+        m_mergedAway = 0;
+        while (m_batchCount < m_batch.length && queue.poll(m_batch[m_batchCount])) {
+            m_batchCount++;
+        }
+        return m_batchCount;
+    }
+
+    /**
+     * Sorts the drained measurements and merges each group captured at the
+     * same instant. Read the results with {@link #getCount()} and the getters.
+     */
+    public void merge() {
+        /* Oldest first, so measurements from the same instant end up next to each other */
+        for (int i = 1; i < m_batchCount; ++i) {
+            VisionMeasurementQueue.Measurement measurement = m_batch[i];
+            int j = i - 1;
+            while (j >= 0 && m_batch[j].timestampSeconds > measurement.timestampSeconds) {
+                m_batch[j + 1] = m_batch[j];
+                j--;
+            }
+            m_batch[j + 1] = measurement;
+        }
+
+        int start = 0;
+        while (start < m_batchCount) {
+            int end = start + 1;
+            while (end < m_batchCount
+                    && m_batch[end].timestampSeconds - m_batch[start].timestampSeconds <= m_mergeWindowSeconds) {
+                end++;
+            }
+            mergeGroup(start, end);
+            start = end;
+        }
+    }
+
+    /* Merges m_batch[start, end) into the next result */
+    private void mergeGroup(int start, int end) {
+        VisionMeasurementQueue.Measurement first = m_batch[start];
+        int index = m_count++;
+        /* The oldest of the group waited the longest */
+        m_enqueueTimes[index] = first.enqueueTimeSeconds;
+
+        if (end - start == 1) {
+            m_x[index] = first.x;
+            m_y[index] = first.y;
+            m_theta[index] = first.theta;
+            m_timestamps[index] = first.timestampSeconds;
+            /* Always explicit, so nothing left over from an earlier measurement applies to this one */
+            m_xStdDevs[index] = first.hasStdDevs ? first.xStdDev : m_defaultXStdDev;
+            m_yStdDevs[index] = first.hasStdDevs ? first.yStdDev : m_defaultYStdDev;
+            m_thetaStdDevs[index] = first.hasStdDevs ? first.thetaStdDev : m_defaultThetaStdDev;
+            return;
+        }
+
+        /* Weight each measurement by how much we trust it, the merged one is trusted more than any of them */
+        double weightX = 0, weightY = 0, weightTheta = 0;
+        double sumX = 0, sumY = 0, sumSin = 0, sumCos = 0, sumTime = 0;
+        for (int i = start; i < end; ++i) {
+            VisionMeasurementQueue.Measurement measurement = m_batch[i];
+            double xStdDev = measurement.hasStdDevs ? measurement.xStdDev : m_defaultXStdDev;
+            double yStdDev = measurement.hasStdDevs ? measurement.yStdDev : m_defaultYStdDev;
+            double thetaStdDev = measurement.hasStdDevs ? measurement.thetaStdDev : m_defaultThetaStdDev;
+            double wx = 1.0 / (xStdDev * xStdDev);
+            double wy = 1.0 / (yStdDev * yStdDev);
+            double wTheta = 1.0 / (thetaStdDev * thetaStdDev);
+
+            weightX += wx;
+            weightY += wy;
+            weightTheta += wTheta;
+            sumX += wx * measurement.x;
+            sumY += wy * measurement.y;
+            /* Headings are averaged as unit vectors so they don't break across +-pi */
+            sumSin += wTheta * Math.sin(measurement.theta);
+            sumCos += wTheta * Math.cos(measurement.theta);
+            sumTime += measurement.timestampSeconds;
+        }
+
+        int merged = end - start;
+        m_x[index] = sumX / weightX;
+        m_y[index] = sumY / weightY;
+        m_theta[index] = Math.atan2(sumSin, sumCos);
+        m_timestamps[index] = sumTime / merged;
+        m_xStdDevs[index] = 1.0 / Math.sqrt(weightX);
+        m_yStdDevs[index] = 1.0 / Math.sqrt(weightY);
+        m_thetaStdDevs[index] = 1.0 / Math.sqrt(weightTheta);
+        m_mergedAway += merged - 1;
+    }
+
+    /**
+     * Adds every merged measurement to the pose estimator, oldest first, each
+     * with its own standard deviations. Must be called with the state lock
+     * held.
+     *
+     * @param estimator Pose estimator to fuse into
+     * @return Number of measurements fused
+     */
+    public int fuseInto(SwervePoseEstimator estimator) {
+        for (int i = 0; i < m_count; ++i) {
+            estimator.addVisionMeasurement(m_x[i], m_y[i], m_theta[i], m_timestamps[i],
+                    m_xStdDevs[i], m_yStdDevs[i], m_thetaStdDevs[i]);
+        }
+        return m_count;
+    }
+
+    /**
+     * @return Number of merged measurements from the last {@link #merge()}
+     */
+    public int getCount() {
+        return m_count;
+    }
+
+    /**
+     * @return Number of measurements the last {@link #merge()} folded into another
+     */
+    public int getMergedAway() {
+        return m_mergedAway;
+    }
+
+    /**
+     * @param index Index of the merged measurement, oldest first
+     * @return Field-relative X position of the robot, in meters
+     */
+    public double getX(int index) {
+        return m_x[index];
+    }
+
+    /**
+     * @param index Index of the merged measurement, oldest first
+     * @return Field-relative Y position of the robot, in meters
+     */
+    public double getY(int index) {
+        return m_y[index];
+    }
+
+    /**
+     * @param index Index of the merged measurement, oldest first
+     * @return Field-relative heading of the robot, in radians
+     */
+    public double getTheta(int index) {
+        return m_theta[index];
+    }
+
+    /**
+     * @param index Index of the merged measurement, oldest first
+     * @return Time the measurement was captured, in seconds with the FPGA epoch
+     */
+    public double getTimestampSeconds(int index) {
+        return m_timestamps[index];
+    }
+
+    /**
+     * @param index Index of the merged measurement, oldest first
+     * @return Time the oldest measurement in the group was queued, in seconds with the FPGA epoch
+     */
+    public double getEnqueueTimeSeconds(int index) {
+        return m_enqueueTimes[index];
+    }
+
+    /**
+     * @param index Index of the merged measurement, oldest first
+     * @return Standard deviation of the X position, in meters, the default if it had none
+     */
+    public double getXStdDev(int index) {
+        return m_xStdDevs[index];
+    }
+
+    /**
+     * @param index Index of the merged measurement, oldest first
+     * @return Standard deviation of the Y position, in meters
+     */
+    public double getYStdDev(int index) {
+        return m_yStdDevs[index];
+    }
+
+    /**
+     * @param index Index of the merged measurement, oldest first
+     * @return Standard deviation of the heading, in radians
+     */
+    public double getThetaStdDev(int index) {
+        return m_thetaStdDevs[index];
+    }
+}
@@ -0,0 +1,180 @@
+package frc.robot.subsystems.Drivetrain;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer, single-consumer queue of vision measurements.
+ * <p>
+ * Any thread can offer a measurement without locking, and the odometry
+ * thread drains the queue between control updates to fuse them into the
+ * pose estimator. Measurements are stored in preallocated primitive slots,
+ * so neither side allocates. When the queue is full new measurements are
+ * dropped, since the pose estimator would discard stale ones anyway.
+ */
+public class VisionMeasurementQueue {
+    /**
+     * A single measurement pulled out of the queue, filled in place.
+     */
+    public static class Measurement {
+        /** Field-relative X position of the robot, in meters */
+        public double x;
+        /** Field-relative Y position of the robot, in meters */
+        public double y;
+        /** Field-relative heading of the robot, in radians */
+        public double theta;
+        /** Time the measurement was captured, in seconds with the FPGA epoch */
+        public double timestampSeconds;
+        /** Time the measurement was added to the queue, in seconds with the FPGA epoch */
+        public double enqueueTimeSeconds;
+        /** True if the standard deviations below should be used for this measurement */
+        public boolean hasStdDevs;
+        /** Standard deviation of the X position, in meters */
+        public double xStdDev;
+        /** Standard deviation of the Y position, in meters */
+        public double yStdDev;
+        /** Standard deviation of the heading, in radians */
+        public double thetaStdDev;
+    }
+
+    private final int m_mask;
+
+    /* Per-slot sequence numbers, as in Vyukov's bounded queue */
+    private final AtomicLongArray m_sequences;
+    private final double[] m_x;
+    private final double[] m_y;
+    private final double[] m_theta;
+    private final double[] m_timestamps;
+    private final double[] m_enqueueTimes;
+    private final boolean[] m_hasStdDevs;
+    private final double[] m_xStdDevs;
+    private final double[] m_yStdDevs;
+    private final double[] m_thetaStdDevs;
+
+    private final AtomicLong m_tail = new AtomicLong();
+    /* Only the consumer writes this, volatile so producers and metrics can read the depth */
+    private volatile long m_head = 0;
+
+    private final AtomicLong m_dropped = new AtomicLong();
+
+    /**
+     * Constructs a queue that holds at least the given number of measurements.
+     *
+     * @param capacity Minimum number of measurements to hold, rounded up to a power of two
+     */
+    public VisionMeasurementQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        m_mask = size - 1;
+
+        m_sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; ++i) {
+            m_sequences.set(i, i);
+        }
+        m_x = new double[size];
+        m_y = new double[size];
+        m_theta = new double[size];
+        m_timestamps = new double[size];
+        m_enqueueTimes = new double[size];
+        m_hasStdDevs = new boolean[size];
+        m_xStdDevs = new double[size];
+        m_yStdDevs = new double[size];
+        m_thetaStdDevs = new double[size];
+    }
+
+    /**
+     * Adds a measurement to the queue. Safe to call from any thread.
+     *
+     * @param x                  Field-relative X position of the robot, in meters
+     * @param y                  Field-relative Y position of the robot, in meters
+     * @param theta              Field-relative heading of the robot, in radians
+     * @param timestampSeconds   Time the measurement was captured, in seconds
+     * @param enqueueTimeSeconds Current time, in seconds
+     * @param hasStdDevs         True if the standard deviations should be used
+     * @param xStdDev            Standard deviation of the X position, in meters
+     * @param yStdDev            Standard deviation of the Y position, in meters
+     * @param thetaStdDev        Standard deviation of the heading, in radians
+     * @return false if the queue was full and the measurement was dropped
+     */
+    public boolean offer(double x, double y, double theta, double timestampSeconds, double enqueueTimeSeconds,
+            boolean hasStdDevs, double xStdDev, double yStdDev, double thetaStdDev) {
+        long tail = m_tail.get();
+        while (true) {
+            int slot = (int) (tail & m_mask);
+            long difference = m_sequences.get(slot) - tail;
+            if (difference == 0) {
+                /* The slot is free, try to claim it */
+                if (m_tail.compareAndSet(tail, tail + 1)) {
+                    m_x[slot] = x;
+                    m_y[slot] = y;
+                    m_theta[slot] = theta;
+                    m_timestamps[slot] = timestampSeconds;
+                    m_enqueueTimes[slot] = enqueueTimeSeconds;
+                    m_hasStdDevs[slot] = hasStdDevs;
+                    m_xStdDevs[slot] = xStdDev;
+                    m_yStdDevs[slot] = yStdDev;
+                    m_thetaStdDevs[slot] = thetaStdDev;
+                    /* Hand the slot to the consumer */
+                    m_sequences.set(slot, tail + 1);
+                    return true;
+                }
+                tail = m_tail.get();
+            } else if (difference < 0) {
+                /* The consumer hasn't freed this slot yet, so we're full */
+                m_dropped.incrementAndGet();
+                return false;
+            } else {
+                /* Another producer claimed this slot, catch up */
+                tail = m_tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest measurement from the queue. Only the consumer
+     * thread may call this.
+     *
+     * @param measurementToPutResultsIn Measurement to fill
+     * @return false if the queue was empty, in which case the measurement is untouched
+     */
+    public boolean poll(Measurement measurementToPutResultsIn) {
+        long head = m_head;
+        int slot = (int) (head & m_mask);
+        if (m_sequences.get(slot) != head + 1) {
+            /* Either empty, or a producer claimed the slot but hasn't finished writing it */
+            return false;
+        }
+
+        measurementToPutResultsIn.x = m_x[slot];
+        measurementToPutResultsIn.y = m_y[slot];
+        measurementToPutResultsIn.theta = m_theta[slot];
+        measurementToPutResultsIn.timestampSeconds = m_timestamps[slot];
+        measurementToPutResultsIn.enqueueTimeSeconds = m_enqueueTimes[slot];
+        measurementToPutResultsIn.hasStdDevs = m_hasStdDevs[slot];
+        measurementToPutResultsIn.xStdDev = m_xStdDevs[slot];
+        measurementToPutResultsIn.yStdDev = m_yStdDevs[slot];
+        measurementToPutResultsIn.thetaStdDev = m_thetaStdDevs[slot];
+
+        /* Give the slot back to the producers for the next lap */
+        m_sequences.set(slot, head + m_mask + 1);
+        m_head = head + 1;
+        return true;
+    }
+
+    /**
+     * Gets the number of measurements waiting to be fused.
+     *
+     * @return Current queue depth
+     */
+    public int getDepth() {
+        return (int) Math.max(0, m_tail.get() - m_head);
+    }
+
+    /**
+     * Gets the number of measurements dropped because the queue was full.
+     *
+     * @return Total dropped measurements
+     */
+    public long getDroppedCount() {
+        return m_dropped.get();
+    }
+}
@@ -0,0 +1,158 @@
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.util.Units;
+import frc.robot.Constants.ShooterConstants;
+
+/**
+ * Aims a shot while the robot is moving.
+ * <p>
+ * The note leaves with the robot's velocity on top of its own, so instead of
+ * the target we aim at a virtual target, the target moved back along the
+ * robot's velocity by the note's time of flight. The time of flight depends
+ * on the distance to the virtual target, so the two are refined together
+ * until the time of flight settles, which takes a couple of iterations as
+ * long as the note is faster than the robot. A stationary robot aims straight
+ * at the target.
+ * <p>
+ * The results are kept in fields, so solving doesn't allocate and is cheap
+ * enough to do on every odometry update. A solver is not thread safe, each
+ * user keeps its own.
+ */
+public class ShotSolver {
+    /* The regressions and the shot table are tuned from this far back from the robot center */
+    private static final double kDistanceOffsetMeters = Units.inchesToMeters(15);
+
+    private double m_virtualTargetX = 0;
+    private double m_virtualTargetY = 0;
+    private double m_distanceMeters = 0;
+    private double m_timeOfFlightSeconds = 0;
+    private double m_headingRadians = 0;
+    private double m_headingRateRadiansPerSecond = 0;
+
+    /**
+     * Works out where to aim from the robot's position and velocity.
+     *
+     * @param robotX     Field-relative X position of the robot, in meters
+     * @param robotY     Field-relative Y position of the robot, in meters
+     * @param velocityX  Field-relative X velocity of the robot, in meters per second
+     * @param velocityY  Field-relative Y velocity of the robot, in meters per second
+     * @param targetX    Field-relative X position of the target, in meters
+     * @param targetY    Field-relative Y position of the target, in meters
+     */
+    public void solve(double robotX, double robotY, double velocityX, double velocityY, double targetX,
+            double targetY) {
+        double dx = targetX - robotX;
+        double dy = targetY - robotY;
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        double timeOfFlight = getTimeOfFlight(distance);
+
+        for (int i = 0; i < ShooterConstants.kMovingShotMaxIterations; ++i) {
+            dx = targetX - velocityX * timeOfFlight - robotX;
+            dy = targetY - velocityY * timeOfFlight - robotY;
+            distance = Math.sqrt(dx * dx + dy * dy);
+            double refined = getTimeOfFlight(distance);
+            boolean settled = Math.abs(refined - timeOfFlight) < ShooterConstants.kMovingShotToleranceSeconds;
+            timeOfFlight = refined;
+            if (settled) {
+                break;
+            }
+        }
+
+        m_virtualTargetX = targetX - velocityX * timeOfFlight;
+        m_virtualTargetY = targetY - velocityY * timeOfFlight;
+        dx = m_virtualTargetX - robotX;
+        dy = m_virtualTargetY - robotY;
+        double distanceSquared = dx * dx + dy * dy;
+
+        m_distanceMeters = Math.sqrt(distanceSquared);
+        m_timeOfFlightSeconds = timeOfFlight;
+        if (distanceSquared > 1e-6) {
+            m_headingRadians = Math.atan2(dy, dx);
+            /* Driving past the virtual target turns the bearing to it at (d x v) / |d|^2 */
+            m_headingRateRadiansPerSecond = (dy * velocityX - dx * velocityY) / distanceSquared;
+        } else {
+            /* On top of it, keep the last heading */
+            m_headingRateRadiansPerSecond = 0;
+        }
+    }
+
+    /**
+     * Gets how long a note takes to reach something, from when we decide to
+     * shoot.
+     *
+     * @param distanceMeters Distance from the robot center, in meters
+     * @return Time of flight, in seconds
+     */
+    public static double getTimeOfFlight(double distanceMeters) {
+        return ShooterConstants.kShotReleaseSeconds
+                + distanceMeters / ShooterConstants.kNoteHorizontalSpeedMetersPerSecond;
+    }
+
+    /**
+     * Gets the arm angle to shoot at the virtual target.
+     *
+     * @param table Shot table to look the angle up in
+     * @return The arm angle in degrees, before it is checked against the limits
+     */
+    public double getArmAngle(ShotTable table) {
+        return table.getArmAngle(getShotTableDistanceMeters());
+    }
+
+    /**
+     * Gets the distance to the virtual target the way the shot table and the
+     * regressions take it, minus the 15 inch offset.
+     *
+     * @return Distance, in meters
+     */
+    public double getShotTableDistanceMeters() {
+        return m_distanceMeters - kDistanceOffsetMeters;
+    }
+
+    /**
+     * @return Field-relative X position of the virtual target, in meters
+     */
+    public double getVirtualTargetX() {
+        return m_virtualTargetX;
+    }
+
+    /**
+     * @return Field-relative Y position of the virtual target, in meters
+     */
+    public double getVirtualTargetY() {
+        return m_virtualTargetY;
+    }
+
+    /**
+     * @return Distance from the robot center to the virtual target, in meters
+     */
+    public double getDistanceMeters() {
+        return m_distanceMeters;
+    }
+
+    /**
+     * @return Time of flight to the virtual target, in seconds
+     */
+    public double getTimeOfFlightSeconds() {
+        return m_timeOfFlightSeconds;
+    }
+
+    /**
+     * Gets the field-relative bearing from the robot to the virtual target.
+     * The side of the robot the shooter is on should face this way.
+     *
+     * @return Bearing, in radians
+     */
+    public double getHeadingRadians() {
+        return m_headingRadians;
+    }
+
+    /**
+     * Gets how fast the bearing to the virtual target is turning as the robot
+     * drives, to feed forward into the heading controller.
+     *
+     * @return Bearing rate, in radians per second
+     */
+    public double getHeadingRateRadiansPerSecond() {
+        return m_headingRateRadiansPerSecond;
+    }
+}
@@ -0,0 +1,209 @@
+package frc.robot.subsystems;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+import edu.wpi.first.wpilibj.Filesystem;
+
+/**
+ * Arm angle to shoot into the speaker from a distance, interpolated between
+ * calibrated rows instead of worked out from a regression every loop.
+ * <p>
+ * The rows live in a CSV in the deploy directory, so the arm can be retuned
+ * without a redeploy of the code. They are kept in primitive arrays, and
+ * when the distances are evenly spaced (the way the shipped table is
+ * written) a lookup indexes straight into them, otherwise it binary searches.
+ * Distances past either end of the table get the angle at that end.
+ * <p>
+ * A table never changes once it's made, reloading makes a new one, so it can
+ * be read from any thread.
+ */
+public class ShotTable {
+    /** Name of the table in the deploy directory */
+    public static final String kFileName = "shottable.csv";
+
+    /* Rows this close to evenly spaced, relative to the spacing, are treated as evenly spaced */
+    private static final double SPACING_TOLERANCE = 1e-6;
+
+    private final double[] m_distances;
+    private final double[] m_angles;
+    /* Distance between rows, NaN if they aren't evenly spaced */
+    private final double m_spacing;
+
+    /**
+     * Makes a table from calibrated rows.
+     *
+     * @param distancesMeters Distances from the speaker, in increasing order
+     * @param armDegrees      Arm angle to shoot from each distance
+     * @throws IllegalArgumentException if there are fewer than two rows, the
+     *                                  arrays don't match, a value isn't finite
+     *                                  or the distances don't increase
+     */
+    public ShotTable(double[] distancesMeters, double[] armDegrees) {
+        if (distancesMeters.length != armDegrees.length) {
+            throw new IllegalArgumentException("Shot table has " + distancesMeters.length + " distances but "
+                    + armDegrees.length + " angles");
+        }
+        if (distancesMeters.length < 2) {
+            throw new IllegalArgumentException("Shot table needs at least two rows");
+        }
+        for (int i = 0; i < distancesMeters.length; ++i) {
+            if (!Double.isFinite(distancesMeters[i]) || !Double.isFinite(armDegrees[i])) {
+                throw new IllegalArgumentException("Shot table row " + i + " isn't a number");
+            }
+            if (i > 0 && distancesMeters[i] <= distancesMeters[i - 1]) {
+                throw new IllegalArgumentException("Shot table distances must increase, row " + i + " doesn't");
+            }
+        }
+
+        m_distances = distancesMeters.clone();
+        m_angles = armDegrees.clone();
+
+        int last = m_distances.length - 1;
+        double spacing = (m_distances[last] - m_distances[0]) / last;
+        for (int i = 1; i <= last; ++i) {
+            if (Math.abs(m_distances[i] - (m_distances[0] + i * spacing)) > SPACING_TOLERANCE * spacing) {
+                spacing = Double.NaN;
+                break;
+            }
+        }
+        m_spacing = spacing;
+    }
+
+    /**
+     * Makes a table by sampling a model, such as one of the arm regressions.
+     *
+     * @param model        Arm angle for a distance
+     * @param minDistance  Closest distance, in meters
+     * @param maxDistance  Farthest distance, in meters
+     * @param spacing      Distance between rows, in meters
+     * @return The table
+     */
+    public static ShotTable sample(DoubleUnaryOperator model, double minDistance, double maxDistance,
+            double spacing) {
+        int rows = (int) Math.round((maxDistance - minDistance) / spacing) + 1;
+        double[] distances = new double[rows];
+        double[] angles = new double[rows];
+        for (int i = 0; i < rows; ++i) {
+            distances[i] = minDistance + i * spacing;
+            angles[i] = model.applyAsDouble(distances[i]);
+        }
+        return new ShotTable(distances, angles);
+    }
+
+    /**
+     * Loads the table from the deploy directory.
+     *
+     * @return The table
+     * @throws IOException if the file can't be read or isn't a valid table
+     */
+    public static ShotTable loadFromDeploy() throws IOException {
+        return load(Filesystem.getDeployDirectory().toPath().resolve(kFileName));
+    }
+
+    /**
+     * Loads a table from a CSV of "distance_meters,arm_degrees" rows. Blank
+     * lines, lines starting with # and a header row are skipped.
+     *
+     * @param path Path to the CSV
+     * @return The table
+     * @throws IOException if the file can't be read or isn't a valid table
+     */
+    public static ShotTable load(Path path) throws IOException {
+        List<String> lines = Files.readAllLines(path);
+        double[] distances = new double[lines.size()];
+        double[] angles = new double[lines.size()];
+        int rows = 0;
+        boolean headerAllowed = true;
+        for (int i = 0; i < lines.size(); ++i) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length != 2) {
+                throw new IOException(path + ":" + (i + 1) + ": expected distance_meters,arm_degrees");
+            }
+            try {
+                distances[rows] = Double.parseDouble(fields[0].strip());
+                angles[rows] = Double.parseDouble(fields[1].strip());
+            } catch (NumberFormatException e) {
+                if (headerAllowed) {
+                    headerAllowed = false;
+                    continue;
+                }
+                throw new IOException(path + ":" + (i + 1) + ": " + e.getMessage());
+            }
+            headerAllowed = false;
+            rows++;
+        }
+
+        try {
+            return new ShotTable(Arrays.copyOf(distances, rows), Arrays.copyOf(angles, rows));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gets the arm angle to shoot from a distance.
+     *
+     * @param distanceMeters Distance from the speaker, already minus the 15 inch
+     *                       offset like the regressions take
+     * @return The arm angle in degrees, before it is checked against the limits
+     */
+    public double getArmAngle(double distanceMeters) {
+        int last = m_distances.length - 1;
+        if (!(distanceMeters > m_distances[0])) {
+            /* Also catches NaN, which would otherwise index off the table */
+            return m_angles[0];
+        }
+        if (distanceMeters >= m_distances[last]) {
+            return m_angles[last];
+        }
+
+        int low;
+        if (Double.isNaN(m_spacing)) {
+            low = 0;
+            int high = last;
+            while (high - low > 1) {
+                int middle = (low + high) >>> 1;
+                if (m_distances[middle] <= distanceMeters) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+        } else {
+            low = Math.min((int) ((distanceMeters - m_distances[0]) / m_spacing), last - 1);
+        }
+
+        double t = (distanceMeters - m_distances[low]) / (m_distances[low + 1] - m_distances[low]);
+        return m_angles[low] + (m_angles[low + 1] - m_angles[low]) * t;
+    }
+
+    /**
+     * @return Number of rows in the table
+     */
+    public int size() {
+        return m_distances.length;
+    }
+
+    /**
+     * @return Closest distance in the table, in meters
+     */
+    public double getMinDistance() {
+        return m_distances[0];
+    }
+
+    /**
+     * @return Farthest distance in the table, in meters
+     */
+    public double getMaxDistance() {
+        return m_distances[m_distances.length - 1];
+    }
+}
@@ -0,0 +1,83 @@
+package frc.robot.Vision;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import frc.robot.Vision.LimelightHelpers.PoseEstimate;
+
+/**
+ * Checks bot pose arrays decode into an existing estimate, and that a
+ * malformed one never leaves the last frame's fiducials behind.
+ */
+class LimelightClientTest {
+    private static final double kEpsilon = 1e-12;
+
+    /* x, y, z, roll, pitch, yaw, latency, tag count, tag span, avg distance, avg area, then 7 per tag */
+    private static double[] botPose(int tagCount, int fiducials) {
+        double[] array = new double[11 + 7 * fiducials];
+        array[0] = 2.5;
+        array[1] = 4.0;
+        array[5] = 90;
+        array[6] = 20;
+        array[7] = tagCount;
+        array[9] = 3.1;
+        for (int i = 0; i < fiducials; ++i) {
+            array[11 + 7 * i] = 7 + i;
+            array[11 + 7 * i + 6] = 0.05 * (i + 1);
+        }
+        return array;
+    }
+
+    @Test
+    void decodesPoseAndFiducials() {
+        PoseEstimate estimate = new PoseEstimate();
+        LimelightClient.decode(botPose(2, 2), 1_000_000, estimate);
+
+        assertEquals(2.5, estimate.x, kEpsilon);
+        assertEquals(4.0, estimate.y, kEpsilon);
+        assertEquals(Math.PI / 2, estimate.headingRadians, kEpsilon);
+        /* One second of NetworkTables time minus 20 ms of latency */
+        assertEquals(0.98, estimate.timestampSeconds, kEpsilon);
+        assertEquals(2, estimate.tagCount);
+        assertEquals(2, estimate.rawFiducials.length);
+        assertEquals(8, estimate.rawFiducials[1].id);
+        assertEquals(0.1, estimate.rawFiducials[1].ambiguity, kEpsilon);
+
+        /* The pose is only built when asked for, and only once */
+        assertNull(estimate.pose);
+        assertEquals(2.5, estimate.getPose().getX(), kEpsilon);
+        assertEquals(90, estimate.getPose().getRotation().getDegrees(), kEpsilon);
+        assertSame(estimate.getPose(), estimate.getPose());
+    }
+
+    @Test
+    void mismatchedFiducialCountDecodesAsNoTags() {
+        PoseEstimate estimate = new PoseEstimate();
+        LimelightClient.decode(botPose(2, 2), 1_000_000, estimate);
+
+        /* Claims three tags but only carries two */
+        LimelightClient.decode(botPose(3, 2), 2_000_000, estimate);
+        assertEquals(0, estimate.tagCount);
+        assertEquals(0, estimate.rawFiducials.length);
+
+        /* A good frame afterwards decodes normally again */
+        LimelightClient.decode(botPose(1, 1), 3_000_000, estimate);
+        assertEquals(1, estimate.tagCount);
+        assertEquals(1, estimate.rawFiducials.length);
+        assertEquals(7, estimate.rawFiducials[0].id);
+    }
+
+    @Test
+    void emptyArrayDecodesAsNothing() {
+        PoseEstimate estimate = new PoseEstimate();
+        LimelightClient.decode(botPose(2, 2), 1_000_000, estimate);
+        LimelightClient.decode(new double[0], 2_000_000, estimate);
+
+        assertEquals(0, estimate.tagCount);
+        assertEquals(0, estimate.rawFiducials.length);
+        assertEquals(0, estimate.getPose().getX(), kEpsilon);
+    }
+}
@@ -0,0 +1,265 @@
+package frc.robot.Vision;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import frc.robot.Vision.LimelightHelpers.LimelightResults;
+import frc.robot.Vision.LimelightHelpers.LimelightTarget_Classifier;
+import frc.robot.Vision.LimelightHelpers.LimelightTarget_Detector;
+import frc.robot.Vision.LimelightHelpers.LimelightTarget_Fiducial;
+import frc.robot.Vision.LimelightHelpers.LimelightTarget_Retro;
+import frc.robot.Vision.LimelightHelpers.Results;
+
+/**
+ * Checks the streaming decoder against the databind mapper in
+ * {@link LimelightHelpers}, decoding one dump after another into the same
+ * results, so nothing from an earlier dump can hide in the reused targets.
+ */
+class LimelightResultsDecoderTest {
+    private static String fiducial(int id, double tx) {
+        return "{\"fID\": " + id + ", \"fam\": \"36H11C\", \"pts\": [], \"skew\": [],"
+                + " \"t6c_ts\": [-0.41, 0.02, -2.31, -1.2, 12.4, 0.3],"
+                + " \"t6r_fs\": [2.21, 5.48, 0.0, 0.0, 0.0, " + (178 + id) + "],"
+                + " \"t6r_ts\": [-0.38, 0.5, -2.6, -1.1, 12.1, 0.4],"
+                + " \"t6t_cs\": [0.52, -0.1, 2.28, 1.6, -12.3, -0.5],"
+                + " \"t6t_rs\": [0.23, 0.38, 2.51, -30.1, -11.8, " + id + "],"
+                + " \"ta\": 0.0061, \"tx\": " + tx + ", \"txp\": 420.5, \"ty\": 4.13, \"typ\": 210.25, \"ts\": 0.0}";
+    }
+
+    private static String detector(String className, double tx) {
+        return "{\"class\": \"" + className + "\", \"classID\": 0, \"conf\": 0.83, \"pts\": [],"
+                + " \"ta\": 0.012, \"tx\": " + tx + ", \"txp\": 300.5, \"ty\": -12.1, \"typ\": 410.0}";
+    }
+
+    private static String results(String fiducials, String detectors) {
+        return "{\"Results\": {\"Barcode\": [], \"Classifier\": [], \"Detector\": [" + detectors + "],"
+                + " \"Fiducial\": [" + fiducials + "], \"Retro\": [],"
+                + " \"botpose\": [-6.06, 0.02, 0.0, 0.0, 0.0, 178.6], \"botpose_avgarea\": 0.0057,"
+                + " \"botpose_avgdist\": 2.64, \"botpose_span\": 0.54, \"botpose_tagcount\": 2,"
+                + " \"botpose_wpiblue\": [2.21, 4.13, 0.0, 0.0, 0.0, 178.6],"
+                + " \"botpose_wpired\": [14.33, 4.08, 0.0, 0.0, 0.0, -1.4], \"cl\": 11.0, \"focus_metric\": 0,"
+                + " \"pID\": 0.0, \"stdev_mt1\": [0.03, 0.04, 0, 0, 0, 1.2],"
+                + " \"t6c_rs\": [0.0127, 0.254, 0.44958, 0.0, 31.3, 0.0], \"tl\": 18.4, \"ts\": 1584232.611,"
+                + " \"ts_rio\": 0.0, \"v\": 1}}";
+    }
+
+    /* The capture the benchmark uses, two tags in view */
+    private static final String kTwoTags = results(fiducial(7, -8.42) + ", " + fiducial(8, 6.71), "");
+
+    private static void assertMatches(LimelightTarget_Fiducial expected, LimelightTarget_Fiducial actual) {
+        assertEquals(expected.fiducialID, actual.fiducialID);
+        assertEquals(expected.fiducialFamily, actual.fiducialFamily);
+        assertArrayEquals(expected.cameraPose_TargetSpace, actual.cameraPose_TargetSpace);
+        assertArrayEquals(expected.robotPose_FieldSpace, actual.robotPose_FieldSpace);
+        assertArrayEquals(expected.robotPose_TargetSpace, actual.robotPose_TargetSpace);
+        assertArrayEquals(expected.targetPose_CameraSpace, actual.targetPose_CameraSpace);
+        assertArrayEquals(expected.targetPose_RobotSpace, actual.targetPose_RobotSpace);
+        assertEquals(expected.ta, actual.ta);
+        assertEquals(expected.tx, actual.tx);
+        assertEquals(expected.tx_pixels, actual.tx_pixels);
+        assertEquals(expected.ty, actual.ty);
+        assertEquals(expected.ty_pixels, actual.ty_pixels);
+        assertEquals(expected.ts, actual.ts);
+    }
+
+    private static void assertMatches(LimelightTarget_Retro expected, LimelightTarget_Retro actual) {
+        assertArrayEquals(expected.cameraPose_TargetSpace, actual.cameraPose_TargetSpace);
+        assertArrayEquals(expected.robotPose_FieldSpace, actual.robotPose_FieldSpace);
+        assertArrayEquals(expected.robotPose_TargetSpace, actual.robotPose_TargetSpace);
+        assertArrayEquals(expected.targetPose_CameraSpace, actual.targetPose_CameraSpace);
+        assertArrayEquals(expected.targetPose_RobotSpace, actual.targetPose_RobotSpace);
+        assertEquals(expected.ta, actual.ta);
+        assertEquals(expected.tx, actual.tx);
+        assertEquals(expected.tx_pixels, actual.tx_pixels);
+        assertEquals(expected.ty, actual.ty);
+        assertEquals(expected.ty_pixels, actual.ty_pixels);
+        assertEquals(expected.ts, actual.ts);
+    }
+
+    private static void assertMatches(LimelightTarget_Detector expected, LimelightTarget_Detector actual) {
+        assertEquals(expected.className, actual.className);
+        assertEquals(expected.classID, actual.classID);
+        assertEquals(expected.confidence, actual.confidence);
+        assertEquals(expected.ta, actual.ta);
+        assertEquals(expected.tx, actual.tx);
+        assertEquals(expected.tx_pixels, actual.tx_pixels);
+        assertEquals(expected.ty, actual.ty);
+        assertEquals(expected.ty_pixels, actual.ty_pixels);
+    }
+
+    private static void assertMatches(LimelightTarget_Classifier expected, LimelightTarget_Classifier actual) {
+        assertEquals(expected.className, actual.className);
+        assertEquals(expected.classID, actual.classID);
+        assertEquals(expected.confidence, actual.confidence);
+        assertEquals(expected.zone, actual.zone);
+        assertEquals(expected.tx, actual.tx);
+        assertEquals(expected.tx_pixels, actual.tx_pixels);
+        assertEquals(expected.ty, actual.ty);
+        assertEquals(expected.ty_pixels, actual.ty_pixels);
+    }
+
+    /* Decodes into the given results and checks everything against a fresh parse by the mapper */
+    private static void assertDecodesLikeMapper(String json, LimelightResultsDecoder decoder,
+            LimelightResults decoded) {
+        LimelightResults parsed = LimelightHelpers.parseResults(json);
+        assertSame(decoded, decoder.decode(json, decoded));
+        assertEquals(parsed.error, decoded.error);
+
+        Results expected = parsed.targetingResults;
+        Results actual = decoded.targetingResults;
+        assertEquals(expected.pipelineID, actual.pipelineID);
+        assertEquals(expected.latency_pipeline, actual.latency_pipeline);
+        assertEquals(expected.latency_capture, actual.latency_capture);
+        assertEquals(expected.timestamp_LIMELIGHT_publish, actual.timestamp_LIMELIGHT_publish);
+        assertEquals(expected.timestamp_RIOFPGA_capture, actual.timestamp_RIOFPGA_capture);
+        assertEquals(expected.valid, actual.valid);
+        assertArrayEquals(expected.botpose, actual.botpose);
+        assertArrayEquals(expected.botpose_wpired, actual.botpose_wpired);
+        assertArrayEquals(expected.botpose_wpiblue, actual.botpose_wpiblue);
+        assertEquals(expected.botpose_tagcount, actual.botpose_tagcount);
+        assertEquals(expected.botpose_span, actual.botpose_span);
+        assertEquals(expected.botpose_avgdist, actual.botpose_avgdist);
+        assertEquals(expected.botpose_avgarea, actual.botpose_avgarea);
+        assertArrayEquals(expected.camerapose_robotspace, actual.camerapose_robotspace);
+
+        assertEquals(expected.targets_Fiducials.length, actual.targets_Fiducials.length);
+        for (int i = 0; i < expected.targets_Fiducials.length; ++i) {
+            assertMatches(expected.targets_Fiducials[i], actual.targets_Fiducials[i]);
+        }
+        assertEquals(expected.targets_Retro.length, actual.targets_Retro.length);
+        for (int i = 0; i < expected.targets_Retro.length; ++i) {
+            assertMatches(expected.targets_Retro[i], actual.targets_Retro[i]);
+        }
+        assertEquals(expected.targets_Detector.length, actual.targets_Detector.length);
+        for (int i = 0; i < expected.targets_Detector.length; ++i) {
+            assertMatches(expected.targets_Detector[i], actual.targets_Detector[i]);
+        }
+        assertEquals(expected.targets_Classifier.length, actual.targets_Classifier.length);
+        for (int i = 0; i < expected.targets_Classifier.length; ++i) {
+            assertMatches(expected.targets_Classifier[i], actual.targets_Classifier[i]);
+        }
+        assertEquals(expected.targets_Barcode.length, actual.targets_Barcode.length);
+    }
+
+    @Test
+    void decodesTheCaptureLikeTheMapper() {
+        LimelightResultsDecoder decoder = new LimelightResultsDecoder();
+        LimelightResults results = new LimelightResults();
+
+        /* Twice, so the second pass is into results that already hold the capture */
+        assertDecodesLikeMapper(kTwoTags, decoder, results);
+        LimelightTarget_Fiducial first = results.targetingResults.targets_Fiducials[0];
+        double[] botpose = results.targetingResults.botpose_wpiblue;
+        assertDecodesLikeMapper(kTwoTags, decoder, results);
+
+        /* And the second pass reused what the first one made */
+        assertSame(first, results.targetingResults.targets_Fiducials[0]);
+        assertSame(botpose, results.targetingResults.botpose_wpiblue);
+        assertEquals(2, results.targetingResults.targets_Fiducials.length);
+    }
+
+    @Test
+    void targetCountsGrowAndShrinkAcrossDumps() {
+        LimelightResultsDecoder decoder = new LimelightResultsDecoder();
+        LimelightResults results = new LimelightResults();
+        String[] dumps = {
+                results(fiducial(7, -8.42), ""),
+                results(fiducial(7, -8.1) + ", " + fiducial(8, 6.71) + ", " + fiducial(4, 1.5),
+                        detector("note", 3.2)),
+                results(fiducial(8, 6.2), detector("note", 3.1) + ", " + detector("robot", -20.4)),
+                results("", ""),
+                kTwoTags,
+                results(fiducial(3, 0.5), detector("note", 2)),
+        };
+        for (String dump : dumps) {
+            assertDecodesLikeMapper(dump, decoder, results);
+        }
+    }
+
+    @Test
+    void skippedSectionsComeBackEmpty() {
+        String everything = "{\"Results\": {\"Fiducial\": [" + fiducial(7, -8.42) + "],"
+                + " \"Detector\": [" + detector("note", 3.2) + "],"
+                + " \"Classifier\": [{\"class\": \"speaker\", \"classID\": 2, \"conf\": 0.9, \"zone\": 1,"
+                + " \"tx\": 1, \"txp\": 2, \"ty\": 3, \"typ\": 4}],"
+                + " \"Retro\": [{\"t6r_fs\": [1, 2, 3, 4, 5, 6], \"ta\": 0.1, \"tx\": 2, \"ty\": -3}],"
+                + " \"Barcode\": [{\"data\": \"hello\"}],"
+                + " \"botpose_wpiblue\": [2.21, 4.13, 0.0, 0.0, 0.0, 178.6], \"botpose_tagcount\": 1, \"v\": 1}}";
+        LimelightResults results = new LimelightResults();
+
+        /* Everything decoded first, so skipping has something to leave behind */
+        assertDecodesLikeMapper(everything, new LimelightResultsDecoder(), results);
+        assertEquals(1, results.targetingResults.targets_Retro.length);
+        assertEquals(1, results.targetingResults.targets_Classifier.length);
+        assertEquals(1, results.targetingResults.targets_Barcode.length);
+
+        LimelightResultsDecoder skipping = new LimelightResultsDecoder(false, false, true, false);
+        skipping.decode(everything, results);
+        Results decoded = results.targetingResults;
+        assertEquals("", results.error);
+        assertEquals(0, decoded.targets_Retro.length);
+        assertEquals(0, decoded.targets_Classifier.length);
+        assertEquals(0, decoded.targets_Barcode.length);
+        /* What wasn't skipped still comes through */
+        assertEquals(1, decoded.targets_Detector.length);
+        assertEquals("note", decoded.targets_Detector[0].className);
+        assertEquals(1, decoded.targets_Fiducials.length);
+        assertEquals(7, decoded.targets_Fiducials[0].fiducialID);
+        assertArrayEquals(new double[] { 2.21, 4.13, 0.0, 0.0, 0.0, 178.6 }, decoded.botpose_wpiblue);
+        assertTrue(decoded.valid);
+    }
+
+    @Test
+    void missingFieldsGoBackToTheDefaults() {
+        LimelightResultsDecoder decoder = new LimelightResultsDecoder();
+        LimelightResults results = new LimelightResults();
+        assertDecodesLikeMapper(kTwoTags, decoder, results);
+
+        /* Same targets, but with nothing but their IDs, and no bot pose at all */
+        String bare = "{\"Results\": {\"Fiducial\": [{\"fID\": 7}, {\"fID\": 8}],"
+                + " \"Detector\": [{\"classID\": 0}], \"v\": 0}}";
+        assertDecodesLikeMapper(bare, decoder, results);
+        LimelightTarget_Fiducial target = results.targetingResults.targets_Fiducials[0];
+        assertArrayEquals(new double[6], target.robotPose_FieldSpace);
+        assertArrayEquals(new double[6], target.targetPose_RobotSpace);
+        assertNull(target.fiducialFamily);
+        assertArrayEquals(new double[6], results.targetingResults.botpose_wpiblue);
+
+        /* A short pose array, then none, ends up as six zeroes like a fresh parse */
+        String shortPose = "{\"Results\": {\"Fiducial\": [{\"fID\": 7, \"t6r_fs\": [1, 2, 3]}],"
+                + " \"botpose_wpiblue\": [1, 2]}}";
+        assertDecodesLikeMapper(shortPose, decoder, results);
+        assertDecodesLikeMapper(bare, decoder, results);
+
+        /* No results section at all */
+        assertDecodesLikeMapper("{\"ts_nt\": 3502518}", decoder, results);
+        assertEquals(0, results.targetingResults.targets_Fiducials.length);
+    }
+
+    @Test
+    void malformedJsonSetsTheError() {
+        LimelightResultsDecoder decoder = new LimelightResultsDecoder();
+        LimelightResults results = new LimelightResults();
+        String[] malformed = {
+                kTwoTags.substring(0, kTwoTags.length() / 2),
+                "{\"Results\": {\"Fiducial\": [{\"fID\": 7,, }]}}",
+                "[]",
+                "",
+        };
+        for (String json : malformed) {
+            assertFalse(LimelightHelpers.parseResults(json).error.isEmpty());
+            decoder.decode(json, results);
+            assertTrue(results.error.startsWith("lljson error: "), json);
+
+            /* And the next good dump clears it */
+            assertDecodesLikeMapper(kTwoTags, decoder, results);
+            assertEquals("", results.error);
+        }
+    }
+}
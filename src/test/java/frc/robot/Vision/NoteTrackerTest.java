@@ -0,0 +1,94 @@
+package frc.robot.Vision;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+
+/**
+ * Checks the note tracker's Kalman filter settles on a note that isn't
+ * moving, fed detections already projected onto the field so no camera or
+ * drivetrain is needed.
+ */
+class NoteTrackerTest {
+    private static final double kNoteX = 5.0;
+    private static final double kNoteY = 3.0;
+    private static final double kRangeMeters = 2.0;
+    /* The note camera runs at about 50 fps */
+    private static final double kFramePeriodSeconds = 0.02;
+    private static final int kFrames = 400;
+
+    private static final double kMeasurementStdDev = NoteTracker.MEASUREMENT_STD_DEV_METERS
+            + NoteTracker.MEASUREMENT_STD_DEV_PER_METER_SQUARED * kRangeMeters * kRangeMeters;
+
+    @BeforeAll
+    static void initializeHal() {
+        assertTrue(HAL.initialize(500, 0));
+    }
+
+    /* Where the variance settles when P = (P + q) r / (P + q + r) */
+    private static double steadyStateVariance(double q, double r) {
+        return (-q + Math.sqrt(q * q + 4 * q * r)) / 2;
+    }
+
+    @Test
+    void firstDetectionStartsANoteWhereItWasSeen() {
+        NoteTracker tracker = new NoteTracker(null, null);
+        int slot = tracker.addFieldDetection(kNoteX, kNoteY, kRangeMeters, 10);
+
+        assertEquals(kNoteX, tracker.getNoteX(slot), 0);
+        assertEquals(kNoteY, tracker.getNoteY(slot), 0);
+        assertEquals(kMeasurementStdDev * kMeasurementStdDev, tracker.getNoteVariance(slot), 1e-15);
+    }
+
+    @Test
+    void convergesOnAStationaryNote() {
+        NoteTracker tracker = new NoteTracker(null, null);
+        Random random = new Random(548);
+        double q = NoteTracker.PROCESS_STD_DEV_METERS_PER_SQRT_SECOND
+                * NoteTracker.PROCESS_STD_DEV_METERS_PER_SQRT_SECOND * kFramePeriodSeconds;
+        double r = kMeasurementStdDev * kMeasurementStdDev;
+
+        int slot = -1;
+        double previousVariance = Double.POSITIVE_INFINITY;
+        double squaredError = 0;
+        int settledFrames = 0;
+        for (int frame = 0; frame < kFrames; ++frame) {
+            double x = kNoteX + random.nextGaussian() * kMeasurementStdDev;
+            double y = kNoteY + random.nextGaussian() * kMeasurementStdDev;
+            int detectionSlot = tracker.addFieldDetection(x, y, kRangeMeters, 10 + frame * kFramePeriodSeconds);
+            if (slot < 0) {
+                slot = detectionSlot;
+            }
+            /* Every detection is the same note */
+            assertEquals(slot, detectionSlot);
+
+            /* The filter only gets more sure of itself, until it settles */
+            double variance = tracker.getNoteVariance(slot);
+            assertTrue(variance <= previousVariance + 1e-15, "Variance grew at frame " + frame);
+            previousVariance = variance;
+
+            if (frame >= kFrames / 2) {
+                double errorX = tracker.getNoteX(slot) - kNoteX;
+                double errorY = tracker.getNoteY(slot) - kNoteY;
+                squaredError += errorX * errorX + errorY * errorY;
+                settledFrames++;
+            }
+        }
+
+        double steadyState = steadyStateVariance(q, r);
+        assertEquals(steadyState, tracker.getNoteVariance(slot), steadyState * 1e-6);
+
+        /* Settled, the estimate is far steadier than any one detection */
+        double rmsError = Math.sqrt(squaredError / (2 * settledFrames));
+        assertTrue(rmsError < kMeasurementStdDev / 2,
+                "RMS error " + rmsError + " is no better than a detection");
+        assertTrue(rmsError < 2 * Math.sqrt(steadyState),
+                "RMS error " + rmsError + " is well past what the filter thinks it is");
+    }
+}
@@ -0,0 +1,236 @@
+package frc.robot.Vision;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.networktables.StringSubscriber;
+import edu.wpi.first.networktables.TimestampedDoubleArray;
+import edu.wpi.first.networktables.TimestampedString;
+import frc.robot.Constants;
+import frc.robot.Constants.Vision.SimCameras;
+import frc.robot.Vision.LimelightHelpers.LimelightResults;
+import frc.robot.Vision.LimelightHelpers.PoseEstimate;
+import frc.robot.Vision.LimelightHelpers.Results;
+
+/**
+ * Runs a sim camera against a local NetworkTables instance, reading what it
+ * publishes the way the robot does, and checks frames are captured at the
+ * configured rate, come out after the configured latency, are dropped about
+ * as often as configured, and that both botpose_wpiblue and the JSON dump
+ * decode back to where the robot really was.
+ */
+class SimLimelightTest {
+    private static final String kCameraName = "limelight-sim";
+    /* Well clear of zero, which NetworkTables takes to mean now */
+    private static final double kStartSeconds = 10;
+    private static final double kStepSeconds = 0.001;
+    private static final double kEpsilon = 1e-9;
+    /* Publish times are stamped in whole microseconds */
+    private static final double kStampToleranceSeconds = 1e-5;
+
+    /* The two blue speaker tags, facing down the field */
+    private static final AprilTagFieldLayout kLayout = new AprilTagFieldLayout(List.of(
+            new AprilTag(7, new Pose3d(0, 5.55, 1.45, new Rotation3d())),
+            new AprilTag(8, new Pose3d(0, 4.98, 1.45, new Rotation3d()))),
+            Constants.fieldLength, Constants.fieldHeight);
+    private static final CameraMount kCamera = new CameraMount(kCameraName, 0.3, 0, 0.5, 20, 0,
+            Constants.Vision.kLimelightHorizontalFOVDegrees, Constants.Vision.kLimelightVerticalFOVDegrees);
+    /* 3 meters out between the tags, facing them, so every frame sees both */
+    private static final Pose2d kFacingTags = new Pose2d(3, 5.25, Rotation2d.fromDegrees(180));
+
+    private NetworkTableInstance m_instance;
+    private DoubleArraySubscriber m_botPose;
+    private StringSubscriber m_json;
+    private SimLimelight m_camera;
+
+    /* Every frame that came out, in order, and the sim time it was read at */
+    private final List<TimestampedDoubleArray> m_poses = new ArrayList<>();
+    private final List<String> m_jsons = new ArrayList<>();
+    private final List<Double> m_arrivals = new ArrayList<>();
+
+    @BeforeEach
+    void createCamera() {
+        m_instance = NetworkTableInstance.create();
+        NetworkTable table = m_instance.getTable(kCameraName);
+        m_botPose = table.getDoubleArrayTopic("botpose_wpiblue").subscribe(new double[0],
+                PubSubOption.keepDuplicates(true), PubSubOption.pollStorage(20));
+        m_json = table.getStringTopic("json").subscribe("",
+                PubSubOption.keepDuplicates(true), PubSubOption.pollStorage(20));
+        m_camera = new SimLimelight(m_instance, kLayout, kCamera, 548);
+    }
+
+    @AfterEach
+    void closeInstance() {
+        m_botPose.close();
+        m_json.close();
+        NetworkTableInstance.destroy(m_instance);
+    }
+
+    /* Steps the camera with the robot sitting still, collecting every frame as it comes out */
+    private void run(Pose2d truth, double seconds) {
+        int steps = (int) Math.round(seconds / kStepSeconds);
+        for (int i = 0; i < steps; ++i) {
+            double now = kStartSeconds + i * kStepSeconds;
+            m_camera.update(now, truth);
+
+            TimestampedDoubleArray[] poses = m_botPose.readQueue();
+            TimestampedString[] jsons = m_json.readQueue();
+            assertEquals(poses.length, jsons.length);
+            for (int j = 0; j < poses.length; ++j) {
+                assertEquals(poses[j].timestamp, jsons[j].timestamp);
+                m_poses.add(poses[j]);
+                m_jsons.add(jsons[j].value);
+                m_arrivals.add(now);
+            }
+        }
+    }
+
+    @Test
+    void publishesAtTheConfiguredRateLatencyAndDropoutRate() {
+        double seconds = 200;
+        run(kFacingTags, seconds);
+
+        long captured = m_camera.getFramesCaptured();
+        long dropped = m_camera.getFramesDropped();
+        long published = m_camera.getFramesPublished();
+        /* The first frame is captured straight away */
+        assertEquals(Math.ceil(seconds * SimCameras.kFramesPerSecond), captured, 1);
+        assertEquals(published, m_poses.size());
+        /* Only the last frame can still be waiting out its latency */
+        assertTrue(captured - dropped - published <= 1);
+        assertEquals(SimCameras.kDropoutProbability, (double) dropped / captured, 0.015);
+
+        double meanLatencyMs = SimCameras.kCaptureLatencyMs + SimCameras.kPipelineLatencyMs;
+        PoseEstimate estimate = new PoseEstimate();
+        long lastFrame = -1;
+        double latencySum = 0;
+        for (int i = 0; i < m_poses.size(); ++i) {
+            TimestampedDoubleArray pose = m_poses.get(i);
+            LimelightClient.decode(pose.value, pose.timestamp, estimate);
+
+            /* Captured on a frame boundary, or the sim step after it, and never the same frame twice */
+            double sinceStart = estimate.timestampSeconds - kStartSeconds;
+            long frame = Math.round(sinceStart * SimCameras.kFramesPerSecond);
+            double late = sinceStart - frame / SimCameras.kFramesPerSecond;
+            assertTrue(frame > lastFrame, "Frame " + frame + " after " + lastFrame);
+            assertTrue(late > -kStampToleranceSeconds && late < kStepSeconds + kStampToleranceSeconds,
+                    "Captured " + late + " s after frame " + frame);
+            lastFrame = frame;
+
+            /* Stamped with when it came out, which is the sim step it was read at */
+            assertEquals(meanLatencyMs, estimate.latency, SimCameras.kPipelineLatencyJitterMs + kEpsilon);
+            double publishSeconds = pose.timestamp / 1e6;
+            double arrival = m_arrivals.get(i);
+            assertTrue(arrival > publishSeconds - kStampToleranceSeconds
+                    && arrival < publishSeconds + kStepSeconds + kStampToleranceSeconds,
+                    "Stamped " + publishSeconds + " s but read at " + arrival + " s");
+            latencySum += estimate.latency;
+        }
+        /* The jitter is even either way, so it averages out */
+        assertEquals(meanLatencyMs, latencySum / m_poses.size(), 0.5);
+    }
+
+    @Test
+    void decodesBackToWhereTheRobotWas() {
+        run(kFacingTags, 60);
+        assertFalse(m_poses.isEmpty());
+
+        PoseEstimate estimate = new PoseEstimate();
+        LimelightResultsDecoder decoder = new LimelightResultsDecoder();
+        LimelightResults results = new LimelightResults();
+        double headingRadians = kFacingTags.getRotation().getRadians();
+        double errorX = 0, errorY = 0, errorHeading = 0;
+        for (int i = 0; i < m_poses.size(); ++i) {
+            TimestampedDoubleArray pose = m_poses.get(i);
+            LimelightClient.decode(pose.value, pose.timestamp, estimate);
+            assertEquals(2, estimate.tagCount);
+            assertEquals(7, estimate.rawFiducials[0].id);
+            assertEquals(8, estimate.rawFiducials[1].id);
+
+            /* Within five standard deviations of the noise the camera was told to add */
+            double translationStdDev = SimCameras.kTranslationStdDevPerMeter * estimate.avgTagDist / Math.sqrt(2);
+            double rotationStdDev = Math.toRadians(SimCameras.kRotationStdDevDegrees) / Math.sqrt(2);
+            double headingError = MathUtil.angleModulus(estimate.headingRadians - headingRadians);
+            assertEquals(kFacingTags.getX(), estimate.x, 5 * translationStdDev);
+            assertEquals(kFacingTags.getY(), estimate.y, 5 * translationStdDev);
+            assertEquals(0, headingError, 5 * rotationStdDev);
+            errorX += estimate.x - kFacingTags.getX();
+            errorY += estimate.y - kFacingTags.getY();
+            errorHeading += headingError;
+
+            /* The dump carries the same frame as the bot pose it came out with */
+            decoder.decode(m_jsons.get(i), results);
+            assertEquals("", results.error);
+            Results frame = results.targetingResults;
+            assertTrue(frame.valid);
+            assertEquals(estimate.x, frame.botpose_wpiblue[0], kEpsilon);
+            assertEquals(estimate.y, frame.botpose_wpiblue[1], kEpsilon);
+            assertEquals(estimate.headingRadians, Math.toRadians(frame.botpose_wpiblue[5]), kEpsilon);
+            assertEquals(estimate.tagCount, frame.botpose_tagcount, 0);
+            assertEquals(estimate.tagSpan, frame.botpose_span, kEpsilon);
+            assertEquals(estimate.avgTagDist, frame.botpose_avgdist, kEpsilon);
+            assertEquals(estimate.avgTagArea, frame.botpose_avgarea, kEpsilon);
+            assertEquals(estimate.latency, frame.latency_pipeline + frame.latency_capture, kEpsilon);
+            /* Stamped with the capture time, in milliseconds */
+            assertEquals(estimate.timestampSeconds, frame.timestamp_LIMELIGHT_publish / 1000,
+                    kStampToleranceSeconds);
+            assertEquals(2, frame.targets_Fiducials.length);
+            for (int tag = 0; tag < 2; ++tag) {
+                assertEquals(estimate.rawFiducials[tag].id, frame.targets_Fiducials[tag].fiducialID, 0);
+                assertEquals(estimate.rawFiducials[tag].txnc, frame.targets_Fiducials[tag].tx, kEpsilon);
+                assertEquals(estimate.rawFiducials[tag].tync, frame.targets_Fiducials[tag].ty, kEpsilon);
+                assertEquals(estimate.rawFiducials[tag].ta, frame.targets_Fiducials[tag].ta, kEpsilon);
+            }
+        }
+
+        /* The noise is unbiased, so on average the camera puts the robot where it is */
+        int frames = m_poses.size();
+        assertEquals(0, errorX / frames, 0.005);
+        assertEquals(0, errorY / frames, 0.005);
+        assertEquals(0, errorHeading / frames, 0.005);
+    }
+
+    @Test
+    void facingAwayPublishesFramesWithNoTags() {
+        run(new Pose2d(3, 5.25, new Rotation2d()), 5);
+        assertFalse(m_poses.isEmpty());
+
+        PoseEstimate estimate = new PoseEstimate();
+        LimelightResultsDecoder decoder = new LimelightResultsDecoder();
+        LimelightResults results = new LimelightResults();
+        for (int i = 0; i < m_poses.size(); ++i) {
+            TimestampedDoubleArray pose = m_poses.get(i);
+            LimelightClient.decode(pose.value, pose.timestamp, estimate);
+            assertEquals(0, estimate.tagCount);
+            assertEquals(0, estimate.rawFiducials.length);
+            /* Still a frame, with a latency like any other */
+            assertEquals(SimCameras.kCaptureLatencyMs + SimCameras.kPipelineLatencyMs, estimate.latency,
+                    SimCameras.kPipelineLatencyJitterMs + kEpsilon);
+
+            decoder.decode(m_jsons.get(i), results);
+            assertEquals("", results.error);
+            assertFalse(results.targetingResults.valid);
+            assertEquals(0, results.targetingResults.botpose_tagcount, 0);
+            assertEquals(0, results.targetingResults.targets_Fiducials.length);
+        }
+    }
+}
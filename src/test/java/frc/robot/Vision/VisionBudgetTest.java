@@ -0,0 +1,188 @@
+package frc.robot.Vision;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import frc.robot.Constants;
+
+/**
+ * Runs the vision budget against a local NetworkTables instance, playing the
+ * Limelight's part by publishing tv and hb, and checks the crop it sends: the
+ * camera is cropped around tags it should see, and goes back to the full
+ * frame when it shouldn't see any, when the pose is uncertain, or when it
+ * keeps missing the tags it was cropped around.
+ */
+class VisionBudgetTest {
+    private static final String kCameraName = "limelight-budget";
+    private static final double[] kFullFrame = { -1, 1, -1, 1 };
+
+    /* The blue speaker tag on its own, facing down the field */
+    private static final AprilTagFieldLayout kLayout = new AprilTagFieldLayout(
+            List.of(new AprilTag(Constants.Vision.kBlueSpeakerTagID, new Pose3d(0, 5.5, 1.45, new Rotation3d()))),
+            Constants.fieldLength, Constants.fieldHeight);
+    /* Tilted up enough that the tag is near the middle of the frame from 3 meters out */
+    private static final CameraMount kCamera = new CameraMount(kCameraName, 0.3, 0, 0.5, 20, 0,
+            Constants.Vision.kLimelightHorizontalFOVDegrees, Constants.Vision.kLimelightVerticalFOVDegrees);
+
+    private NetworkTableInstance m_instance;
+    private DoublePublisher m_targetValid;
+    private DoublePublisher m_heartbeat;
+    private DoubleArraySubscriber m_crop;
+    private VisionBudget m_budget;
+    private int m_frame = 0;
+
+    @BeforeEach
+    void createBudget() {
+        m_instance = NetworkTableInstance.create();
+        NetworkTable table = m_instance.getTable(kCameraName);
+        m_targetValid = table.getDoubleTopic("tv").publish();
+        m_heartbeat = table.getDoubleTopic("hb").publish();
+        m_crop = table.getDoubleArrayTopic("crop").subscribe(new double[0]);
+        m_budget = new VisionBudget(m_instance, kLayout, kCamera);
+    }
+
+    @AfterEach
+    void closeInstance() {
+        m_targetValid.close();
+        m_heartbeat.close();
+        m_crop.close();
+        NetworkTableInstance.destroy(m_instance);
+    }
+
+    /* Robot 3 meters out from the speaker, still, facing it or not */
+    private void update(boolean facingSpeaker, boolean poseUncertain) {
+        m_budget.update(3, 5.5, facingSpeaker ? Math.PI : 0, 0, 0, 0, false, poseUncertain);
+    }
+
+    /* The camera finishing a frame taken with the crop it was last sent */
+    private void frame(boolean foundTags) {
+        m_targetValid.set(foundTags ? 1 : 0);
+        m_heartbeat.set(++m_frame);
+    }
+
+    private void assertCropped() {
+        assertFalse(m_budget.isFullFrame(0));
+        assertTrue(m_budget.getCropFraction(0) < 1);
+        double[] crop = m_crop.get();
+        assertEquals(4, crop.length);
+        assertTrue(crop[1] - crop[0] < 2 || crop[3] - crop[2] < 2);
+    }
+
+    private void assertFullFrame() {
+        assertTrue(m_budget.isFullFrame(0));
+        assertEquals(1, m_budget.getCropFraction(0), 0);
+        assertArrayEquals(kFullFrame, m_crop.get(), 0);
+    }
+
+    @Test
+    void cropsAroundTheTagsItShouldSee() {
+        update(true, false);
+
+        assertEquals(1, m_budget.getVisibleTagCount(0));
+        assertCropped();
+        /* The tag is close to the middle of the frame, so the crop should be too */
+        double[] crop = m_crop.get();
+        assertTrue(crop[0] < 0 && crop[1] > 0 && crop[2] < 0 && crop[3] > 0);
+    }
+
+    @Test
+    void looksAtTheFullFrameWhenNoTagsShouldBeInView() {
+        update(false, false);
+
+        assertEquals(0, m_budget.getVisibleTagCount(0));
+        assertFullFrame();
+    }
+
+    @Test
+    void looksAtTheFullFrameWhenThePoseIsUncertain() {
+        update(true, true);
+        assertEquals(1, m_budget.getVisibleTagCount(0));
+        assertFullFrame();
+
+        update(true, false);
+        assertCropped();
+    }
+
+    @Test
+    void widensAfterMissingTheTagsItWasCroppedAround() {
+        update(true, false);
+        int frames = Constants.Vision.kCropMissedFramesBeforeFullFrame;
+        for (int i = 1; i < frames; ++i) {
+            frame(false);
+            update(true, false);
+            assertCropped();
+        }
+
+        frame(false);
+        update(true, false);
+        assertFullFrame();
+
+        /* Still nothing, stay wide */
+        frame(false);
+        update(true, false);
+        assertFullFrame();
+
+        /* Found them, the pose can be trusted to crop around again */
+        frame(true);
+        update(true, false);
+        assertCropped();
+    }
+
+    @Test
+    void onlyCountsNewFramesAsMisses() {
+        update(true, false);
+        frame(false);
+        /* Many loops on the same frame are still one miss */
+        for (int i = 0; i < Constants.Vision.kCropMissedFramesBeforeFullFrame * 2; ++i) {
+            update(true, false);
+        }
+        assertCropped();
+    }
+
+    @Test
+    void aFoundTagResetsTheMissCount() {
+        update(true, false);
+        int frames = Constants.Vision.kCropMissedFramesBeforeFullFrame;
+        for (int i = 1; i < frames; ++i) {
+            frame(false);
+            update(true, false);
+        }
+        frame(true);
+        update(true, false);
+        for (int i = 1; i < frames; ++i) {
+            frame(false);
+            update(true, false);
+        }
+        assertCropped();
+    }
+
+    @Test
+    void framesWithNoTagsExpectedAreNotMisses() {
+        /* Facing away, nothing should be seen and nothing is */
+        update(false, false);
+        for (int i = 0; i < Constants.Vision.kCropMissedFramesBeforeFullFrame; ++i) {
+            frame(false);
+            update(false, false);
+        }
+
+        /* Turning to face the tags crops straight away */
+        update(true, false);
+        assertCropped();
+    }
+}
@@ -0,0 +1,227 @@
+package frc.robot.Vision;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.PubSubOption;
+import frc.robot.Constants;
+
+/**
+ * Drives {@link VisionThread#processPending()} with bot poses published to a
+ * local NetworkTables instance, checking which frames reach the pose
+ * estimator: duplicates are dropped, the prefilter throws out bad frames, and
+ * frames with one tag or too small a target are never used.
+ * <p>
+ * The robot is disabled here, so the vision thread uses MegaTag1 and only the
+ * botpose_wpiblue topic is published.
+ */
+class VisionThreadTest {
+    private static final String kCameraName = "limelight-test";
+    private static final double kMegaTag2AreaThreshold = 0.1;
+    /* A frame that passes everything, 20 ms old when it arrives */
+    private static final double kLatencyMillis = 20;
+    private static final double kGoodArea = 0.5;
+    private static final double kGoodDistance = 3;
+    private static final double kGoodAmbiguity = 0.1;
+    private static final double kEpsilon = 1e-9;
+
+    /* What reached the consumer */
+    private record Accepted(Pose2d pose, double timestampSeconds, double arrivalTimeSeconds) {
+    }
+
+    private NetworkTableInstance m_instance;
+    private DoubleArrayPublisher m_botPose;
+    private DoublePublisher m_targetArea;
+    private VisionThread m_vision;
+    private final List<Accepted> m_accepted = new ArrayList<>();
+    /* Every frame arrives a second after the last unless a test says otherwise */
+    private long m_arrivalMicros = 10_000_000;
+
+    @BeforeAll
+    static void initializeHal() {
+        assertTrue(HAL.initialize(500, 0));
+    }
+
+    @BeforeEach
+    void createVisionThread() {
+        m_instance = NetworkTableInstance.create();
+        NetworkTable table = m_instance.getTable(kCameraName);
+        m_botPose = table.getDoubleArrayTopic("botpose_wpiblue").publish(PubSubOption.keepDuplicates(true));
+        m_targetArea = table.getDoubleTopic("ta").publish();
+        m_targetArea.set(kGoodArea);
+
+        m_vision = new VisionThread(m_instance,
+                (pose, timestampSeconds, arrivalTimeSeconds) -> m_accepted
+                        .add(new Accepted(pose, timestampSeconds, arrivalTimeSeconds)),
+                () -> 0, null,
+                new VisionThread.Camera(kCameraName, 10, kMegaTag2AreaThreshold, 5));
+    }
+
+    @AfterEach
+    void closeInstance() {
+        m_botPose.close();
+        m_targetArea.close();
+        NetworkTableInstance.destroy(m_instance);
+    }
+
+    /* Publishes a bot pose with every tag at the same distance and ambiguity */
+    private void publish(double x, double y, double yawDegrees, int tagCount, double avgDistance,
+            double ambiguity, long arrivalMicros) {
+        double[] array = new double[11 + 7 * tagCount];
+        array[0] = x;
+        array[1] = y;
+        array[5] = yawDegrees;
+        array[6] = kLatencyMillis;
+        array[7] = tagCount;
+        array[9] = avgDistance;
+        array[10] = kGoodArea;
+        for (int i = 0; i < tagCount; ++i) {
+            int base = 11 + 7 * i;
+            array[base] = i + 1;
+            array[base + 4] = avgDistance;
+            array[base + 5] = avgDistance;
+            array[base + 6] = ambiguity;
+        }
+        m_botPose.set(array, arrivalMicros);
+    }
+
+    private void publishGood(double x, double y) {
+        m_arrivalMicros += 1_000_000;
+        publish(x, y, 30, 2, kGoodDistance, kGoodAmbiguity, m_arrivalMicros);
+    }
+
+    @Test
+    void acceptsAGoodFrameAtItsCaptureTime() {
+        publishGood(3, 4);
+        m_vision.processPending();
+
+        assertEquals(1, m_accepted.size());
+        Accepted accepted = m_accepted.get(0);
+        assertEquals(3, accepted.pose().getX(), kEpsilon);
+        assertEquals(4, accepted.pose().getY(), kEpsilon);
+        assertEquals(30, accepted.pose().getRotation().getDegrees(), kEpsilon);
+        assertEquals(11, accepted.arrivalTimeSeconds(), kEpsilon);
+        assertEquals(11 - kLatencyMillis / 1000, accepted.timestampSeconds(), kEpsilon);
+        assertEquals(1, m_vision.getFramesReceived());
+        assertEquals(1, m_vision.getFramesAccepted());
+    }
+
+    @Test
+    void dropsAFrameSentTwice() {
+        publishGood(3, 4);
+        /* The same capture time again, well inside the duplicate window */
+        publish(3.2, 4, 30, 2, kGoodDistance, kGoodAmbiguity, m_arrivalMicros + 500);
+        m_vision.processPending();
+
+        assertEquals(1, m_accepted.size());
+        assertEquals(1, m_vision.getFramesDuplicate());
+    }
+
+    @Test
+    void dropsTheSamePoseAtALaterTime() {
+        publishGood(3, 4);
+        /* A Limelight that stalled resends its last pose with a new timestamp */
+        publishGood(3, 4);
+        m_vision.processPending();
+
+        assertEquals(1, m_accepted.size());
+        assertEquals(1, m_vision.getFramesDuplicate());
+    }
+
+    @Test
+    void acceptsANewFrameAfterADuplicate() {
+        publishGood(3, 4);
+        publishGood(3, 4);
+        publishGood(3.1, 4);
+        m_vision.processPending();
+
+        assertEquals(2, m_accepted.size());
+        assertEquals(3.1, m_accepted.get(1).pose().getX(), kEpsilon);
+        assertEquals(1, m_vision.getFramesDuplicate());
+    }
+
+    @Test
+    void prefilterRejectsFarAwayTags() {
+        m_arrivalMicros += 1_000_000;
+        publish(3, 4, 30, 2, Constants.Vision.kMaxAverageTagDistanceMeters + 0.5, kGoodAmbiguity,
+                m_arrivalMicros);
+        m_vision.processPending();
+
+        assertEquals(0, m_accepted.size());
+        assertEquals(1, m_vision.getFramesRejected());
+    }
+
+    @Test
+    void prefilterRejectsAnAmbiguousTag() {
+        m_arrivalMicros += 1_000_000;
+        publish(3, 4, 30, 2, kGoodDistance, Constants.Vision.kMaxTagAmbiguity + 0.1, m_arrivalMicros);
+        m_vision.processPending();
+
+        assertEquals(0, m_accepted.size());
+        assertEquals(1, m_vision.getFramesRejected());
+    }
+
+    @Test
+    void prefilterRejectsPosesOffTheField() {
+        double margin = Constants.Vision.kFieldBorderMarginMeters;
+        publishGood(-margin - 0.1, 4);
+        publishGood(3, Constants.fieldHeight + margin + 0.1);
+        publishGood(Constants.fieldLength + margin + 0.1, 4);
+        /* Just inside the margin is still fine */
+        publishGood(-margin + 0.1, 4);
+        m_vision.processPending();
+
+        assertEquals(1, m_accepted.size());
+        assertEquals(3, m_vision.getFramesRejected());
+    }
+
+    @Test
+    void ignoresFramesWithOneTag() {
+        m_arrivalMicros += 1_000_000;
+        publish(3, 4, 30, 1, kGoodDistance, kGoodAmbiguity, m_arrivalMicros);
+        m_vision.processPending();
+
+        assertEquals(0, m_accepted.size());
+        /* Not bad, just not used */
+        assertEquals(0, m_vision.getFramesRejected());
+        assertEquals(1, m_vision.getFramesReceived());
+    }
+
+    @Test
+    void ignoresFramesWithNoTags() {
+        m_arrivalMicros += 1_000_000;
+        publish(0, 0, 0, 0, 0, 0, m_arrivalMicros);
+        m_vision.processPending();
+
+        assertEquals(0, m_accepted.size());
+        assertEquals(0, m_vision.getFramesDuplicate());
+        assertEquals(0, m_vision.getFramesRejected());
+    }
+
+    @Test
+    void ignoresFramesWithTooSmallATarget() {
+        m_targetArea.set(kMegaTag2AreaThreshold / 2);
+        publishGood(3, 4);
+        m_vision.processPending();
+        assertEquals(0, m_accepted.size());
+
+        m_targetArea.set(kGoodArea);
+        publishGood(3.1, 4);
+        m_vision.processPending();
+        assertEquals(1, m_accepted.size());
+    }
+}
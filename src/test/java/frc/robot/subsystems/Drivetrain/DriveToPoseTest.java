@@ -0,0 +1,125 @@
+package frc.robot.subsystems.Drivetrain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Steps the drive to pose profile against a drivetrain with perfect modules,
+ * checking it gets onto the target and says so, that it takes over from a
+ * robot that is already moving without slamming on the brakes, and that it
+ * drives to the target on the field even after the driver zeroed the heading
+ * somewhere else.
+ */
+class DriveToPoseTest {
+    private static final double kTimeoutSeconds = 8;
+
+    /* Steps until the request says it's at the target, returning how long it took */
+    private static double driveUntilAtTarget(FakeSwerve swerve, SwerveRequest.DriveToPose request) {
+        double start = swerve.getTime();
+        while (!request.isAtTarget()) {
+            swerve.step(request);
+            assertTrue(swerve.getTime() - start < kTimeoutSeconds, "Never got to the target, ended at "
+                    + swerve.getPose());
+        }
+        return swerve.getTime() - start;
+    }
+
+    private static void assertAt(Pose2d target, SwerveRequest.DriveToPose request, Pose2d pose) {
+        assertEquals(0, pose.getTranslation().getDistance(target.getTranslation()), request.PositionTolerance);
+        assertEquals(0, MathUtil.angleModulus(pose.getRotation().getRadians() - target.getRotation().getRadians()),
+                request.HeadingTolerance);
+    }
+
+    @Test
+    void drivesOntoTheTargetFromRest() {
+        FakeSwerve swerve = new FakeSwerve(2, 2, 0);
+        Pose2d target = new Pose2d(4, 3, Rotation2d.fromDegrees(90));
+        SwerveRequest.DriveToPose request = new SwerveRequest.DriveToPose().withTargetPose(target);
+
+        assertFalse(request.isAtTarget());
+        double maxSpeed = 0;
+        double start = swerve.getTime();
+        while (!request.isAtTarget()) {
+            swerve.step(request);
+            maxSpeed = Math.max(maxSpeed, Math.hypot(swerve.getFieldVelocityX(), swerve.getFieldVelocityY()));
+            assertTrue(swerve.getTime() - start < kTimeoutSeconds, "Never got to the target");
+        }
+        assertAt(target, request, swerve.getPose());
+        /* The profile may be pushed a little past its limit by the PID, but not much */
+        assertTrue(maxSpeed <= request.MaxVelocity * 1.1, "Drove at " + maxSpeed + " m/s");
+
+        /* And it stays there */
+        for (int i = 0; i < 250; ++i) {
+            swerve.step(request);
+        }
+        assertTrue(request.isAtTarget());
+        assertAt(target, request, swerve.getPose());
+    }
+
+    @Test
+    void isNotAtTargetUntilTheProfileFinishes() {
+        FakeSwerve swerve = new FakeSwerve(2, 2, 0);
+        SwerveRequest.DriveToPose request = new SwerveRequest.DriveToPose()
+                .withTargetPose(new Pose2d(2.01, 2, new Rotation2d()));
+
+        /* Already within tolerance, but the profile still has to run out first */
+        swerve.step(request);
+        assertFalse(request.isAtTarget());
+        driveUntilAtTarget(swerve, request);
+
+        /* A new target clears it straight away */
+        request.withTargetPose(new Pose2d(3, 2, new Rotation2d()));
+        assertFalse(request.isAtTarget());
+        swerve.step(request);
+        assertFalse(request.isAtTarget());
+        driveUntilAtTarget(swerve, request);
+        assertAt(request.TargetPose, request, swerve.getPose());
+    }
+
+    @Test
+    void takesOverFromAMovingRobot() {
+        /* Handed off from pathfinding, 1.5 meters out and still going 3 m/s straight at the target */
+        double speed = 3;
+        FakeSwerve swerve = new FakeSwerve(2.5, 4, 0);
+        swerve.setFieldVelocity(speed, 0, 0);
+        Pose2d target = new Pose2d(4, 4, new Rotation2d());
+        SwerveRequest.DriveToPose request = new SwerveRequest.DriveToPose().withTargetPose(target);
+
+        swerve.step(request);
+        /* Carries on at about the speed it had, instead of starting over from a stop */
+        assertEquals(speed, swerve.getFieldVelocityX(), 0.3);
+        assertEquals(0, swerve.getFieldVelocityY(), 1e-6);
+
+        double farthestX = swerve.getPose().getX();
+        double start = swerve.getTime();
+        while (!request.isAtTarget()) {
+            swerve.step(request);
+            farthestX = Math.max(farthestX, swerve.getPose().getX());
+            assertTrue(swerve.getTime() - start < kTimeoutSeconds, "Never got to the target");
+        }
+        assertAt(target, request, swerve.getPose());
+        /* Braked in time instead of sailing past and coming back */
+        assertTrue(farthestX - target.getX() < 0.05, "Overshot by " + (farthestX - target.getX()) + " m");
+        /* Stopping from 3 m/s takes about v / a, plus settling */
+        assertTrue(swerve.getTime() - start < speed / request.MaxAcceleration + 1.5);
+    }
+
+    @Test
+    void drivesToTheFieldTargetAfterTheDriverZeroes() {
+        /* The driver zeroed facing the side wall, so the field-centric frame is turned a quarter turn */
+        FakeSwerve swerve = new FakeSwerve(2, 2, Math.PI / 2);
+        swerve.setDriverZero(Math.PI / 2);
+        Pose2d target = new Pose2d(5, 3, Rotation2d.fromDegrees(180));
+        SwerveRequest.DriveToPose request = new SwerveRequest.DriveToPose().withTargetPose(target);
+
+        driveUntilAtTarget(swerve, request);
+        assertAt(target, request, swerve.getPose());
+    }
+}
@@ -0,0 +1,127 @@
+package frc.robot.subsystems.Drivetrain;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+
+/**
+ * A drivetrain for testing requests, with perfect modules that do exactly what
+ * the request asked and no hardware behind them.
+ * <p>
+ * Each step fills in the request parameters the way the odometry thread does,
+ * including the pose rotated by wherever the driver zeroed the heading, applies
+ * the request to no modules, and drives the robot along whatever module states
+ * it left in the kinematics engine.
+ */
+class FakeSwerve {
+    static final double kUpdatePeriod = 1.0 / 250.0;
+
+    /* Same module layout as TunerConstants, without loading the Phoenix constants */
+    private static final double kFrontX = 0.327;
+    private static final double kSideY = 0.306;
+    private static final Translation2d[] kLocations = {
+            new Translation2d(kFrontX, kSideY), new Translation2d(kFrontX, -kSideY),
+            new Translation2d(-kFrontX, kSideY), new Translation2d(-kFrontX, -kSideY)
+    };
+    private static final SwerveModule[] kNoModules = new SwerveModule[0];
+
+    private final SwerveDriveKinematics m_kinematics = new SwerveDriveKinematics(kLocations);
+    private final SwerveKinematicsEngine m_engine = new SwerveKinematicsEngine(kLocations);
+    private final SwerveModuleState[] m_states = new SwerveModuleState[kLocations.length];
+    private final SwerveRequest.SwerveControlRequestParameters m_parameters = new SwerveRequest.SwerveControlRequestParameters();
+
+    private Pose2d m_pose;
+    /* Robot-relative, what the modules did last step */
+    private ChassisSpeeds m_speeds = new ChassisSpeeds();
+    private double m_driverZeroRadians = 0;
+    private double m_time = 10;
+
+    FakeSwerve(double x, double y, double headingRadians) {
+        m_pose = new Pose2d(x, y, new Rotation2d(headingRadians));
+        for (int i = 0; i < m_states.length; ++i) {
+            m_states[i] = new SwerveModuleState();
+        }
+        m_parameters.kinematics = m_kinematics;
+        m_parameters.kinematicsEngine = m_engine;
+        m_parameters.swervePositions = kLocations;
+        m_parameters.operatorForwardDirection = new Rotation2d();
+        m_parameters.updatePeriod = kUpdatePeriod;
+    }
+
+    /**
+     * Zeroes the heading the way the driver does with seedFieldRelative, so
+     * the field-centric pose is rotated by this much.
+     */
+    void setDriverZero(double headingRadians) {
+        m_driverZeroRadians = headingRadians;
+    }
+
+    /**
+     * Sets the robot moving, as if it had been driving before the request took
+     * over.
+     */
+    void setFieldVelocity(double vx, double vy, double omega) {
+        double heading = m_pose.getRotation().getRadians();
+        double cos = Math.cos(heading);
+        double sin = Math.sin(heading);
+        m_speeds = new ChassisSpeeds(vx * cos + vy * sin, -vx * sin + vy * cos, omega);
+    }
+
+    /** Applies the request once and moves the robot for one update period. */
+    void step(SwerveRequest request) {
+        double x = m_pose.getX();
+        double y = m_pose.getY();
+        double heading = m_pose.getRotation().getRadians();
+        m_parameters.fieldX = x;
+        m_parameters.fieldY = y;
+        m_parameters.fieldHeadingRadians = heading;
+        double cos = Math.cos(m_driverZeroRadians);
+        double sin = Math.sin(m_driverZeroRadians);
+        m_parameters.currentX = x * cos + y * sin;
+        m_parameters.currentY = -x * sin + y * cos;
+        m_parameters.currentHeadingRadians = MathUtil.angleModulus(heading - m_driverZeroRadians);
+        m_parameters.currentChassisSpeed = m_speeds;
+        m_parameters.timestamp = m_time;
+
+        request.apply(m_parameters, kNoModules);
+
+        for (int i = 0; i < m_states.length; ++i) {
+            m_states[i].speedMetersPerSecond = m_engine.getModuleSpeed(i);
+            m_states[i].angle = new Rotation2d(m_engine.getModuleAngle(i));
+        }
+        m_speeds = m_kinematics.toChassisSpeeds(m_states);
+        m_pose = m_pose.exp(new Twist2d(m_speeds.vxMetersPerSecond * kUpdatePeriod,
+                m_speeds.vyMetersPerSecond * kUpdatePeriod, m_speeds.omegaRadiansPerSecond * kUpdatePeriod));
+        m_time += kUpdatePeriod;
+    }
+
+    Pose2d getPose() {
+        return m_pose;
+    }
+
+    /** Field-relative X velocity the request drove at last step, in meters per second */
+    double getFieldVelocityX() {
+        double heading = m_pose.getRotation().getRadians();
+        return m_speeds.vxMetersPerSecond * Math.cos(heading) - m_speeds.vyMetersPerSecond * Math.sin(heading);
+    }
+
+    /** Field-relative Y velocity the request drove at last step, in meters per second */
+    double getFieldVelocityY() {
+        double heading = m_pose.getRotation().getRadians();
+        return m_speeds.vxMetersPerSecond * Math.sin(heading) + m_speeds.vyMetersPerSecond * Math.cos(heading);
+    }
+
+    /** Angular velocity the request drove at last step, in radians per second */
+    double getOmega() {
+        return m_speeds.omegaRadiansPerSecond;
+    }
+
+    double getTime() {
+        return m_time;
+    }
+}
@@ -0,0 +1,119 @@
+package frc.robot.subsystems.Drivetrain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.ctre.phoenix6.mechanisms.swerve.utility.PhoenixPIDController;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import frc.robot.subsystems.ShotSolver;
+
+/**
+ * Checks the facing point request: the bearing rate it feeds forward keeps
+ * the robot on the point while it drives past, the heading offset goes the
+ * short way across the seam at half a turn, and it aims at the point on the
+ * field even after the driver zeroed the heading somewhere else.
+ */
+class FieldCentricFacingPointTest {
+    /* Blue speaker, roughly */
+    private static final Translation2d kTarget = new Translation2d(0, 5.55);
+    private static final double kEpsilon = 1e-9;
+    private static final double kP = 10;
+
+    private static double bearingTo(double x, double y) {
+        return Math.atan2(kTarget.getY() - y, kTarget.getX() - x);
+    }
+
+    @Test
+    void feedsForwardTheBearingRate() {
+        FakeSwerve swerve = new FakeSwerve(3, 4, bearingTo(3, 4));
+        SwerveRequest.FieldCentricFacingPoint request = new SwerveRequest.FieldCentricFacingPoint()
+                .withTargetPoint(kTarget)
+                .withVelocityY(1);
+
+        /* Driving left with the point off to the back left swings it counterclockwise at (d x v) / |d|^2 */
+        swerve.step(request);
+        double dx = kTarget.getX() - 3;
+        double dy = kTarget.getY() - 4;
+        double expected = -dx * 1 / (dx * dx + dy * dy);
+        assertTrue(expected > 0);
+        assertEquals(expected, swerve.getOmega(), kEpsilon);
+
+        /* With no heading PID at all, the feedforward alone keeps it on the point for a whole second */
+        double startBearing = bearingTo(3, 4);
+        for (int i = 1; i < 250; ++i) {
+            swerve.step(request);
+        }
+        double endBearing = bearingTo(swerve.getPose().getX(), swerve.getPose().getY());
+        double error = MathUtil.angleModulus(endBearing - swerve.getPose().getRotation().getRadians());
+        assertTrue(Math.abs(endBearing - startBearing) > 0.2, "The bearing barely moved");
+        assertTrue(Math.abs(error) < 0.01, "Fell behind the point by " + error + " rad");
+    }
+
+    @Test
+    void headingOffsetGoesTheShortWayAround() {
+        /* Just below the point, so the bearing to it is a hair under half a turn */
+        double bearing = bearingTo(3, 5.5);
+        /* Offset, and a heading just past where that points but written a whole turn away from it */
+        double[][] cases = {
+                { 0, -Math.PI + 0.05 },
+                { Math.PI, 0.05 },
+                { Math.PI / 2, -Math.PI / 2 + 0.05 },
+        };
+        for (double[] c : cases) {
+            FakeSwerve swerve = new FakeSwerve(3, 5.5, c[1]);
+            SwerveRequest.FieldCentricFacingPoint request = new SwerveRequest.FieldCentricFacingPoint()
+                    .withTargetPoint(kTarget)
+                    .withHeadingOffset(new Rotation2d(c[0]));
+            request.HeadingController = new PhoenixPIDController(kP, 0, 0);
+
+            swerve.step(request);
+            double error = MathUtil.angleModulus(bearing + c[0] - c[1]);
+            assertTrue(Math.abs(error) < 0.1);
+            assertEquals(kP * error, swerve.getOmega(), kEpsilon);
+        }
+    }
+
+    @Test
+    void aimsAtTheFieldPointAfterTheDriverZeroes() {
+        /* Already facing the point, but the driver zeroed facing the side wall */
+        FakeSwerve swerve = new FakeSwerve(3, 4, bearingTo(3, 4));
+        swerve.setDriverZero(Math.PI / 2);
+        SwerveRequest.FieldCentricFacingPoint request = new SwerveRequest.FieldCentricFacingPoint()
+                .withTargetPoint(kTarget);
+        request.HeadingController = new PhoenixPIDController(kP, 0, 0);
+
+        swerve.step(request);
+        assertEquals(0, swerve.getOmega(), kEpsilon);
+
+        /* The sticks still drive relative to where the driver zeroed, which is along the field's +y */
+        request.withVelocityX(1);
+        swerve.step(request);
+        assertEquals(0, swerve.getFieldVelocityX(), 0.01);
+        assertEquals(1, swerve.getFieldVelocityY(), 0.01);
+    }
+
+    @Test
+    void leadsTheShotWithTheMeasuredFieldVelocity() {
+        /* Already moving down the field, with the driver zeroed the other way around */
+        ShotSolver expected = new ShotSolver();
+        expected.solve(3, 4, 2, 0, kTarget.getX(), kTarget.getY());
+        FakeSwerve swerve = new FakeSwerve(3, 4, expected.getHeadingRadians());
+        swerve.setDriverZero(Math.PI);
+        swerve.setFieldVelocity(2, 0, 0);
+        SwerveRequest.FieldCentricFacingPoint request = new SwerveRequest.FieldCentricFacingPoint()
+                .withTargetPoint(kTarget);
+        request.MovingShotSolver = new ShotSolver();
+        request.HeadingController = new PhoenixPIDController(kP, 0, 0);
+
+        swerve.step(request);
+        assertEquals(expected.getVirtualTargetX(), request.MovingShotSolver.getVirtualTargetX(), kEpsilon);
+        assertEquals(expected.getVirtualTargetY(), request.MovingShotSolver.getVirtualTargetY(), kEpsilon);
+        /* Already on the virtual target, so all it turns at is the rate the solver fed forward */
+        assertEquals(expected.getHeadingRateRadiansPerSecond(), swerve.getOmega(), kEpsilon);
+    }
+}
@@ -0,0 +1,51 @@
+package frc.robot.subsystems.Drivetrain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.pathplanner.lib.path.PathPlannerTrajectory;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Follows the trajectory from {@link PreloadedTrajectoryTest} with perfect
+ * modules, checking it stays on the path and ends where the path does on the
+ * field, even after the driver zeroed the heading somewhere else.
+ */
+class FollowTrajectoryTest {
+    private static void follow(double driverZeroRadians) {
+        PathPlannerTrajectory trajectory = PreloadedTrajectoryTest.generateTrajectory();
+        PathPlannerTrajectory.State start = trajectory.getInitialState();
+        PathPlannerTrajectory.State end = trajectory.getEndState();
+        FakeSwerve swerve = new FakeSwerve(start.positionMeters.getX(), start.positionMeters.getY(),
+                start.targetHolonomicRotation.getRadians());
+        swerve.setDriverZero(driverZeroRadians);
+        SwerveRequest.FollowTrajectory request = new SwerveRequest.FollowTrajectory()
+                .withTrajectory(new PreloadedTrajectory(trajectory));
+
+        double worstError = 0;
+        double endTime = swerve.getTime() + trajectory.getTotalTimeSeconds() + 0.5;
+        while (swerve.getTime() < endTime) {
+            swerve.step(request);
+            worstError = Math.max(worstError, request.getTranslationErrorMeters());
+        }
+
+        assertTrue(worstError < 0.05, "Got " + worstError + " m off the path");
+        assertEquals(end.positionMeters.getX(), swerve.getPose().getX(), 0.02);
+        assertEquals(end.positionMeters.getY(), swerve.getPose().getY(), 0.02);
+        assertEquals(0, MathUtil.angleModulus(swerve.getPose().getRotation().getRadians()
+                - end.targetHolonomicRotation.getRadians()), 0.02);
+    }
+
+    @Test
+    void followsThePath() {
+        follow(0);
+    }
+
+    @Test
+    void followsThePathOnTheFieldAfterTheDriverZeroes() {
+        follow(Math.PI / 2);
+    }
+}
@@ -0,0 +1,162 @@
+package frc.robot.subsystems.Drivetrain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the pose history interpolates between samples, clamps past both
+ * ends, turns the short way across half a turn, forgets everything on
+ * {@link PoseHistory#clear()}, and never hands a reader a sample torn up by a
+ * writer lapping it.
+ */
+class PoseHistoryTest {
+    private static final double kEpsilon = 1e-12;
+
+    private static void assertSample(PoseHistory.Sample sample, double timestamp, double x, double y, double theta,
+            double vx, double vy, double omega) {
+        assertEquals(timestamp, sample.timestampSeconds, kEpsilon);
+        assertEquals(x, sample.x, kEpsilon);
+        assertEquals(y, sample.y, kEpsilon);
+        assertEquals(theta, sample.theta, kEpsilon);
+        assertEquals(vx, sample.vx, kEpsilon);
+        assertEquals(vy, sample.vy, kEpsilon);
+        assertEquals(omega, sample.omega, kEpsilon);
+    }
+
+    @Test
+    void emptyHistoryLeavesTheSampleAlone() {
+        PoseHistory history = new PoseHistory(16);
+        PoseHistory.Sample sample = new PoseHistory.Sample();
+        sample.x = 42;
+        assertFalse(history.sample(1, sample));
+        assertEquals(42, sample.x);
+    }
+
+    @Test
+    void interpolatesBetweenSamples() {
+        PoseHistory history = new PoseHistory(16);
+        history.add(1, 0, 0, 0, 0, 0, 0);
+        history.add(2, 2, 4, 1, 1, -2, 0.5);
+        history.add(4, 6, 4, 0.5, 3, 0, 0.5);
+        PoseHistory.Sample sample = new PoseHistory.Sample();
+
+        assertTrue(history.sample(1.25, sample));
+        assertSample(sample, 1.25, 0.5, 1, 0.25, 0.25, -0.5, 0.125);
+        assertTrue(history.sample(3, sample));
+        assertSample(sample, 3, 4, 4, 0.75, 2, -1, 0.5);
+
+        /* Right on a sample gives that sample */
+        assertTrue(history.sample(2, sample));
+        assertSample(sample, 2, 2, 4, 1, 1, -2, 0.5);
+    }
+
+    @Test
+    void clampsPastBothEnds() {
+        PoseHistory history = new PoseHistory(16);
+        history.add(1, 1, 2, 0.1, 0.5, 0.6, 0.7);
+        history.add(2, 3, 4, 0.2, 1.5, 1.6, 1.7);
+        PoseHistory.Sample sample = new PoseHistory.Sample();
+
+        /* The timestamp is the sample's own, not the one asked for, so callers can tell it was clamped */
+        assertTrue(history.sample(0, sample));
+        assertSample(sample, 1, 1, 2, 0.1, 0.5, 0.6, 0.7);
+        assertTrue(history.sample(Double.NEGATIVE_INFINITY, sample));
+        assertSample(sample, 1, 1, 2, 0.1, 0.5, 0.6, 0.7);
+        assertTrue(history.sample(5, sample));
+        assertSample(sample, 2, 3, 4, 0.2, 1.5, 1.6, 1.7);
+    }
+
+    @Test
+    void headingTakesTheShortWayAcrossHalfATurn() {
+        PoseHistory history = new PoseHistory(16);
+        history.add(0, 0, 0, 3, 0, 0, 0);
+        history.add(1, 0, 0, -3, 0, 0, 0);
+        PoseHistory.Sample sample = new PoseHistory.Sample();
+
+        /* 3 to -3 is 0.28 radians through half a turn, not 6 radians back through zero */
+        double step = 2 * Math.PI - 6;
+        assertTrue(history.sample(0.25, sample));
+        assertEquals(3 + step * 0.25, sample.theta, kEpsilon);
+        assertTrue(history.sample(0.5, sample));
+        assertEquals(-1, Math.cos(sample.theta), kEpsilon);
+        assertTrue(history.sample(0.75, sample));
+        assertEquals(3 + step * 0.75 - 2 * Math.PI, sample.theta, kEpsilon);
+    }
+
+    @Test
+    void clearForgetsEverything() {
+        PoseHistory history = new PoseHistory(16);
+        history.add(1, 1, 1, 0, 0, 0, 0);
+        history.add(2, 2, 2, 0, 0, 0, 0);
+        history.clear();
+        PoseHistory.Sample sample = new PoseHistory.Sample();
+        assertFalse(history.sample(1.5, sample));
+
+        /* After a reset, old samples don't come back even for times only they covered */
+        history.add(3, 10, 10, 0, 0, 0, 0);
+        history.add(4, 11, 10, 0, 0, 0, 0);
+        assertTrue(history.sample(1.5, sample));
+        assertSample(sample, 3, 10, 10, 0, 0, 0, 0);
+        assertTrue(history.sample(3.5, sample));
+        assertSample(sample, 3.5, 10.5, 10, 0, 0, 0, 0);
+    }
+
+    @Test
+    void readersStayClearOfTheSlotsAboutToBeOverwritten() {
+        /* Rounded up to 32 slots, of which readers leave the oldest 8 alone */
+        PoseHistory history = new PoseHistory(20);
+        for (int i = 0; i < 100; ++i) {
+            history.add(i, i, 0, 0, 0, 0, 0);
+        }
+        PoseHistory.Sample sample = new PoseHistory.Sample();
+        assertTrue(history.sample(0, sample));
+        assertEquals(100 - 32 + 8, sample.timestampSeconds);
+        assertTrue(history.sample(80.5, sample));
+        assertEquals(80.5, sample.x, kEpsilon);
+    }
+
+    @Test
+    void writerLappingAReaderNeverTearsASample() throws InterruptedException {
+        /* As small as it gets, so the writer laps the reader as often as possible */
+        PoseHistory history = new PoseHistory(1);
+        history.add(0, 0, 0, 0, 0, 0, 0);
+        AtomicBoolean stop = new AtomicBoolean(false);
+
+        /* Every value is a multiple of the timestamp, so mixing two samples shows up straight away */
+        Thread writer = new Thread(() -> {
+            long count = 1;
+            while (!stop.get()) {
+                double t = count++;
+                history.add(t, t, 2 * t, 0, 3 * t, 4 * t, 5 * t);
+            }
+        });
+        writer.setDaemon(true);
+        writer.start();
+
+        try {
+            PoseHistory.Sample newest = new PoseHistory.Sample();
+            PoseHistory.Sample sample = new PoseHistory.Sample();
+            for (int i = 0; i < 500_000; ++i) {
+                assertTrue(history.sample(Double.POSITIVE_INFINITY, newest));
+                /* 16 slots with 8 left to readers, so aim at the oldest ones, the next the writer reuses */
+                double t = newest.timestampSeconds - 7.5 + (i % 4);
+                assertTrue(history.sample(t, sample));
+
+                double tolerance = 1e-9 * Math.max(1, sample.timestampSeconds);
+                assertEquals(sample.timestampSeconds, sample.x, tolerance);
+                assertEquals(2 * sample.timestampSeconds, sample.y, 2 * tolerance);
+                assertEquals(3 * sample.timestampSeconds, sample.vx, 3 * tolerance);
+                assertEquals(4 * sample.timestampSeconds, sample.vy, 4 * tolerance);
+                assertEquals(5 * sample.timestampSeconds, sample.omega, 5 * tolerance);
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+    }
+}
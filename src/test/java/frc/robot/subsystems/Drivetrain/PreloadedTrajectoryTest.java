@@ -0,0 +1,137 @@
+package frc.robot.subsystems.Drivetrain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.pathplanner.lib.path.GoalEndState;
+import com.pathplanner.lib.path.PathConstraints;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.path.PathPlannerTrajectory;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+
+/**
+ * Checks the preloaded trajectory samples the same as the PathPlanner one it
+ * was copied from, including across the seam at half a turn and past both
+ * ends.
+ */
+class PreloadedTrajectoryTest {
+    private static final double kEpsilon = 1e-9;
+    /*
+     * PathPlanner works the position out from the velocity between states
+     * instead of lerping it, which is a hair different between two states
+     */
+    private static final double kPositionToleranceMeters = 1e-3;
+
+    /*
+     * Drives down and to the left, then up and to the left, so the direction of
+     * travel crosses half a turn, while the robot turns across it the other way
+     */
+    static PathPlannerTrajectory generateTrajectory() {
+        List<Translation2d> bezierPoints = PathPlannerPath.bezierFromPoses(
+                new Pose2d(6, 5, Rotation2d.fromDegrees(-150)),
+                new Pose2d(4, 4, Rotation2d.fromDegrees(180)),
+                new Pose2d(2, 5, Rotation2d.fromDegrees(150)));
+        PathPlannerPath path = new PathPlannerPath(bezierPoints,
+                new PathConstraints(3, 3, 2 * Math.PI, 4 * Math.PI),
+                new GoalEndState(0, Rotation2d.fromDegrees(170)));
+        return path.getTrajectory(new ChassisSpeeds(), Rotation2d.fromDegrees(-170));
+    }
+
+    private static void assertSameAngle(double expected, double actual, String what) {
+        assertEquals(0, MathUtil.angleModulus(actual - expected), kEpsilon, what);
+    }
+
+    private static void assertSamples(PathPlannerTrajectory trajectory, PreloadedTrajectory preloaded, double time,
+            PreloadedTrajectory.Sample sample) {
+        PathPlannerTrajectory.State expected = trajectory.sample(time);
+        preloaded.sample(time, sample);
+        String at = " at " + time + " s";
+
+        assertEquals(expected.timeSeconds, sample.timeSeconds, kEpsilon, "time" + at);
+        assertEquals(expected.positionMeters.getX(), sample.x, kPositionToleranceMeters, "x" + at);
+        assertEquals(expected.positionMeters.getY(), sample.y, kPositionToleranceMeters, "y" + at);
+        assertEquals(expected.velocityMps, sample.velocityMps, kEpsilon, "velocity" + at);
+        assertSameAngle(expected.heading.getRadians(), sample.headingRadians, "heading" + at);
+        assertSameAngle(expected.targetHolonomicRotation.getRadians(), sample.holonomicRotationRadians,
+                "rotation" + at);
+        assertEquals(expected.holonomicAngularVelocityRps.orElse(Double.NaN), sample.holonomicAngularVelocityRps,
+                kEpsilon, "angular velocity" + at);
+        assertEquals(expected.constraints.getMaxAngularVelocityRps(), sample.maxAngularVelocityRps, kEpsilon,
+                "max angular velocity" + at);
+    }
+
+    @Test
+    void samplesTheSameAsPathPlanner() {
+        PathPlannerTrajectory trajectory = generateTrajectory();
+        PreloadedTrajectory preloaded = new PreloadedTrajectory(trajectory);
+        PreloadedTrajectory.Sample sample = new PreloadedTrajectory.Sample();
+        double totalTime = trajectory.getTotalTimeSeconds();
+        assertEquals(totalTime, preloaded.getTotalTimeSeconds(), 0);
+
+        /* An odd step, so it lands between states as well as on them */
+        int steps = 997;
+        for (int i = 0; i <= steps; ++i) {
+            assertSamples(trajectory, preloaded, totalTime * i / steps, sample);
+        }
+        for (PathPlannerTrajectory.State state : trajectory.getStates()) {
+            assertSamples(trajectory, preloaded, state.timeSeconds, sample);
+        }
+    }
+
+    @Test
+    void crossesHalfATurnTheShortWay() {
+        PathPlannerTrajectory trajectory = generateTrajectory();
+        PreloadedTrajectory preloaded = new PreloadedTrajectory(trajectory);
+        PreloadedTrajectory.Sample sample = new PreloadedTrajectory.Sample();
+
+        /* Make sure the path really does cross it, or this proves nothing */
+        boolean crossedHeading = false;
+        boolean crossedRotation = false;
+        List<PathPlannerTrajectory.State> states = trajectory.getStates();
+        for (int i = 1; i < states.size(); ++i) {
+            crossedHeading |= Math.abs(states.get(i).heading.getRadians()
+                    - states.get(i - 1).heading.getRadians()) > Math.PI;
+            crossedRotation |= Math.abs(states.get(i).targetHolonomicRotation.getRadians()
+                    - states.get(i - 1).targetHolonomicRotation.getRadians()) > Math.PI;
+        }
+        assertTrue(crossedHeading);
+        assertTrue(crossedRotation);
+
+        /* Every sample stays between its neighbours instead of swinging the long way around */
+        double totalTime = trajectory.getTotalTimeSeconds();
+        double last = Double.NaN;
+        for (int i = 0; i <= 1000; ++i) {
+            preloaded.sample(totalTime * i / 1000, sample);
+            if (!Double.isNaN(last)) {
+                assertTrue(Math.abs(MathUtil.angleModulus(sample.holonomicRotationRadians - last)) < 0.1);
+            }
+            last = sample.holonomicRotationRadians;
+        }
+    }
+
+    @Test
+    void clampsPastBothEnds() {
+        PathPlannerTrajectory trajectory = generateTrajectory();
+        PreloadedTrajectory preloaded = new PreloadedTrajectory(trajectory);
+        PreloadedTrajectory.Sample sample = new PreloadedTrajectory.Sample();
+
+        assertSamples(trajectory, preloaded, -1, sample);
+        assertEquals(6, sample.x, kEpsilon);
+        assertEquals(5, sample.y, kEpsilon);
+
+        assertSamples(trajectory, preloaded, trajectory.getTotalTimeSeconds() + 1, sample);
+        assertEquals(2, sample.x, kEpsilon);
+        assertEquals(5, sample.y, kEpsilon);
+        assertEquals(0, sample.velocityMps, kEpsilon);
+        assertSameAngle(Math.toRadians(170), sample.holonomicRotationRadians, "end rotation");
+    }
+}
@@ -0,0 +1,163 @@
+package frc.robot.subsystems.Drivetrain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.ctre.phoenix6.hardware.Pigeon2;
+import com.ctre.phoenix6.mechanisms.swerve.SwerveModuleConstants;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import frc.robot.Constants.SwerveConstants.RobotMeasurements;
+import frc.robot.Constants.SwerveConstants.Simulation;
+import frc.robot.Constants.SwerveConstants.TunerConstants;
+
+/**
+ * Steps the drivetrain physics with fixed motor voltages and checks the
+ * robot behaves like a robot: a straight drive settles at the free speed for
+ * that voltage without drifting sideways, the tires slip so it can't
+ * accelerate faster than friction allows, and the battery sags further the
+ * more current is drawn.
+ */
+class SimSwerveDrivetrainTest {
+    /* Same as the drivetrain's sim loop */
+    private static final double kDt = 0.005;
+    private static final double kGravity = 9.81;
+    private static final double kMaxAcceleration = RobotMeasurements.kWheelCoefficientOfFriction * kGravity;
+    private static final double kEpsilon = 1e-9;
+
+    @BeforeAll
+    static void initializeHal() {
+        assertTrue(HAL.initialize(500, 0));
+    }
+
+    private static SimSwerveDrivetrain createSim() {
+        SwerveModuleConstants[] modules = {
+                TunerConstants.FrontLeft, TunerConstants.FrontRight,
+                TunerConstants.BackLeft, TunerConstants.BackRight
+        };
+        Translation2d[] locations = new Translation2d[modules.length];
+        for (int i = 0; i < modules.length; ++i) {
+            locations[i] = new Translation2d(modules[i].LocationX, modules[i].LocationY);
+        }
+        Pigeon2 pigeon = new Pigeon2(TunerConstants.DrivetrainConstants.Pigeon2Id,
+                TunerConstants.DrivetrainConstants.CANbusName);
+        return new SimSwerveDrivetrain(locations, pigeon, TunerConstants.DrivetrainConstants, modules);
+    }
+
+    /* Every drive motor at the same voltage, with the modules left pointing straight ahead */
+    private static void drive(SimSwerveDrivetrain sim, double driveVolts) {
+        for (int i = 0; i < sim.ModuleCount; ++i) {
+            sim.m_steerVoltages[i] = 0;
+            sim.m_driveVoltages[i] = driveVolts;
+        }
+    }
+
+    private static void run(SimSwerveDrivetrain sim, double seconds) {
+        for (int i = 0; i < Math.round(seconds / kDt); ++i) {
+            sim.stepPhysics(kDt, Simulation.kBatteryNominalVoltage);
+        }
+    }
+
+    private static double totalSupplyCurrent(SimSwerveDrivetrain sim) {
+        double current = 0;
+        for (int i = 0; i < sim.ModuleCount; ++i) {
+            current += sim.m_modules[i].SupplyCurrent;
+        }
+        return current;
+    }
+
+    @Test
+    void straightDriveSettlesAtFreeSpeedWithoutDrifting() {
+        SimSwerveDrivetrain sim = createSim();
+        Pose2d start = new Pose2d(2, 3, Rotation2d.fromDegrees(30));
+        sim.resetTruthPose(start);
+        double volts = 10;
+        drive(sim, volts);
+        run(sim, 3);
+
+        SimSwerveDrivetrain.SimSwerveModule module = sim.m_modules[0];
+        double freeSpeed = volts * module.DriveMotor.KvRadPerSecPerVolt / module.DriveGearing
+                * module.WheelRadiusMeters;
+        double cos = start.getRotation().getCos();
+        double sin = start.getRotation().getSin();
+        double forward = sim.m_vx * cos + sim.m_vy * sin;
+        double sideways = -sim.m_vx * sin + sim.m_vy * cos;
+        assertEquals(freeSpeed, forward, 0.01 * freeSpeed);
+        assertEquals(0, sideways, kEpsilon);
+        assertEquals(0, sim.m_omega, kEpsilon);
+        /* Gripping, so the wheels turn with the ground */
+        assertEquals(forward, module.WheelVelocity * module.WheelRadiusMeters, 0.001 * freeSpeed);
+
+        /* Still on the line it started on, facing the same way */
+        Pose2d pose = sim.getTruthPose();
+        double offLine = -(pose.getX() - start.getX()) * sin + (pose.getY() - start.getY()) * cos;
+        assertEquals(0, offLine, 1e-6);
+        assertTrue(pose.getTranslation().getDistance(start.getTranslation()) > 2 * freeSpeed);
+        assertEquals(start.getRotation().getRadians(), pose.getRotation().getRadians(), kEpsilon);
+    }
+
+    @Test
+    void wheelSlipLimitsAcceleration() {
+        SimSwerveDrivetrain sim = createSim();
+        drive(sim, 12);
+        SimSwerveDrivetrain.SimSwerveModule module = sim.m_modules[0];
+
+        double lastVelocity = 0;
+        double acceleration = 0;
+        for (int i = 0; i < Math.round(2 / kDt); ++i) {
+            sim.stepPhysics(kDt, Simulation.kBatteryNominalVoltage);
+            acceleration = (sim.m_vx - lastVelocity) / kDt;
+            lastVelocity = sim.m_vx;
+            assertTrue(acceleration <= kMaxAcceleration * (1 + kEpsilon),
+                    "Accelerated at " + acceleration + " m/s^2 at step " + i);
+
+            if (i == 0) {
+                /* Full voltage from a stop is more than the tires can take, so they spin out at the limit */
+                assertEquals(kMaxAcceleration, acceleration, kMaxAcceleration * 1e-6);
+                assertTrue(module.WheelVelocity * module.WheelRadiusMeters > sim.m_vx + 1);
+            }
+        }
+        /* Near free speed the motors can't out-pull the tires any more, so it grips and eases off */
+        assertTrue(acceleration < kMaxAcceleration / 10, "Still accelerating at " + acceleration + " m/s^2");
+        assertEquals(sim.m_vx, module.WheelVelocity * module.WheelRadiusMeters, 0.01);
+    }
+
+    @Test
+    void batterySagsWithCurrentDraw() {
+        double lastCurrent = -1;
+        double lastBatteryVoltage = Double.POSITIVE_INFINITY;
+        for (double volts = 0; volts <= 12; volts += 3) {
+            SimSwerveDrivetrain sim = createSim();
+            drive(sim, volts);
+            sim.stepPhysics(kDt, Simulation.kBatteryNominalVoltage);
+
+            double current = totalSupplyCurrent(sim);
+            double batteryVoltage = sim.getBatteryVoltage();
+            assertEquals(Simulation.kBatteryNominalVoltage - current * Simulation.kBatteryResistanceOhms,
+                    batteryVoltage, kEpsilon);
+            assertTrue(current > lastCurrent, volts + " V drew " + current + " A after " + lastCurrent + " A");
+            assertTrue(batteryVoltage < lastBatteryVoltage);
+            lastCurrent = current;
+            lastBatteryVoltage = batteryVoltage;
+        }
+
+        /* Standing still draws nothing, and so does cruising at free speed */
+        SimSwerveDrivetrain sim = createSim();
+        drive(sim, 0);
+        sim.stepPhysics(kDt, Simulation.kBatteryNominalVoltage);
+        assertEquals(Simulation.kBatteryNominalVoltage, sim.getBatteryVoltage(), 0);
+
+        drive(sim, 12);
+        run(sim, 0.1);
+        double accelerating = sim.getBatteryVoltage();
+        run(sim, 4);
+        assertTrue(sim.getBatteryVoltage() > accelerating);
+        assertEquals(Simulation.kBatteryNominalVoltage, sim.getBatteryVoltage(), 0.05);
+    }
+}
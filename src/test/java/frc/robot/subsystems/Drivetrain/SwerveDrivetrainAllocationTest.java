@@ -0,0 +1,122 @@
+package frc.robot.subsystems.Drivetrain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusCode;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants.SwerveConstants.TunerConstants;
+
+/**
+ * Checks the odometry update doesn't allocate once it is warmed up, so it
+ * never gives the garbage collector a reason to pause the control loop, and
+ * that reading the state over and over doesn't either while nothing changed.
+ */
+class SwerveDrivetrainAllocationTest {
+    private static final int kWarmupTicks = 2000;
+    private static final int kMeasuredTicks = 500;
+    private static final double kTickSeconds = 0.004;
+
+    @BeforeAll
+    static void initializeHal() {
+        assertTrue(HAL.initialize(500, 0));
+    }
+
+    @Test
+    void odometryTickDoesNotAllocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        SwerveDrivetrain drivetrain = new SwerveDrivetrain(TunerConstants.DrivetrainConstants,
+                TunerConstants.FrontLeft, TunerConstants.FrontRight,
+                TunerConstants.BackLeft, TunerConstants.BackRight);
+        drivetrain.useSteppedOdometry();
+        drivetrain.registerTelemetry(state -> {
+        });
+        drivetrain.setControl(new SwerveRequest.FieldCentric()
+                .withVelocityX(1.5).withVelocityY(-0.5).withRotationalRate(0.8));
+        SwerveDrivetrain.OdometryThread daq = drivetrain.getDaqThread();
+
+        for (int i = 0; i < kWarmupTicks; ++i) {
+            tick(drivetrain, daq, threadBean, i);
+        }
+        long allocatedBytes = 0;
+        for (int i = 0; i < kMeasuredTicks; ++i) {
+            allocatedBytes += tick(drivetrain, daq, threadBean, kWarmupTicks + i);
+        }
+
+        assertEquals(0, allocatedBytes, "Bytes allocated by " + kMeasuredTicks + " odometry updates");
+    }
+
+    @Test
+    void readingTheStateOfAStillRobotDoesNotAllocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        SwerveDrivetrain drivetrain = new SwerveDrivetrain(TunerConstants.DrivetrainConstants,
+                TunerConstants.FrontLeft, TunerConstants.FrontRight,
+                TunerConstants.BackLeft, TunerConstants.BackRight);
+        drivetrain.useSteppedOdometry();
+        drivetrain.setControl(new SwerveRequest.FieldCentric()
+                .withVelocityX(1.5).withVelocityY(-0.5).withRotationalRate(0.8));
+        SwerveDrivetrain.OdometryThread daq = drivetrain.getDaqThread();
+        for (int i = 0; i < 50; ++i) {
+            tick(drivetrain, daq, threadBean, i);
+        }
+
+        /* The first reads on this thread make the pose and the state's objects */
+        SwerveDrivetrain.SwerveDriveState state = drivetrain.getState();
+        Pose2d pose = drivetrain.getPose();
+        assertEquals(state.Pose, pose);
+        drivetrain.getState(state);
+
+        /* After that, nothing moved, so the same objects come back every time */
+        long before = threadBean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100; ++i) {
+            assertTrue(pose == drivetrain.getPose());
+            drivetrain.getState(state);
+        }
+        long allocatedBytes = threadBean.getCurrentThreadAllocatedBytes() - before;
+        assertEquals(0, allocatedBytes, "Bytes allocated by reading the state of a still robot");
+
+        /* And once it moves, the new pose comes out */
+        tick(drivetrain, daq, threadBean, 50);
+        Pose2d moved = drivetrain.getPose();
+        assertTrue(pose != moved);
+        assertEquals(drivetrain.getState().Pose, moved);
+    }
+
+    /* Runs one update, returning how much only the odometry update itself allocated */
+    private static long tick(SwerveDrivetrain drivetrain, SwerveDrivetrain.OdometryThread daq,
+            com.sun.management.ThreadMXBean threadBean, int tick) {
+        /* Phoenix boxes refreshed signal values, so the sim and the refresh stay out of the measurement */
+        drivetrain.updateSimState(kTickSeconds, 12);
+        BaseStatusSignal.refreshAll(daq.m_allSignals);
+        if (tick % 5 == 0) {
+            /* Keep the vision path busy too, a camera at 50 Hz */
+            drivetrain.addVisionMeasurement(new Pose2d(2 + tick * 1e-4, 4, Rotation2d.fromDegrees(10)),
+                    Timer.getFPGATimestamp() - 0.02);
+        }
+
+        long before = threadBean.getCurrentThreadAllocatedBytes();
+        daq.runOnce(StatusCode.OK, System.nanoTime());
+        return threadBean.getCurrentThreadAllocatedBytes() - before;
+    }
+}
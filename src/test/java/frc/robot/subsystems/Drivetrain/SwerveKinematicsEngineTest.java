@@ -0,0 +1,110 @@
+package frc.robot.subsystems.Drivetrain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+
+/**
+ * Checks {@link SwerveKinematicsEngine} gives bit for bit the same module
+ * speeds and angles as WPILib, since it is only worth having as a drop-in
+ * replacement. Runs the field centric pipeline over random speeds, headings,
+ * centers of rotation and speed limits, with the same two instances carried
+ * through the whole sequence so the angles kept for stopped modules are
+ * compared too.
+ */
+class SwerveKinematicsEngineTest {
+    /* Same module layout as TunerConstants, without loading the Phoenix constants */
+    private static final double kFrontX = 0.327;
+    private static final double kSideY = 0.306;
+    private static final double kUpdatePeriod = 1.0 / 250.0;
+    private static final int kIterations = 200_000;
+
+    private static final Translation2d[] kLocations = {
+            new Translation2d(kFrontX, kSideY), new Translation2d(kFrontX, -kSideY),
+            new Translation2d(-kFrontX, kSideY), new Translation2d(-kFrontX, -kSideY)
+    };
+
+    /* Mostly ordinary values, with the zeros and signed zeros WPILib special cases mixed in */
+    private static double randomSpeed(Random random, double max) {
+        switch (random.nextInt(10)) {
+            case 0:
+                return 0.0;
+            case 1:
+                return -0.0;
+            default:
+                return (random.nextDouble() * 2 - 1) * max;
+        }
+    }
+
+    private static Translation2d randomCenter(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return new Translation2d();
+            case 1:
+                /* About a module, like a defensive spin */
+                return kLocations[random.nextInt(kLocations.length)];
+            default:
+                return new Translation2d(random.nextDouble() - 0.5, random.nextDouble() - 0.5);
+        }
+    }
+
+    private static void assertBitIdentical(double expected, double actual, String what, int iteration, int module) {
+        assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual),
+                () -> String.format("%s of module %d differs at iteration %d: %.17g vs %.17g",
+                        what, module, iteration, expected, actual));
+    }
+
+    @Test
+    void fieldCentricPipelineMatchesWPILib() {
+        Random random = new Random(548);
+        SwerveDriveKinematics kinematics = new SwerveDriveKinematics(kLocations);
+        SwerveKinematicsEngine engine = new SwerveKinematicsEngine(kLocations);
+        ChassisSpeeds engineSpeeds = new ChassisSpeeds();
+        int desaturated = 0;
+
+        for (int iteration = 0; iteration < kIterations; ++iteration) {
+            /* Fast enough that desaturating often kicks in */
+            double vx = randomSpeed(random, 4);
+            double vy = randomSpeed(random, 4);
+            double omega = randomSpeed(random, 6);
+            double heading = (random.nextDouble() * 2 - 1) * Math.PI * 2;
+            double maxSpeed = 1 + random.nextDouble() * 5;
+            Translation2d center = randomCenter(random);
+
+            ChassisSpeeds expectedSpeeds = ChassisSpeeds.discretize(
+                    ChassisSpeeds.fromFieldRelativeSpeeds(vx, vy, omega, new Rotation2d(heading)), kUpdatePeriod);
+            SwerveModuleState[] expected = kinematics.toSwerveModuleStates(expectedSpeeds, center);
+            double fastest = 0;
+            for (SwerveModuleState state : expected) {
+                fastest = Math.max(fastest, Math.abs(state.speedMetersPerSecond));
+            }
+            if (fastest > maxSpeed) {
+                desaturated++;
+            }
+            SwerveDriveKinematics.desaturateWheelSpeeds(expected, maxSpeed);
+
+            SwerveKinematicsEngine.fromFieldRelativeSpeeds(vx, vy, omega, heading, engineSpeeds);
+            SwerveKinematicsEngine.discretize(engineSpeeds, kUpdatePeriod);
+            engine.toSwerveModuleStates(engineSpeeds, center);
+            engine.desaturateWheelSpeeds(maxSpeed);
+
+            for (int i = 0; i < kLocations.length; ++i) {
+                assertBitIdentical(expected[i].speedMetersPerSecond, engine.getModuleSpeed(i), "Speed", iteration, i);
+                assertBitIdentical(expected[i].angle.getRadians(), engine.getModuleAngle(i), "Angle", iteration, i);
+            }
+        }
+
+        /* Make sure the sweep actually covered both sides of the speed limit */
+        assertTrue(desaturated > kIterations / 20, "Too few iterations needed desaturating");
+        assertTrue(desaturated < kIterations * 19 / 20, "Too few iterations stayed under the limit");
+    }
+}
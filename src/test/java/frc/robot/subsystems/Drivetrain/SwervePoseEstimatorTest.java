@@ -0,0 +1,230 @@
+package frc.robot.subsystems.Drivetrain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+
+/**
+ * Runs the fixed memory estimator side by side with the WPILib one and checks
+ * they agree after every call, on a drive with two cameras whose frames
+ * arrive out of order, and on the cases that trip up a history: measurements
+ * out of order, measurements older than the 1.5 second window, and resetting
+ * the position between measurements.
+ */
+class SwervePoseEstimatorTest {
+    /* Same module layout as TunerConstants, without loading the Phoenix constants */
+    private static final double kFrontX = 0.327;
+    private static final double kSideY = 0.306;
+    private static final Translation2d[] kLocations = {
+            new Translation2d(kFrontX, kSideY), new Translation2d(kFrontX, -kSideY),
+            new Translation2d(-kFrontX, kSideY), new Translation2d(-kFrontX, -kSideY)
+    };
+    private static final SwerveDriveKinematics kKinematics = new SwerveDriveKinematics(kLocations);
+
+    private static final double kUpdateFrequency = 250;
+    private static final double kDt = 1.0 / kUpdateFrequency;
+    private static final double kCameraPeriodSeconds = 0.05;
+    private static final double kMaxDisagreementMeters = 1e-3;
+    private static final double kMaxDisagreementRadians = 1e-3;
+
+    /* Same trust as the drivetrain and Constants.Vision */
+    private static final Matrix<N3, N1> kStateStdDevs = VecBuilder.fill(0.1, 0.1, 0.1);
+    private static final Matrix<N3, N1> kVisionStdDevs = VecBuilder.fill(0.22, 0.22, Math.toRadians(100));
+
+    /* Where vision puts the robot compared to odometry, far enough off that every correction shows */
+    private static final Transform2d kVisionOffset = new Transform2d(0.3, -0.2, Rotation2d.fromDegrees(8));
+
+    /* A robot weaving around the field, one entry per odometry update */
+    private final int m_count = (int) (6 * kUpdateFrequency);
+    private final double[] m_times = new double[m_count];
+    private final Rotation2d[] m_gyro = new Rotation2d[m_count];
+    private final SwerveModulePosition[][] m_positions = new SwerveModulePosition[m_count][];
+    private final Pose2d[] m_truth = new Pose2d[m_count];
+
+    private final SwerveDrivePoseEstimator m_wpilib;
+    private final SwervePoseEstimator m_fixedMemory;
+
+    SwervePoseEstimatorTest() {
+        Pose2d pose = new Pose2d(2, 4, new Rotation2d());
+        double[] distances = new double[kLocations.length];
+        for (int i = 0; i < m_count; ++i) {
+            double t = i * kDt;
+            ChassisSpeeds speeds = new ChassisSpeeds(
+                    3.0 * Math.sin(0.4 * t), 2.0 * Math.cos(0.3 * t), 1.5 * Math.sin(0.7 * t));
+            SwerveModuleState[] states = kKinematics.toSwerveModuleStates(speeds);
+
+            m_positions[i] = new SwerveModulePosition[states.length];
+            for (int module = 0; module < states.length; ++module) {
+                distances[module] += states[module].speedMetersPerSecond * kDt;
+                m_positions[i][module] = new SwerveModulePosition(distances[module], states[module].angle);
+            }
+            m_times[i] = t;
+            m_gyro[i] = pose.getRotation();
+            m_truth[i] = pose;
+
+            pose = pose.exp(new Twist2d(speeds.vxMetersPerSecond * kDt, speeds.vyMetersPerSecond * kDt,
+                    speeds.omegaRadiansPerSecond * kDt));
+        }
+
+        m_wpilib = new SwerveDrivePoseEstimator(kKinematics, m_gyro[0], m_positions[0], m_truth[0],
+                kStateStdDevs, kVisionStdDevs);
+        m_fixedMemory = new SwervePoseEstimator(kLocations, kUpdateFrequency, m_gyro[0], m_positions[0],
+                m_truth[0], kStateStdDevs, kVisionStdDevs);
+    }
+
+    private void assertAgree(String when) {
+        Pose2d expected = m_wpilib.getEstimatedPosition();
+        Pose2d actual = m_fixedMemory.getEstimatedPosition();
+        double translationError = expected.getTranslation().getDistance(actual.getTranslation());
+        double rotationError = Math.abs(expected.getRotation().minus(actual.getRotation()).getRadians());
+        assertTrue(translationError <= kMaxDisagreementMeters && rotationError <= kMaxDisagreementRadians,
+                when + ": expected " + expected + ", got " + actual);
+    }
+
+    /* Runs odometry updates from the first index up to, but not including, the last */
+    private void update(int from, int to) {
+        for (int i = from; i < to; ++i) {
+            m_wpilib.updateWithTime(m_times[i], m_gyro[i], m_positions[i]);
+            m_fixedMemory.updateWithTime(m_times[i], m_gyro[i], m_positions[i]);
+            assertAgree("Odometry at t = " + m_times[i]);
+        }
+    }
+
+    /* Vision sees the robot where it was at the given update, plus the offset */
+    private void addVision(int index) {
+        addVision(m_truth[index].plus(kVisionOffset), m_times[index]);
+    }
+
+    private void addVision(Pose2d pose, double timestampSeconds) {
+        m_wpilib.addVisionMeasurement(pose, timestampSeconds);
+        m_fixedMemory.addVisionMeasurement(pose, timestampSeconds);
+        assertAgree("Vision from t = " + timestampSeconds);
+    }
+
+    @Test
+    void agreesOverADriveWithTwoCameras() {
+        Random random = new Random(548);
+
+        /* Two cameras half a period apart, captured between odometry updates, with 30 to 80 ms of latency */
+        int cameraTicks = (int) (kCameraPeriodSeconds * kUpdateFrequency);
+        int frames = 2 * (m_count / cameraTicks);
+        int[] arrival = new int[frames];
+        double[] times = new double[frames];
+        Pose2d[] poses = new Pose2d[frames];
+        int frame = 0;
+        for (int camera = 0; camera < 2; ++camera) {
+            for (int capture = 1 + camera * cameraTicks / 2; capture < m_count; capture += cameraTicks) {
+                int latencyTicks = (int) ((0.03 + 0.05 * random.nextDouble()) * kUpdateFrequency);
+                if (capture + latencyTicks >= m_count || frame >= frames) {
+                    continue;
+                }
+                double fraction = random.nextDouble();
+                Pose2d seen = m_truth[capture - 1].interpolate(m_truth[capture], fraction);
+                arrival[frame] = capture + latencyTicks;
+                times[frame] = m_times[capture - 1] + fraction * kDt;
+                poses[frame] = new Pose2d(
+                        seen.getX() + 0.05 * random.nextGaussian(),
+                        seen.getY() + 0.05 * random.nextGaussian(),
+                        seen.getRotation().plus(Rotation2d.fromDegrees(2 * random.nextGaussian())));
+                frame++;
+            }
+        }
+
+        /* In the order they arrive, which often isn't the order they were captured in */
+        Integer[] order = new Integer[frame];
+        for (int i = 0; i < frame; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(arrival[a], arrival[b]));
+        boolean outOfOrder = false;
+        for (int i = 1; i < frame; ++i) {
+            outOfOrder |= times[order[i]] < times[order[i - 1]];
+        }
+        assertTrue(outOfOrder);
+
+        int next = 0;
+        for (int i = 0; i < m_count; ++i) {
+            update(i, i + 1);
+            while (next < frame && arrival[order[next]] == i) {
+                addVision(poses[order[next]], times[order[next]]);
+                next++;
+            }
+        }
+    }
+
+    @Test
+    void agreesWithMeasurementsOutOfOrder() {
+        update(0, 300);
+        addVision(280);
+        /* Older than the last one, which throws the last one's correction away in both */
+        addVision(200);
+        /* And one between them */
+        addVision(240);
+        update(300, 400);
+        addVision(390);
+        addVision(310);
+        update(400, 500);
+    }
+
+    @Test
+    void dropsMeasurementsOlderThanTheWindow() {
+        update(0, 600);
+        double newest = m_times[599];
+        Pose2d before = m_fixedMemory.getEstimatedPosition();
+
+        /* Past the 1.5 seconds both keep, so it changes nothing */
+        int tooOld = (int) ((newest - 1.6) * kUpdateFrequency);
+        addVision(tooOld);
+        assertEquals(before, m_fixedMemory.getEstimatedPosition());
+
+        /* Just inside it still counts */
+        int oldest = (int) Math.ceil((newest - 1.45) * kUpdateFrequency);
+        addVision(oldest);
+        Pose2d after = m_fixedMemory.getEstimatedPosition();
+        assertTrue(after.getTranslation().getDistance(before.getTranslation()) > 0.01);
+        update(600, 700);
+    }
+
+    @Test
+    void agreesAcrossAResetPosition() {
+        update(0, 300);
+        addVision(290);
+
+        /* Reset somewhere else entirely, the way auto start or the driver does */
+        Pose2d reset = new Pose2d(8, 2, Rotation2d.fromDegrees(135));
+        m_wpilib.resetPosition(m_gyro[299], m_positions[299], reset);
+        m_fixedMemory.resetPosition(m_gyro[299], m_positions[299], reset);
+        assertAgree("Reset");
+        assertEquals(reset, m_fixedMemory.getEstimatedPosition());
+
+        /* Nothing to correct yet, so both ignore it */
+        addVision(new Pose2d(7, 3, new Rotation2d()), m_times[299]);
+        assertEquals(reset, m_fixedMemory.getEstimatedPosition());
+
+        update(300, 400);
+        /* From before the reset, but inside the window */
+        addVision(new Pose2d(8.2, 2.1, Rotation2d.fromDegrees(130)), m_times[295]);
+        update(400, 450);
+        addVision(new Pose2d(8.5, 2.5, Rotation2d.fromDegrees(140)), m_times[440]);
+        update(450, 500);
+    }
+}
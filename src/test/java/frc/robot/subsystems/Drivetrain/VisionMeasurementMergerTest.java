@@ -0,0 +1,132 @@
+package frc.robot.subsystems.Drivetrain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+
+/**
+ * Checks measurements from the same instant are merged, and that every
+ * measurement fused into the estimator is weighted by its own standard
+ * deviations rather than whatever an earlier one left behind.
+ */
+class VisionMeasurementMergerTest {
+    private static final double kStateStdDev = 0.1;
+    private static final double kDefaultStdDev = 0.9;
+    private static final double kTightStdDev = 0.05;
+    private static final double kMergeWindowSeconds = 0.005;
+    private static final double kEpsilon = 1e-9;
+
+    private final VisionMeasurementQueue m_queue = new VisionMeasurementQueue(16);
+    private final VisionMeasurementMerger m_merger = new VisionMeasurementMerger(16, kMergeWindowSeconds);
+    private SwervePoseEstimator m_estimator;
+
+    @BeforeEach
+    void createStationaryEstimator() {
+        Translation2d[] locations = {
+                new Translation2d(0.3, 0.3), new Translation2d(0.3, -0.3),
+                new Translation2d(-0.3, 0.3), new Translation2d(-0.3, -0.3)
+        };
+        SwerveModulePosition[] positions = new SwerveModulePosition[locations.length];
+        for (int i = 0; i < positions.length; ++i) {
+            positions[i] = new SwerveModulePosition();
+        }
+        m_estimator = new SwervePoseEstimator(locations, 250, new Rotation2d(), positions, new Pose2d(),
+                VecBuilder.fill(kStateStdDev, kStateStdDev, kStateStdDev),
+                VecBuilder.fill(kDefaultStdDev, kDefaultStdDev, kDefaultStdDev));
+        /* 0.2 seconds of sitting still */
+        for (int i = 0; i <= 50; ++i) {
+            m_estimator.updateWithTime(i * 0.004, new Rotation2d(), positions);
+        }
+    }
+
+    /* Gain the estimator should apply to a measurement with this standard deviation */
+    private static double expectedGain(double stdDev) {
+        double q = kStateStdDev * kStateStdDev;
+        return q / (q + Math.sqrt(q * stdDev * stdDev));
+    }
+
+    private void offer(double x, double timestampSeconds, boolean hasStdDevs, double stdDev) {
+        m_queue.offer(x, 0, 0, timestampSeconds, timestampSeconds, hasStdDevs, stdDev, stdDev, stdDev);
+    }
+
+    private int drainMergeAndFuse() {
+        int drained = m_merger.drain(m_queue, kDefaultStdDev, kDefaultStdDev, kDefaultStdDev);
+        m_merger.merge();
+        m_merger.fuseInto(m_estimator);
+        return drained;
+    }
+
+    @Test
+    void mergesMeasurementsFromTheSameInstant() {
+        offer(0.3, 0.1, true, kTightStdDev);
+        offer(0.2, 0.05, true, kTightStdDev);
+        offer(0.4, 0.102, false, 0);
+        offer(0.25, 0.052, true, kTightStdDev);
+
+        assertEquals(4, m_merger.drain(m_queue, kDefaultStdDev, kDefaultStdDev, kDefaultStdDev));
+        m_merger.merge();
+
+        assertEquals(2, m_merger.getCount());
+        assertEquals(2, m_merger.getMergedAway());
+
+        /* Sorted oldest first, two equally trusted measurements meet in the middle */
+        assertEquals(0.225, m_merger.getX(0), kEpsilon);
+        assertEquals(0.051, m_merger.getTimestampSeconds(0), kEpsilon);
+        assertEquals(kTightStdDev / Math.sqrt(2), m_merger.getXStdDev(0), kEpsilon);
+
+        /* The one without standard deviations is weighted by the defaults */
+        double tightWeight = 1 / (kTightStdDev * kTightStdDev);
+        double defaultWeight = 1 / (kDefaultStdDev * kDefaultStdDev);
+        assertEquals((tightWeight * 0.3 + defaultWeight * 0.4) / (tightWeight + defaultWeight),
+                m_merger.getX(1), kEpsilon);
+        assertEquals(1 / Math.sqrt(tightWeight + defaultWeight), m_merger.getXStdDev(1), kEpsilon);
+    }
+
+    @Test
+    void singleMeasurementAfterMergedGroupsUsesTheDefaultStdDevs() {
+        /* Two merged groups, each fused with the tight merged standard deviations */
+        offer(0.2, 0.05, true, kTightStdDev);
+        offer(0.3, 0.052, true, kTightStdDev);
+        offer(0.2, 0.1, true, kTightStdDev);
+        offer(0.3, 0.101, true, kTightStdDev);
+        assertEquals(4, drainMergeAndFuse());
+        assertEquals(2, m_merger.getCount());
+
+        /* Then one measurement on its own without standard deviations, a meter ahead of the estimate */
+        double before = m_estimator.getEstimatedX();
+        offer(before + 1, 0.2, false, 0);
+        assertEquals(1, drainMergeAndFuse());
+
+        assertEquals(before + expectedGain(kDefaultStdDev), m_estimator.getEstimatedX(), kEpsilon,
+                "The single measurement must not reuse the merged groups' standard deviations");
+        assertEquals(0, m_estimator.getEstimatedY(), kEpsilon);
+        assertEquals(0, m_estimator.getEstimatedHeadingRadians(), kEpsilon);
+    }
+
+    @Test
+    void singleMeasurementUsesItsOwnStdDevs() {
+        double before = m_estimator.getEstimatedX();
+        offer(before + 1, 0.2, true, kTightStdDev);
+        assertEquals(1, drainMergeAndFuse());
+
+        assertEquals(before + expectedGain(kTightStdDev), m_estimator.getEstimatedX(), kEpsilon);
+    }
+
+    @Test
+    void estimatorDoesNotKeepPerMeasurementStdDevs() {
+        m_estimator.addVisionMeasurement(new Pose2d(1, 0, new Rotation2d()), 0.1,
+                VecBuilder.fill(kTightStdDev, kTightStdDev, kTightStdDev));
+
+        double before = m_estimator.getEstimatedX();
+        m_estimator.addVisionMeasurement(new Pose2d(before + 1, 0, new Rotation2d()), 0.2);
+
+        assertEquals(before + expectedGain(kDefaultStdDev), m_estimator.getEstimatedX(), kEpsilon);
+    }
+}
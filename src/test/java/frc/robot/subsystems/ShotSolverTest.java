@@ -0,0 +1,140 @@
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.util.Units;
+import frc.robot.Constants.ShooterConstants;
+
+/**
+ * Checks the moving shot solver: a stationary robot aims straight at the
+ * target, a moving one aims at the target moved back along its velocity by
+ * the time of flight, and the heading rate it feeds forward turns the right
+ * way and by the right amount.
+ */
+class ShotSolverTest {
+    /* Blue speaker, roughly */
+    private static final double kTargetX = 0;
+    private static final double kTargetY = 5.55;
+    private static final double kEpsilon = 1e-12;
+
+    /* Robot positions and velocities to try, x, y, vx, vy */
+    private static final double[][] kMovingCases = {
+            { 3, 4, 2, 0 },
+            { 3, 4, -2, 0 },
+            { 3, 4, 0, 2 },
+            { 3, 4, 0, -2 },
+            { 5, 7, 3, -3 },
+            { 1.5, 5.55, -1, 4 },
+            { 6, 2, 4.5, 1 },
+    };
+
+    @Test
+    void stationaryRobotAimsAtTheTarget() {
+        ShotSolver solver = new ShotSolver();
+        solver.solve(3, 4, 0, 0, kTargetX, kTargetY);
+
+        double distance = Math.hypot(kTargetX - 3, kTargetY - 4);
+        assertEquals(kTargetX, solver.getVirtualTargetX(), 0);
+        assertEquals(kTargetY, solver.getVirtualTargetY(), 0);
+        assertEquals(Math.atan2(kTargetY - 4, kTargetX - 3), solver.getHeadingRadians(), kEpsilon);
+        assertEquals(distance, solver.getDistanceMeters(), kEpsilon);
+        assertEquals(ShotSolver.getTimeOfFlight(distance), solver.getTimeOfFlightSeconds(), kEpsilon);
+        assertEquals(distance - Units.inchesToMeters(15), solver.getShotTableDistanceMeters(), kEpsilon);
+        assertEquals(0, solver.getHeadingRateRadiansPerSecond(), 0);
+    }
+
+    @Test
+    void virtualTargetLeadsByTheTimeOfFlight() {
+        ShotSolver solver = new ShotSolver();
+        for (double[] c : kMovingCases) {
+            solver.solve(c[0], c[1], c[2], c[3], kTargetX, kTargetY);
+            double timeOfFlight = solver.getTimeOfFlightSeconds();
+
+            assertEquals(kTargetX - c[2] * timeOfFlight, solver.getVirtualTargetX(), kEpsilon);
+            assertEquals(kTargetY - c[3] * timeOfFlight, solver.getVirtualTargetY(), kEpsilon);
+
+            double dx = solver.getVirtualTargetX() - c[0];
+            double dy = solver.getVirtualTargetY() - c[1];
+            assertEquals(Math.hypot(dx, dy), solver.getDistanceMeters(), kEpsilon);
+            assertEquals(Math.atan2(dy, dx), solver.getHeadingRadians(), kEpsilon);
+
+            /* The time of flight settled on the one for the distance it ended up at */
+            assertEquals(ShotSolver.getTimeOfFlight(solver.getDistanceMeters()), timeOfFlight,
+                    ShooterConstants.kMovingShotToleranceSeconds);
+        }
+    }
+
+    @Test
+    void noteLandsOnTheTarget() {
+        ShotSolver solver = new ShotSolver();
+        for (double[] c : kMovingCases) {
+            solver.solve(c[0], c[1], c[2], c[3], kTargetX, kTargetY);
+            double timeOfFlight = solver.getTimeOfFlightSeconds();
+
+            /* Fired at the virtual target, the note also carries the robot's velocity the whole way */
+            double flight = timeOfFlight - ShooterConstants.kShotReleaseSeconds;
+            double speed = ShooterConstants.kNoteHorizontalSpeedMetersPerSecond;
+            double landedX = c[0] + c[2] * timeOfFlight + Math.cos(solver.getHeadingRadians()) * speed * flight;
+            double landedY = c[1] + c[3] * timeOfFlight + Math.sin(solver.getHeadingRadians()) * speed * flight;
+
+            /* Off by at most how far the note flies in the time of flight the solver left unsettled */
+            double miss = Math.hypot(landedX - kTargetX, landedY - kTargetY);
+            assertTrue(miss <= speed * ShooterConstants.kMovingShotToleranceSeconds,
+                    "Missed by " + miss + " m");
+        }
+    }
+
+    @Test
+    void headingRateTurnsAwayFromTheWayWeDrive() {
+        ShotSolver solver = new ShotSolver();
+
+        /* Target straight ahead along +x, driving left makes it swing clockwise */
+        solver.solve(0, 0, 0, 1, 5, 0);
+        assertTrue(solver.getHeadingRateRadiansPerSecond() < 0);
+
+        /* And driving right swings it counterclockwise */
+        solver.solve(0, 0, 0, -1, 5, 0);
+        assertTrue(solver.getHeadingRateRadiansPerSecond() > 0);
+
+        /* Driving straight at it doesn't turn it at all */
+        solver.solve(0, 0, 1, 0, 5, 0);
+        assertEquals(0, solver.getHeadingRateRadiansPerSecond(), kEpsilon);
+    }
+
+    @Test
+    void headingRateMatchesTheBearingChange() {
+        ShotSolver solver = new ShotSolver();
+        double dt = 1e-6;
+        for (double[] c : kMovingCases) {
+            solver.solve(c[0], c[1], c[2], c[3], kTargetX, kTargetY);
+            double rate = solver.getHeadingRateRadiansPerSecond();
+            double virtualX = solver.getVirtualTargetX();
+            double virtualY = solver.getVirtualTargetY();
+
+            /* Bearing to the same virtual target a moment later, the way the rate is defined */
+            double later = Math.atan2(virtualY - (c[1] + c[3] * dt), virtualX - (c[0] + c[2] * dt));
+            double expected = (later - solver.getHeadingRadians()) / dt;
+            assertEquals(expected, rate, Math.abs(expected) * 1e-4 + 1e-6);
+
+            /* Solving again from there moves the virtual target too, but the bearing turns the same way */
+            solver.solve(c[0] + c[2] * dt, c[1] + c[3] * dt, c[2], c[3], kTargetX, kTargetY);
+            double resolved = (solver.getHeadingRadians() - Math.atan2(virtualY - c[1], virtualX - c[0])) / dt;
+            assertEquals(Math.signum(rate), Math.signum(resolved));
+        }
+    }
+
+    @Test
+    void keepsTheLastHeadingOnTopOfTheVirtualTarget() {
+        ShotSolver solver = new ShotSolver();
+        solver.solve(3, 4, 0, 0, kTargetX, kTargetY);
+        double heading = solver.getHeadingRadians();
+
+        solver.solve(kTargetX, kTargetY, 0, 0, kTargetX, kTargetY);
+        assertEquals(heading, solver.getHeadingRadians(), 0);
+        assertEquals(0, solver.getHeadingRateRadiansPerSecond(), 0);
+        assertEquals(0, solver.getDistanceMeters(), 0);
+    }
+}
@@ -0,0 +1,188 @@
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import frc.robot.Constants;
+
+/**
+ * Checks the shot table interpolates between rows and clamps past its ends,
+ * with evenly and unevenly spaced rows since they're looked up differently,
+ * that a bad CSV is refused, and that the shipped table still matches the
+ * expo regression it replaced.
+ */
+class ShotTableTest {
+    /* Worst the shipped table may differ from the expo regression by */
+    private static final double kMaxTableErrorDegrees = 0.05;
+    private static final double kEpsilon = 1e-9;
+
+    @TempDir
+    Path m_directory;
+
+    private static ShotTable evenTable() {
+        return new ShotTable(new double[] { 1, 2, 3, 4 }, new double[] { -60, -40, -30, -25 });
+    }
+
+    private static ShotTable unevenTable() {
+        return new ShotTable(new double[] { 1, 1.5, 3, 4 }, new double[] { -60, -50, -30, -25 });
+    }
+
+    private Path write(String contents) throws IOException {
+        Path path = m_directory.resolve(ShotTable.kFileName);
+        Files.writeString(path, contents);
+        return path;
+    }
+
+    @Test
+    void interpolatesBetweenEvenRows() {
+        ShotTable table = evenTable();
+
+        assertEquals(-60, table.getArmAngle(1), kEpsilon);
+        assertEquals(-40, table.getArmAngle(2), kEpsilon);
+        assertEquals(-25, table.getArmAngle(4), kEpsilon);
+        assertEquals(-50, table.getArmAngle(1.5), kEpsilon);
+        assertEquals(-37.5, table.getArmAngle(2.25), kEpsilon);
+        assertEquals(-26, table.getArmAngle(3.8), kEpsilon);
+    }
+
+    @Test
+    void interpolatesBetweenUnevenRows() {
+        ShotTable table = unevenTable();
+
+        assertEquals(-50, table.getArmAngle(1.5), kEpsilon);
+        assertEquals(-30, table.getArmAngle(3), kEpsilon);
+        assertEquals(-55, table.getArmAngle(1.25), kEpsilon);
+        assertEquals(-40, table.getArmAngle(2.25), kEpsilon);
+        assertEquals(-27.5, table.getArmAngle(3.5), kEpsilon);
+    }
+
+    @Test
+    void evenAndUnevenLookupsAgree() {
+        /* Nudging one row makes the table uneven without really changing it */
+        double[] distances = new double[131];
+        double[] angles = new double[distances.length];
+        for (int i = 0; i < distances.length; ++i) {
+            distances[i] = 0.5 + i * 0.05;
+            angles[i] = Arm.expoRegression(distances[i]);
+        }
+        ShotTable even = new ShotTable(distances, angles);
+        distances[1] += 1e-4;
+        ShotTable uneven = new ShotTable(distances, angles);
+
+        /* From the row after the nudged one, where the two tables hold the same rows */
+        for (int i = 0; i <= 10000; ++i) {
+            double distance = 0.6 + 6.4 * i / 10000;
+            assertEquals(even.getArmAngle(distance), uneven.getArmAngle(distance), 1e-6,
+                    "Lookups differ at " + distance + " m");
+        }
+    }
+
+    @Test
+    void clampsPastEitherEnd() {
+        for (ShotTable table : new ShotTable[] { evenTable(), unevenTable() }) {
+            assertEquals(-60, table.getArmAngle(0.5), 0);
+            assertEquals(-60, table.getArmAngle(-3), 0);
+            assertEquals(-60, table.getArmAngle(Double.NEGATIVE_INFINITY), 0);
+            assertEquals(-25, table.getArmAngle(4.01), 0);
+            assertEquals(-25, table.getArmAngle(100), 0);
+            assertEquals(-25, table.getArmAngle(Double.POSITIVE_INFINITY), 0);
+            /* NaN must not index off the table */
+            assertEquals(-60, table.getArmAngle(Double.NaN), 0);
+        }
+    }
+
+    @Test
+    void loadsACsvSkippingCommentsAndTheHeader() throws IOException {
+        ShotTable table = ShotTable.load(write("# a comment\n"
+                + "distance_meters,arm_degrees\n"
+                + "\n"
+                + "1.0, -60\n"
+                + "2.0,-40\n"
+                + "  # indented comment\n"
+                + "3.0,-30\n"));
+
+        assertEquals(3, table.size());
+        assertEquals(1, table.getMinDistance(), 0);
+        assertEquals(3, table.getMaxDistance(), 0);
+        assertEquals(-50, table.getArmAngle(1.5), kEpsilon);
+    }
+
+    @Test
+    void refusesMalformedFiles() throws IOException {
+        String[] malformed = {
+                /* Wrong number of columns */
+                "1.0,-60\n2.0,-40,7\n",
+                "1.0,-60\n2.0\n",
+                /* Only the first non-number row may be a header */
+                "distance_meters,arm_degrees\n1.0,-60\nfar,-40\n",
+                "1.0,-60\ndistance_meters,arm_degrees\n2.0,-40\n",
+                /* Not enough rows to interpolate between */
+                "distance_meters,arm_degrees\n1.0,-60\n",
+                "",
+                /* Distances have to increase */
+                "1.0,-60\n3.0,-40\n2.0,-30\n",
+                "1.0,-60\n1.0,-40\n",
+                /* Values have to be finite */
+                "1.0,-60\n2.0,NaN\n",
+                "1.0,-60\nInfinity,-40\n",
+        };
+        for (String contents : malformed) {
+            Path path = write(contents);
+            assertThrows(IOException.class, () -> ShotTable.load(path), () -> "Loaded:\n" + contents);
+        }
+    }
+
+    @Test
+    void refusesAMissingFile() {
+        assertThrows(IOException.class, () -> ShotTable.load(m_directory.resolve("missing.csv")));
+    }
+
+    @Test
+    void refusesBadRows() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ShotTable(new double[] { 1, 2 }, new double[] { -60 }));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ShotTable(new double[] { 1 }, new double[] { -60 }));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ShotTable(new double[] { 2, 1 }, new double[] { -60, -40 }));
+    }
+
+    @Test
+    void shippedTableMatchesTheExpoRegression() throws IOException {
+        ShotTable table = ShotTable.load(Path.of("src", "main", "deploy", ShotTable.kFileName));
+        assertEquals(Constants.ArmConstants.kShotTableMinDistance, table.getMinDistance(), kEpsilon);
+        assertEquals(Constants.ArmConstants.kShotTableMaxDistance, table.getMaxDistance(), kEpsilon);
+
+        double min = table.getMinDistance();
+        double max = table.getMaxDistance();
+        double worst = 0;
+        for (int i = 0; i <= 10000; ++i) {
+            double distance = min + (max - min) * i / 10000;
+            double error = Math.abs(Arm.expoRegression(distance) - table.getArmAngle(distance));
+            worst = Math.max(worst, error);
+        }
+        assertTrue(worst <= kMaxTableErrorDegrees,
+                "Shot table differs from the expo regression by up to " + worst + " degrees");
+    }
+
+    @Test
+    void sampledTableMatchesItsModelAtEveryRow() {
+        ShotTable table = ShotTable.sample(Arm::expoRegression, Constants.ArmConstants.kShotTableMinDistance,
+                Constants.ArmConstants.kShotTableMaxDistance, Constants.ArmConstants.kShotTableSpacing);
+
+        assertEquals(131, table.size());
+        for (int i = 0; i < table.size(); ++i) {
+            double distance = Constants.ArmConstants.kShotTableMinDistance
+                    + i * Constants.ArmConstants.kShotTableSpacing;
+            assertEquals(Arm.expoRegression(distance), table.getArmAngle(distance), 1e-9);
+        }
+    }
+}